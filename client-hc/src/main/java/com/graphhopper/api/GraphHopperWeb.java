@@ -27,6 +27,7 @@ import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.jackson.ResponsePathDeserializerHelper;
+import com.graphhopper.protobuf.ResponsePathProtobuf;
 import com.graphhopper.util.CustomModel;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Parameters;
@@ -63,6 +64,7 @@ public class GraphHopperWeb {
     private boolean elevation = false;
     private String optimize = "false";
     private boolean postRequest = true;
+    private boolean protobufResponse = false;
     private int maxUnzippedLength = 1000;
     private final Set<String> ignoreSetForGet;
     private final Set<String> ignoreSetForPost;
@@ -145,6 +147,15 @@ public class GraphHopperWeb {
         return this;
     }
 
+    /**
+     * If true the route response is requested in the binary protobuf format described in docs/web/route.proto
+     * instead of JSON. This is faster to parse and smaller for long routes. The default is false.
+     */
+    public GraphHopperWeb setProtobufResponse(boolean protobufResponse) {
+        this.protobufResponse = protobufResponse;
+        return this;
+    }
+
     /**
      * Enable or disable calculating points for the way. The default is true.
      */
@@ -190,8 +201,19 @@ public class GraphHopperWeb {
             ghRequest.getHints().remove("turn_description"); // do not include in request
 
             Request okRequest = postRequest ? createPostRequest(ghRequest) : createGetRequest(ghRequest);
+            if (protobufResponse)
+                okRequest = okRequest.newBuilder().header("Accept", ResponsePathProtobuf.MEDIA_TYPE).build();
             Response rsp = getClientForRequest(ghRequest).newCall(okRequest).execute();
             rspBody = rsp.body();
+            MediaType contentType = rspBody.contentType();
+            if (contentType != null && "x-protobuf".equals(contentType.subtype())) {
+                // errors are still returned as JSON
+                GHResponse res = ResponsePathProtobuf.read(rspBody.bytes(), tmpTurnDescription);
+                for (Map.Entry<String, List<String>> entry : rsp.headers().toMultimap().entrySet()) {
+                    res.getHints().putObject(entry.getKey(), entry.getValue());
+                }
+                return res;
+            }
             JsonNode json = objectMapper.reader().readTree(rspBody.byteStream());
 
             GHResponse res = new GHResponse();
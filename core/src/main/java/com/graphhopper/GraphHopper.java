@@ -49,10 +49,12 @@ import com.graphhopper.routing.util.parsers.TagParser;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomModelParser;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
+import com.graphhopper.routing.weighting.custom.EdgeAreaCache;
 import com.graphhopper.routing.weighting.custom.NameValidator;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.SnapCache;
 import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.Parameters.Routing;
@@ -71,6 +73,7 @@ import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static com.graphhopper.util.GHUtility.readCountries;
@@ -95,6 +98,8 @@ public class GraphHopper {
     private CountryRuleFactory countryRuleFactory = null;
     // for custom areas:
     private String customAreasDirectory = "";
+    private long edgeAreaCacheMaxBytes = 20L * 1024 * 1024;
+    private EdgeAreaCache edgeAreaCache;
     // for graph:
     private BaseGraph baseGraph;
     private StorableProperties properties;
@@ -105,6 +110,7 @@ public class GraphHopper {
     private DAType dataAccessDefaultType = DAType.RAM_STORE;
     private final LinkedHashMap<String, String> dataAccessConfig = new LinkedHashMap<>();
     private boolean sortGraph = true;
+    private boolean compactWayGeometry = false;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean allowWrites = true;
@@ -116,6 +122,8 @@ public class GraphHopper {
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
+    private int snapCacheSize = 10_000;
+    private SnapCache snapCache;
     // subnetworks
     private int minNetworkSize = 200;
     private int subnetworksThreads = 1;
@@ -137,6 +145,7 @@ public class GraphHopper {
     private ElevationProvider eleProvider = ElevationProvider.NOOP;
     private ImportRegistry importRegistry = new DefaultImportRegistry();
     private PathDetailsBuilderFactory pathBuilderFactory = new PathDetailsBuilderFactory();
+    private RoutingMetrics routingMetrics = RoutingMetrics.NONE;
 
     private String dateRangeParserString = "";
     private String encodedValuesString = "";
@@ -184,6 +193,18 @@ public class GraphHopper {
         return pathBuilderFactory;
     }
 
+    /**
+     * Sets the receiver of the per-phase timings and the visited nodes of all route requests.
+     */
+    public GraphHopper setRoutingMetrics(RoutingMetrics routingMetrics) {
+        this.routingMetrics = routingMetrics;
+        return this;
+    }
+
+    public RoutingMetrics getRoutingMetrics() {
+        return routingMetrics;
+    }
+
     /**
      * Precise location resolution index means also more space (disc/RAM) could be consumed and
      * probably slower query times, which would be e.g. not suitable for Android. The resolution
@@ -366,6 +387,15 @@ public class GraphHopper {
         return this;
     }
 
+    /**
+     * Stores the pillar nodes of new graphs in a compact format that needs less memory but is a bit slower to read,
+     * see {@link BaseGraph.Builder#setCompactWayGeometry}. Existing graphs are loaded in the format they were created with.
+     */
+    public GraphHopper setCompactWayGeometry(boolean compactWayGeometry) {
+        this.compactWayGeometry = compactWayGeometry;
+        return this;
+    }
+
     /**
      * The underlying graph used in algorithms.
      *
@@ -415,8 +445,19 @@ public class GraphHopper {
         return locationIndex;
     }
 
-    protected void setLocationIndex(LocationIndex locationIndex) {
+    protected synchronized void setLocationIndex(LocationIndex locationIndex) {
         this.locationIndex = locationIndex;
+        // the cached snaps belong to the previous index
+        this.snapCache = null;
+    }
+
+    /**
+     * @return the cache for the snaps of the routing requests or null if it is disabled via index.snap_cache_size
+     */
+    public synchronized SnapCache getSnapCache() {
+        if (snapCache == null && snapCacheSize > 0 && locationIndex != null)
+            snapCache = new SnapCache(baseGraph, locationIndex, snapCacheSize);
+        return snapCache;
     }
 
     public boolean isAllowWrites() {
@@ -502,6 +543,7 @@ public class GraphHopper {
 
         countryRuleFactory = ghConfig.getBool("country_rules.enabled", false) ? new CountryRuleFactory() : null;
         customAreasDirectory = ghConfig.getString("custom_areas.directory", customAreasDirectory);
+        edgeAreaCacheMaxBytes = ghConfig.getLong("custom_areas.edge_cache.max_size_mb", edgeAreaCacheMaxBytes / 1024 / 1024) * 1024 * 1024;
 
         defaultSegmentSize = ghConfig.getInt("graph.dataaccess.segment_size", defaultSegmentSize);
 
@@ -515,6 +557,7 @@ public class GraphHopper {
         }
 
         sortGraph = ghConfig.getBool("graph.sort", sortGraph);
+        compactWayGeometry = ghConfig.getBool("graph.compact_way_geometry", compactWayGeometry);
         if (ghConfig.getBool("max_speed_calculator.enabled", false))
             maxSpeedCalculator = new MaxSpeedCalculator(MaxSpeedCalculator.createLegalDefaultSpeeds());
 
@@ -586,10 +629,14 @@ public class GraphHopper {
         osmReaderConfig.setPreferredLanguage(ghConfig.getString("datareader.preferred_language", osmReaderConfig.getPreferredLanguage()));
         osmReaderConfig.setMaxWayPointDistance(ghConfig.getDouble(Routing.INIT_WAY_POINT_MAX_DISTANCE, osmReaderConfig.getMaxWayPointDistance()));
         osmReaderConfig.setWorkerThreads(ghConfig.getInt("datareader.worker_threads", osmReaderConfig.getWorkerThreads()));
+        osmReaderConfig.setParseThreads(ghConfig.getInt("datareader.parse_threads", osmReaderConfig.getParseThreads()));
+        osmReaderConfig.setParseBatchSize(ghConfig.getInt("datareader.parse_batch_size", osmReaderConfig.getParseBatchSize()));
+        osmReaderConfig.setPagedNodeIdMap(ghConfig.getBool("datareader.paged_node_id_map", osmReaderConfig.isPagedNodeIdMap()));
 
         // index
         preciseIndexResolution = ghConfig.getInt("index.high_resolution", preciseIndexResolution);
         maxRegionSearch = ghConfig.getInt("index.max_region_search", maxRegionSearch);
+        snapCacheSize = ghConfig.getInt("index.snap_cache_size", snapCacheSize);
 
         // urban density calculation
         residentialAreaRadius = ghConfig.getDouble("graph.urban_density.residential_radius", residentialAreaRadius);
@@ -828,6 +875,7 @@ public class GraphHopper {
                 .set3D(hasElevation())
                 .withTurnCosts(encodingManager.needsTurnCostsSupport())
                 .setSegmentSize(defaultSegmentSize)
+                .setCompactWayGeometry(compactWayGeometry)
                 .build();
         properties = new StorableProperties(directory);
         checkProfilesConsistency();
@@ -1327,13 +1375,27 @@ public class GraphHopper {
     }
 
     protected WeightingFactory createWeightingFactory() {
-        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager());
+        return new DefaultWeightingFactory(baseGraph.getBaseGraph(), getEncodingManager(), getEdgeAreaCache());
+    }
+
+    private synchronized EdgeAreaCache getEdgeAreaCache() {
+        if (edgeAreaCache == null && edgeAreaCacheMaxBytes > 0)
+            // the location index is not yet available when the subnetworks are calculated
+            edgeAreaCache = new EdgeAreaCache(baseGraph.getBaseGraph(), () -> locationIndex, edgeAreaCacheMaxBytes);
+        return edgeAreaCache;
     }
 
     public GHResponse route(GHRequest request) {
         return createRouter().route(request);
     }
 
+    /**
+     * @see Router#routeBulk(GHRequest, List)
+     */
+    public Stream<GHResponse> routeBulk(GHRequest request, List<int[]> pairs) {
+        return createRouter().routeBulk(request, pairs);
+    }
+
     private Router createRouter() {
         if (baseGraph == null || !fullyLoaded)
             throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
@@ -1343,7 +1405,8 @@ public class GraphHopper {
             throw new IllegalStateException("Location index not initialized");
 
         return doCreateRouter(baseGraph, encodingManager, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks);
+                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks).setRoutingMetrics(routingMetrics).
+                setSnapCache(getSnapCache());
     }
 
     protected Router doCreateRouter(BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, Map<String, Profile> profilesByName,
@@ -1545,6 +1608,9 @@ public class GraphHopper {
 
         if (locationIndex != null)
             locationIndex.close();
+        synchronized (this) {
+            snapCache = null;
+        }
 
         try {
             lockFactory.forceRemove(fileLockName, true);
@@ -0,0 +1,174 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * A map with 5-byte values that is stored in {@link DataAccess} objects rather than Java objects. The key space is
+ * split into pages of 256 consecutive keys and a page is only allocated once a key of its range is put into the map.
+ * A page index maps the key range to the page, so lookups take constant time.
+ * <p>
+ * This is efficient if the keys are dense, like the OSM node IDs of a planet file, but it wastes memory if only a few
+ * keys fall into each page. In this case use {@link GHLongLongBTree} instead. Negative keys are stored in a separate
+ * {@link GHLongLongBTree}, because we only expect a few of them.
+ */
+public class GHLongLongPagedMap implements LongLongMap {
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    // the lower four bytes of the values are stored as ints at the beginning of a page, the highest byte after that
+    private static final int BYTES_PER_PAGE = PAGE_SIZE * 5;
+
+    private final Directory dir;
+    private final String name;
+    private final long emptyValue;
+    private final long minValue;
+    private final long maxValue;
+    private DataAccess pageIndex;
+    private DataAccess pages;
+    private GHLongLongBTree negativeKeys;
+    private int pageCount;
+    private long size;
+
+    /**
+     * @param name the prefix used for the names of the {@link DataAccess} objects created in the given directory
+     */
+    public GHLongLongPagedMap(Directory dir, String name, long emptyValue) {
+        this.dir = dir;
+        this.name = name;
+        this.emptyValue = emptyValue;
+        // we store the difference to the empty value, so we do not need to initialize the pages, which are filled
+        // with zeros. one bit is reserved for negative differences.
+        this.minValue = emptyValue - (1L << 39);
+        this.maxValue = emptyValue + (1L << 39) - 1;
+        clear();
+    }
+
+    @Override
+    public long put(long key, long value) {
+        if (value == emptyValue)
+            throw new IllegalArgumentException("Value cannot be the 'empty value' " + emptyValue);
+        if (value < minValue || value > maxValue)
+            throw new IllegalArgumentException("Value " + value + " is out of range [" + minValue + ", " + maxValue + "]");
+
+        if (key < 0)
+            return negativeKeys.put(key, value);
+
+        long pagePointer = getPagePointer(key >>> PAGE_BITS, true);
+        int slot = (int) (key & (PAGE_SIZE - 1));
+        long oldValue = read(pagePointer, slot);
+        long diff = value - emptyValue;
+        pages.setInt(pagePointer + slot * 4L, (int) diff);
+        pages.setByte(pagePointer + PAGE_SIZE * 4L + slot, (byte) (diff >> 32));
+        if (oldValue == emptyValue)
+            size++;
+        return oldValue;
+    }
+
+    @Override
+    public long get(long key) {
+        if (key < 0)
+            return negativeKeys.get(key);
+
+        long pagePointer = getPagePointer(key >>> PAGE_BITS, false);
+        if (pagePointer < 0)
+            return emptyValue;
+        return read(pagePointer, (int) (key & (PAGE_SIZE - 1)));
+    }
+
+    private long read(long pagePointer, int slot) {
+        long low = pages.getInt(pagePointer + slot * 4L) & 0xFFFFFFFFL;
+        // the byte is signed, so this also restores the sign of the difference
+        long high = pages.getByte(pagePointer + PAGE_SIZE * 4L + slot);
+        long diff = (high << 32) | low;
+        return diff == 0 ? emptyValue : diff + emptyValue;
+    }
+
+    /**
+     * @return the byte position of the page for the given page key or -1 if there is no such page and create is false
+     */
+    private long getPagePointer(long pageKey, boolean create) {
+        long indexPointer = pageKey * 4;
+        if (indexPointer + 4 > pageIndex.getCapacity()) {
+            if (!create)
+                return -1;
+            pageIndex.ensureCapacity(indexPointer + 4);
+        }
+        // we store the page number plus one, so zero means that there is no page yet
+        int page = pageIndex.getInt(indexPointer);
+        if (page == 0) {
+            if (!create)
+                return -1;
+            if (pageCount == Integer.MAX_VALUE - 1)
+                throw new IllegalStateException("Too many pages: " + pageCount);
+            page = ++pageCount;
+            pages.ensureCapacity((long) page * BYTES_PER_PAGE);
+            pageIndex.setInt(indexPointer, page);
+        }
+        return (long) (page - 1) * BYTES_PER_PAGE;
+    }
+
+    @Override
+    public long getSize() {
+        return size + negativeKeys.getSize();
+    }
+
+    @Override
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    @Override
+    public void optimize() {
+        negativeKeys.optimize();
+    }
+
+    @Override
+    public int getMemoryUsage() {
+        return Math.round((pageIndex.getCapacity() + pages.getCapacity()) / Helper.MB) + negativeKeys.getMemoryUsage();
+    }
+
+    /**
+     * Removes all entries and releases the memory of the pages
+     */
+    @Override
+    public void clear() {
+        release();
+        pageIndex = dir.create(name + "_index").create(1000);
+        pages = dir.create(name).create(BYTES_PER_PAGE);
+        negativeKeys = new GHLongLongBTree(200, 8, emptyValue);
+        pageCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Removes the {@link DataAccess} objects of this map from the directory without creating new ones. The map must
+     * not be used afterwards.
+     */
+    public void release() {
+        if (pages != null) {
+            dir.remove(pageIndex.getName());
+            dir.remove(pages.getName());
+            pageIndex = null;
+            pages = null;
+        }
+        negativeKeys = null;
+    }
+}
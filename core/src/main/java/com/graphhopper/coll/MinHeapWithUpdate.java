@@ -26,26 +26,24 @@ import java.util.Arrays;
  * A minimum heap implemented using a binary tree (https://en.wikipedia.org/wiki/Binary_heap). Besides the tree and the
  * elements' values this heap also keeps track of the positions of the elements in the tree.
  * This requires additional book-keeping when doing pushes/polls, but allows for an efficient update operation.
- * For the same reason the heap has a fixed memory size that is determined in the constructor and the inserted element
- * may not exceed a certain range.
- * todo: strictly speaking the heap could automatically grow/shrink as long as the range of legal ids stays fixed, but
- * for simplicity the heap has a fixed size for now.
+ * For the same reason the memory size of the heap is determined by the range of legal ids, which is set in the
+ * constructor and can only be extended explicitly using {@link #ensureCapacity}.
  * <p>
  * This class is very similar to {@link IntFloatBinaryHeap}, but compared to this has an efficient update operation.
  * In turn it is (much) less memory-efficient when the heap is used for a small number of elements from a large range.
  */
 public class MinHeapWithUpdate {
     private static final int NOT_PRESENT = -1;
-    private final int[] tree;
-    private final int[] positions;
-    private final float[] vals;
-    private final int max;
+    private int[] tree;
+    private int[] positions;
+    private float[] vals;
+    private int max;
     private int size;
 
     /**
-     * @param elements the number of elements that can be stored in this heap. Currently the heap cannot be resized or
-     *                 shrunk/trimmed after initial creation. elements-1 is the maximum id that can be stored in this
-     *                 heap
+     * @param elements the number of elements that can be stored in this heap. The heap cannot be shrunk/trimmed after
+     *                 initial creation, but it can be grown using {@link #ensureCapacity}. elements-1 is the maximum
+     *                 id that can be stored in this heap
      */
     public MinHeapWithUpdate(int elements) {
         // we use an offset of one to make the arithmetic a bit simpler/more efficient, the 0th elements are not used!
@@ -137,6 +135,44 @@ public class MinHeapWithUpdate {
         return id;
     }
 
+    /**
+     * Removes the element with the given id. Its illegal to remove elements that are not contained in the heap.
+     */
+    public void remove(int id) {
+        checkIdInRange(id);
+        int index = positions[id];
+        if (index < 0)
+            throw new IllegalStateException("The heap does not contain: " + id + ". Use the contains method to check this before calling remove");
+        positions[id] = NOT_PRESENT;
+        if (index == size) {
+            size--;
+            return;
+        }
+        float removedVal = vals[index];
+        tree[index] = tree[size];
+        vals[index] = vals[size];
+        positions[tree[index]] = index;
+        size--;
+        if (vals[index] > removedVal)
+            percolateDown(index);
+        else if (vals[index] < removedVal)
+            percolateUp(index);
+    }
+
+    /**
+     * Extends the range of legal ids such that elements-1 is the maximum id that can be stored in this heap. Does
+     * nothing if the heap is already large enough. The elements contained in the heap are kept.
+     */
+    public void ensureCapacity(int elements) {
+        if (elements <= max)
+            return;
+        tree = Arrays.copyOf(tree, elements + 1);
+        positions = Arrays.copyOf(positions, elements + 1);
+        Arrays.fill(positions, max + 1, elements + 1, NOT_PRESENT);
+        vals = Arrays.copyOf(vals, elements + 1);
+        max = elements;
+    }
+
     public void clear() {
         for (int i = 1; i <= size; i++)
             positions[tree[i]] = NOT_PRESENT;
@@ -45,20 +45,22 @@ public class JTSTriangulator implements Triangulator {
         this.routerConfig = routerConfig;
     }
 
-    public Result triangulate(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree, ToDoubleFunction<ShortestPathTree.IsoLabel> fz, double tolerance) {
+    public Result triangulate(Snap snap, QueryGraph queryGraph, OneToAllSearch search, ToDoubleFunction<OneToAllSearch.Cursor> fz, double tolerance) {
         final NodeAccess na = queryGraph.getNodeAccess();
         Collection<Coordinate> sites = new ArrayList<>();
-        shortestPathTree.search(snap.getClosestNode(), label -> {
-            double exploreValue = fz.applyAsDouble(label);
-            double lat = na.getLat(label.node);
-            double lon = na.getLon(label.node);
+        OneToAllSearch.Cursor cursor = search.search(snap.getClosestNode());
+        while (cursor.next()) {
+            double exploreValue = fz.applyAsDouble(cursor);
+            int node = cursor.getNode();
+            double lat = na.getLat(node);
+            double lon = na.getLon(node);
             Coordinate site = new Coordinate(lon, lat);
             site.z = exploreValue;
             sites.add(site);
 
             // add a pillar node to increase precision a bit for longer roads
-            if (label.parent != null) {
-                EdgeIteratorState edge = queryGraph.getEdgeIteratorState(label.edge, label.node);
+            if (cursor.hasParent()) {
+                EdgeIteratorState edge = queryGraph.getEdgeIteratorState(cursor.getEdge(), node);
                 PointList innerPoints = edge.fetchWayGeometry(FetchMode.PILLAR_ONLY);
                 if (innerPoints.size() > 0) {
                     int midIndex = innerPoints.size() / 2;
@@ -73,7 +75,7 @@ public class JTSTriangulator implements Triangulator {
                     sites.add(site2);
                 }
             }
-        });
+        }
 
         if (sites.size() > routerConfig.getMaxVisitedNodes() / 3)
             throw new IllegalArgumentException("Too many nodes would be included in post processing (" + sites.size() + "). Let us know if you need this increased.");
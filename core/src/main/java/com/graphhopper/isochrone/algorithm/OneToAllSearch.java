@@ -0,0 +1,85 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.isochrone.algorithm;
+
+/**
+ * A search for the shortest paths from (or, with reverse flow, to) one node to all nodes within a given
+ * travel time, distance, or weight. See {@link ShortestPathTree} for the Dijkstra based implementation
+ * and {@link PhastShortestPathTree} for the one using contraction hierarchies.
+ */
+public interface OneToAllSearch {
+
+    /**
+     * Time limit in milliseconds
+     */
+    void setTimeLimit(double limit);
+
+    /**
+     * Distance limit in meter
+     */
+    void setDistanceLimit(double limit);
+
+    void setWeightLimit(double limit);
+
+    /**
+     * Starts the search at the given node. Only labels within the limit are returned by the cursor.
+     */
+    Cursor search(int from);
+
+    int getVisitedNodes();
+
+    /**
+     * A cursor over the labels found by the search, i.e. the shortest path to one node (or, for edge-based
+     * traversal, to one edge). All getters refer to the current label, which stays valid until the next
+     * call of {@link #next()}. The parent is the previous label on the shortest path.
+     */
+    interface Cursor {
+
+        /**
+         * @return false if there are no more labels
+         */
+        boolean next();
+
+        int getNode();
+
+        /**
+         * @return the (original) edge by which the node is reached, or {@link com.graphhopper.util.EdgeIterator#NO_EDGE}
+         * for the start node
+         */
+        int getEdge();
+
+        double getWeight();
+
+        long getTime();
+
+        double getDistance();
+
+        boolean hasParent();
+
+        int getParentNode();
+
+        int getParentEdge();
+
+        double getParentWeight();
+
+        long getParentTime();
+
+        double getParentDistance();
+    }
+}
@@ -0,0 +1,489 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.isochrone.algorithm;
+
+import com.carrotsearch.hppc.IntArrayDeque;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
+import com.graphhopper.coll.GHLongLongHashMap;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static com.graphhopper.isochrone.algorithm.ShortestPathTree.ExploreType.*;
+
+/**
+ * Computes a shortest path tree like {@link ShortestPathTree}, but using node-based contraction hierarchies
+ * and the PHAST algorithm (Delling et al., "PHAST: Hardware-Accelerated Shortest Path Trees"): An upward
+ * search from the start node followed by one linear sweep over all nodes in descending level order, in
+ * which every node is relaxed by its incoming edges from higher-level nodes. The sweep always covers the
+ * whole graph, so this is faster than Dijkstra for large limits and slower for small ones.
+ * <p>
+ * The shortcuts of the resulting tree are unpacked to calculate time and distance and to find the last
+ * original edge and the parent node in the original graph. The labels are returned in the order in which
+ * they were found, not in the order of increasing weight.
+ * <p>
+ * Works with a {@link QueryRoutingCHGraph} as long as the start node is its only virtual node.
+ * <p>
+ * The node order of the sweep is calculated once per CH graph, and the node-sized label arrays are returned to a
+ * small, softly referenced pool once the cursor is exhausted, so repeated searches do not allocate them again. Shortcuts are only
+ * unpacked for nodes whose parent is within the limit.
+ */
+public class PhastShortestPathTree implements OneToAllSearch {
+    // the real nodes in ascending level order for every CH graph that was searched so far
+    private static final Map<RoutingCHGraph, int[]> NODES_BY_LEVEL = Collections.synchronizedMap(new WeakHashMap<>());
+    // the labels of finished searches, at most one per processor. They are only softly referenced so the garbage
+    // collector can reclaim them when memory runs low, e.g. after a burst of concurrent searches
+    private static final Deque<SoftReference<Labels>> POOL = new ArrayDeque<>();
+    private static final int MAX_POOLED_LABELS = Runtime.getRuntime().availableProcessors();
+
+    private final RoutingCHGraph chGraph;
+    private final RoutingCHGraph levelGraph;
+    private final Graph graph;
+    private final Weighting weighting;
+    private final boolean reverseFlow;
+    private final int realNodes;
+    private double limit = -1;
+    private ShortestPathTree.ExploreType exploreType = TIME;
+    private boolean alreadyRun;
+    private int visitedNodes;
+    // the labels, indexed by node
+    private Labels labels;
+    private double[] weights;
+    private int[] chParentEdges;
+    private int[] chParentNodes;
+    private long[] times;
+    private double[] distances;
+    private int[] edges;
+    private int[] parents;
+    // the nodes that were found, in the order in which their labels became final
+    private final IntArrayList foundNodes = new IntArrayList();
+    private final LongLongHashMap shortcutTimes = new GHLongLongHashMap();
+    private final LongLongHashMap shortcutDistances = new GHLongLongHashMap();
+
+    /**
+     * Searches the given CH graph on top of the given query graph. Use this rather than
+     * {@link #PhastShortestPathTree(RoutingCHGraph, boolean)} with a new {@link QueryRoutingCHGraph} for every query,
+     * because the node order of the sweep can only be reused for the same CH graph.
+     */
+    public PhastShortestPathTree(RoutingCHGraph chGraph, QueryGraph queryGraph, boolean reverseFlow) {
+        this(new QueryRoutingCHGraph(chGraph, queryGraph), chGraph, reverseFlow);
+    }
+
+    public PhastShortestPathTree(RoutingCHGraph chGraph, boolean reverseFlow) {
+        this(chGraph, chGraph, reverseFlow);
+    }
+
+    private PhastShortestPathTree(RoutingCHGraph chGraph, RoutingCHGraph levelGraph, boolean reverseFlow) {
+        if (chGraph.isEdgeBased())
+            throw new IllegalArgumentException("PHAST only supports node-based contraction hierarchies");
+        this.chGraph = chGraph;
+        this.levelGraph = levelGraph;
+        this.graph = chGraph.getBaseGraph();
+        this.weighting = chGraph.getWeighting();
+        this.reverseFlow = reverseFlow;
+        this.realNodes = graph.getBaseGraph().getNodes();
+    }
+
+    @Override
+    public void setTimeLimit(double limit) {
+        exploreType = TIME;
+        this.limit = limit;
+    }
+
+    @Override
+    public void setDistanceLimit(double limit) {
+        exploreType = DISTANCE;
+        this.limit = limit;
+    }
+
+    @Override
+    public void setWeightLimit(double limit) {
+        exploreType = WEIGHT;
+        this.limit = limit;
+    }
+
+    @Override
+    public Cursor search(int from) {
+        if (alreadyRun)
+            throw new IllegalStateException("Create a new instance per call");
+        alreadyRun = true;
+        if (chGraph.getNodes() > realNodes + 1 || (chGraph.getNodes() > realNodes && from != realNodes))
+            throw new IllegalArgumentException("The start node must be the only virtual node");
+        labels = acquireLabels(realNodes + 1);
+        weights = labels.weights;
+        chParentEdges = labels.chParentEdges;
+        chParentNodes = labels.chParentNodes;
+        times = labels.times;
+        distances = labels.distances;
+        edges = labels.edges;
+        parents = labels.parents;
+
+        weights[from] = 0;
+        chParentEdges[from] = EdgeIterator.NO_EDGE;
+        chParentNodes[from] = -1;
+        searchUpward(from);
+        sweepDownward();
+
+        boolean[] unpacked = labels.unpacked;
+        unpacked[from] = true;
+        times[from] = 0;
+        distances[from] = 0;
+        edges[from] = EdgeIterator.NO_EDGE;
+        parents[from] = -1;
+        IntArrayDeque stack = new IntArrayDeque();
+        for (int i = 0; i < foundNodes.size(); i++) {
+            // the labels were not necessarily found in the order of the tree, so we unpack all ancestors first
+            for (int node = foundNodes.get(i); !unpacked[node]; node = chParentNodes[node])
+                stack.addLast(node);
+            while (!stack.isEmpty()) {
+                int node = stack.removeLast();
+                unpack(node);
+                unpacked[node] = true;
+            }
+        }
+        return new PhastCursor();
+    }
+
+    private void unpack(int node) {
+        int chParentEdge = chParentEdges[node];
+        int chParent = chParentNodes[node];
+        if (getExploreValue(chParent) > limit) {
+            // time and distance only grow along the tree, so this node is beyond the limit as well
+            times[node] = Long.MAX_VALUE;
+            distances[node] = Double.POSITIVE_INFINITY;
+            return;
+        }
+        times[node] = times[chParent] + unpackTime(chParentEdge, node);
+        distances[node] = distances[chParent] + unpackDistance(chParentEdge, node);
+        RoutingCHEdgeIteratorState lastOrigEdge = lastOriginalEdge(chGraph.getEdgeIteratorState(chParentEdge, node));
+        edges[node] = lastOrigEdge.getOrigEdge();
+        parents[node] = lastOrigEdge.getBaseNode();
+    }
+
+    private void searchUpward(int from) {
+        RoutingCHEdgeExplorer explorer = reverseFlow ? chGraph.createInEdgeExplorer() : chGraph.createOutEdgeExplorer();
+        // the upward search is small, so we use a heap that does not depend on the graph size and skip outdated entries
+        boolean[] found = labels.found;
+        IntFloatBinaryHeap heap = new IntFloatBinaryHeap(128);
+        heap.insert(0, from);
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            if (found[node])
+                continue;
+            found[node] = true;
+            foundNodes.add(node);
+            visitedNodes++;
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adj = iter.getAdjNode();
+                if (!isUpward(node, adj))
+                    continue;
+                double weight = weights[node] + iter.getWeight(reverseFlow);
+                if (weight >= weights[adj] || exploreType == WEIGHT && weight > limit)
+                    continue;
+                weights[adj] = weight;
+                chParentEdges[adj] = iter.getEdge();
+                chParentNodes[adj] = node;
+                heap.insert(weight, adj);
+            }
+        }
+    }
+
+    private void sweepDownward() {
+        int[] nodesByLevel = NODES_BY_LEVEL.get(levelGraph);
+        if (nodesByLevel == null) {
+            // sort outside the lock of the map so other searches do not have to wait. Concurrent searches might sort
+            // the same graph twice, but all of them use the same result
+            int[] sorted = sortNodesByLevel(levelGraph, realNodes);
+            nodesByLevel = NODES_BY_LEVEL.putIfAbsent(levelGraph, sorted);
+            if (nodesByLevel == null)
+                nodesByLevel = sorted;
+        }
+        RoutingCHEdgeExplorer explorer = reverseFlow ? chGraph.createOutEdgeExplorer() : chGraph.createInEdgeExplorer();
+        for (int i = realNodes - 1; i >= 0; i--) {
+            int node = nodesByLevel[i];
+            boolean foundByUpwardSearch = weights[node] < Double.POSITIVE_INFINITY;
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adj = iter.getAdjNode();
+                if (!isUpward(node, adj) || weights[adj] == Double.POSITIVE_INFINITY)
+                    continue;
+                double weight = weights[adj] + iter.getWeight(!reverseFlow);
+                if (weight >= weights[node] || exploreType == WEIGHT && weight > limit)
+                    continue;
+                weights[node] = weight;
+                chParentEdges[node] = iter.getEdge();
+                chParentNodes[node] = adj;
+            }
+            if (!foundByUpwardSearch && weights[node] < Double.POSITIVE_INFINITY)
+                foundNodes.add(node);
+        }
+        visitedNodes += realNodes;
+    }
+
+    private static int[] sortNodesByLevel(RoutingCHGraph chGraph, int realNodes) {
+        // the levels are in [0, nodes]
+        int[] nodesPerLevel = new int[realNodes + 2];
+        for (int node = 0; node < realNodes; node++)
+            nodesPerLevel[chGraph.getLevel(node) + 1]++;
+        for (int level = 1; level < nodesPerLevel.length; level++)
+            nodesPerLevel[level] += nodesPerLevel[level - 1];
+        int[] nodesByLevel = new int[realNodes];
+        for (int node = 0; node < realNodes; node++)
+            nodesByLevel[nodesPerLevel[chGraph.getLevel(node)]++] = node;
+        return nodesByLevel;
+    }
+
+    private static Labels acquireLabels(int nodes) {
+        Labels labels = null;
+        synchronized (POOL) {
+            while (!POOL.isEmpty() && labels == null) {
+                labels = POOL.poll().get();
+                // labels that were garbage collected or that belong to another graph size are dropped
+                if (labels != null && labels.weights.length != nodes)
+                    labels = null;
+            }
+        }
+        if (labels == null)
+            return new Labels(nodes);
+        labels.clear();
+        return labels;
+    }
+
+    private void releaseLabels() {
+        synchronized (POOL) {
+            if (POOL.size() < MAX_POOLED_LABELS)
+                POOL.push(new SoftReference<>(labels));
+        }
+        labels = null;
+        weights = null;
+        chParentEdges = null;
+        chParentNodes = null;
+        times = null;
+        distances = null;
+        edges = null;
+        parents = null;
+    }
+
+    private boolean isUpward(int node, int adj) {
+        // the virtual start node is the topmost node
+        if (node >= realNodes || adj >= realNodes)
+            return true;
+        return chGraph.getLevel(node) <= chGraph.getLevel(adj);
+    }
+
+    private long unpackTime(int chEdge, int adjNode) {
+        long key = ((long) chEdge << 32) | adjNode;
+        if (shortcutTimes.containsKey(key))
+            return shortcutTimes.get(key);
+        RoutingCHEdgeIteratorState edge = chGraph.getEdgeIteratorState(chEdge, adjNode);
+        long time;
+        if (edge.isShortcut()) {
+            RoutingCHEdgeIteratorState[] skipped = skippedEdges(edge);
+            time = unpackTime(skipped[0].getEdge(), skipped[0].getAdjNode()) + unpackTime(skipped[1].getEdge(), adjNode);
+            shortcutTimes.put(key, time);
+        } else {
+            time = weighting.calcEdgeMillis(originalEdge(edge), reverseFlow);
+        }
+        return time;
+    }
+
+    private double unpackDistance(int chEdge, int adjNode) {
+        long key = ((long) chEdge << 32) | adjNode;
+        if (shortcutDistances.containsKey(key))
+            return Double.longBitsToDouble(shortcutDistances.get(key));
+        RoutingCHEdgeIteratorState edge = chGraph.getEdgeIteratorState(chEdge, adjNode);
+        double distance;
+        if (edge.isShortcut()) {
+            RoutingCHEdgeIteratorState[] skipped = skippedEdges(edge);
+            distance = unpackDistance(skipped[0].getEdge(), skipped[0].getAdjNode()) + unpackDistance(skipped[1].getEdge(), adjNode);
+            shortcutDistances.put(key, Double.doubleToRawLongBits(distance));
+        } else {
+            distance = originalEdge(edge).getDistance();
+        }
+        return distance;
+    }
+
+    private EdgeIteratorState originalEdge(RoutingCHEdgeIteratorState edge) {
+        return graph.getEdgeIteratorState(edge.getOrigEdge(), edge.getAdjNode());
+    }
+
+    private RoutingCHEdgeIteratorState lastOriginalEdge(RoutingCHEdgeIteratorState edge) {
+        while (edge.isShortcut())
+            edge = skippedEdges(edge)[1];
+        return edge;
+    }
+
+    /**
+     * @return the two edges skipped by the given shortcut, the first one pointing to the node in between and
+     * the second one pointing to the adjacent node of the shortcut, see ShortcutUnpacker
+     */
+    private RoutingCHEdgeIteratorState[] skippedEdges(RoutingCHEdgeIteratorState shortcut) {
+        int adj = shortcut.getAdjNode();
+        RoutingCHEdgeIteratorState sk2 = chGraph.getEdgeIteratorState(shortcut.getSkippedEdge2(), adj);
+        RoutingCHEdgeIteratorState sk1;
+        if (sk2 == null) {
+            sk2 = chGraph.getEdgeIteratorState(shortcut.getSkippedEdge1(), adj);
+            sk1 = chGraph.getEdgeIteratorState(shortcut.getSkippedEdge2(), sk2.getBaseNode());
+        } else {
+            sk1 = chGraph.getEdgeIteratorState(shortcut.getSkippedEdge1(), sk2.getBaseNode());
+        }
+        return new RoutingCHEdgeIteratorState[]{sk1, sk2};
+    }
+
+    private double getExploreValue(int node) {
+        if (exploreType == TIME)
+            return times[node];
+        if (exploreType == WEIGHT)
+            return weights[node];
+        return distances[node];
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    private class PhastCursor implements Cursor {
+        private int index = -1;
+        private int node = -1;
+
+        @Override
+        public boolean next() {
+            if (labels == null)
+                return false;
+            while (++index < foundNodes.size()) {
+                node = foundNodes.get(index);
+                if (getExploreValue(node) <= limit)
+                    return true;
+            }
+            node = -1;
+            // the cursor is exhausted, so the labels can be used for the next search
+            releaseLabels();
+            return false;
+        }
+
+        @Override
+        public int getNode() {
+            return node;
+        }
+
+        @Override
+        public int getEdge() {
+            return edges[node];
+        }
+
+        @Override
+        public double getWeight() {
+            return weights[node];
+        }
+
+        @Override
+        public long getTime() {
+            return times[node];
+        }
+
+        @Override
+        public double getDistance() {
+            return distances[node];
+        }
+
+        @Override
+        public boolean hasParent() {
+            return parents[node] != -1;
+        }
+
+        @Override
+        public int getParentNode() {
+            return parents[node];
+        }
+
+        @Override
+        public int getParentEdge() {
+            return edges[parents[node]];
+        }
+
+        @Override
+        public double getParentWeight() {
+            return weights[parents[node]];
+        }
+
+        @Override
+        public long getParentTime() {
+            return times[parents[node]];
+        }
+
+        @Override
+        public double getParentDistance() {
+            return distances[parents[node]];
+        }
+    }
+
+    /**
+     * The node-sized arrays of a search. Only the weights and the flags need to be cleared, the other arrays are always
+     * written before they are read.
+     */
+    private static class Labels {
+        final double[] weights;
+        final int[] chParentEdges;
+        final int[] chParentNodes;
+        final long[] times;
+        final double[] distances;
+        final int[] edges;
+        final int[] parents;
+        final boolean[] found;
+        final boolean[] unpacked;
+
+        Labels(int nodes) {
+            weights = new double[nodes];
+            Arrays.fill(weights, Double.POSITIVE_INFINITY);
+            chParentEdges = new int[nodes];
+            chParentNodes = new int[nodes];
+            times = new long[nodes];
+            distances = new double[nodes];
+            edges = new int[nodes];
+            parents = new int[nodes];
+            found = new boolean[nodes];
+            unpacked = new boolean[nodes];
+        }
+
+        void clear() {
+            Arrays.fill(weights, Double.POSITIVE_INFINITY);
+            Arrays.fill(found, false);
+            Arrays.fill(unpacked, false);
+        }
+    }
+}
@@ -17,9 +17,11 @@
  */
 package com.graphhopper.isochrone.algorithm;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
 import com.carrotsearch.hppc.IntObjectHashMap;
-import com.carrotsearch.hppc.cursors.ObjectCursor;
 import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.coll.MinHeapWithUpdate;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.util.TraversalMode;
@@ -29,28 +31,26 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GHUtility;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.PriorityQueue;
 import java.util.function.Consumer;
 
 import static com.graphhopper.isochrone.algorithm.ShortestPathTree.ExploreType.*;
-import static java.util.Comparator.comparingDouble;
-import static java.util.Comparator.comparingLong;
 
 /**
  * Computes a shortest path tree by a given weighting. Terminates when all shortest paths up to
  * a given travel time, distance, or weight have been explored.
  * <p>
  * IMPLEMENTATION NOTE:
- * util.PriorityQueue doesn't support efficient removes. We work around this by giving the labels
- * a deleted flag, not remove()ing them, and popping deleted elements off both queues.
- * Note to self/others: If you think this optimization is not needed, please test it with a scenario
- * where updates actually occur a lot, such as using finite, non-zero u-turn costs.
+ * The labels are stored as struct-of-arrays (weight, time, distance, parent, ...) indexed by a label id,
+ * and both queues are {@link MinHeapWithUpdate}s over these ids, so that the search does not allocate
+ * per settled node or per improvement. Use {@link #search(int)} to iterate the settled labels with a
+ * {@link OneToAllSearch.Cursor}, the {@link IsoLabel} based methods are only convenience wrappers on top of it.
  *
  * @author Peter Karich
  * @author Michael Zilske
  */
-public class ShortestPathTree extends AbstractRoutingAlgorithm {
+public class ShortestPathTree extends AbstractRoutingAlgorithm implements OneToAllSearch {
 
     enum ExploreType {TIME, DISTANCE, WEIGHT}
 
@@ -65,7 +65,6 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
             this.parent = parent;
         }
 
-        public boolean deleted = false;
         public int node;
         public int edge;
         public double weight;
@@ -85,9 +84,18 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         }
     }
 
-    private final IntObjectHashMap<IsoLabel> fromMap;
-    private final PriorityQueue<IsoLabel> queueByWeighting; // a.k.a. the Dijkstra queue
-    private PriorityQueue<IsoLabel> queueByZ; // so we know when we are finished
+    private static final int NO_LABEL = -1;
+    private static final int INITIAL_CAPACITY = 1000;
+    private final IntIntHashMap labelsByTraversalId;
+    private final MinHeapWithUpdate queueByWeighting; // a.k.a. the Dijkstra queue
+    private final MinHeapWithUpdate queueByZ; // so we know when we are finished
+    private int[] nodes;
+    private int[] edges;
+    private int[] parents;
+    private double[] weights;
+    private long[] times;
+    private double[] distances;
+    private int labelCount;
     private int visitedNodes;
     private double limit = -1;
     private ExploreType exploreType = TIME;
@@ -95,9 +103,15 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
 
     public ShortestPathTree(Graph g, Weighting weighting, boolean reverseFlow, TraversalMode traversalMode) {
         super(g, weighting, traversalMode);
-        queueByWeighting = new PriorityQueue<>(1000, comparingDouble(l -> l.weight));
-        queueByZ = new PriorityQueue<>(1000);
-        fromMap = new GHIntObjectHashMap<>(1000);
+        labelsByTraversalId = new IntIntHashMap(INITIAL_CAPACITY);
+        queueByWeighting = new MinHeapWithUpdate(INITIAL_CAPACITY);
+        queueByZ = new MinHeapWithUpdate(INITIAL_CAPACITY);
+        nodes = new int[INITIAL_CAPACITY];
+        edges = new int[INITIAL_CAPACITY];
+        parents = new int[INITIAL_CAPACITY];
+        weights = new double[INITIAL_CAPACITY];
+        times = new long[INITIAL_CAPACITY];
+        distances = new double[INITIAL_CAPACITY];
         this.reverseFlow = reverseFlow;
     }
 
@@ -106,78 +120,199 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
         throw new IllegalStateException("call search instead");
     }
 
-    /**
-     * Time limit in milliseconds
-     */
+    @Override
     public void setTimeLimit(double limit) {
         exploreType = TIME;
         this.limit = limit;
-        this.queueByZ = new PriorityQueue<>(1000, comparingLong(l -> l.time));
     }
 
-    /**
-     * Distance limit in meter
-     */
+    @Override
     public void setDistanceLimit(double limit) {
         exploreType = DISTANCE;
         this.limit = limit;
-        this.queueByZ = new PriorityQueue<>(1000, comparingDouble(l -> l.distance));
     }
 
+    @Override
     public void setWeightLimit(double limit) {
         exploreType = WEIGHT;
         this.limit = limit;
-        this.queueByZ = new PriorityQueue<>(1000, comparingDouble(l -> l.weight));
     }
 
-    public void search(int from, final Consumer<IsoLabel> consumer) {
+    /**
+     * Starts the search at the given node. The search advances lazily, one settled label per call
+     * of {@link Cursor#next()}, in the order of increasing weight. Only labels within the limit are returned.
+     */
+    @Override
+    public Cursor search(int from) {
         checkAlreadyRun();
-        IsoLabel currentLabel = new IsoLabel(from, -1, 0, 0, 0, null);
-        queueByWeighting.add(currentLabel);
-        queueByZ.add(currentLabel);
+        int label = createLabel(from, EdgeIterator.NO_EDGE, 0, 0, 0, NO_LABEL);
         if (traversalMode == TraversalMode.NODE_BASED) {
-            fromMap.put(from, currentLabel);
+            labelsByTraversalId.put(from, label);
+        }
+        return new LabelCursor();
+    }
+
+    /**
+     * Like {@link #search(int)}, but creates an {@link IsoLabel} (including its parents) for every label
+     * within the limit.
+     */
+    public void search(int from, final Consumer<IsoLabel> consumer) {
+        IntObjectHashMap<IsoLabel> isoLabels = new GHIntObjectHashMap<>();
+        LabelCursor cursor = (LabelCursor) search(from);
+        while (cursor.next()) {
+            consumer.accept(toIsoLabel(cursor.label, isoLabels));
+        }
+    }
+
+    private class LabelCursor implements Cursor {
+        private int label = NO_LABEL;
+
+        /**
+         * Settles the next label within the limit.
+         */
+        @Override
+        public boolean next() {
+            while (!finished()) {
+                int currentLabel = queueByWeighting.poll();
+                queueByZ.remove(currentLabel);
+                visitedNodes++;
+                expand(currentLabel);
+                if (getExploreValue(currentLabel) <= limit) {
+                    label = currentLabel;
+                    return true;
+                }
+            }
+            label = NO_LABEL;
+            return false;
+        }
+
+        @Override
+        public int getNode() {
+            return nodes[label];
+        }
+
+        @Override
+        public int getEdge() {
+            return edges[label];
+        }
+
+        @Override
+        public double getWeight() {
+            return weights[label];
+        }
+
+        @Override
+        public long getTime() {
+            return times[label];
+        }
+
+        @Override
+        public double getDistance() {
+            return distances[label];
+        }
+
+        @Override
+        public boolean hasParent() {
+            return parents[label] != NO_LABEL;
+        }
+
+        @Override
+        public int getParentNode() {
+            return nodes[parents[label]];
+        }
+
+        @Override
+        public int getParentEdge() {
+            return edges[parents[label]];
+        }
+
+        @Override
+        public double getParentWeight() {
+            return weights[parents[label]];
         }
-        while (!finished()) {
-            currentLabel = queueByWeighting.poll();
-            if (currentLabel.deleted)
+
+        @Override
+        public long getParentTime() {
+            return times[parents[label]];
+        }
+
+        @Override
+        public double getParentDistance() {
+            return distances[parents[label]];
+        }
+    }
+
+    private void expand(int currentLabel) {
+        int currentEdge = edges[currentLabel];
+        double currentWeight = weights[currentLabel];
+        long currentTime = times[currentLabel];
+        double currentDistance = distances[currentLabel];
+        EdgeIterator iter = edgeExplorer.setBaseNode(nodes[currentLabel]);
+        while (iter.next()) {
+            if (!accept(iter, currentEdge)) {
                 continue;
-            if (getExploreValue(currentLabel) <= limit) {
-                consumer.accept(currentLabel);
             }
-            currentLabel.deleted = true;
-            visitedNodes++;
 
-            EdgeIterator iter = edgeExplorer.setBaseNode(currentLabel.node);
-            while (iter.next()) {
-                if (!accept(iter, currentLabel.edge)) {
-                    continue;
-                }
+            double nextWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, reverseFlow, currentEdge) + currentWeight;
+            if (Double.isInfinite(nextWeight))
+                continue;
 
-                double nextWeight = GHUtility.calcWeightWithTurnWeight(weighting, iter, reverseFlow, currentLabel.edge) + currentLabel.weight;
-                if (Double.isInfinite(nextWeight))
-                    continue;
-
-                double nextDistance = iter.getDistance() + currentLabel.distance;
-                long nextTime = GHUtility.calcMillisWithTurnMillis(weighting, iter, reverseFlow, currentLabel.edge) + currentLabel.time;
-                int nextTraversalId = traversalMode.createTraversalId(iter, reverseFlow);
-                IsoLabel nextLabel = fromMap.get(nextTraversalId);
-                if (nextLabel == null) {
-                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, currentLabel);
-                    fromMap.put(nextTraversalId, nextLabel);
-                    queueByWeighting.add(nextLabel);
-                    queueByZ.add(nextLabel);
-                } else if (nextLabel.weight > nextWeight) {
-                    nextLabel.deleted = true;
-                    nextLabel = new IsoLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, currentLabel);
-                    fromMap.put(nextTraversalId, nextLabel);
-                    queueByWeighting.add(nextLabel);
-                    queueByZ.add(nextLabel);
-                }
+            double nextDistance = iter.getDistance() + currentDistance;
+            long nextTime = GHUtility.calcMillisWithTurnMillis(weighting, iter, reverseFlow, currentEdge) + currentTime;
+            int nextTraversalId = traversalMode.createTraversalId(iter, reverseFlow);
+            int nextLabel = labelsByTraversalId.getOrDefault(nextTraversalId, NO_LABEL);
+            if (nextLabel == NO_LABEL) {
+                nextLabel = createLabel(iter.getAdjNode(), iter.getEdge(), nextWeight, nextTime, nextDistance, currentLabel);
+                labelsByTraversalId.put(nextTraversalId, nextLabel);
+            } else if (weights[nextLabel] > nextWeight && queueByWeighting.contains(nextLabel)) {
+                edges[nextLabel] = iter.getEdge();
+                weights[nextLabel] = nextWeight;
+                times[nextLabel] = nextTime;
+                distances[nextLabel] = nextDistance;
+                parents[nextLabel] = currentLabel;
+                queueByWeighting.update(nextLabel, (float) nextWeight);
+                queueByZ.update(nextLabel, (float) getExploreValue(nextLabel));
             }
         }
     }
 
+    private int createLabel(int node, int edge, double weight, long time, double distance, int parent) {
+        int label = labelCount++;
+        if (label == nodes.length) {
+            int capacity = nodes.length + (nodes.length >> 1);
+            nodes = Arrays.copyOf(nodes, capacity);
+            edges = Arrays.copyOf(edges, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            times = Arrays.copyOf(times, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+            queueByWeighting.ensureCapacity(capacity);
+            queueByZ.ensureCapacity(capacity);
+        }
+        nodes[label] = node;
+        edges[label] = edge;
+        weights[label] = weight;
+        times[label] = time;
+        distances[label] = distance;
+        parents[label] = parent;
+        queueByWeighting.push(label, (float) weight);
+        queueByZ.push(label, (float) getExploreValue(label));
+        return label;
+    }
+
+    private IsoLabel toIsoLabel(int label, IntObjectHashMap<IsoLabel> isoLabels) {
+        // the parent chain can be long, so we do not use recursion here
+        IntArrayList missing = new IntArrayList();
+        for (int l = label; l != NO_LABEL && !isoLabels.containsKey(l); l = parents[l])
+            missing.add(l);
+        for (int i = missing.size() - 1; i >= 0; i--) {
+            int l = missing.get(i);
+            IsoLabel parent = parents[l] == NO_LABEL ? null : isoLabels.get(parents[l]);
+            isoLabels.put(l, new IsoLabel(nodes[l], edges[l], weights[l], times[l], distances[l], parent));
+        }
+        return isoLabels.get(label);
+    }
+
     public Collection<IsoLabel> getIsochroneEdges() {
         // assert alreadyRun
         return getIsochroneEdges(limit);
@@ -185,29 +320,28 @@ public class ShortestPathTree extends AbstractRoutingAlgorithm {
 
     public ArrayList<IsoLabel> getIsochroneEdges(double z) {
         ArrayList<IsoLabel> result = new ArrayList<>();
-        for (ObjectCursor<IsoLabel> cursor : fromMap.values()) {
-            if (cursor.value.parent != null &&
-                    (getExploreValue(cursor.value) > z ^ getExploreValue(cursor.value.parent) > z)) {
-                result.add(cursor.value);
+        IntObjectHashMap<IsoLabel> isoLabels = new GHIntObjectHashMap<>();
+        for (int label = 0; label < labelCount; label++) {
+            if (parents[label] != NO_LABEL &&
+                    (getExploreValue(label) > z ^ getExploreValue(parents[label]) > z)) {
+                result.add(toIsoLabel(label, isoLabels));
             }
         }
         return result;
     }
 
-    private double getExploreValue(IsoLabel label) {
+    private double getExploreValue(int label) {
         if (exploreType == TIME)
-            return label.time;
+            return times[label];
         if (exploreType == WEIGHT)
-            return label.weight;
-        return label.distance;
+            return weights[label];
+        return distances[label];
     }
 
     protected boolean finished() {
-        while (queueByZ.peek() != null && queueByZ.peek().deleted)
-            queueByZ.poll();
-        if (queueByZ.peek() == null)
+        if (queueByZ.isEmpty())
             return true;
-        return getExploreValue(queueByZ.peek()) >= limit;
+        return getExploreValue(queueByZ.peekId()) >= limit;
     }
 
     @Override
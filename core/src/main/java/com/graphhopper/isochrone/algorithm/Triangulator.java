@@ -38,6 +38,6 @@ public interface Triangulator {
 
     }
 
-    Result triangulate(Snap snap, QueryGraph queryGraph, ShortestPathTree shortestPathTree, ToDoubleFunction<ShortestPathTree.IsoLabel> fz, double tolerance);
+    Result triangulate(Snap snap, QueryGraph queryGraph, OneToAllSearch search, ToDoubleFunction<OneToAllSearch.Cursor> fz, double tolerance);
 
 }
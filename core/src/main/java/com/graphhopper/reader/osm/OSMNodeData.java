@@ -21,6 +21,7 @@ package com.graphhopper.reader.osm;
 import com.carrotsearch.hppc.LongScatterSet;
 import com.carrotsearch.hppc.LongSet;
 import com.graphhopper.coll.GHLongLongBTree;
+import com.graphhopper.coll.GHLongLongPagedMap;
 import com.graphhopper.coll.LongLongMap;
 import com.graphhopper.reader.ReaderNode;
 import com.graphhopper.search.KVStorage;
@@ -79,11 +80,20 @@ class OSMNodeData {
     // we use negative ids to create artificial OSM node ids
     private long nextArtificialOSMNodeId = -Long.MAX_VALUE;
 
-    public OSMNodeData(PointAccess nodeAccess, Directory directory) {
-        // We use a b-tree that can store as many entries as there are longs. A tree is also more
-        // memory efficient, because there is no waste for empty entries, and it also avoids
-        // allocating big arrays when growing the size.
-        idsByOsmNodeIds = new GHLongLongBTree(200, 5, EMPTY_NODE);
+    /**
+     * @param pagedNodeIdMap true if the OSM node IDs shall be mapped using a {@link GHLongLongPagedMap}, which is
+     *                       preferable for (nearly) complete planet files, see {@link com.graphhopper.routing.OSMReaderConfig#setPagedNodeIdMap}
+     */
+    public OSMNodeData(PointAccess nodeAccess, Directory directory, boolean pagedNodeIdMap) {
+        if (pagedNodeIdMap)
+            // For dense OSM node IDs we can use a paged array without any per-entry objects, which requires less
+            // memory and offers faster lookups than the tree.
+            idsByOsmNodeIds = new GHLongLongPagedMap(directory, "tmp_osm_node_ids", EMPTY_NODE);
+        else
+            // We use a b-tree that can store as many entries as there are longs. A tree is also more
+            // memory efficient, because there is no waste for empty entries, and it also avoids
+            // allocating big arrays when growing the size.
+            idsByOsmNodeIds = new GHLongLongBTree(200, 5, EMPTY_NODE);
         towerNodes = nodeAccess;
         pillarNodes = new PillarInfo(towerNodes.is3D(), directory);
 
@@ -271,7 +281,11 @@ class OSMNodeData {
     }
 
     public void release() {
-        idsByOsmNodeIds.clear();
+        // the paged map would create its DataAccess objects again when it is cleared
+        if (idsByOsmNodeIds instanceof GHLongLongPagedMap pagedMap)
+            pagedMap.release();
+        else
+            idsByOsmNodeIds.clear();
         pillarNodes.clear();
         nodeTagIndicesByOsmNodeIds.clear();
         nodeKVStorage.clear();
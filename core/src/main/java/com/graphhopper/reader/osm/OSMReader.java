@@ -53,6 +53,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongToIntFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -90,10 +92,12 @@ public class OSMReader {
     private CountryRuleFactory countryRuleFactory = null;
     private File osmFile;
     private final RamerDouglasPeucker simplifyAlgo = new RamerDouglasPeucker();
-    private int bugCounter = 0;
+    private final AtomicInteger bugCounter = new AtomicInteger();
     private final IntsRef tempRelFlags;
     private Date osmDataDate;
-    private long zeroCounter = 0;
+    private final AtomicLong zeroCounter = new AtomicLong();
+    private final List<List<PendingEdge>> pendingWays = new ArrayList<>();
+    private int pendingEdgeCount = 0;
 
     private GHLongLongHashMap osmWayIdToRelationFlagsMap = new GHLongLongHashMap(200, .5f);
     private WayToEdgesMap restrictedWaysToEdgesMap = new WayToEdgesMap();
@@ -169,10 +173,12 @@ public class OSMReader {
                 .setWayPreprocessor(this::preprocessWay)
                 .setRelationPreprocessor(this::preprocessRelations)
                 .setRelationProcessor(this::processRelation)
-                .setEdgeHandler(this::addEdge)
+                .setEdgeHandler(config.getParseThreads() > 1 ? this::bufferEdge : this::addEdge)
                 .setWorkerThreads(config.getWorkerThreads())
+                .setPagedNodeIdMap(config.isPagedNodeIdMap())
                 .build();
         waySegmentParser.readOSM(osmFile);
+        flushPendingEdges();
         osmDataDate = waySegmentParser.getTimestamp();
         if (baseGraph.getNodes() == 0)
             throw new RuntimeException("Graph after reading OSM must not be empty");
@@ -180,7 +186,7 @@ public class OSMReader {
         addRestrictionsToGraph();
         releaseRestrictionData();
         LOGGER.info("Finished reading OSM file: {}, nodes: {}, edges: {}, zero distance edges: {}",
-                osmFile.getAbsolutePath(), nf(baseGraph.getNodes()), nf(baseGraph.getEdges()), nf(zeroCounter));
+                osmFile.getAbsolutePath(), nf(baseGraph.getNodes()), nf(baseGraph.getEdges()), nf(zeroCounter.get()));
     }
 
     /**
@@ -316,6 +322,63 @@ public class OSMReader {
      * @param nodeTags  node tags of this segment. there is one map of tags for each point.
      */
     protected void addEdge(int fromIndex, int toIndex, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags) {
+        checkSegment(fromIndex, toIndex, pointList, nodeTags);
+        pointList = sampleLongEdges(pointList);
+        double distance = processSegment(pointList, way, nodeTags);
+        IntsRef relationFlags = getRelFlagsMap(way.getId());
+        EdgeIteratorState edge = baseGraph.edge(fromIndex, toIndex).setDistance(distance);
+        osmParsers.handleWayTags(edge.getEdge(), edgeIntAccess, way, relationFlags);
+        finishEdge(edge, pointList, way.getTag("key_values", Collections.emptyMap()), way.getId());
+    }
+
+    /**
+     * This method replaces {@link #addEdge} when the ways shall be parsed by multiple threads. The segments are
+     * collected and handled in batches, see {@link #flushPendingEdges()}.
+     */
+    private void bufferEdge(int fromIndex, int toIndex, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags) {
+        checkSegment(fromIndex, toIndex, pointList, nodeTags);
+        // the segments of a way are passed to us one after another, and we only flush between two ways
+        if (pendingWays.isEmpty() || pendingWays.get(pendingWays.size() - 1).get(0).way != way) {
+            if (pendingEdgeCount >= config.getParseBatchSize())
+                flushPendingEdges();
+            pendingWays.add(new ArrayList<>(1));
+        }
+        // the elevation provider is not thread-safe so we need to sample the elevation here already
+        pendingWays.get(pendingWays.size() - 1).add(new PendingEdge(fromIndex, toIndex, sampleLongEdges(pointList), way, nodeTags));
+        pendingEdgeCount++;
+    }
+
+    /**
+     * Adds the buffered segments to the graph. The edges are created by the calling thread and in the same order they
+     * would have been created by {@link #addEdge}, so the edge IDs do not depend on the number of threads. Afterwards
+     * the tag parsers are run concurrently, and finally the remaining edge properties are set by the calling thread
+     * again.
+     */
+    private void flushPendingEdges() {
+        if (pendingWays.isEmpty())
+            return;
+        for (List<PendingEdge> edges : pendingWays)
+            for (PendingEdge e : edges)
+                e.edge = baseGraph.edge(e.from, e.to);
+
+        // all segments of a way share the same ReaderWay object, so they must be handled by the same thread
+        GHUtility.runConcurrently(pendingWays.stream().map(edges -> () -> {
+            IntsRef relationFlags = osmParsers.createRelationFlags();
+            for (PendingEdge e : edges) {
+                e.distance = processSegment(e.pointList, e.way, e.nodeTags);
+                osmParsers.handleWayTags(e.edge.getEdge(), edgeIntAccess, e.way, getRelFlags(e.way.getId(), relationFlags));
+                e.keyValues = e.way.getTag("key_values", Collections.emptyMap());
+            }
+        }), config.getParseThreads());
+
+        for (List<PendingEdge> edges : pendingWays)
+            for (PendingEdge e : edges)
+                finishEdge(e.edge.setDistance(e.distance), e.pointList, e.keyValues, e.way.getId());
+        pendingWays.clear();
+        pendingEdgeCount = 0;
+    }
+
+    private void checkSegment(int fromIndex, int toIndex, PointList pointList, List<Map<String, Object>> nodeTags) {
         // sanity checks
         if (fromIndex < 0 || toIndex < 0)
             throw new AssertionError("to or from index is invalid for this edge " + fromIndex + "->" + toIndex + ", points:" + pointList);
@@ -323,17 +386,28 @@ public class OSMReader {
             throw new AssertionError("Dimension does not match for pointList vs. nodeAccess " + pointList.getDimension() + " <-> " + nodeAccess.getDimension());
         if (pointList.size() != nodeTags.size())
             throw new AssertionError("there should be as many maps of node tags as there are points. node tags: " + nodeTags.size() + ", points: " + pointList.size());
+    }
 
+    private PointList sampleLongEdges(PointList pointList) {
         // todo: in principle it should be possible to delay elevation calculation so we do not need to store
         // elevations during import (saves memory in pillar info during import). also note that we already need to
         // to do some kind of elevation processing (bridge+tunnel interpolation in GraphHopper class, maybe this can
         // go together
 
-        if (pointList.is3D()) {
-            // sample points along long edges
-            if (config.getLongEdgeSamplingDistance() < Double.MAX_VALUE)
-                pointList = EdgeSampling.sample(pointList, config.getLongEdgeSamplingDistance(), distCalc, eleProvider);
+        // sample points along long edges
+        if (pointList.is3D() && config.getLongEdgeSamplingDistance() < Double.MAX_VALUE)
+            pointList = EdgeSampling.sample(pointList, config.getLongEdgeSamplingDistance(), distCalc, eleProvider);
+        return pointList;
+    }
 
+    /**
+     * Smooths and simplifies the given segment geometry and sets the artificial tags of the way. This does not touch
+     * the graph and is called concurrently for different ways if parse threads is larger than one.
+     *
+     * @return the distance of the segment
+     */
+    private double processSegment(PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags) {
+        if (pointList.is3D()) {
             // smooth the elevation before calculating the distance because the distance will be incorrect if calculated afterwards
             if (config.getElevationSmoothing().equals("ramer"))
                 EdgeElevationSmoothingRamer.smooth(pointList, config.getElevationSmoothingRamerMax());
@@ -351,13 +425,13 @@ public class OSMReader {
         if (distance < 0.001) {
             // As investigation shows often two paths should have crossed via one identical point
             // but end up in two very close points.
-            zeroCounter++;
+            zeroCounter.incrementAndGet();
             distance = 0.001;
         }
 
         double maxDistance = (Integer.MAX_VALUE - 1) / 1000d;
         if (Double.isNaN(distance)) {
-            LOGGER.warn("Bug in OSM or GraphHopper (" + bugCounter++ + "). Illegal tower node distance " + distance + " reset to 1m, osm way " + way.getId());
+            LOGGER.warn("Bug in OSM or GraphHopper (" + bugCounter.getAndIncrement() + "). Illegal tower node distance " + distance + " reset to 1m, osm way " + way.getId());
             distance = 1;
         }
 
@@ -365,32 +439,32 @@ public class OSMReader {
             // Too large is very rare and often the wrong tagging. See #435
             // so we can avoid the complexity of splitting the way for now (new towernodes would be required, splitting up geometry etc)
             // For example this happens here: https://www.openstreetmap.org/way/672506453 (Cape Town - Tristan da Cunha ferry)
-            LOGGER.warn("Bug in OSM or GraphHopper (" + bugCounter++ + "). Too big tower node distance " + distance + " reset to large value, osm way " + way.getId());
+            LOGGER.warn("Bug in OSM or GraphHopper (" + bugCounter.getAndIncrement() + "). Too big tower node distance " + distance + " reset to large value, osm way " + way.getId());
             distance = maxDistance;
         }
 
-        if (bugCounter > 30)
-            throw new IllegalStateException("Too many bugs in OSM or GraphHopper encountered " + bugCounter);
+        if (bugCounter.get() > 30)
+            throw new IllegalStateException("Too many bugs in OSM or GraphHopper encountered " + bugCounter.get());
 
         setArtificialWayTags(pointList, way, distance, nodeTags);
-        IntsRef relationFlags = getRelFlagsMap(way.getId());
-        EdgeIteratorState edge = baseGraph.edge(fromIndex, toIndex).setDistance(distance);
-        osmParsers.handleWayTags(edge.getEdge(), edgeIntAccess, way, relationFlags);
-        Map<String, KValue> map = way.getTag("key_values", Collections.emptyMap());
-        if (!map.isEmpty())
-            edge.setKeyValues(map);
+        return distance;
+    }
+
+    private void finishEdge(EdgeIteratorState edge, PointList pointList, Map<String, KValue> keyValues, long osmWayId) {
+        if (!keyValues.isEmpty())
+            edge.setKeyValues(keyValues);
 
         // If the entire way is just the first and last point, do not waste space storing an empty way geometry
         if (pointList.size() > 2) {
             // the geometry consists only of pillar nodes, but we check that the first and last points of the pointList
             // are equal to the tower node coordinates
-            checkCoordinates(fromIndex, pointList.get(0));
-            checkCoordinates(toIndex, pointList.get(pointList.size() - 1));
+            checkCoordinates(edge.getBaseNode(), pointList.get(0));
+            checkCoordinates(edge.getAdjNode(), pointList.get(pointList.size() - 1));
             edge.setWayGeometry(pointList.shallowCopy(1, pointList.size() - 1, false));
         }
 
         checkDistance(edge);
-        restrictedWaysToEdgesMap.putIfReserved(way.getId(), edge.getEdge());
+        restrictedWaysToEdgesMap.putIfReserved(osmWayId, edge.getEdge());
     }
 
     private void checkCoordinates(int nodeIndex, GHPoint point) {
@@ -674,10 +748,14 @@ public class OSMReader {
     }
 
     IntsRef getRelFlagsMap(long osmId) {
+        return getRelFlags(osmId, tempRelFlags);
+    }
+
+    private IntsRef getRelFlags(long osmId, IntsRef relFlags) {
         long relFlagsAsLong = osmWayIdToRelationFlagsMap.get(osmId);
-        tempRelFlags.ints[0] = (int) relFlagsAsLong;
-        tempRelFlags.ints[1] = (int) (relFlagsAsLong >> 32);
-        return tempRelFlags;
+        relFlags.ints[0] = (int) relFlagsAsLong;
+        relFlags.ints[1] = (int) (relFlagsAsLong >> 32);
+        return relFlags;
     }
 
     void putRelFlagsMap(long osmId, IntsRef relFlags) {
@@ -685,6 +763,25 @@ public class OSMReader {
         osmWayIdToRelationFlagsMap.put(osmId, relFlagsAsLong);
     }
 
+    private static class PendingEdge {
+        final int from;
+        final int to;
+        final PointList pointList;
+        final ReaderWay way;
+        final List<Map<String, Object>> nodeTags;
+        EdgeIteratorState edge;
+        double distance;
+        Map<String, KValue> keyValues;
+
+        PendingEdge(int from, int to, PointList pointList, ReaderWay way, List<Map<String, Object>> nodeTags) {
+            this.from = from;
+            this.to = to;
+            this.pointList = pointList;
+            this.way = way;
+            this.nodeTags = nodeTags;
+        }
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName();
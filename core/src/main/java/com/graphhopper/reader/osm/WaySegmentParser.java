@@ -75,11 +75,10 @@ public class WaySegmentParser {
             System.out.println("edge " + from + "->" + to + " (" + pointList.size() + " points)");
     private int workerThreads = 2;
 
-    private final OSMNodeData nodeData;
+    private OSMNodeData nodeData;
     private Date timestamp;
 
-    private WaySegmentParser(OSMNodeData nodeData) {
-        this.nodeData = nodeData;
+    private WaySegmentParser() {
     }
 
     /**
@@ -410,13 +409,18 @@ public class WaySegmentParser {
 
     public static class Builder {
         private final WaySegmentParser waySegmentParser;
+        private final PointAccess pointAccess;
+        private final Directory directory;
+        private boolean pagedNodeIdMap = false;
 
         /**
          * @param pointAccess used to store tower node coordinates while parsing the ways
          * @param directory   the directory to be used to store temporary data
          */
         public Builder(PointAccess pointAccess, Directory directory) {
-            waySegmentParser = new WaySegmentParser(new OSMNodeData(pointAccess, directory));
+            waySegmentParser = new WaySegmentParser();
+            this.pointAccess = pointAccess;
+            this.directory = directory;
         }
 
         /**
@@ -483,7 +487,16 @@ public class WaySegmentParser {
             return this;
         }
 
+        /**
+         * @param pagedNodeIdMap true if the OSM node IDs shall be stored in a paged array rather than a tree
+         */
+        public Builder setPagedNodeIdMap(boolean pagedNodeIdMap) {
+            this.pagedNodeIdMap = pagedNodeIdMap;
+            return this;
+        }
+
         public WaySegmentParser build() {
+            waySegmentParser.nodeData = new OSMNodeData(pointAccess, directory, pagedNodeIdMap);
             return waySegmentParser;
         }
     }
@@ -279,11 +279,10 @@ public abstract class AbstractBidirAlgo implements EdgeToEdgeRoutingAlgorithm {
     }
 
     protected void setupFinishTime() {
-        try {
-            this.finishTimeMillis = Math.addExact(System.currentTimeMillis(), timeoutMillis);
-        } catch (ArithmeticException e) {
-            this.finishTimeMillis = Long.MAX_VALUE;
-        }
+        // the default timeout is Long.MAX_VALUE, so we avoid Math.addExact here as throwing the overflow exception for
+        // every query is expensive
+        long now = System.currentTimeMillis();
+        this.finishTimeMillis = timeoutMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeoutMillis;
     }
 
     @Override
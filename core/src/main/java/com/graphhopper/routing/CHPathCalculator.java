@@ -34,6 +34,7 @@ public class CHPathCalculator implements PathCalculator {
     private final PMap algoOpts;
     private String debug;
     private int visitedNodes;
+    private String algorithmName = "";
 
     public CHPathCalculator(CHRoutingAlgorithmFactory algoFactory, PMap algoOpts) {
         this.algoFactory = algoFactory;
@@ -71,6 +72,7 @@ public class CHPathCalculator implements PathCalculator {
         if (algo.getVisitedNodes() >= maxVisitedNodes)
             throw new MaximumNodesExceededException("No path found due to maximum nodes exceeded " + maxVisitedNodes, maxVisitedNodes);
         visitedNodes = algo.getVisitedNodes();
+        algorithmName = algo.getName();
         debug += ", " + algo.getName() + "-routing:" + sw.stop().getMillis() + " ms";
         return paths;
     }
@@ -85,4 +87,9 @@ public class CHPathCalculator implements PathCalculator {
         return visitedNodes;
     }
 
+    @Override
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
 }
\ No newline at end of file
@@ -92,6 +92,7 @@ public class DefaultBidirPathExtractor implements BidirPathExtractor {
     }
 
     protected void setExtractionTime(long nanos) {
+        path.setExtractionNanos(nanos);
         path.setDebugInfo("path extraction: " + nanos / 1000 + " μs");
     }
 
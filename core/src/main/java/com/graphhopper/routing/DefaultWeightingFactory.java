@@ -28,6 +28,7 @@ import com.graphhopper.routing.weighting.DefaultTurnCostProvider;
 import com.graphhopper.routing.weighting.TurnCostProvider;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.routing.weighting.custom.CustomModelParser;
+import com.graphhopper.routing.weighting.custom.EdgeAreaCache;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.util.CustomModel;
@@ -42,10 +43,19 @@ public class DefaultWeightingFactory implements WeightingFactory {
 
     private final BaseGraph graph;
     private final EncodingManager encodingManager;
+    private final EdgeAreaCache edgeAreaCache;
 
     public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager) {
+        this(graph, encodingManager, null);
+    }
+
+    /**
+     * @param edgeAreaCache is used to look up the edges of the areas of custom models, can be null
+     */
+    public DefaultWeightingFactory(BaseGraph graph, EncodingManager encodingManager, EdgeAreaCache edgeAreaCache) {
         this.graph = graph;
         this.encodingManager = encodingManager;
+        this.edgeAreaCache = edgeAreaCache;
     }
 
     @Override
@@ -85,9 +95,9 @@ public class DefaultWeightingFactory implements WeightingFactory {
             if (hints.has("cm_version")) {
                 if (!hints.getString("cm_version", "").equals("2"))
                     throw new IllegalArgumentException("cm_version: \"2\" is required");
-                weighting = CustomModelParser.createWeighting2(encodingManager, turnCostProvider, mergedCustomModel);
+                weighting = CustomModelParser.createWeighting2(encodingManager, turnCostProvider, mergedCustomModel, edgeAreaCache);
             } else
-                weighting = CustomModelParser.createWeighting(encodingManager, turnCostProvider, mergedCustomModel);
+                weighting = CustomModelParser.createWeighting(encodingManager, turnCostProvider, mergedCustomModel, edgeAreaCache);
 
         } else if ("shortest".equalsIgnoreCase(weightingStr)) {
             throw new IllegalArgumentException("Instead of weighting=shortest use weighting=custom with a high distance_influence");
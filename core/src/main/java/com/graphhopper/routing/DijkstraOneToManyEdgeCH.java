@@ -0,0 +1,96 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.RoutingCHGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+
+/**
+ * Calculates the shortest paths from one source to several targets with edge-based CH. The forward (upward) search
+ * from the source is run only once and is shared by all targets. For every target only the backward search is run,
+ * until it cannot find a better meeting point with the complete forward search anymore. So instead of one
+ * bidirectional query per target we need one forward search plus one backward search per target.
+ * <p>
+ * The limit set by {@link #setMaxVisitedNodes} applies to all searches of one {@link #calcPaths} call together, and
+ * the paths of the targets that were not reached before hitting the limit are not found.
+ */
+public class DijkstraOneToManyEdgeCH extends DijkstraBidirectionEdgeCHNoSOD {
+
+    public DijkstraOneToManyEdgeCH(RoutingCHGraph graph) {
+        super(graph);
+    }
+
+    /**
+     * @param fromOutEdge the first edge of all paths, or {@link com.graphhopper.util.EdgeIterator#ANY_EDGE}
+     * @param toInEdges   the last edge of the path to the target with the same index, or ANY_EDGE
+     * @return the paths to the targets in the same order
+     */
+    public List<Path> calcPaths(int from, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+        if (toNodes.length != toInEdges.length)
+            throw new IllegalArgumentException("toNodes and toInEdges must have the same length, " + toNodes.length + " vs. " + toInEdges.length);
+        checkAlreadyRun();
+        setupFinishTime();
+        this.fromOutEdge = fromOutEdge;
+        // no target yet, so the forward search only builds its shortest path tree
+        this.to = -1;
+        initFrom(from, 0);
+        postInitFrom();
+        while (!finishedFrom && !isMaxVisitedNodesExceeded() && !isTimeoutExceeded())
+            finishedFrom = !fillEdgesFrom();
+
+        List<Path> paths = new ArrayList<>(toNodes.length);
+        for (int i = 0; i < toNodes.length; i++)
+            paths.add(finishedFrom ? calcPathToTarget(toNodes[i], toInEdges[i]) : createEmptyPath());
+        return paths;
+    }
+
+    private Path calcPathToTarget(int toNode, int toInEdge) {
+        pqOpenSetTo.clear();
+        bestWeightMapTo.clear();
+        bestFwdEntry = null;
+        bestBwdEntry = null;
+        bestWeight = Double.MAX_VALUE;
+        finishedTo = false;
+        this.toInEdge = toInEdge;
+        initTo(toNode, 0);
+        if (from == toNode && fromOutEdge == ANY_EDGE && toInEdge == ANY_EDGE) {
+            // like in the bidirectional search the path has zero weight if start and target are the same
+            bestFwdEntry = createStartEntry(from, 0, false);
+            bestBwdEntry = currTo;
+            bestWeight = 0;
+            return createPathExtractor().extract(bestFwdEntry, bestBwdEntry, bestWeight);
+        }
+        postInitTo();
+        // the forward search is complete, so the backward search can stop once it cannot improve the best path
+        while (!finishedTo && currTo.weight < bestWeight) {
+            if (isMaxVisitedNodesExceeded() || isTimeoutExceeded())
+                return createEmptyPath();
+            finishedTo = !fillEdgesTo();
+        }
+        return createPathExtractor().extract(bestFwdEntry, bestBwdEntry, bestWeight);
+    }
+
+    @Override
+    public String getName() {
+        return "dijkstra_one_to_many|ch|edge_based|no_sod";
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+
+/**
+ * A {@link Dijkstra} that calculates the shortest paths from one source to many targets with a single search, which
+ * stops as soon as all targets are settled. Like {@link EdgeToEdgeRoutingAlgorithm} the first edge of the paths and the
+ * last edge of every path can be restricted, which requires edge-based traversal.
+ */
+public class MultiTargetDijkstra extends Dijkstra {
+    private final IntObjectMap<IntArrayList> targetsByNode = new GHIntObjectHashMap<>();
+    private int fromOutEdge = ANY_EDGE;
+    private int[] toInEdges;
+    private Path[] paths;
+    private int remainingTargets;
+
+    public MultiTargetDijkstra(Graph graph, Weighting weighting, TraversalMode tMode) {
+        super(graph, weighting, tMode);
+    }
+
+    /**
+     * @param fromOutEdge the edge id of the first edge of all paths or {@link com.graphhopper.util.EdgeIterator#ANY_EDGE}
+     * @param toInEdges   the edge id of the last edge of the path to the target with the same index or
+     *                    {@link com.graphhopper.util.EdgeIterator#ANY_EDGE}
+     * @return the paths in the order of the targets, the paths to the targets that were not reached are not found
+     */
+    public List<Path> calcPaths(int from, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+        if (toNodes.length != toInEdges.length)
+            throw new IllegalArgumentException("There must be one incoming edge for every target, use ANY_EDGE to not restrict it");
+        if (!traversalMode.isEdgeBased() && (fromOutEdge != ANY_EDGE || containsRestriction(toInEdges)))
+            throw new IllegalArgumentException("Restricting the start/target edges is only possible for edge-based graph traversal");
+        checkAlreadyRun();
+        setupFinishTime();
+        this.fromOutEdge = fromOutEdge;
+        this.toInEdges = toInEdges;
+        paths = new Path[toNodes.length];
+        for (int i = 0; i < toNodes.length; i++) {
+            if (toInEdges[i] == NO_EDGE || toInEdges[i] != ANY_EDGE && !canArriveVia(toInEdges[i], toNodes[i]))
+                // we would otherwise have to explore everything until we know that this target cannot be reached
+                continue;
+            IntArrayList targets = targetsByNode.get(toNodes[i]);
+            if (targets == null) {
+                targets = new IntArrayList(1);
+                targetsByNode.put(toNodes[i], targets);
+            }
+            targets.add(i);
+            remainingTargets++;
+        }
+        if (remainingTargets > 0 && fromOutEdge != NO_EDGE) {
+            fromHeap.add(new SPTEntry(from, 0));
+            runAlgo();
+        }
+        List<Path> result = new ArrayList<>(paths.length);
+        for (Path path : paths)
+            result.add(path == null ? createEmptyPath() : path);
+        return result;
+    }
+
+    private boolean canArriveVia(int edge, int node) {
+        EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, node);
+        return edgeState != null && Double.isFinite(weighting.calcEdgeWeight(edgeState, false));
+    }
+
+    private static boolean containsRestriction(int[] edges) {
+        for (int edge : edges)
+            if (edge != ANY_EDGE)
+                return true;
+        return false;
+    }
+
+    @Override
+    protected boolean accept(EdgeIteratorState iter, int prevOrNextEdgeId) {
+        if (prevOrNextEdgeId == NO_EDGE && fromOutEdge != ANY_EDGE && iter.getEdge() != fromOutEdge)
+            return false;
+        return super.accept(iter, prevOrNextEdgeId);
+    }
+
+    @Override
+    protected boolean finished() {
+        IntArrayList targets = targetsByNode.get(currEdge.adjNode);
+        // with a restricted first edge the start entry itself does not count as a path
+        if (targets == null || fromOutEdge != ANY_EDGE && currEdge.edge == NO_EDGE)
+            return false;
+        for (int i = 0; i < targets.size(); i++) {
+            int target = targets.get(i);
+            if (paths[target] == null && (toInEdges[target] == ANY_EDGE || toInEdges[target] == currEdge.edge)) {
+                paths[target] = PathExtractor.extractPath(graph, weighting, currEdge);
+                remainingTargets--;
+            }
+        }
+        return remainingTargets == 0;
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        return calcPaths(from, ANY_EDGE, new int[]{to}, new int[]{ANY_EDGE}).get(0);
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+}
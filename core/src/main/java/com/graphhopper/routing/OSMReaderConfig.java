@@ -33,6 +33,9 @@ public class OSMReaderConfig {
     private int ramerElevationSmoothingMax = 5;
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     private int workerThreads = 2;
+    private int parseThreads = 1;
+    private int parseBatchSize = 100_000;
+    private boolean pagedNodeIdMap = false;
     private double defaultElevation = 0;
 
     public List<String> getIgnoredHighways() {
@@ -157,6 +160,52 @@ public class OSMReaderConfig {
         return this;
     }
 
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    /**
+     * Sets the number of threads used to run the tag parsers and to process the geometry of the OSM ways. The edges
+     * are still added to the graph by a single thread and in the order they appear in the OSM file. Note that all tag
+     * parsers need to be thread-safe if this is larger than one.
+     */
+    public OSMReaderConfig setParseThreads(int parseThreads) {
+        if (parseThreads < 1)
+            throw new IllegalArgumentException("parse threads must be at least 1, but was: " + parseThreads);
+        this.parseThreads = parseThreads;
+        return this;
+    }
+
+    public int getParseBatchSize() {
+        return parseBatchSize;
+    }
+
+    /**
+     * Sets the number of way segments that are collected before they are handled by the parse threads. Larger batches
+     * keep the threads busy for longer but need more memory. This is only used if the parse threads are larger than one.
+     */
+    public OSMReaderConfig setParseBatchSize(int parseBatchSize) {
+        if (parseBatchSize < 1)
+            throw new IllegalArgumentException("parse batch size must be at least 1, but was: " + parseBatchSize);
+        this.parseBatchSize = parseBatchSize;
+        return this;
+    }
+
+    public boolean isPagedNodeIdMap() {
+        return pagedNodeIdMap;
+    }
+
+    /**
+     * Sets whether the mapping from OSM node IDs to internal IDs that is needed during the import shall be stored in
+     * a paged array rather than a tree. The paged array consists of a few large segments (or a memory mapped file)
+     * instead of many small Java objects and has faster lookups, but it requires memory proportional to the range of
+     * the OSM node IDs. Therefore, this is only recommended for (nearly) complete planet files.
+     */
+    public OSMReaderConfig setPagedNodeIdMap(boolean pagedNodeIdMap) {
+        this.pagedNodeIdMap = pagedNodeIdMap;
+        return this;
+    }
+
     public double getDefaultElevation() {
         return defaultElevation;
     }
@@ -30,4 +30,9 @@ public interface PathCalculator {
 
     int getVisitedNodes();
 
+    /**
+     * @return the name of the algorithm that was used for the last calculation
+     */
+    String getAlgorithmName();
+
 }
@@ -23,6 +23,7 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.config.Profile;
+import com.graphhopper.routing.RoutingMetrics.Phase;
 import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.EncodedValueLookup;
@@ -39,6 +40,7 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
+import com.graphhopper.storage.index.SnapCache;
 import com.graphhopper.util.*;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
 import com.graphhopper.util.exceptions.PointDistanceExceededException;
@@ -48,6 +50,8 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
 import static com.graphhopper.util.Parameters.Algorithms.ALT_ROUTE;
@@ -68,6 +72,8 @@ public class Router {
     protected final Map<String, LandmarkStorage> landmarks;
     protected final boolean chEnabled;
     protected final boolean lmEnabled;
+    protected RoutingMetrics routingMetrics = RoutingMetrics.NONE;
+    protected SnapCache snapCache;
 
     public Router(BaseGraph graph, EncodingManager encodingManager, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
@@ -94,6 +100,20 @@ public class Router {
         }
     }
 
+    public Router setRoutingMetrics(RoutingMetrics routingMetrics) {
+        this.routingMetrics = routingMetrics;
+        return this;
+    }
+
+    /**
+     * @param snapCache is used to snap the points of requests without a custom model. It must belong to the location
+     *                  index of this router. Can be null to disable caching.
+     */
+    public Router setSnapCache(SnapCache snapCache) {
+        this.snapCache = snapCache;
+        return this;
+    }
+
     public GHResponse route(GHRequest request) {
         try {
             checkNoLegacyParameters(request);
@@ -107,6 +127,7 @@ public class Router {
 
             Solver solver = createSolver(request);
             solver.checkRequest();
+            solver.checkPoints(request.getPoints());
             solver.init();
 
             if (ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm())) {
@@ -131,6 +152,121 @@ public class Router {
         }
     }
 
+    /**
+     * Calculates the routes between many pairs of points. Every distinct point of the request is snapped only once and
+     * all routes are calculated on a single QueryGraph with the same path calculator, so this is a lot faster than
+     * calling {@link #route} for every pair if the pairs share their points. The request hints, e.g. the profile or
+     * the path details, apply to all routes. Alternative routes, round trips, headings and curbsides are not supported.
+     *
+     * @param pairs the indices of the start and the end point of every route in request.getPoints()
+     * @return the responses in the order of the pairs. The points are snapped right away, but every route is only
+     * calculated once the stream reaches it. The routes share their state, so the stream must not be made parallel.
+     * Errors that only affect a single route, like a point that cannot be snapped, are added to its response.
+     * @throws IllegalArgumentException if the request itself is invalid
+     */
+    public Stream<GHResponse> routeBulk(GHRequest request, List<int[]> pairs) {
+        checkNoLegacyParameters(request);
+        checkAtLeastOnePoint(request);
+        checkIfPointsAreInBoundsAndNotNull(request.getPoints());
+        checkPointHints(request);
+        checkNoBlockArea(request);
+        checkCustomModel(request);
+        if (!request.getHeadings().isEmpty())
+            throw new IllegalArgumentException("The 'heading' parameter is not supported for bulk routing");
+        if (!request.getCurbsides().isEmpty())
+            throw new IllegalArgumentException("The '" + CURBSIDE + "' parameter is not supported for bulk routing");
+        if (ROUND_TRIP.equalsIgnoreCase(request.getAlgorithm()) || ALT_ROUTE.equalsIgnoreCase(request.getAlgorithm()))
+            throw new IllegalArgumentException("algorithm=" + request.getAlgorithm() + " is not supported for bulk routing");
+        for (int i = 0; i < pairs.size(); i++) {
+            int[] pair = pairs.get(i);
+            if (pair == null || pair.length != 2)
+                throw new IllegalArgumentException("Pair " + i + " must consist of exactly two point indices");
+            for (int p : pair)
+                if (p < 0 || p >= request.getPoints().size())
+                    throw new IllegalArgumentException("Pair " + i + " refers to point " + p + ", but there are only " + request.getPoints().size() + " points");
+        }
+
+        Solver solver = createSolver(request);
+        solver.checkRequest();
+        solver.init();
+
+        // snap every distinct point only once
+        List<GHPoint> points = request.getPoints();
+        List<String> pointHints = request.getPointHints();
+        Map<Object, Integer> distinctIndices = new HashMap<>();
+        int[] distinctIndexByPoint = new int[points.size()];
+        List<GHPoint> distinctPoints = new ArrayList<>();
+        List<String> distinctPointHints = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            Object key = pointHints.isEmpty() ? points.get(i) : Arrays.asList(points.get(i), pointHints.get(i));
+            Integer index = distinctIndices.get(key);
+            if (index == null) {
+                index = distinctPoints.size();
+                distinctIndices.put(key, index);
+                distinctPoints.add(points.get(i));
+                if (!pointHints.isEmpty())
+                    distinctPointHints.add(pointHints.get(i));
+            }
+            distinctIndexByPoint[i] = index;
+        }
+        StopWatch sw = new StopWatch().start();
+        List<Snap> snaps = ViaRouting.lookupAll(encodingManager, distinctPoints, solver.createSnapFilter(), locationIndex,
+                request.getSnapPreventions(), distinctPointHints, null, Collections.emptyList(), snapCache, getSnapCacheKey(request));
+        routingMetrics.recordPhase(request.getProfile(), Phase.SNAPPING, sw.stop().getNanos());
+        List<Snap> validSnaps = new ArrayList<>(snaps.size());
+        for (Snap snap : snaps)
+            if (snap.isValid())
+                validSnaps.add(snap);
+
+        // all routes share the query graph, the path calculator and the path merger
+        sw = new StopWatch().start();
+        QueryGraph queryGraph = QueryGraph.create(graph, validSnaps);
+        routingMetrics.recordPhase(request.getProfile(), Phase.QUERY_GRAPH, sw.stop().getNanos());
+        PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
+        DirectedEdgeFilter directedEdgeFilter = solver.createDirectedEdgeFilter();
+        PathMerger pathMerger = createPathMerger(request, solver.weighting, queryGraph);
+        String curbsideStrictness = getCurbsideStrictness(request.getHints());
+        Translation translation = translationMap.getWithFallBack(request.getLocale());
+        // the path merger accumulates its timings, so we keep track of the previous values
+        long[] pathMergerNanos = new long[2];
+        int[] pathMergerCalculations = new int[2];
+        return IntStream.range(0, pairs.size()).mapToObj(i -> {
+            int[] pair = pairs.get(i);
+            List<GHPoint> pairPoints = Arrays.asList(points.get(pair[0]), points.get(pair[1]));
+            List<Snap> pairSnaps = Arrays.asList(snaps.get(distinctIndexByPoint[pair[0]]), snaps.get(distinctIndexByPoint[pair[1]]));
+            GHResponse ghRsp = new GHResponse();
+            try {
+                solver.checkPoints(pairPoints);
+                for (int p = 0; p < 2; p++)
+                    if (!pairSnaps.get(p).isValid())
+                        ghRsp.addError(new PointNotFoundException("Cannot find point " + p + ": " + pairPoints.get(p), p));
+                if (!ghRsp.hasErrors()) {
+                    StopWatch searchSW = new StopWatch().start();
+                    ViaRouting.Result result = ViaRouting.calcPaths(pairPoints, queryGraph, pairSnaps, directedEdgeFilter,
+                            pathCalculator, Collections.emptyList(), curbsideStrictness, Collections.emptyList(), false);
+                    recordSearch(request.getProfile(), pathCalculator, result.paths, result.visitedNodes, searchSW.stop().getNanos());
+                    ResponsePath responsePath = pathMerger.doWork(getWaypoints(pairSnaps), result.paths, encodingManager, translation);
+                    if (pathMerger.getInstructionsCalculations() > pathMergerCalculations[0])
+                        routingMetrics.recordPhase(request.getProfile(), Phase.INSTRUCTIONS, pathMerger.getInstructionsNanos() - pathMergerNanos[0]);
+                    if (pathMerger.getPathDetailsCalculations() > pathMergerCalculations[1])
+                        routingMetrics.recordPhase(request.getProfile(), Phase.PATH_DETAILS, pathMerger.getPathDetailsNanos() - pathMergerNanos[1]);
+                    pathMergerNanos[0] = pathMerger.getInstructionsNanos();
+                    pathMergerNanos[1] = pathMerger.getPathDetailsNanos();
+                    pathMergerCalculations[0] = pathMerger.getInstructionsCalculations();
+                    pathMergerCalculations[1] = pathMerger.getPathDetailsCalculations();
+                    responsePath.addDebugInfo(result.debug);
+                    ghRsp.add(responsePath);
+                    ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
+                    ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes);
+                }
+            } catch (RuntimeException ex) {
+                // a failing pair must not end the responses of the remaining pairs, which might be streamed already
+                ghRsp.addError(ex);
+            }
+            return ghRsp;
+        });
+    }
+
     private void checkNoLegacyParameters(GHRequest request) {
         if (request.getHints().has("vehicle"))
             throw new IllegalArgumentException("GHRequest may no longer contain a vehicle, use the profile parameter instead, see docs/core/profiles.md");
@@ -223,11 +359,16 @@ public class Router {
         RoundTripRouting.Params params = new RoundTripRouting.Params(request.getHints(), startHeading, routerConfig.getMaxRoundTripRetries());
         List<Snap> snaps = RoundTripRouting.lookup(request.getPoints(), solver.createSnapFilter(), locationIndex, params);
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+        routingMetrics.recordPhase(request.getProfile(), Phase.SNAPPING, sw.getNanos());
 
+        sw = new StopWatch().start();
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        routingMetrics.recordPhase(request.getProfile(), Phase.QUERY_GRAPH, sw.stop().getNanos());
         FlexiblePathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
 
+        sw = new StopWatch().start();
         RoundTripRouting.Result result = RoundTripRouting.calcPaths(snaps, pathCalculator);
+        recordSearch(request.getProfile(), pathCalculator, result.paths, result.visitedNodes, sw.stop().getNanos());
         // we merge the different legs of the roundtrip into one response path
         // note that the waypoints are not just the snapped points of the snaps, as usual, because we do some kind of tweak
         // to avoid 'unnecessary tails' in the roundtrip algo
@@ -245,9 +386,13 @@ public class Router {
         StopWatch sw = new StopWatch().start();
         DirectedEdgeFilter directedEdgeFilter = solver.createDirectedEdgeFilter();
         List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), solver.createSnapFilter(), locationIndex,
-                request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings());
+                request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings(),
+                snapCache, getSnapCacheKey(request));
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+        routingMetrics.recordPhase(request.getProfile(), Phase.SNAPPING, sw.getNanos());
+        sw = new StopWatch().start();
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        routingMetrics.recordPhase(request.getProfile(), Phase.QUERY_GRAPH, sw.stop().getNanos());
         PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
         boolean passThrough = getPassThrough(request.getHints());
         String curbsideStrictness = getCurbsideStrictness(request.getHints());
@@ -256,8 +401,10 @@ public class Router {
         if (!request.getCurbsides().isEmpty())
             throw new IllegalArgumentException("Alternative paths do not support the " + CURBSIDE + " parameter yet");
 
+        sw = new StopWatch().start();
         ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
                 pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough);
+        recordSearch(request.getProfile(), pathCalculator, result.paths, result.visitedNodes, sw.stop().getNanos());
         if (result.paths.isEmpty())
             throw new RuntimeException("Empty paths for alternative route calculation not expected");
 
@@ -268,6 +415,7 @@ public class Router {
             ResponsePath responsePath = pathMerger.doWork(waypoints, Collections.singletonList(path), encodingManager, translationMap.getWithFallBack(request.getLocale()));
             ghRsp.add(responsePath);
         }
+        recordPathMerging(request.getProfile(), pathMerger);
         ghRsp.getHints().putObject("visited_nodes.sum", result.visitedNodes);
         ghRsp.getHints().putObject("visited_nodes.average", (float) result.visitedNodes / (snaps.size() - 1));
         return ghRsp;
@@ -278,16 +426,22 @@ public class Router {
         StopWatch sw = new StopWatch().start();
         DirectedEdgeFilter directedEdgeFilter = solver.createDirectedEdgeFilter();
         List<Snap> snaps = ViaRouting.lookup(encodingManager, request.getPoints(), solver.createSnapFilter(), locationIndex,
-                request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings());
+                request.getSnapPreventions(), request.getPointHints(), directedEdgeFilter, request.getHeadings(),
+                snapCache, getSnapCacheKey(request));
         ghRsp.addDebugInfo("idLookup:" + sw.stop().getSeconds() + "s");
+        routingMetrics.recordPhase(request.getProfile(), Phase.SNAPPING, sw.getNanos());
         // (base) query graph used to resolve headings, curbsides etc. this is not necessarily the same thing as
         // the (possibly implementation specific) query graph used by PathCalculator
+        sw = new StopWatch().start();
         QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        routingMetrics.recordPhase(request.getProfile(), Phase.QUERY_GRAPH, sw.stop().getNanos());
         PathCalculator pathCalculator = solver.createPathCalculator(queryGraph);
         boolean passThrough = getPassThrough(request.getHints());
         String curbsideStrictness = getCurbsideStrictness(request.getHints());
+        sw = new StopWatch().start();
         ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, snaps, directedEdgeFilter,
                 pathCalculator, request.getCurbsides(), curbsideStrictness, request.getHeadings(), passThrough);
+        recordSearch(request.getProfile(), pathCalculator, result.paths, result.visitedNodes, sw.stop().getNanos());
 
         if (request.getPoints().size() != result.paths.size() + 1)
             throw new RuntimeException("There should be exactly one more point than paths. points:" + request.getPoints().size() + ", paths:" + result.paths.size());
@@ -324,7 +478,33 @@ public class Router {
 
     private ResponsePath concatenatePaths(GHRequest request, Weighting weighting, QueryGraph queryGraph, List<Path> paths, PointList waypoints) {
         PathMerger pathMerger = createPathMerger(request, weighting, queryGraph);
-        return pathMerger.doWork(waypoints, paths, encodingManager, translationMap.getWithFallBack(request.getLocale()));
+        ResponsePath responsePath = pathMerger.doWork(waypoints, paths, encodingManager, translationMap.getWithFallBack(request.getLocale()));
+        recordPathMerging(request.getProfile(), pathMerger);
+        return responsePath;
+    }
+
+    /**
+     * Records the time of the path calculation split into the search and the path extraction, as well as the visited
+     * nodes.
+     */
+    private void recordSearch(String profile, PathCalculator pathCalculator, List<Path> paths, long visitedNodes, long nanos) {
+        long extractionNanos = 0;
+        for (Path path : paths)
+            extractionNanos += path.getExtractionNanos();
+        routingMetrics.recordPhase(profile, Phase.SEARCH, Math.max(0, nanos - extractionNanos));
+        routingMetrics.recordPhase(profile, Phase.PATH_EXTRACTION, extractionNanos);
+        routingMetrics.recordVisitedNodes(profile, pathCalculator.getAlgorithmName(), visitedNodes);
+    }
+
+    /**
+     * Records the time of the instructions and path details, but only if they were calculated, so disabled phases do
+     * not add samples of zero.
+     */
+    private void recordPathMerging(String profile, PathMerger pathMerger) {
+        if (pathMerger.getInstructionsCalculations() > 0)
+            routingMetrics.recordPhase(profile, Phase.INSTRUCTIONS, pathMerger.getInstructionsNanos());
+        if (pathMerger.getPathDetailsCalculations() > 0)
+            routingMetrics.recordPhase(profile, Phase.PATH_DETAILS, pathMerger.getPathDetailsNanos());
     }
 
     private PointList getWaypoints(List<Snap> snaps) {
@@ -343,6 +523,13 @@ public class Router {
         return hints.getBool(Parameters.CH.DISABLE, false);
     }
 
+    /**
+     * The snap filter only depends on the profile unless the request contains a custom model, see DefaultSnapFilter.
+     */
+    private static String getSnapCacheKey(GHRequest request) {
+        return request.getCustomModel() == null ? request.getProfile() : null;
+    }
+
     private static boolean getPassThrough(PMap hints) {
         return hints.getBool(PASS_THROUGH, false);
     }
@@ -384,6 +571,12 @@ public class Router {
                 throw new IllegalArgumentException("The max_visited_nodes parameter has to be below or equal to:" + routerConfig.getMaxVisitedNodes());
         }
 
+        /**
+         * Checks the points of a single route. For bulk routing this is called for the points of every pair.
+         */
+        protected void checkPoints(List<GHPoint> points) {
+        }
+
         private void init() {
             profile = getProfile();
             checkProfileCompatibility();
@@ -515,9 +708,8 @@ public class Router {
         }
 
         @Override
-        protected void checkRequest() {
-            super.checkRequest();
-            checkNonChMaxWaypointDistance(request.getPoints());
+        protected void checkPoints(List<GHPoint> points) {
+            checkNonChMaxWaypointDistance(points);
         }
 
         @Override
@@ -0,0 +1,79 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.Locale;
+
+/**
+ * Receives the time spent in the different phases of a route request and the number of nodes visited by the search.
+ * Implementations are called concurrently from all routing threads and must therefore be thread-safe. By default,
+ * nothing is recorded, see {@link com.graphhopper.GraphHopper#setRoutingMetrics}.
+ */
+public interface RoutingMetrics {
+    RoutingMetrics NONE = new RoutingMetrics() {
+        @Override
+        public void recordPhase(String profile, Phase phase, long nanos) {
+        }
+
+        @Override
+        public void recordVisitedNodes(String profile, String algorithm, long visitedNodes) {
+        }
+    };
+
+    enum Phase {
+        /**
+         * finding the closest edges for the request points
+         */
+        SNAPPING,
+        /**
+         * creating the QueryGraph for the snapped points
+         */
+        QUERY_GRAPH,
+        /**
+         * running the routing algorithms, excluding the path extraction
+         */
+        SEARCH,
+        /**
+         * extracting the paths from the shortest path trees of the algorithms
+         */
+        PATH_EXTRACTION,
+        /**
+         * calculating the turn instructions
+         */
+        INSTRUCTIONS,
+        /**
+         * calculating the path details
+         */
+        PATH_DETAILS,
+        /**
+         * converting the response into its output format, this is recorded by the web resources
+         */
+        SERIALIZATION;
+
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    void recordPhase(String profile, Phase phase, long nanos);
+
+    /**
+     * @param algorithm the name of the algorithm, see {@link RoutingAlgorithm#getName()}
+     */
+    void recordVisitedNodes(String profile, String algorithm, long visitedNodes);
+}
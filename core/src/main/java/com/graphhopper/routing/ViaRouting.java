@@ -27,12 +27,14 @@ import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
+import com.graphhopper.storage.index.SnapCache;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
@@ -55,43 +57,106 @@ public class ViaRouting {
     public static List<Snap> lookup(EncodedValueLookup lookup, List<GHPoint> points, EdgeFilter snapFilter,
                                     LocationIndex locationIndex, List<String> snapPreventions, List<String> pointHints,
                                     DirectedEdgeFilter directedSnapFilter, List<Double> headings) {
+        return lookup(lookup, points, snapFilter, locationIndex, snapPreventions, pointHints, directedSnapFilter, headings, null, null);
+    }
+
+    /**
+     * Same as {@link #lookup(EncodedValueLookup, List, EdgeFilter, LocationIndex, List, List, DirectedEdgeFilter, List)}
+     * but uses the given snap cache if it is not null, see {@link #lookupAll(EncodedValueLookup, List, EdgeFilter,
+     * LocationIndex, List, List, DirectedEdgeFilter, List, SnapCache, String)}.
+     *
+     * @throws MultiplePointsNotFoundException in case one or more points could not be resolved
+     */
+    public static List<Snap> lookup(EncodedValueLookup lookup, List<GHPoint> points, EdgeFilter snapFilter,
+                                    LocationIndex locationIndex, List<String> snapPreventions, List<String> pointHints,
+                                    DirectedEdgeFilter directedSnapFilter, List<Double> headings,
+                                    SnapCache snapCache, String snapCacheKey) {
         if (points.size() < 2)
             throw new IllegalArgumentException("At least 2 points have to be specified, but was:" + points.size());
 
+        List<Snap> snaps = lookupAll(lookup, points, snapFilter, locationIndex, snapPreventions, pointHints, directedSnapFilter, headings,
+                snapCache, snapCacheKey);
+        IntArrayList pointsNotFound = new IntArrayList();
+        for (int placeIndex = 0; placeIndex < snaps.size(); placeIndex++) {
+            if (!snaps.get(placeIndex).isValid())
+                pointsNotFound.add(placeIndex);
+        }
+
+        if (!pointsNotFound.isEmpty())
+            throw new MultiplePointsNotFoundException(pointsNotFound);
+
+        return snaps;
+    }
+
+    /**
+     * Same as {@link #lookup} but does not throw if points cannot be resolved. Instead, the snaps of these points are
+     * not {@link Snap#isValid() valid}.
+     */
+    public static List<Snap> lookupAll(EncodedValueLookup lookup, List<GHPoint> points, EdgeFilter snapFilter,
+                                       LocationIndex locationIndex, List<String> snapPreventions, List<String> pointHints,
+                                       DirectedEdgeFilter directedSnapFilter, List<Double> headings) {
+        return lookupAll(lookup, points, snapFilter, locationIndex, snapPreventions, pointHints, directedSnapFilter, headings, null, null);
+    }
+
+    /**
+     * Same as {@link #lookupAll(EncodedValueLookup, List, EdgeFilter, LocationIndex, List, List, DirectedEdgeFilter, List)}
+     * but the points without heading and point hint are snapped via the given snap cache, which must use the same
+     * location index.
+     *
+     * @param snapCache    can be null to disable caching
+     * @param snapCacheKey must identify the snap filter, e.g. using the profile name, or be null to disable caching.
+     *                     It is combined with the snap preventions.
+     */
+    public static List<Snap> lookupAll(EncodedValueLookup lookup, List<GHPoint> points, EdgeFilter snapFilter,
+                                       LocationIndex locationIndex, List<String> snapPreventions, List<String> pointHints,
+                                       DirectedEdgeFilter directedSnapFilter, List<Double> headings,
+                                       SnapCache snapCache, String snapCacheKey) {
         final EnumEncodedValue<RoadClass> roadClassEnc = lookup.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
         final EnumEncodedValue<RoadEnvironment> roadEnvEnc = lookup.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class);
         EdgeFilter strictEdgeFilter = snapPreventions.isEmpty()
                 ? snapFilter
                 : new SnapPreventionEdgeFilter(snapFilter, roadClassEnc, roadEnvEnc, snapPreventions);
-        List<Snap> snaps = new ArrayList<>(points.size());
-        IntArrayList pointsNotFound = new IntArrayList();
+        Snap[] snaps = new Snap[points.size()];
+        IntArrayList strictIndices = new IntArrayList();
         for (int placeIndex = 0; placeIndex < points.size(); placeIndex++) {
             GHPoint point = points.get(placeIndex);
-            Snap snap = null;
             if (placeIndex < headings.size() && !Double.isNaN(headings.get(placeIndex))) {
                 if (!pointHints.isEmpty() && !Helper.isEmpty(pointHints.get(placeIndex)))
                     throw new IllegalArgumentException("Cannot specify heading and point_hint at the same time. " +
                             "Make sure you specify either an empty point_hint (String) or a NaN heading (double) for point " + placeIndex);
-                snap = locationIndex.findClosest(point.lat, point.lon, new HeadingEdgeFilter(directedSnapFilter, headings.get(placeIndex), point));
+                snaps[placeIndex] = locationIndex.findClosest(point.lat, point.lon, new HeadingEdgeFilter(directedSnapFilter, headings.get(placeIndex), point));
             } else if (!pointHints.isEmpty()) {
-                snap = locationIndex.findClosest(point.lat, point.lon, new NameSimilarityEdgeFilter(strictEdgeFilter,
+                snaps[placeIndex] = locationIndex.findClosest(point.lat, point.lon, new NameSimilarityEdgeFilter(strictEdgeFilter,
                         pointHints.get(placeIndex), point, 170));
             } else if (!snapPreventions.isEmpty()) {
-                snap = locationIndex.findClosest(point.lat, point.lon, strictEdgeFilter);
+                strictIndices.add(placeIndex);
             }
-
-            if (snap == null || !snap.isValid())
-                snap = locationIndex.findClosest(point.lat, point.lon, snapFilter);
-            if (!snap.isValid())
-                pointsNotFound.add(placeIndex);
-
-            snaps.add(snap);
         }
+        // the remaining points do not depend on a point specific filter, so we can snap them together
+        String strictCacheKey = snapCacheKey == null ? null : snapCacheKey + "|" + String.join(",", snapPreventions);
+        findClosest(locationIndex, snapCache, strictCacheKey, points, strictIndices, strictEdgeFilter, snaps);
 
-        if (!pointsNotFound.isEmpty())
-            throw new MultiplePointsNotFoundException(pointsNotFound);
+        IntArrayList fallbackIndices = new IntArrayList();
+        for (int placeIndex = 0; placeIndex < points.size(); placeIndex++) {
+            if (snaps[placeIndex] == null || !snaps[placeIndex].isValid())
+                fallbackIndices.add(placeIndex);
+        }
+        findClosest(locationIndex, snapCache, snapCacheKey, points, fallbackIndices, snapFilter, snaps);
+        return new ArrayList<>(Arrays.asList(snaps));
+    }
 
-        return snaps;
+    private static void findClosest(LocationIndex locationIndex, SnapCache snapCache, String snapCacheKey, List<GHPoint> points,
+                                    IntArrayList indices, EdgeFilter edgeFilter, Snap[] snaps) {
+        if (indices.isEmpty())
+            return;
+        List<GHPoint> batch = new ArrayList<>(indices.size());
+        for (int i = 0; i < indices.size(); i++)
+            batch.add(points.get(indices.get(i)));
+        List<Snap> result = snapCache == null || snapCacheKey == null
+                ? locationIndex.findClosest(batch, edgeFilter)
+                : snapCache.findClosest(batch, edgeFilter, snapCacheKey);
+        for (int i = 0; i < indices.size(); i++)
+            snaps[indices.get(i)] = result.get(i);
     }
 
     public static Result calcPaths(List<GHPoint> points, QueryGraph queryGraph, List<Snap> snaps,
@@ -28,6 +28,8 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
@@ -49,12 +51,14 @@ import static com.graphhopper.util.Helper.nf;
 class EdgeBasedNodeContractor implements NodeContractor {
     private static final Logger LOGGER = LoggerFactory.getLogger(EdgeBasedNodeContractor.class);
     private final CHPreparationGraph prepareGraph;
+    // the contractor that owns the heuristic state if this is a priority calculator, null otherwise
+    private final EdgeBasedNodeContractor parent;
     private PrepareGraphEdgeExplorer inEdgeExplorer;
     private PrepareGraphEdgeExplorer outEdgeExplorer;
     private PrepareGraphEdgeExplorer existingShortcutExplorer;
     private PrepareGraphOrigEdgeExplorer sourceNodeOrigInEdgeExplorer;
     private CHStorageBuilder chBuilder;
-    private final Params params = new Params();
+    private final Params params;
     private final StopWatch dijkstraSW = new StopWatch();
     // temporary data used during node contraction
     private final IntSet sourceNodes = new IntHashSet(10);
@@ -84,10 +88,18 @@ class EdgeBasedNodeContractor implements NodeContractor {
 
     public EdgeBasedNodeContractor(CHPreparationGraph prepareGraph, CHStorageBuilder chBuilder, PMap pMap) {
         this.prepareGraph = prepareGraph;
+        this.parent = null;
+        this.params = new Params();
         this.chBuilder = chBuilder;
         extractParams(pMap);
     }
 
+    private EdgeBasedNodeContractor(EdgeBasedNodeContractor parent) {
+        this.prepareGraph = parent.prepareGraph;
+        this.parent = parent;
+        this.params = parent.params;
+    }
+
     private void extractParams(PMap pMap) {
         params.edgeQuotientWeight = pMap.getFloat(EDGE_QUOTIENT_WEIGHT, params.edgeQuotientWeight);
         params.originalEdgeQuotientWeight = pMap.getFloat(ORIGINAL_EDGE_QUOTIENT_WEIGHT, params.originalEdgeQuotientWeight);
@@ -102,7 +114,8 @@ class EdgeBasedNodeContractor implements NodeContractor {
         outEdgeExplorer = prepareGraph.createOutEdgeExplorer();
         existingShortcutExplorer = prepareGraph.createOutEdgeExplorer();
         sourceNodeOrigInEdgeExplorer = prepareGraph.createInOrigEdgeExplorer();
-        hierarchyDepths = new int[prepareGraph.getNodes()];
+        // priority calculators read the hierarchy depths of their parent, which are updated during the contraction
+        hierarchyDepths = parent == null ? new int[prepareGraph.getNodes()] : parent.hierarchyDepths;
         witnessPathSearcher = new EdgeBasedWitnessPathSearcher(prepareGraph);
         bridgePathFinder = new BridgePathFinder(prepareGraph);
         meanDegree = prepareGraph.getOriginalEdges() * 1.0 / prepareGraph.getNodes();
@@ -118,6 +131,7 @@ class EdgeBasedNodeContractor implements NodeContractor {
             // no shortcuts will be introduced
             return Float.NEGATIVE_INFINITY;
         stats().stopWatch.start();
+        double meanDegree = parent == null ? this.meanDegree : parent.meanDegree;
         findAndHandlePrepareShortcuts(node, this::countShortcuts, (int) (meanDegree * params.maxPollFactorHeuristic), wpsStatsHeur);
         stats().stopWatch.stop();
         // the higher the priority the later (!) this node will be contracted
@@ -136,18 +150,61 @@ class EdgeBasedNodeContractor implements NodeContractor {
         return priority;
     }
 
+    @Override
+    public NodeContractor createPriorityCalculator() {
+        EdgeBasedNodeContractor calculator = new EdgeBasedNodeContractor(this);
+        calculator.initFromGraph();
+        return calculator;
+    }
+
     @Override
     public IntContainer contractNode(int node) {
+        if (parent != null)
+            throw new IllegalStateException("Priority calculators cannot be used to contract nodes");
         activeStats = addingStats;
         stats().stopWatch.start();
         findAndHandlePrepareShortcuts(node, this::addShortcutsToPrepareGraph, (int) (meanDegree * params.maxPollFactorContraction), wpsStatsContr);
+        IntContainer neighbors = insertShortcutsAndDisconnect(node);
+        stats().stopWatch.stop();
+        return neighbors;
+    }
+
+    @Override
+    public PlannedContraction planContraction(int node, boolean[] ignoredNodes) {
+        EdgeBasedPlannedContraction contraction = new EdgeBasedPlannedContraction(node);
+        activeStats = addingStats;
+        stats().stopWatch.start();
+        double meanDegree = parent == null ? this.meanDegree : parent.meanDegree;
+        witnessPathSearcher.setIgnoredNodes(ignoredNodes);
+        findAndHandlePrepareShortcuts(node, contraction::add, (int) (meanDegree * params.maxPollFactorContraction), wpsStatsContr);
+        witnessPathSearcher.setIgnoredNodes(null);
+        stats().stopWatch.stop();
+        return contraction;
+    }
+
+    @Override
+    public IntContainer applyContraction(PlannedContraction plannedContraction) {
+        if (parent != null)
+            throw new IllegalStateException("Priority calculators cannot be used to contract nodes");
+        EdgeBasedPlannedContraction contraction = (EdgeBasedPlannedContraction) plannedContraction;
+        activeStats = addingStats;
+        stats().stopWatch.start();
+        // the planned entries only refer to edges adjacent to the contracted node, which are not changed by contracting
+        // other nodes with disjoint neighborhoods
+        for (int i = 0; i < contraction.edgesTo.size(); i++)
+            addShortcutsToPrepareGraph(contraction.edgesFrom.get(i), contraction.edgesTo.get(i), contraction.origEdgeCounts.get(i));
+        IntContainer neighbors = insertShortcutsAndDisconnect(contraction.node);
+        stats().stopWatch.stop();
+        return neighbors;
+    }
+
+    private IntContainer insertShortcutsAndDisconnect(int node) {
         insertShortcuts(node);
         IntContainer neighbors = prepareGraph.disconnect(node);
         // We maintain an approximation of the mean degree which we update after every contracted node.
         // We do it the same way as for node-based CH for now.
         meanDegree = (meanDegree * 2 + neighbors.size()) / 3;
         updateHierarchyDepthsOfNeighbors(node, neighbors);
-        stats().stopWatch.stop();
         return neighbors;
     }
 
@@ -367,7 +424,8 @@ class EdgeBasedNodeContractor implements NodeContractor {
 
     @Override
     public void close() {
-        prepareGraph.close();
+        if (parent == null)
+            prepareGraph.close();
         inEdgeExplorer = null;
         outEdgeExplorer = null;
         existingShortcutExplorer = null;
@@ -427,6 +485,29 @@ class EdgeBasedNodeContractor implements NodeContractor {
         private double maxPollFactorContraction = 200;
     }
 
+    private static class EdgeBasedPlannedContraction implements PlannedContraction {
+        private final int node;
+        // the arguments of the shortcut handler calls for the required shortcuts
+        private final List<PrepareCHEntry> edgesFrom = new ArrayList<>();
+        private final List<PrepareCHEntry> edgesTo = new ArrayList<>();
+        private final IntArrayList origEdgeCounts = new IntArrayList();
+
+        private EdgeBasedPlannedContraction(int node) {
+            this.node = node;
+        }
+
+        @Override
+        public int getNode() {
+            return node;
+        }
+
+        private void add(PrepareCHEntry edgeFrom, PrepareCHEntry edgeTo, int origEdgeCount) {
+            edgesFrom.add(edgeFrom);
+            edgesTo.add(edgeTo);
+            origEdgeCounts.add(origEdgeCount);
+        }
+    }
+
     private static class Stats {
         int nodes;
         StopWatch stopWatch = new StopWatch();
@@ -59,6 +59,7 @@ public class EdgeBasedWitnessPathSearcher {
 
     private int sourceNode;
     private int centerNode;
+    private boolean[] ignoredNodes;
 
     // various counters
     private int numPolls;
@@ -107,6 +108,14 @@ public class EdgeBasedWitnessPathSearcher {
         dijkstraHeap.insert(0, sourceEdgeKey);
     }
 
+    /**
+     * Makes the following searches skip all the nodes that are marked in the given array, except the center node.
+     * Use null to not ignore any nodes.
+     */
+    public void setIgnoredNodes(boolean[] ignoredNodes) {
+        this.ignoredNodes = ignoredNodes;
+    }
+
     /**
      * Runs a witness path search for a given target edge key. Results of previous searches (the shortest path tree) are
      * reused and the previous search is extended if necessary. Note that you need to call
@@ -151,6 +160,8 @@ public class EdgeBasedWitnessPathSearcher {
                 // being recognized as witnesses when there are double zero weight loops at the source node
                 if (currNode == sourceNode && iter.getAdjNode() == sourceNode && iter.getWeight() < MAX_ZERO_WEIGHT_LOOP)
                     continue;
+                if (ignoredNodes != null && ignoredNodes[iter.getAdjNode()] && iter.getAdjNode() != centerNode)
+                    continue;
                 final double weight = weights[currKey] + calcTurnWeight(currKey, currNode, iter.getOrigEdgeKeyFirst()) + iter.getWeight();
                 if (Double.isInfinite(weight))
                     continue;
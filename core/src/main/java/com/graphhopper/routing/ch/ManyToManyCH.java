@@ -0,0 +1,320 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.*;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.apache.commons.collections.IntFloatBinaryHeap;
+import com.graphhopper.routing.EdgeToEdgeRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHEdgeIteratorState;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.exceptions.MaximumNodesExceededException;
+
+import java.util.Arrays;
+
+import static com.graphhopper.util.Parameters.Routing.MAX_VISITED_NODES;
+
+/**
+ * Calculates the weights, times and distances between many sources and many targets on a {@link RoutingCHGraph}
+ * using the bucket-based approach: first, for every target, a backward upward search stores its settled nodes in
+ * per-node buckets. Then a forward upward search is run for every source and scans the buckets of every node it
+ * settles. So instead of sources*targets bidirectional queries we only need sources+targets one-directional searches.
+ * <p>
+ * Times and distances are accumulated alongside the weights by unpacking the shortcuts that are traversed. The
+ * unpacked values are cached per instance, so an instance should only be used for a single (query) graph.
+ * <p>
+ * Only node-based CH is supported by the bucket search. For edge-based CH graphs this class falls back to one
+ * bidirectional CH query per source/target pair, which still shares the graph and its snaps across all pairs.
+ */
+public class ManyToManyCH {
+    private final RoutingCHGraph graph;
+    private final Weighting weighting;
+    private final RoutingCHEdgeExplorer outExplorer;
+    private final RoutingCHEdgeExplorer inExplorer;
+    private final ShortcutUnpacker unpacker;
+    private final int maxBaseNodes;
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private int visitedNodes;
+
+    // the buckets of all nodes are stored as linked lists in flat arrays, the list heads are in bucketHeads
+    private final IntIntHashMap bucketHeads = new IntIntHashMap();
+    private final IntArrayList bucketNext = new IntArrayList();
+    private final IntArrayList bucketTarget = new IntArrayList();
+    private final DoubleArrayList bucketWeight = new DoubleArrayList();
+    private final LongArrayList bucketTime = new LongArrayList();
+    private final DoubleArrayList bucketDistance = new DoubleArrayList();
+
+    // the state of the current one-directional search, reset before every search
+    private final IntFloatBinaryHeap heap = new IntFloatBinaryHeap(1000);
+    private final IntDoubleHashMap weights = new IntDoubleHashMap();
+    private final IntLongHashMap times = new IntLongHashMap();
+    private final IntDoubleHashMap distances = new IntDoubleHashMap();
+    private final IntHashSet settled = new IntHashSet();
+
+    // time and distance of the original edges packed into a (shortcut) edge, see #calcTimeAndDistance
+    private final LongLongHashMap timeCache = new LongLongHashMap();
+    private final LongDoubleHashMap distanceCache = new LongDoubleHashMap();
+    private long unpackedTime;
+    private double unpackedDistance;
+
+    public ManyToManyCH(RoutingCHGraph graph) {
+        this.graph = graph;
+        this.weighting = graph.getWeighting();
+        this.outExplorer = graph.createOutEdgeExplorer();
+        this.inExplorer = graph.createInEdgeExplorer();
+        this.maxBaseNodes = graph.getBaseGraph().getBaseGraph().getNodes();
+        this.unpacker = new ShortcutUnpacker(graph, (edge, reverse, prevOrNextEdgeId) -> {
+            unpackedDistance += edge.getDistance();
+            unpackedTime += weighting.calcEdgeMillis(edge, reverse);
+        }, false);
+    }
+
+    /**
+     * Limits the number of nodes each of the one-directional searches may settle. If the limit is hit a
+     * {@link MaximumNodesExceededException} is thrown.
+     */
+    public ManyToManyCH setMaxVisitedNodes(int maxVisitedNodes) {
+        this.maxVisitedNodes = maxVisitedNodes;
+        return this;
+    }
+
+    /**
+     * @return the total number of nodes settled by all searches of the last {@link #calcMatrix} call
+     */
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * @param sources the source nodes, a negative value means the source is invalid and its row will be left empty
+     * @param targets the target nodes, a negative value means the target is invalid and its column will be left empty
+     */
+    public Result calcMatrix(int[] sources, int[] targets) {
+        visitedNodes = 0;
+        Result result = new Result(sources.length, targets.length);
+        if (graph.isEdgeBased())
+            calcMatrixPairwise(sources, targets, result);
+        else
+            calcMatrixBuckets(sources, targets, result);
+        return result;
+    }
+
+    private void calcMatrixBuckets(int[] sources, int[] targets, Result result) {
+        clearBuckets();
+        for (int t = 0; t < targets.length; t++) {
+            if (targets[t] < 0)
+                continue;
+            search(targets[t], true);
+            for (IntCursor c : settled)
+                addToBucket(c.value, t, weights.get(c.value), times.get(c.value), distances.get(c.value));
+        }
+
+        for (int s = 0; s < sources.length; s++) {
+            if (sources[s] < 0)
+                continue;
+            search(sources[s], false);
+            double[] weightRow = result.weights[s];
+            long[] timeRow = result.times[s];
+            double[] distanceRow = result.distances[s];
+            for (IntCursor c : settled) {
+                int entry = bucketHeads.getOrDefault(c.value, -1);
+                if (entry < 0)
+                    continue;
+                double fwdWeight = weights.get(c.value);
+                long fwdTime = times.get(c.value);
+                double fwdDistance = distances.get(c.value);
+                for (; entry >= 0; entry = bucketNext.get(entry)) {
+                    int t = bucketTarget.get(entry);
+                    double weight = fwdWeight + bucketWeight.get(entry);
+                    if (weight < weightRow[t]) {
+                        weightRow[t] = weight;
+                        timeRow[t] = fwdTime + bucketTime.get(entry);
+                        distanceRow[t] = fwdDistance + bucketDistance.get(entry);
+                    }
+                }
+            }
+        }
+        clearBuckets();
+    }
+
+    /**
+     * Runs a plain Dijkstra on the upward graph starting at the given node. Afterwards the settled nodes and their
+     * weights, times and distances can be read from the search state.
+     */
+    private void search(int startNode, boolean reverse) {
+        heap.clear();
+        weights.clear();
+        times.clear();
+        distances.clear();
+        settled.clear();
+
+        weights.put(startNode, 0);
+        times.put(startNode, 0);
+        distances.put(startNode, 0);
+        heap.insert(0, startNode);
+        RoutingCHEdgeExplorer explorer = reverse ? inExplorer : outExplorer;
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            // we do not update the heap, but insert nodes multiple times instead. so we need to skip the stale entries
+            if (!settled.add(node))
+                continue;
+            visitedNodes++;
+            if (settled.size() > maxVisitedNodes)
+                throw new MaximumNodesExceededException("No path found due to maximum nodes exceeded " + maxVisitedNodes, maxVisitedNodes);
+            double currWeight = weights.get(node);
+            RoutingCHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                if (!acceptUpward(iter))
+                    continue;
+                double edgeWeight = iter.getWeight(reverse);
+                if (Double.isInfinite(edgeWeight))
+                    continue;
+                int adjNode = iter.getAdjNode();
+                if (settled.contains(adjNode))
+                    continue;
+                double weight = currWeight + edgeWeight;
+                if (weight < weights.getOrDefault(adjNode, Double.POSITIVE_INFINITY)) {
+                    calcTimeAndDistance(iter, reverse);
+                    weights.put(adjNode, weight);
+                    times.put(adjNode, times.get(node) + unpackedTime);
+                    distances.put(adjNode, distances.get(node) + unpackedDistance);
+                    heap.insert(weight, adjNode);
+                }
+            }
+        }
+    }
+
+    private boolean acceptUpward(RoutingCHEdgeIteratorState edgeState) {
+        int base = edgeState.getBaseNode();
+        int adj = edgeState.getAdjNode();
+        // always accept virtual edges, see #288
+        if (base >= maxBaseNodes || adj >= maxBaseNodes)
+            return true;
+        return graph.getLevel(base) <= graph.getLevel(adj);
+    }
+
+    private void calcTimeAndDistance(RoutingCHEdgeIteratorState edgeState, boolean reverse) {
+        long key = cacheKey(edgeState.getEdge(), edgeState.getAdjNode(), reverse);
+        int index = timeCache.indexOf(key);
+        if (timeCache.indexExists(index)) {
+            unpackedTime = timeCache.indexGet(index);
+            unpackedDistance = distanceCache.get(key);
+            return;
+        }
+        unpackedTime = 0;
+        unpackedDistance = 0;
+        if (reverse)
+            unpacker.visitOriginalEdgesBwd(edgeState.getEdge(), edgeState.getAdjNode(), false, EdgeIterator.NO_EDGE);
+        else
+            unpacker.visitOriginalEdgesFwd(edgeState.getEdge(), edgeState.getAdjNode(), false, EdgeIterator.NO_EDGE);
+        timeCache.indexInsert(index, key, unpackedTime);
+        distanceCache.put(key, unpackedDistance);
+    }
+
+    static long cacheKey(int edge, int adjNode, boolean reverse) {
+        // edge and direction use all 32 upper bits and the node the lower ones, so no bit is lost even for large ids
+        return (edge * 2L + (reverse ? 1 : 0)) << 32 | (adjNode & 0xFFFF_FFFFL);
+    }
+
+    private void addToBucket(int node, int target, double weight, long time, double distance) {
+        int entry = bucketTarget.size();
+        bucketNext.add(bucketHeads.getOrDefault(node, -1));
+        bucketTarget.add(target);
+        bucketWeight.add(weight);
+        bucketTime.add(time);
+        bucketDistance.add(distance);
+        bucketHeads.put(node, entry);
+    }
+
+    private void clearBuckets() {
+        bucketHeads.clear();
+        bucketNext.clear();
+        bucketTarget.clear();
+        bucketWeight.clear();
+        bucketTime.clear();
+        bucketDistance.clear();
+    }
+
+    private void calcMatrixPairwise(int[] sources, int[] targets, Result result) {
+        CHRoutingAlgorithmFactory algoFactory = new CHRoutingAlgorithmFactory(graph);
+        PMap opts = new PMap();
+        if (maxVisitedNodes < Integer.MAX_VALUE)
+            opts.putObject(MAX_VISITED_NODES, maxVisitedNodes);
+        for (int s = 0; s < sources.length; s++) {
+            if (sources[s] < 0)
+                continue;
+            for (int t = 0; t < targets.length; t++) {
+                if (targets[t] < 0)
+                    continue;
+                EdgeToEdgeRoutingAlgorithm algo = algoFactory.createAlgo(opts);
+                Path path = algo.calcPath(sources[s], targets[t]);
+                visitedNodes += algo.getVisitedNodes();
+                if (algo.getVisitedNodes() >= maxVisitedNodes)
+                    throw new MaximumNodesExceededException("No path found due to maximum nodes exceeded " + maxVisitedNodes, maxVisitedNodes);
+                if (!path.isFound())
+                    continue;
+                result.weights[s][t] = path.getWeight();
+                result.times[s][t] = path.getTime();
+                result.distances[s][t] = path.getDistance();
+            }
+        }
+    }
+
+    /**
+     * The weights, times (in milliseconds) and distances (in meters) between all sources (rows) and targets (columns).
+     * Unreachable pairs have an infinite weight and distance and a time of Long.MAX_VALUE.
+     */
+    public static class Result {
+        private final double[][] weights;
+        private final long[][] times;
+        private final double[][] distances;
+
+        Result(int sources, int targets) {
+            weights = new double[sources][targets];
+            times = new long[sources][targets];
+            distances = new double[sources][targets];
+            for (int s = 0; s < sources; s++) {
+                Arrays.fill(weights[s], Double.POSITIVE_INFINITY);
+                Arrays.fill(times[s], Long.MAX_VALUE);
+                Arrays.fill(distances[s], Double.POSITIVE_INFINITY);
+            }
+        }
+
+        public boolean isConnected(int source, int target) {
+            return Double.isFinite(weights[source][target]);
+        }
+
+        public double getWeight(int source, int target) {
+            return weights[source][target];
+        }
+
+        public long getTime(int source, int target) {
+            return times[source][target];
+        }
+
+        public double getDistance(int source, int target) {
+            return distances[source][target];
+        }
+    }
+}
@@ -17,6 +17,8 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
 import com.graphhopper.storage.CHStorageBuilder;
 import com.graphhopper.util.PMap;
@@ -31,7 +33,9 @@ import static com.graphhopper.util.Helper.nf;
 
 class NodeBasedNodeContractor implements NodeContractor {
     private final CHPreparationGraph prepareGraph;
-    private final Params params = new Params();
+    // the contractor that owns the heuristic state if this is a priority calculator, null otherwise
+    private final NodeBasedNodeContractor parent;
+    private final Params params;
     // todo: maybe use a set to prevent duplicates instead?
     private List<Shortcut> shortcuts = new ArrayList<>();
     private CHStorageBuilder chBuilder;
@@ -51,10 +55,18 @@ class NodeBasedNodeContractor implements NodeContractor {
 
     NodeBasedNodeContractor(CHPreparationGraph prepareGraph, CHStorageBuilder chBuilder, PMap pMap) {
         this.prepareGraph = prepareGraph;
+        this.parent = null;
+        this.params = new Params();
         extractParams(pMap);
         this.chBuilder = chBuilder;
     }
 
+    private NodeBasedNodeContractor(NodeBasedNodeContractor parent) {
+        this.prepareGraph = parent.prepareGraph;
+        this.parent = parent;
+        this.params = parent.params;
+    }
+
     private void extractParams(PMap pMap) {
         params.edgeDifferenceWeight = pMap.getFloat(EDGE_DIFFERENCE_WEIGHT, params.edgeDifferenceWeight);
         params.originalEdgesCountWeight = pMap.getFloat(ORIGINAL_EDGE_COUNT_WEIGHT, params.originalEdgesCountWeight);
@@ -71,9 +83,17 @@ class NodeBasedNodeContractor implements NodeContractor {
         meanDegree = prepareGraph.getOriginalEdges() * 1.0 / prepareGraph.getNodes();
     }
 
+    @Override
+    public NodeContractor createPriorityCalculator() {
+        NodeBasedNodeContractor calculator = new NodeBasedNodeContractor(this);
+        calculator.initFromGraph();
+        return calculator;
+    }
+
     @Override
     public void close() {
-        prepareGraph.close();
+        if (parent == null)
+            prepareGraph.close();
         shortcuts = null;
         chBuilder = null;
         inEdgeExplorer = null;
@@ -97,6 +117,7 @@ class NodeBasedNodeContractor implements NodeContractor {
         // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
         shortcutsCount = 0;
         originalEdgesCount = 0;
+        double meanDegree = parent == null ? this.meanDegree : parent.meanDegree;
         findAndHandleShortcuts(node, this::countShortcuts, (int) (meanDegree * params.maxPollFactorHeuristic));
 
         // from shortcuts we can compute the edgeDifference
@@ -116,6 +137,8 @@ class NodeBasedNodeContractor implements NodeContractor {
 
     @Override
     public IntContainer contractNode(int node) {
+        if (parent != null)
+            throw new IllegalStateException("Priority calculators cannot be used to contract nodes");
         long degree = findAndHandleShortcuts(node, this::addOrUpdateShortcut, (int) (meanDegree * params.maxPollFactorContraction));
         insertShortcuts(node);
         // put weight factor on meanDegree instead of taking the average => meanDegree is more stable
@@ -123,6 +146,30 @@ class NodeBasedNodeContractor implements NodeContractor {
         return prepareGraph.disconnect(node);
     }
 
+    @Override
+    public PlannedContraction planContraction(int node, boolean[] ignoredNodes) {
+        NodeBasedPlannedContraction contraction = new NodeBasedPlannedContraction(node);
+        double meanDegree = parent == null ? this.meanDegree : parent.meanDegree;
+        witnessPathSearcher.setIgnoredNodes(ignoredNodes);
+        contraction.degree = findAndHandleShortcuts(node, contraction::add, (int) (meanDegree * params.maxPollFactorContraction));
+        witnessPathSearcher.setIgnoredNodes(null);
+        return contraction;
+    }
+
+    @Override
+    public IntContainer applyContraction(PlannedContraction plannedContraction) {
+        if (parent != null)
+            throw new IllegalStateException("Priority calculators cannot be used to contract nodes");
+        NodeBasedPlannedContraction contraction = (NodeBasedPlannedContraction) plannedContraction;
+        IntArrayList ints = contraction.shortcuts;
+        for (int i = 0, j = 0; i < ints.size(); i += 6, j++)
+            addOrUpdateShortcut(ints.get(i), ints.get(i + 1), contraction.weights.get(j),
+                    ints.get(i + 2), ints.get(i + 3), ints.get(i + 4), ints.get(i + 5));
+        insertShortcuts(contraction.node);
+        meanDegree = (meanDegree * 2 + contraction.degree) / 3;
+        return prepareGraph.disconnect(contraction.node);
+    }
+
     /**
      * Calls the shortcut handler for all edges and shortcuts adjacent to the given node. After this method is called
      * these edges and shortcuts will be removed from the prepare graph, so this method offers the last chance to deal
@@ -310,6 +357,32 @@ class NodeBasedNodeContractor implements NodeContractor {
         private double maxPollFactorContraction = 200;
     }
 
+    private static class NodeBasedPlannedContraction implements PlannedContraction {
+        private final int node;
+        private long degree;
+        // fromNode, toNode, outgoingEdge, outOrigEdgeCount, incomingEdge and inOrigEdgeCount of each shortcut
+        private final IntArrayList shortcuts = new IntArrayList();
+        private final DoubleArrayList weights = new DoubleArrayList();
+
+        private NodeBasedPlannedContraction(int node) {
+            this.node = node;
+        }
+
+        @Override
+        public int getNode() {
+            return node;
+        }
+
+        private void add(int fromNode, int toNode, double weight,
+                         int outgoingEdge, int outOrigEdgeCount,
+                         int incomingEdge, int inOrigEdgeCount) {
+            shortcuts.add(fromNode, toNode);
+            shortcuts.add(outgoingEdge, outOrigEdgeCount);
+            shortcuts.add(incomingEdge, inOrigEdgeCount);
+            weights.add(weight);
+        }
+    }
+
     private static class Shortcut {
         int prepareEdgeFwd;
         int prepareEdgeBwd;
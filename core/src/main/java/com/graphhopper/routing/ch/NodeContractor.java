@@ -30,6 +30,13 @@ public interface NodeContractor {
      */
     float calculatePriority(int node);
 
+    /**
+     * Creates a contractor that uses its own local searches, but reads the same prepare graph and the current heuristic
+     * state (like the mean degree) of this contractor. It can be used to calculate node priorities in another thread,
+     * but only as long as the graph is not modified and it must never be used to contract nodes.
+     */
+    NodeContractor createPriorityCalculator();
+
     /**
      * Adds the required shortcuts for the given node.
      *
@@ -37,6 +44,23 @@ public interface NodeContractor {
      */
     IntContainer contractNode(int node);
 
+    /**
+     * Finds the shortcuts that are needed to contract the given node, but does not change the graph, so just like
+     * {@link #calculatePriority} this can be run on a priority calculator. The witness searches do not visit any of the
+     * given ignored nodes (other than the given node itself). Therefore the found shortcuts are still valid when all the
+     * ignored nodes are contracted before the returned contraction is applied, as long as the neighborhoods of these
+     * nodes are disjoint.
+     */
+    PlannedContraction planContraction(int node, boolean[] ignoredNodes);
+
+    /**
+     * Adds the shortcuts found by {@link #planContraction} and disconnects the node just like {@link #contractNode}
+     * does.
+     *
+     * @return the set of nodes adjacent to this node (before contraction)
+     */
+    IntContainer applyContraction(PlannedContraction contraction);
+
     void finishContraction();
 
     long getAddedShortcutsCount();
@@ -45,4 +69,8 @@ public interface NodeContractor {
 
     float getDijkstraSeconds();
 
+    interface PlannedContraction {
+        int getNode();
+    }
+
 }
@@ -17,11 +17,14 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntContainer;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.sorting.IndirectSort;
 import com.graphhopper.coll.MinHeapWithUpdate;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.storage.*;
+import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.StopWatch;
@@ -30,6 +33,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Locale;
 import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static com.graphhopper.routing.ch.CHParameters.*;
 import static com.graphhopper.util.Helper.getMemInfo;
@@ -61,7 +66,9 @@ public class PrepareContractionHierarchies {
     private final StopWatch contractionSW = new StopWatch();
     private final Params params;
     private final BaseGraph graph;
+    private CHPreparationGraph prepareGraph;
     private NodeContractor nodeContractor;
+    private NodeContractor[] priorityCalculators;
     private final int nodes;
     private NodeOrderingProvider nodeOrderingProvider;
     private int maxLevel;
@@ -100,6 +107,7 @@ public class PrepareContractionHierarchies {
         params.setMaxNeighborUpdates(pMap.getInt(NEIGHBOR_UPDATES_MAX, params.getMaxNeighborUpdates()));
         params.setNodesContractedPercentage(pMap.getInt(CONTRACTED_NODES, params.getNodesContractedPercentage()));
         params.setLogMessagesPercentage(pMap.getInt(LOG_MESSAGES, params.getLogMessagesPercentage()));
+        params.setContractionThreads(pMap.getInt(CONTRACTION_THREADS, params.getContractionThreads()));
         return this;
     }
 
@@ -159,6 +167,8 @@ public class PrepareContractionHierarchies {
         setMaxLevelOnAllNodes();
         if (nodeOrderingProvider != null) {
             contractNodesUsingFixedNodeOrdering();
+        } else if (params.getContractionThreads() > 1) {
+            contractIndependentNodeSetsConcurrently();
         } else {
             contractNodesUsingHeuristicNodeOrdering();
         }
@@ -170,7 +180,6 @@ public class PrepareContractionHierarchies {
 
     private void initFromGraph() {
         logger.info("Creating CH prepare graph, {}", getMemInfo());
-        CHPreparationGraph prepareGraph;
         if (chConfig.getTraversalMode().isEdgeBased()) {
             TurnCostStorage turnCostStorage = graph.getTurnCostStorage();
             if (turnCostStorage == null)
@@ -210,6 +219,247 @@ public class PrepareContractionHierarchies {
         periodicUpdateSW.stop();
     }
 
+    /**
+     * Calculating the priorities does not modify the graph, so we can do this for many nodes at once using one
+     * priority calculator per thread. The priorities are the same as the ones we would get from a single thread, so
+     * the resulting node ordering does not depend on the number of threads.
+     */
+    private float[] calculatePrioritiesOfRemainingNodesConcurrently() {
+        final int threads = params.getContractionThreads();
+        NodeContractor[] priorityCalculators = getPriorityCalculators();
+        float[] priorities = new float[nodes];
+        Stream<Runnable> runnables = IntStream.range(0, threads).mapToObj(t -> () -> {
+            NodeContractor calculator = priorityCalculators[t];
+            for (int node = t; node < nodes; node += threads) {
+                if (isContracted(node))
+                    continue;
+                priorities[node] = calculator.calculatePriority(node);
+            }
+        });
+        GHUtility.runConcurrently(runnables, threads);
+        return priorities;
+    }
+
+    private NodeContractor[] getPriorityCalculators() {
+        if (priorityCalculators == null) {
+            final int threads = params.getContractionThreads();
+            priorityCalculators = new NodeContractor[threads];
+            for (int i = 0; i < threads; i++)
+                priorityCalculators[i] = nodeContractor.createPriorityCalculator();
+        }
+        return priorityCalculators;
+    }
+
+    /**
+     * Contracts the nodes in rounds. In each round we select all nodes that have the smallest priority within their
+     * two-hop neighborhood. The one-hop neighborhoods of these nodes are disjoint and their witness searches ignore all
+     * the other selected nodes, so the shortcuts of all of them can be found concurrently before they are inserted one
+     * after another. Afterwards the priorities of all their neighbors are updated concurrently. We update all the
+     * neighbors (and not a random fraction of them) so the node ordering does not depend on a random generator. The
+     * periodic and lazy updates work like in {@link #contractNodesUsingHeuristicNodeOrdering()}, but since a single
+     * round contracts many nodes the periodic updates are only done between the rounds. The lazy updates recalculate
+     * the priorities of all selected nodes and defer the nodes whose priority increased to the next round. Unlike the
+     * priority calculation the resulting node ordering differs from the one we get using a single thread (but not
+     * between different numbers of threads).
+     */
+    private void contractIndependentNodeSetsConcurrently() {
+        final int threads = params.getContractionThreads();
+        final NodeContractor[] priorityCalculators = getPriorityCalculators();
+        logger.info("Calculating initial node priorities: {} nodes, {}", nodes, getMemInfo());
+        periodicUpdateSW.start();
+        float[] priorities = calculatePrioritiesOfRemainingNodesConcurrently();
+        periodicUpdateSW.stop();
+        final long nodesToAvoidContract = Math.round(nodes * ((100 - params.getNodesContractedPercentage()) / 100d));
+        final long logSize = params.getLogMessagesPercentage() == 0
+                ? Long.MAX_VALUE
+                : Math.round(Math.max(10, nodes * (params.getLogMessagesPercentage() / 100d)));
+        final long periodicUpdatesCount = params.getPeriodicUpdatesPercentage() == 0
+                ? Long.MAX_VALUE
+                : Math.round(Math.max(10, nodes * (params.getPeriodicUpdatesPercentage() / 100d)));
+        final long lastNodesLazyUpdates = Math.round(nodes * (params.getLastNodesLazyUpdatePercentage() / 100d));
+        final IntArrayList remaining = new IntArrayList(nodes);
+        for (int node = 0; node < nodes; node++)
+            remaining.add(node);
+        // the node with the smallest priority among each node and its neighbors
+        final int[] minNodes = new int[nodes];
+        final boolean[] selected = new boolean[nodes];
+        final boolean[] outdated = new boolean[nodes];
+        final IntArrayList outdatedNodes = new IntArrayList();
+        int level = 0;
+        int rounds = 0;
+        int updateCounter = 0;
+        long nextLog = 0;
+        long nextPeriodicUpdate = periodicUpdatesCount;
+        while (remaining.size() > nodesToAvoidContract) {
+            stopIfInterrupted();
+            if (level >= nextPeriodicUpdate) {
+                periodicUpdateSW.start();
+                priorities = calculatePrioritiesOfRemainingNodesConcurrently();
+                periodicUpdateSW.stop();
+                updateCounter++;
+                nextPeriodicUpdate = level + periodicUpdatesCount;
+            }
+            if (level >= nextLog) {
+                logIndependentSetStats(remaining.size(), rounds, updateCounter);
+                nextLog = level + logSize;
+            }
+            rounds++;
+            final float[] currPriorities = priorities;
+            contractionSW.start();
+            runConcurrently(threads, remaining.size(), (inExplorer, outExplorer, i) -> {
+                int node = remaining.get(i);
+                int minNode = findMinNode(inExplorer.setBaseNode(node), node, currPriorities);
+                minNodes[node] = findMinNode(outExplorer.setBaseNode(node), minNode, currPriorities);
+            });
+            // a node is selected if it has the smallest priority within its two-hop neighborhood, so the one-hop
+            // neighborhoods of the selected nodes are disjoint
+            runConcurrently(threads, remaining.size(), (inExplorer, outExplorer, i) -> {
+                int node = remaining.get(i);
+                selected[node] = minNodes[node] == node
+                        && allNeighborsHaveMinNode(inExplorer.setBaseNode(node), node, minNodes)
+                        && allNeighborsHaveMinNode(outExplorer.setBaseNode(node), node, minNodes);
+            });
+            IntArrayList selectedNodes = new IntArrayList();
+            for (IntCursor c : remaining)
+                if (selected[c.value])
+                    selectedNodes.add(c.value);
+            int[] order = IndirectSort.mergesort(0, selectedNodes.size(),
+                    (i, j) -> compareNodes(selectedNodes.get(i), selectedNodes.get(j), currPriorities));
+            // the node with the smallest priority is always selected, but we do not contract more nodes than requested
+            int count = (int) Math.min(order.length, remaining.size() - nodesToAvoidContract);
+            final IntArrayList nodesToContract = new IntArrayList(count);
+            for (int k = 0; k < order.length; k++) {
+                if (k < count)
+                    nodesToContract.add(selectedNodes.get(order[k]));
+                else
+                    selected[selectedNodes.get(order[k])] = false;
+            }
+            contractionSW.stop();
+
+            if (remaining.size() - 1 < lastNodesLazyUpdates) {
+                lazyUpdateSW.start();
+                // the other selected nodes are not within the two-hop neighborhood of a selected node, so the remaining
+                // selected nodes still have the smallest (updated) priority within their neighborhood
+                float[] updated = new float[nodesToContract.size()];
+                runConcurrently(threads, nodesToContract.size(), priorityCalculators,
+                        (calculator, i) -> updated[i] = calculator.calculatePriority(nodesToContract.get(i)));
+                int size = 0;
+                for (int i = 0; i < nodesToContract.size(); i++) {
+                    int node = nodesToContract.get(i);
+                    if (updated[i] > currPriorities[node])
+                        selected[node] = false;
+                    else
+                        nodesToContract.set(size++, node);
+                    currPriorities[node] = updated[i];
+                }
+                nodesToContract.elementsCount = size;
+                lazyUpdateSW.stop();
+            }
+
+            contractionSW.start();
+            NodeContractor.PlannedContraction[] contractions = new NodeContractor.PlannedContraction[nodesToContract.size()];
+            runConcurrently(threads, contractions.length, priorityCalculators,
+                    (calculator, i) -> contractions[i] = calculator.planContraction(nodesToContract.get(i), selected));
+            for (NodeContractor.PlannedContraction contraction : contractions) {
+                int node = contraction.getNode();
+                if (isContracted(node))
+                    throw new IllegalArgumentException("Node " + node + " was contracted already");
+                chBuilder.setLevel(node, level++);
+                for (IntCursor neighbor : nodeContractor.applyContraction(contraction)) {
+                    if (!outdated[neighbor.value]) {
+                        outdated[neighbor.value] = true;
+                        outdatedNodes.add(neighbor.value);
+                    }
+                }
+                selected[node] = false;
+            }
+            int size = 0;
+            for (int i = 0; i < remaining.size(); i++)
+                if (!isContracted(remaining.get(i)))
+                    remaining.set(size++, remaining.get(i));
+            remaining.elementsCount = size;
+            contractionSW.stop();
+
+            neighborUpdateSW.start();
+            runConcurrently(threads, outdatedNodes.size(), priorityCalculators,
+                    (calculator, i) -> currPriorities[outdatedNodes.get(i)] = calculator.calculatePriority(outdatedNodes.get(i)));
+            for (IntCursor c : outdatedNodes)
+                outdated[c.value] = false;
+            outdatedNodes.elementsCount = 0;
+            neighborUpdateSW.stop();
+        }
+
+        nodeContractor.finishContraction();
+        logIndependentSetStats(remaining.size(), rounds, updateCounter);
+        logger.info("new shortcuts: " + nf(nodeContractor.getAddedShortcutsCount())
+                + ", rounds: " + nf(rounds)
+                + ", " + chConfig.getWeighting()
+                + ", threads: " + threads
+                + ", periodic:" + params.getPeriodicUpdatesPercentage()
+                + ", lazy:" + params.getLastNodesLazyUpdatePercentage()
+                + ", " + getTimesAsString()
+                + ", " + Helper.getMemInfo());
+        _close();
+    }
+
+    /**
+     * Runs the given task for all indices in [0, size) using the given number of threads, each with its own explorers.
+     */
+    private void runConcurrently(int threads, int size, ExplorerTask task) {
+        Stream<Runnable> runnables = IntStream.range(0, threads).mapToObj(t -> () -> {
+            PrepareGraphEdgeExplorer inExplorer = prepareGraph.createInEdgeExplorer();
+            PrepareGraphEdgeExplorer outExplorer = prepareGraph.createOutEdgeExplorer();
+            for (int i = t; i < size; i += threads)
+                task.run(inExplorer, outExplorer, i);
+        });
+        GHUtility.runConcurrently(runnables, threads);
+    }
+
+    /**
+     * Runs the given task for all indices in [0, size) using the given number of threads, each with its own priority
+     * calculator.
+     */
+    private static void runConcurrently(int threads, int size, NodeContractor[] priorityCalculators, CalculatorTask task) {
+        Stream<Runnable> runnables = IntStream.range(0, threads).mapToObj(t -> () -> {
+            NodeContractor calculator = priorityCalculators[t];
+            for (int i = t; i < size; i += threads)
+                task.run(calculator, i);
+        });
+        GHUtility.runConcurrently(runnables, threads);
+    }
+
+    private static int findMinNode(PrepareGraphEdgeIterator iter, int minNode, float[] priorities) {
+        while (iter.next())
+            if (compareNodes(iter.getAdjNode(), minNode, priorities) < 0)
+                minNode = iter.getAdjNode();
+        return minNode;
+    }
+
+    private static boolean allNeighborsHaveMinNode(PrepareGraphEdgeIterator iter, int node, int[] minNodes) {
+        while (iter.next())
+            if (minNodes[iter.getAdjNode()] != node)
+                return false;
+        return true;
+    }
+
+    /**
+     * Orders nodes by their priority and uses the node id to break ties, so there is always a unique minimum.
+     */
+    private static int compareNodes(int nodeA, int nodeB, float[] priorities) {
+        int result = Float.compare(priorities[nodeA], priorities[nodeB]);
+        return result != 0 ? result : Integer.compare(nodeA, nodeB);
+    }
+
+    @FunctionalInterface
+    private interface ExplorerTask {
+        void run(PrepareGraphEdgeExplorer inExplorer, PrepareGraphEdgeExplorer outExplorer, int index);
+    }
+
+    @FunctionalInterface
+    private interface CalculatorTask {
+        void run(NodeContractor calculator, int index);
+    }
+
     private void contractNodesUsingHeuristicNodeOrdering() {
         StopWatch sw = new StopWatch().start();
         logger.info("Building initial queue of nodes to be contracted: {} nodes, {}", nodes, getMemInfo());
@@ -367,6 +617,19 @@ public class PrepareContractionHierarchies {
                 Helper.getMemInfo()));
     }
 
+    private void logIndependentSetStats(int remainingNodes, int rounds, int updateCounter) {
+        logger.info(String.format(Locale.ROOT,
+                "%s, nodes: %10s, shortcuts: %10s, rounds: %6d, updates: %2d, %s, %s, %s",
+                isEdgeBased() ? "edge" : "node",
+                nf(remainingNodes),
+                nf(nodeContractor.getAddedShortcutsCount()),
+                rounds,
+                updateCounter,
+                getTimesAsString(),
+                nodeContractor.getStatisticsString(),
+                Helper.getMemInfo()));
+    }
+
     private void logFixedNodeOrderingStats(int nodesContracted, int logSize, StopWatch stopWatch) {
         logger.info(String.format(Locale.ROOT,
                 "nodes: %10s / %10s (%6.2f%%), shortcuts: %10s, speed = %6.2f nodes/ms, %s, %s",
@@ -414,7 +677,13 @@ public class PrepareContractionHierarchies {
     }
 
     private void _close() {
+        if (priorityCalculators != null) {
+            for (NodeContractor calculator : priorityCalculators)
+                calculator.close();
+            priorityCalculators = null;
+        }
         nodeContractor.close();
+        prepareGraph = null;
         sortedNodes = null;
     }
 
@@ -514,6 +783,12 @@ public class PrepareContractionHierarchies {
          * @see #periodicUpdatesPercentage
          */
         private int logMessagesPercentage;
+        /**
+         * Specifies the number of threads used for the preparation. Every thread needs its own witness searches, so
+         * more threads also require more memory. With more than one thread we contract sets of independent nodes
+         * concurrently, see {@link PrepareContractionHierarchies#contractIndependentNodeSetsConcurrently()}.
+         */
+        private int contractionThreads = 1;
 
         static Params forTraversalMode(TraversalMode traversalMode) {
             // Lower values for the neighbor update percentage (and/or max neighbor updates) yield a slower
@@ -588,6 +863,16 @@ public class PrepareContractionHierarchies {
             this.logMessagesPercentage = logMessagesPercentage;
         }
 
+        int getContractionThreads() {
+            return contractionThreads;
+        }
+
+        void setContractionThreads(int contractionThreads) {
+            if (contractionThreads < 1)
+                throw new IllegalArgumentException(CONTRACTION_THREADS + " has to be at least 1");
+            this.contractionThreads = contractionThreads;
+        }
+
         private void checkPercentage(String name, int value) {
             if (value < 0 || value > 100) {
                 throw new IllegalArgumentException(name + " has to be in [0, 100], to disable it use 0");
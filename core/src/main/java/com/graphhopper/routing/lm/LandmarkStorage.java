@@ -50,6 +50,8 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * This class stores the landmark nodes and the weights from and to all other nodes in every
@@ -94,6 +96,7 @@ public class LandmarkStorage {
     private List<LandmarkSuggestion> landmarkSuggestions = Collections.emptyList();
     private AreaIndex<SplitArea> areaIndex;
     private boolean logDetails = false;
+    private int landmarkThreads = 1;
     /**
      * 'to' and 'from' fit into 32 bit => 16 bit for each of them => 65536
      */
@@ -169,6 +172,17 @@ public class LandmarkStorage {
         this.logDetails = logDetails;
     }
 
+    /**
+     * Sets the number of threads used to calculate the weights from and to the landmarks of a subnetwork. More threads
+     * make the preparation faster, but every thread needs memory for its own searches. Default is 1.
+     */
+    public LandmarkStorage setLandmarkThreads(int landmarkThreads) {
+        if (landmarkThreads < 1)
+            throw new IllegalArgumentException("landmark threads must be at least 1, but was " + landmarkThreads);
+        this.landmarkThreads = landmarkThreads;
+        return this;
+    }
+
     /**
      * This method forces the landmark preparation to skip the landmark search and uses the specified landmark list instead.
      * Useful for manual tuning of larger areas to safe import time or improve quality.
@@ -445,42 +459,52 @@ public class LandmarkStorage {
         }
 
         // 2) calculate weights for all landmarks -> 'from' and 'to' weight
-        for (int lmIdx = 0; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
-            if (Thread.currentThread().isInterrupted()) {
+        // set subnetwork id to all explored nodes, but do this only for the first landmark
+        int firstLmNodeId = tmpLandmarkNodeIds[0];
+        if (calcLandmarkWeights(0, firstLmNodeId, accessFilter, false).setSubnetworks(subnetworks, subnetworkId))
+            return false;
+        if (calcLandmarkWeights(0, firstLmNodeId, accessFilter, true).setSubnetworks(subnetworks, subnetworkId))
+            return false;
+
+        // the searches for the other landmarks are independent of each other and every landmark has its own 'column'
+        // in the weight table, so we can run them concurrently
+        final Thread callingThread = Thread.currentThread();
+        final AtomicInteger finishedLandmarks = new AtomicInteger(1);
+        Stream<Runnable> runnables = IntStream.range(1, tmpLandmarkNodeIds.length).mapToObj(lmIdx -> () -> {
+            if (callingThread.isInterrupted()) {
                 throw new RuntimeException("Thread was interrupted for landmark " + lmIdx);
             }
             int lmNodeId = tmpLandmarkNodeIds[lmIdx];
-            LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, false);
-            explorer.setStartNode(lmNodeId);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
-
-            // set subnetwork id to all explored nodes, but do this only for the first landmark
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
-
-            explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, true);
-            explorer.setStartNode(lmNodeId);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
+            calcLandmarkWeights(lmIdx, lmNodeId, accessFilter, false);
+            calcLandmarkWeights(lmIdx, lmNodeId, accessFilter, true);
 
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
-
-            if (logDetails && lmIdx % logOffset == 0)
+            int finished = finishedLandmarks.incrementAndGet();
+            if (logDetails && finished % logOffset == 0)
                 LOGGER.info("Set landmarks weights [" + weighting + "]. "
-                        + "Progress " + (int) (100.0 * lmIdx / tmpLandmarkNodeIds.length) + "%");
-        }
+                        + "Progress " + (int) (100.0 * finished / tmpLandmarkNodeIds.length) + "%");
+        });
+        if (landmarkThreads > 1)
+            GHUtility.runConcurrently(runnables, landmarkThreads);
+        else
+            runnables.forEach(Runnable::run);
 
         // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
         landmarkIDs.add(tmpLandmarkNodeIds);
         return true;
     }
 
+    /**
+     * Runs a forward or backward search from the given landmark and stores the resulting weights in the 'from' or
+     * 'to' column of this landmark.
+     */
+    private LandmarkExplorer calcLandmarkWeights(int lmIdx, int lmNodeId, EdgeFilter accessFilter, boolean reverse) {
+        LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, accessFilter, reverse);
+        explorer.setStartNode(lmNodeId);
+        explorer.runAlgo();
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, reverse ? TO_OFFSET : FROM_OFFSET);
+        return explorer;
+    }
+
     /**
      * This method specifies the polygons which should be used to split the world wide area to improve performance and
      * quality in this scenario.
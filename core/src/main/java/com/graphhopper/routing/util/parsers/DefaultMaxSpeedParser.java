@@ -44,26 +44,33 @@ public class DefaultMaxSpeedParser implements TagParser {
                 // Workaround for GBR. Default is used for "urban" but ignored for "rural".
                 if (country == Country.GBR) tags.put("lit", "yes");
 
-                // with computeIfAbsent we calculate the expensive hashCode of the key only once
-                Result result = cache.computeIfAbsent(tags, (key) -> {
-                    Result internRes = new Result();
+                // the cache is shared between the threads that might run the tag parsers, so we need to synchronize
+                // the access. but we do not hold the lock while calculating the result, because this is expensive
+                Result result;
+                synchronized (cache) {
+                    result = cache.get(tags);
+                }
+                if (result == null) {
+                    result = new Result();
                     LegalDefaultSpeeds.Result tmpResult = speeds.getSpeedLimits(code,
                             tags, Collections.emptyList(), (name, eval) -> eval.invoke() || "rural".equals(name));
                     if (tmpResult != null) {
-                        internRes.rural = parseInt(tmpResult.getTags().get("maxspeed"));
-                        if (internRes.rural == null && "130".equals(tmpResult.getTags().get("maxspeed:advisory")))
-                            internRes.rural = (int) MAXSPEED_150;
+                        result.rural = parseInt(tmpResult.getTags().get("maxspeed"));
+                        if (result.rural == null && "130".equals(tmpResult.getTags().get("maxspeed:advisory")))
+                            result.rural = (int) MAXSPEED_150;
                     }
 
                     tmpResult = speeds.getSpeedLimits(code,
                             tags, Collections.emptyList(), (name, eval) -> eval.invoke() || "urban".equals(name));
                     if (tmpResult != null) {
-                        internRes.urban = parseInt(tmpResult.getTags().get("maxspeed"));
-                        if (internRes.urban == null && "130".equals(tmpResult.getTags().get("maxspeed:advisory")))
-                            internRes.urban = (int) MAXSPEED_150;
+                        result.urban = parseInt(tmpResult.getTags().get("maxspeed"));
+                        if (result.urban == null && "130".equals(tmpResult.getTags().get("maxspeed:advisory")))
+                            result.urban = (int) MAXSPEED_150;
                     }
-                    return internRes;
-                });
+                    synchronized (cache) {
+                        cache.put(tags, result);
+                    }
+                }
 
                 ruralSpeedInt = result.rural;
                 urbanSpeedInt = result.urban;
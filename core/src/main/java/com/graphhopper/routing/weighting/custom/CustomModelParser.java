@@ -73,24 +73,42 @@ public class CustomModelParser {
      * an if-elseif-else group.
      */
     public static CustomWeighting createWeighting(EncodedValueLookup lookup, TurnCostProvider turnCostProvider, CustomModel customModel) {
+        return createWeighting(lookup, turnCostProvider, customModel, null);
+    }
+
+    /**
+     * @param edgeAreaCache the edges of the areas used in the custom model are taken from this cache. Can be null.
+     */
+    public static CustomWeighting createWeighting(EncodedValueLookup lookup, TurnCostProvider turnCostProvider, CustomModel customModel,
+                                                  EdgeAreaCache edgeAreaCache) {
         if (customModel == null)
             throw new IllegalStateException("CustomModel cannot be null");
-        CustomWeighting.Parameters parameters = createWeightingParameters(customModel, lookup);
+        CustomWeighting.Parameters parameters = createWeightingParameters(customModel, lookup, edgeAreaCache);
         return new CustomWeighting(turnCostProvider, parameters);
     }
 
     public static CustomWeighting2 createWeighting2(EncodedValueLookup lookup, TurnCostProvider turnCostProvider, CustomModel customModel) {
+        return createWeighting2(lookup, turnCostProvider, customModel, null);
+    }
+
+    public static CustomWeighting2 createWeighting2(EncodedValueLookup lookup, TurnCostProvider turnCostProvider, CustomModel customModel,
+                                                    EdgeAreaCache edgeAreaCache) {
         if (customModel == null)
             throw new IllegalStateException("CustomModel cannot be null");
-        CustomWeighting.Parameters parameters = createWeightingParameters(customModel, lookup);
+        CustomWeighting.Parameters parameters = createWeightingParameters(customModel, lookup, edgeAreaCache);
         return new CustomWeighting2(turnCostProvider, parameters);
     }
 
+    public static CustomWeighting.Parameters createWeightingParameters(CustomModel customModel, EncodedValueLookup lookup) {
+        return createWeightingParameters(customModel, lookup, null);
+    }
+
     /**
      * This method compiles a new subclass of CustomWeightingHelper composed of the provided CustomModel caches this
      * and returns an instance.
      */
-    public static CustomWeighting.Parameters createWeightingParameters(CustomModel customModel, EncodedValueLookup lookup) {
+    public static CustomWeighting.Parameters createWeightingParameters(CustomModel customModel, EncodedValueLookup lookup,
+                                                                       EdgeAreaCache edgeAreaCache) {
         String key = customModel.toString();
         Class<?> clazz = customModel.isInternal() ? INTERNAL_CACHE.get(key) : null;
         if (CACHE_SIZE > 0 && clazz == null)
@@ -113,6 +131,7 @@ public class CustomModelParser {
         try {
             // The class does not need to be thread-safe as we create an instance per request
             CustomWeightingHelper prio = (CustomWeightingHelper) clazz.getDeclaredConstructor().newInstance();
+            prio.edgeAreaCache = edgeAreaCache;
             prio.init(customModel, lookup, CustomModel.getAreasAsMap(customModel.getAreas()));
             return new CustomWeighting.Parameters(
                     prio::getSpeed, prio::calcMaxSpeed,
@@ -350,6 +369,7 @@ public class CustomModelParser {
                     importSourceCode.append("import " + Polygonal.class.getName() + ";\n");
                     importSourceCode.append("import " + JsonFeature.class.getName() + ";\n");
                     importSourceCode.append("import " + Polygon.class.getName() + ";\n");
+                    importSourceCode.append("import " + CustomWeightingHelper.Area.class.getCanonicalName() + ";\n");
                     includedAreaImports = true;
                 }
 
@@ -365,9 +385,9 @@ public class CustomModelParser {
                     throw new IllegalArgumentException("Currently only type=Polygon is supported for areas but was " + feature.getGeometry().getGeometryType());
                 if (feature.getBBox() != null)
                     throw new IllegalArgumentException("Bounding box of area " + id + " must be empty");
-                classSourceCode.append("protected " + Polygon.class.getSimpleName() + " " + arg + ";\n");
+                classSourceCode.append("protected " + CustomWeightingHelper.Area.class.getSimpleName() + " " + arg + ";\n");
                 initSourceCode.append("JsonFeature feature_" + id + " = (JsonFeature) areas.get(\"" + id + "\");\n");
-                initSourceCode.append("this." + arg + " = new Polygon(new PreparedPolygon((Polygonal) feature_" + id + ".getGeometry()));\n");
+                initSourceCode.append("this." + arg + " = createArea(new Polygon(new PreparedPolygon((Polygonal) feature_" + id + ".getGeometry())));\n");
             } else {
                 if (!arg.startsWith(IN_AREA_PREFIX))
                     throw new IllegalArgumentException("Variable not supported: " + arg);
@@ -37,6 +37,8 @@ public class CustomWeightingHelper {
 
     protected EncodedValueLookup lookup;
     protected CustomModel customModel;
+    // set before init is called, can be null
+    EdgeAreaCache edgeAreaCache;
 
     protected CustomWeightingHelper() {
     }
@@ -91,6 +93,17 @@ public class CustomWeightingHelper {
         return minMaxPriority.max;
     }
 
+    protected final Area createArea(Polygon polygon) {
+        return new Area(polygon, edgeAreaCache == null ? null : edgeAreaCache.getEdges(polygon));
+    }
+
+    public static boolean in(Area area, EdgeIteratorState edge) {
+        int edgeId = edge.getEdge();
+        if (area.edges != null && area.edges.covers(edgeId))
+            return area.edges.contains(edgeId);
+        return in(area.polygon, edge);
+    }
+
     public static boolean in(Polygon p, EdgeIteratorState edge) {
         BBox edgeBBox = GHUtility.createBBox(edge);
         BBox polyBBOX = p.getBounds();
@@ -100,4 +113,17 @@ public class CustomWeightingHelper {
             return true;
         return p.intersects(edge.fetchWayGeometry(FetchMode.ALL).makeImmutable()); // TODO PERF: cache bbox and edge wayGeometry for multiple area
     }
+
+    /**
+     * An area of a custom model together with the precalculated edges that intersect it, if available.
+     */
+    public static final class Area {
+        private final Polygon polygon;
+        private final EdgeAreaCache.EdgeSet edges;
+
+        public Area(Polygon polygon, EdgeAreaCache.EdgeSet edges) {
+            this.polygon = polygon;
+            this.edges = edges;
+        }
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting.custom;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.shapes.Polygon;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Caches which edges of a graph intersect the areas used in the in_area conditions of custom models. This way such a
+ * condition is a lookup instead of a geometric intersection test for every edge evaluation. The entries are keyed
+ * by the geometry of the area, so they are shared by all requests and custom models that use the same area.
+ */
+public class EdgeAreaCache {
+    private final BaseGraph graph;
+    private final Supplier<LocationIndex> locationIndex;
+    private final long maxBytes;
+    // Use accessOrder==true to remove oldest accessed entry, not oldest inserted.
+    private final LinkedHashMap<String, EdgeSet> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * @param locationIndex is used to find the edges close to an area. It can return null if the location index is not
+     *                      available yet and in this case all edges are checked.
+     * @param maxBytes      the least recently used areas are removed when the estimated memory of all cached areas
+     *                      exceeds this
+     */
+    public EdgeAreaCache(BaseGraph graph, Supplier<LocationIndex> locationIndex, long maxBytes) {
+        this.graph = graph;
+        this.locationIndex = locationIndex;
+        this.maxBytes = maxBytes;
+    }
+
+    public EdgeSet getEdges(Polygon polygon) {
+        String key = polygon.prepPolygon.getGeometry().toText();
+        EdgeSet edgeSet;
+        synchronized (cache) {
+            edgeSet = cache.get(key);
+        }
+        if (edgeSet == null || edgeSet.edgeCount != graph.getEdges()) {
+            // we do not care for the race condition where two threads calculate the same area
+            edgeSet = calcEdges(polygon);
+            put(key, edgeSet);
+        }
+        return edgeSet;
+    }
+
+    private void put(String key, EdgeSet edgeSet) {
+        synchronized (cache) {
+            EdgeSet previous = cache.put(key, edgeSet);
+            bytes += getBytes(key, edgeSet) - (previous == null ? 0 : getBytes(key, previous));
+            Iterator<Map.Entry<String, EdgeSet>> iter = cache.entrySet().iterator();
+            while (bytes > maxBytes && iter.hasNext()) {
+                Map.Entry<String, EdgeSet> eldest = iter.next();
+                bytes -= getBytes(eldest.getKey(), eldest.getValue());
+                iter.remove();
+            }
+        }
+    }
+
+    private static long getBytes(String key, EdgeSet edgeSet) {
+        return 2L * key.length() + edgeSet.getBytes();
+    }
+
+    private EdgeSet calcEdges(Polygon polygon) {
+        IntArrayList edges = new IntArrayList();
+        LocationIndex index = locationIndex.get();
+        if (index == null) {
+            AllEdgesIterator iter = graph.getAllEdges();
+            while (iter.next()) {
+                if (CustomWeightingHelper.in(polygon, iter))
+                    edges.add(iter.getEdge());
+            }
+        } else {
+            index.query(polygon.getBounds(), edgeId -> {
+                EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+                if (CustomWeightingHelper.in(polygon, edge))
+                    edges.add(edgeId);
+            });
+        }
+        return new EdgeSet(graph.getEdges(), edges);
+    }
+
+    /**
+     * The edges of the graph that intersect an area. They are stored as sorted edge IDs, or as bits for the range of
+     * edge IDs between the smallest and the largest edge in the area if this needs less memory, i.e. if the edges
+     * of the area are dense in this range.
+     */
+    public static final class EdgeSet {
+        private final int edgeCount;
+        private final int[] sortedEdges;
+        private final int firstEdge;
+        private final long[] bits;
+
+        EdgeSet(int edgeCount, IntArrayList edgeList) {
+            this.edgeCount = edgeCount;
+            int[] edges = edgeList.toArray();
+            Arrays.sort(edges);
+            // the location index can report an edge more than once
+            int count = 0;
+            for (int edge : edges) {
+                if (count == 0 || edge != edges[count - 1])
+                    edges[count++] = edge;
+            }
+            long words = count == 0 ? 0 : ((long) (edges[count - 1] - edges[0]) >>> 6) + 1;
+            // 8 bytes per word vs. 4 bytes per edge
+            if (words * 2 < count) {
+                sortedEdges = null;
+                firstEdge = edges[0];
+                bits = new long[(int) words];
+                for (int i = 0; i < count; i++) {
+                    int index = edges[i] - firstEdge;
+                    bits[index >>> 6] |= 1L << index;
+                }
+            } else {
+                sortedEdges = Arrays.copyOf(edges, count);
+                firstEdge = 0;
+                bits = null;
+            }
+        }
+
+        /**
+         * @return true if this set knows about the given edge, which is not the case for the virtual edges of a
+         * query graph
+         */
+        public boolean covers(int edge) {
+            return edge < edgeCount;
+        }
+
+        public boolean contains(int edge) {
+            if (bits == null)
+                return Arrays.binarySearch(sortedEdges, edge) >= 0;
+            int index = edge - firstEdge;
+            return index >= 0 && (index >>> 6) < bits.length && (bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        /**
+         * @return the memory used for the edges in bytes, not counting the object headers
+         */
+        long getBytes() {
+            return bits == null ? 4L * sortedEdges.length : 8L * bits.length;
+        }
+    }
+}
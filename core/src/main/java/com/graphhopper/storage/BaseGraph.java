@@ -62,8 +62,11 @@ public class BaseGraph implements Graph, Closeable {
     private long minGeoRef;
     private long maxGeoRef;
     private final int eleBytesPerCoord;
+    // the format of the way geometry is stored in the header and the stored format wins when loading a graph
+    private boolean compactWayGeometry;
 
-    public BaseGraph(Directory dir, boolean withElevation, boolean withTurnCosts, int segmentSize, int bytesForFlags) {
+    public BaseGraph(Directory dir, boolean withElevation, boolean withTurnCosts, int segmentSize, int bytesForFlags,
+                     boolean compactWayGeometry) {
         this.dir = dir;
         this.bitUtil = BitUtil.LITTLE;
         this.wayGeometry = dir.create("geometry", segmentSize);
@@ -73,6 +76,7 @@ public class BaseGraph implements Graph, Closeable {
         this.segmentSize = segmentSize;
         this.turnCostStorage = withTurnCosts ? new TurnCostStorage(this, dir.create("turn_costs", dir.getDefaultType("turn_costs", true), segmentSize)) : null;
         this.eleBytesPerCoord = (nodeAccess.getDimension() == 3 ? 3 : 0);
+        this.compactWayGeometry = compactWayGeometry;
     }
 
     BaseGraphNodesAndEdges getStore() {
@@ -124,6 +128,7 @@ public class BaseGraph implements Graph, Closeable {
                 wayGeometry.getHeader(12),
                 wayGeometry.getHeader(16)
         );
+        compactWayGeometry = wayGeometry.getHeader(20) == 1;
     }
 
     private void setWayGeometryHeader() {
@@ -132,6 +137,7 @@ public class BaseGraph implements Graph, Closeable {
         wayGeometry.setHeader(8, bitUtil.getIntHigh(minGeoRef));
         wayGeometry.setHeader(12, bitUtil.getIntLow(maxGeoRef));
         wayGeometry.setHeader(16, bitUtil.getIntHigh(maxGeoRef));
+        wayGeometry.setHeader(20, compactWayGeometry ? 1 : 0);
     }
 
     private void setInitialized() {
@@ -165,6 +171,9 @@ public class BaseGraph implements Graph, Closeable {
     public synchronized void freeze() {
         if (isFrozen())
             throw new IllegalStateException("base graph already frozen");
+        if (supportsTurnCosts())
+            // turn costs are looked up very often during edge-based routing, so we store them such that we can use a binary search
+            turnCostStorage.sortNodes();
         store.setFrozen(true);
     }
 
@@ -245,6 +254,13 @@ public class BaseGraph implements Graph, Closeable {
         return maxGeoRef;
     }
 
+    /**
+     * @return true if the pillar nodes are stored in the compact format, see {@link Builder#setCompactWayGeometry}
+     */
+    public boolean isCompactWayGeometry() {
+        return compactWayGeometry;
+    }
+
     public boolean loadExisting() {
         checkNotInitialized();
 
@@ -466,14 +482,18 @@ public class BaseGraph implements Graph, Closeable {
 
             int len = pillarNodes.size();
             if (existingGeoRef > 0) {
-                final int count = getPillarCount(existingGeoRef);
-                if (len <= count) {
+                final int count = compactWayGeometry ? (int) readVarInt(existingGeoRef) : getPillarCount(existingGeoRef);
+                if (len > count)
+                    throw new IllegalStateException("This edge already has a way geometry so it cannot be changed to a bigger geometry, pointer=" + edgePointer);
+                if (!compactWayGeometry) {
                     setWayGeometryAtGeoRef(pillarNodes, edgePointer, reverse, existingGeoRef);
                     return;
-                } else {
-                    throw new IllegalStateException("This edge already has a way geometry so it cannot be changed to a bigger geometry, pointer=" + edgePointer);
                 }
             }
+            if (compactWayGeometry) {
+                setCompactWayGeometry(pillarNodes, edgePointer, reverse, existingGeoRef);
+                return;
+            }
             long nextGeoRef = nextGeoRef(3 + len * (8 + eleBytesPerCoord));
             setWayGeometryAtGeoRef(pillarNodes, edgePointer, reverse, nextGeoRef);
         } else {
@@ -520,6 +540,142 @@ public class BaseGraph implements Graph, Closeable {
         return bytes;
     }
 
+    private void setCompactWayGeometry(PointList pillarNodes, long edgePointer, boolean reverse, long existingGeoRef) {
+        int nodeA = store.getNodeA(edgePointer);
+        byte[] bytes = createCompactWayGeometryBytes(pillarNodes, nodeA, reverse);
+        if (existingGeoRef > 0) {
+            long countAndLength = readVarInt(existingGeoRef);
+            long payloadAndLength = readVarInt(existingGeoRef + (countAndLength >>> 32));
+            if (bytes.length <= (countAndLength >>> 32) + (payloadAndLength >>> 32) + (int) payloadAndLength) {
+                wayGeometry.setBytes(existingGeoRef, bytes, bytes.length);
+                return;
+            }
+        }
+        long geoRef = nextGeoRef(bytes.length);
+        wayGeometry.ensureCapacity(geoRef + bytes.length);
+        wayGeometry.setBytes(geoRef, bytes, bytes.length);
+        if (existingGeoRef > 0) {
+            // Unlike in the fixed-width format a geometry with the same number of points might need more space, so we
+            // have to move it. The copies of this edge share the geo ref (see copyEdge) and need to be moved as well.
+            EdgeIterator iter = createEdgeExplorer().setBaseNode(nodeA);
+            while (iter.next()) {
+                long copyPointer = ((EdgeIteratorStateImpl) iter).edgePointer;
+                if (store.getGeoRef(copyPointer) == existingGeoRef)
+                    store.setGeoRef(copyPointer, geoRef);
+            }
+        } else {
+            store.setGeoRef(edgePointer, geoRef);
+        }
+    }
+
+    /**
+     * The compact format is: number of points | number of bytes of the points | points. For every point we store the
+     * differences of its latitude and longitude (and elevation) to the previous point as zig-zag encoded varints. The
+     * first point is relative to nodeA of the edge. The elevation of the first point is stored as absolute value,
+     * because the elevation of the tower nodes might still change after the geometry was stored.
+     */
+    private byte[] createCompactWayGeometryBytes(PointList pillarNodes, int nodeA, boolean reverse) {
+        int len = pillarNodes.size();
+        boolean is3D = nodeAccess.is3D();
+        // 5 bytes is the maximum length of a varint
+        byte[] bytes = new byte[10 + len * (is3D ? 15 : 10)];
+        int index = 10;
+        int prevLat = Helper.degreeToInt(nodeAccess.getLat(nodeA));
+        int prevLon = Helper.degreeToInt(nodeAccess.getLon(nodeA));
+        int prevEle = 0;
+        for (int j = 0; j < len; j++) {
+            int i = reverse ? len - 1 - j : j;
+            int lat = Helper.degreeToInt(pillarNodes.getLat(i));
+            int lon = Helper.degreeToInt(pillarNodes.getLon(i));
+            index = writeVarInt(bytes, index, zigZag(lat - prevLat));
+            index = writeVarInt(bytes, index, zigZag(lon - prevLon));
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D) {
+                // same value range as in the fixed-width format
+                int ele = Helper.eleToUInt(pillarNodes.getEle(i)) & 0xFF_FFFF;
+                index = writeVarInt(bytes, index, zigZag(ele - prevEle));
+                prevEle = ele;
+            }
+        }
+        int payloadLength = index - 10;
+        int headerLength = writeVarInt(bytes, 0, len);
+        headerLength = writeVarInt(bytes, headerLength, payloadLength);
+        byte[] result = new byte[headerLength + payloadLength];
+        System.arraycopy(bytes, 0, result, 0, headerLength);
+        System.arraycopy(bytes, 10, result, headerLength, payloadLength);
+        return result;
+    }
+
+    private void addCompactPillarNodes(PointList pillarNodes, byte[] bytes, int count, int nodeA) {
+        int lat = Helper.degreeToInt(nodeAccess.getLat(nodeA));
+        int lon = Helper.degreeToInt(nodeAccess.getLon(nodeA));
+        int ele = 0;
+        boolean is3D = nodeAccess.is3D();
+        int index = 0;
+        for (int i = 0; i < count; i++) {
+            long valueAndIndex = readVarInt(bytes, index);
+            lat += unZigZag((int) valueAndIndex);
+            valueAndIndex = readVarInt(bytes, (int) (valueAndIndex >>> 32));
+            lon += unZigZag((int) valueAndIndex);
+            index = (int) (valueAndIndex >>> 32);
+            if (is3D) {
+                valueAndIndex = readVarInt(bytes, index);
+                ele += unZigZag((int) valueAndIndex);
+                index = (int) (valueAndIndex >>> 32);
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon), Helper.uIntToEle(ele));
+            } else {
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon));
+            }
+        }
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return the index after the written varint
+     */
+    private static int writeVarInt(byte[] bytes, int index, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[index++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[index++] = (byte) value;
+        return index;
+    }
+
+    /**
+     * @return the value of the varint in the lower 32 bits and the index after it in the upper 32 bits
+     */
+    private static long readVarInt(byte[] bytes, int index) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[index++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return ((long) index << 32) | (value & MAX_UNSIGNED_INT);
+        }
+    }
+
+    /**
+     * @return the value of the varint in the lower 32 bits and its number of bytes in the upper 32 bits
+     */
+    private long readVarInt(long pointer) {
+        int value = 0;
+        for (int i = 0; ; i++) {
+            byte b = wayGeometry.getByte(pointer + i);
+            value |= (b & 0x7F) << (7 * i);
+            if (b >= 0)
+                return ((long) (i + 1) << 32) | (value & MAX_UNSIGNED_INT);
+        }
+    }
+
     private int getPillarCount(long geoRef) {
         return (wayGeometry.getByte(geoRef + 2) & 0xFF << 16) | wayGeometry.getShort(geoRef);
     }
@@ -536,9 +692,18 @@ public class BaseGraph implements Graph, Closeable {
         int count = 0;
         byte[] bytes = null;
         if (geoRef > 0) {
-            count = getPillarCount(geoRef);
-            geoRef += 3L;
-            bytes = new byte[count * (8 + eleBytesPerCoord)];
+            if (compactWayGeometry) {
+                long countAndLength = readVarInt(geoRef);
+                count = (int) countAndLength;
+                geoRef += countAndLength >>> 32;
+                long payloadAndLength = readVarInt(geoRef);
+                geoRef += payloadAndLength >>> 32;
+                bytes = new byte[(int) payloadAndLength];
+            } else {
+                count = getPillarCount(geoRef);
+                geoRef += 3L;
+                bytes = new byte[count * (8 + eleBytesPerCoord)];
+            }
             wayGeometry.getBytes(geoRef, bytes, bytes.length);
         } else if (mode == FetchMode.PILLAR_ONLY)
             return PointList.EMPTY;
@@ -550,17 +715,22 @@ public class BaseGraph implements Graph, Closeable {
         } else if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
             pillarNodes.add(nodeAccess, baseNode);
 
-        int index = 0;
-        for (int i = 0; i < count; i++) {
-            double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            if (nodeAccess.is3D()) {
-                pillarNodes.add(lat, lon, Helper.uIntToEle(bitUtil.toUInt3(bytes, index)));
-                index += 3;
-            } else {
-                pillarNodes.add(lat, lon);
+        if (compactWayGeometry) {
+            // the geometry is stored relative to nodeA, which is the adjacent node if we iterate in reverse direction
+            addCompactPillarNodes(pillarNodes, bytes, count, reverse ? adjNode : baseNode);
+        } else {
+            int index = 0;
+            for (int i = 0; i < count; i++) {
+                double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
+                index += 4;
+                double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
+                index += 4;
+                if (nodeAccess.is3D()) {
+                    pillarNodes.add(lat, lon, Helper.uIntToEle(bitUtil.toUInt3(bytes, index)));
+                    index += 3;
+                } else {
+                    pillarNodes.add(lat, lon);
+                }
             }
         }
 
@@ -615,6 +785,7 @@ public class BaseGraph implements Graph, Closeable {
         private boolean withTurnCosts = false;
         private long bytes = 100;
         private int segmentSize = -1;
+        private boolean compactWayGeometry = false;
 
         public Builder(EncodingManager em) {
             this(em.getBytesForFlags());
@@ -653,8 +824,19 @@ public class BaseGraph implements Graph, Closeable {
             return this;
         }
 
+        /**
+         * Stores the pillar nodes as zig-zag encoded varints of the differences to the previous point, starting at
+         * the tower node the edge is stored from. Typically, this takes about half of the memory of the default
+         * format, which stores every coordinate as a fixed-width integer, but decoding is a bit slower. The format of
+         * an existing graph is read from its files and this setting is ignored when loading it.
+         */
+        public Builder setCompactWayGeometry(boolean compactWayGeometry) {
+            this.compactWayGeometry = compactWayGeometry;
+            return this;
+        }
+
         public BaseGraph build() {
-            return new BaseGraph(directory, withElevation, withTurnCosts, segmentSize, bytesForFlags);
+            return new BaseGraph(directory, withElevation, withTurnCosts, segmentSize, bytesForFlags, compactWayGeometry);
         }
 
         public BaseGraph create() {
@@ -38,17 +38,23 @@ import java.util.function.IntUnaryOperator;
  */
 public class TurnCostStorage {
     static final int NO_TURN_ENTRY = -1;
-    // we store each turn cost entry in the format |from_edge|to_edge|flags|next|. each entry has 4 bytes -> 16 bytes total
+    // we store each turn cost entry in the format |from_edge|to_edge|flags|next|. each entry has 4 bytes -> 16 bytes total.
+    // while entries are being added, next is the index of the next entry of the same via node (or NO_TURN_ENTRY), i.e.
+    // the entries of each node form a linked list. after sorting, the entries of each node are stored in one block ordered
+    // by (from_edge, to_edge) and next is the (exclusive) end index of this block, which allows a binary search.
     private static final int TC_FROM = 0;
     private static final int TC_TO = 4;
     private static final int TC_FLAGS = 8;
     private static final int TC_NEXT = 12;
     private static final int BYTES_PER_ENTRY = 16;
+    // for blocks up to this size a linear scan over the consecutive entries is faster than a binary search
+    private static final int LINEAR_SCAN_THRESHOLD = 8;
 
     private final BaseGraph baseGraph;
     private final DataAccess turnCosts;
     private final EdgeIntAccess edgeIntAccess = createEdgeIntAccess();
     private int turnCostsCount;
+    private boolean sorted;
 
     public TurnCostStorage(BaseGraph baseGraph, DataAccess turnCosts) {
         this.baseGraph = baseGraph;
@@ -64,6 +70,7 @@ public class TurnCostStorage {
         turnCosts.setHeader(0, Constants.VERSION_TURN_COSTS);
         turnCosts.setHeader(4, BYTES_PER_ENTRY);
         turnCosts.setHeader(2 * 4, turnCostsCount);
+        turnCosts.setHeader(3 * 4, sorted ? 1 : 0);
         turnCosts.flush();
     }
 
@@ -84,6 +91,7 @@ public class TurnCostStorage {
             throw new IllegalStateException("Number of bytes per turn cost entry does not match the current configuration: " + turnCosts.getHeader(0) + " vs. " + BYTES_PER_ENTRY);
         }
         turnCostsCount = turnCosts.getHeader(8);
+        sorted = turnCosts.getHeader(12) == 1;
         return true;
     }
 
@@ -107,6 +115,9 @@ public class TurnCostStorage {
     private int findOrCreateTurnCostEntry(int fromEdge, int viaNode, int toEdge) {
         int index = findIndex(fromEdge, viaNode, toEdge);
         if (index < 0) {
+            if (sorted)
+                // new entries are simply prepended to the list of their node, so we cannot keep the sorted layout
+                toLinkedLayout();
             // create a new entry
             index = turnCostsCount;
             ensureTurnCostIndex(index);
@@ -159,8 +170,12 @@ public class TurnCostStorage {
         if (viaNode < 0)
             throw new IllegalArgumentException("via node cannot be negative");
 
-        final int maxEntries = 1000;
         int index = baseGraph.getNodeAccess().getTurnCostIndex(viaNode);
+        if (sorted) {
+            if (index == NO_TURN_ENTRY) return -1;
+            return findIndexInBlock(fromEdge, toEdge, index, turnCosts.getInt(toPointer(index) + TC_NEXT));
+        }
+        final int maxEntries = 1000;
         for (int i = 0; i < maxEntries; ++i) {
             if (index == NO_TURN_ENTRY) return -1;
             long pointer = toPointer(index);
@@ -171,7 +186,63 @@ public class TurnCostStorage {
         throw new IllegalStateException("Turn cost list for node: " + viaNode + " is longer than expected, max: " + maxEntries);
     }
 
+    private int findIndexInBlock(int fromEdge, int toEdge, int start, int end) {
+        long key = toKey(fromEdge, toEdge);
+        int low = start;
+        int high = end - 1;
+        while (high - low >= LINEAR_SCAN_THRESHOLD) {
+            int mid = (low + high) >>> 1;
+            long midKey = getKey(mid);
+            if (midKey < key)
+                low = mid + 1;
+            else if (midKey > key)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        for (int index = low; index <= high; index++) {
+            long currKey = getKey(index);
+            if (currKey == key)
+                return index;
+            if (currKey > key)
+                break;
+        }
+        return -1;
+    }
+
+    private long getKey(int index) {
+        long pointer = toPointer(index);
+        return toKey(turnCosts.getInt(pointer + TC_FROM), turnCosts.getInt(pointer + TC_TO));
+    }
+
+    private static long toKey(int fromEdge, int toEdge) {
+        // mask the lower half, otherwise the sign extension of toEdge would overwrite fromEdge
+        return ((long) fromEdge << 32) | (toEdge & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the index of the entry following the given one for the same via node or NO_TURN_ENTRY
+     */
+    private int nextIndex(int index) {
+        int next = turnCosts.getInt(toPointer(index) + TC_NEXT);
+        if (!sorted)
+            return next;
+        return index + 1 < next ? index + 1 : NO_TURN_ENTRY;
+    }
+
+    /**
+     * Converts the sorted blocks back to linked lists. The order of the entries does not change.
+     */
+    private void toLinkedLayout() {
+        for (int i = 0; i < turnCostsCount; i++)
+            turnCosts.setInt(toPointer(i) + TC_NEXT, nextIndex(i));
+        sorted = false;
+    }
+
     public void sortEdges(IntUnaryOperator getNewEdgeForOldEdge) {
+        if (sorted)
+            // the order within the blocks would no longer be valid for the new edge IDs
+            toLinkedLayout();
         for (int i = 0; i < turnCostsCount; i++) {
             long pointer = toPointer(i);
             turnCosts.setInt(pointer + TC_FROM, getNewEdgeForOldEdge.applyAsInt(turnCosts.getInt(pointer + TC_FROM)));
@@ -190,9 +261,10 @@ public class TurnCostStorage {
     public int getTurnCostsCount(int node) {
         int index = baseGraph.getNodeAccess().getTurnCostIndex(node);
         int count = 0;
+        if (sorted)
+            return index == NO_TURN_ENTRY ? 0 : turnCosts.getInt(toPointer(index) + TC_NEXT) - index;
         while (index != NO_TURN_ENTRY) {
-            long pointer = toPointer(index);
-            index = turnCosts.getInt(pointer + TC_NEXT);
+            index = nextIndex(index);
             count++;
         }
         return count;
@@ -219,42 +291,56 @@ public class TurnCostStorage {
         return new Itr();
     }
 
+    /**
+     * Rearranges the entries such that the entries of each via node are stored in one consecutive block, the blocks
+     * are ordered by node and the entries of each block by (fromEdge, toEdge). This makes the entries of a node
+     * searchable with a binary search and improves the memory locality when iterating the nodes in order. Adding a new
+     * entry afterwards is still possible, but falls back to the slower linked list layout.
+     */
     public void sortNodes() {
-        IntArrayList tcFroms = new IntArrayList();
-        IntArrayList tcTos = new IntArrayList();
-        IntArrayList tcFlags = new IntArrayList();
-        IntArrayList tcNexts = new IntArrayList();
+        int[] tcFroms = new int[turnCostsCount];
+        int[] tcTos = new int[turnCostsCount];
+        int[] tcFlags = new int[turnCostsCount];
+        int[] tcNexts = new int[turnCostsCount];
         for (int i = 0; i < turnCostsCount; i++) {
             long pointer = toPointer(i);
-            tcFroms.add(turnCosts.getInt(pointer + TC_FROM));
-            tcTos.add(turnCosts.getInt(pointer + TC_TO));
-            tcFlags.add(turnCosts.getInt(pointer + TC_FLAGS));
-            tcNexts.add(turnCosts.getInt(pointer + TC_NEXT));
+            tcFroms[i] = turnCosts.getInt(pointer + TC_FROM);
+            tcTos[i] = turnCosts.getInt(pointer + TC_TO);
+            tcFlags[i] = turnCosts.getInt(pointer + TC_FLAGS);
+            tcNexts[i] = nextIndex(i);
         }
-        long turnCostsCountBefore = turnCostsCount;
-        turnCostsCount = 0;
+        int newTurnCostsCount = 0;
+        IntArrayList nodeEntries = new IntArrayList();
         for (int node = 0; node < baseGraph.getNodes(); node++) {
-            boolean firstForNode = true;
-            int turnCostIndex = baseGraph.getNodeAccess().getTurnCostIndex(node);
-            while (turnCostIndex != NO_TURN_ENTRY) {
-                if (firstForNode) {
-                    baseGraph.getNodeAccess().setTurnCostIndex(node, turnCostsCount);
-                } else {
-                    long prevPointer = toPointer(turnCostsCount - 1);
-                    turnCosts.setInt(prevPointer + TC_NEXT, turnCostsCount);
-                }
-                long pointer = toPointer(turnCostsCount);
-                turnCosts.setInt(pointer + TC_FROM, tcFroms.get(turnCostIndex));
-                turnCosts.setInt(pointer + TC_TO, tcTos.get(turnCostIndex));
-                turnCosts.setInt(pointer + TC_FLAGS, tcFlags.get(turnCostIndex));
-                turnCosts.setInt(pointer + TC_NEXT, NO_TURN_ENTRY);
-                turnCostsCount++;
-                firstForNode = false;
-                turnCostIndex = tcNexts.get(turnCostIndex);
+            nodeEntries.elementsCount = 0;
+            for (int index = baseGraph.getNodeAccess().getTurnCostIndex(node); index != NO_TURN_ENTRY; index = tcNexts[index])
+                nodeEntries.add(index);
+            if (nodeEntries.isEmpty())
+                continue;
+            // the blocks are small so a simple insertion sort is sufficient
+            for (int i = 1; i < nodeEntries.size(); i++) {
+                int entry = nodeEntries.get(i);
+                long key = toKey(tcFroms[entry], tcTos[entry]);
+                int j = i - 1;
+                for (; j >= 0 && toKey(tcFroms[nodeEntries.get(j)], tcTos[nodeEntries.get(j)]) > key; j--)
+                    nodeEntries.set(j + 1, nodeEntries.get(j));
+                nodeEntries.set(j + 1, entry);
+            }
+            int end = newTurnCostsCount + nodeEntries.size();
+            baseGraph.getNodeAccess().setTurnCostIndex(node, newTurnCostsCount);
+            for (int i = 0; i < nodeEntries.size(); i++) {
+                int entry = nodeEntries.get(i);
+                long pointer = toPointer(newTurnCostsCount);
+                turnCosts.setInt(pointer + TC_FROM, tcFroms[entry]);
+                turnCosts.setInt(pointer + TC_TO, tcTos[entry]);
+                turnCosts.setInt(pointer + TC_FLAGS, tcFlags[entry]);
+                turnCosts.setInt(pointer + TC_NEXT, end);
+                newTurnCostsCount++;
             }
         }
-        if (turnCostsCountBefore != turnCostsCount)
-            throw new IllegalStateException("Turn cost count changed unexpectedly: " + turnCostsCountBefore + " -> " + turnCostsCount);
+        if (newTurnCostsCount != turnCostsCount)
+            throw new IllegalStateException("Turn cost count changed unexpectedly: " + turnCostsCount + " -> " + newTurnCostsCount);
+        sorted = true;
     }
 
     public interface Iterator {
@@ -337,7 +423,7 @@ public class TurnCostStorage {
             if (turnCostIndex == NO_TURN_ENTRY) {
                 return false;
             }
-            turnCostIndex = turnCosts.getInt(turnCostPtr() + TC_NEXT);
+            turnCostIndex = nextIndex(turnCostIndex);
             if (turnCostIndex == NO_TURN_ENTRY) {
                 return false;
             }
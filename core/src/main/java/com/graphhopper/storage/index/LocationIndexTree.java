@@ -17,7 +17,9 @@
  */
 package com.graphhopper.storage.index;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
+import com.graphhopper.geohash.SpatialKeyAlgo;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.Directory;
@@ -25,10 +27,13 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
 
@@ -279,33 +284,120 @@ public class LocationIndexTree implements LocationIndex {
         for (int iteration = 0; iteration < maxRegionSearch; iteration++) {
             lineIntIndex.findEdgeIdsInNeighborhood(queryLat, queryLon, iteration, edgeId -> {
                 EdgeIteratorState edgeIteratorState = graph.getEdgeIteratorStateForKey(edgeId * 2);
-                if (seenEdges.add(edgeId) && edgeFilter.accept(edgeIteratorState)) { // TODO: or reverse?
-                    traverseEdge(queryLat, queryLon, edgeIteratorState, (node, normedDist, wayIndex, pos) -> {
-                        if (normedDist < closestMatch.getQueryDistance()) {
-                            closestMatch.setQueryDistance(normedDist);
-                            closestMatch.setClosestNode(node);
-                            closestMatch.setClosestEdge(edgeIteratorState.detach(false));
-                            closestMatch.setWayIndex(wayIndex);
-                            closestMatch.setSnappedPosition(pos);
-                        }
-                    });
-                }
+                if (seenEdges.add(edgeId) && edgeFilter.accept(edgeIteratorState)) // TODO: or reverse?
+                    checkEdge(closestMatch, edgeIteratorState);
             });
-            if (closestMatch.isValid()) {
-                // Check if we can stop...
-                double rMin = calculateRMin(queryLat, queryLon, iteration);
-                double minDistance = DIST_PLANE.calcDenormalizedDist(closestMatch.getQueryDistance());
-                if (minDistance < rMin) {
-                    break; // We can (approximately?) guarantee that no closer edges are anywhere else
+            if (canStop(closestMatch, iteration))
+                break;
+        }
+
+        finishSnap(closestMatch);
+        return closestMatch;
+    }
+
+    /**
+     * Snaps all points like {@link #findClosest(double, double, EdgeFilter)}, but sorts them spatially first. Points
+     * that fall into the same tile have the same neighbourhood, so its edges are read from the index and checked
+     * against the edge filter only once for all of these points. This is useful if many points are snapped at once
+     * like for a matrix request.
+     */
+    @Override
+    public List<Snap> findClosest(List<GHPoint> points, EdgeFilter edgeFilter) {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+
+        SpatialKeyAlgo keyAlgo = indexStructureInfo.getKeyAlgo();
+        int parts = indexStructureInfo.getParts();
+        int[] xs = new int[points.size()];
+        int[] ys = new int[points.size()];
+        long[] tileKeys = new long[points.size()];
+        Integer[] order = new Integer[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            xs[i] = keyAlgo.x(points.get(i).lon);
+            ys[i] = keyAlgo.y(points.get(i).lat);
+            // the z-order keeps nearby tiles close to each other, points outside the bounds go to the end
+            boolean inBounds = xs[i] >= 0 && ys[i] >= 0 && xs[i] < parts && ys[i] < parts;
+            tileKeys[i] = inBounds ? keyAlgo.encode(xs[i], ys[i]) : Long.MAX_VALUE;
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int res = Long.compare(tileKeys[a], tileKeys[b]);
+            if (res != 0) return res;
+            res = Integer.compare(ys[a], ys[b]);
+            return res != 0 ? res : Integer.compare(xs[a], xs[b]);
+        });
+
+        Snap[] snaps = new Snap[points.size()];
+        List<EdgeIteratorState> acceptedEdges = new ArrayList<>();
+        IntArrayList group = new IntArrayList();
+        for (int start = 0; start < order.length; ) {
+            int first = order[start];
+            group.clear();
+            int end = start;
+            while (end < order.length && xs[order[end]] == xs[first] && ys[order[end]] == ys[first])
+                group.add(order[end++]);
+            start = end;
+
+            for (int i = 0; i < group.size(); i++) {
+                GHPoint point = points.get(group.get(i));
+                snaps[group.get(i)] = new Snap(point.lat, point.lon);
+            }
+            GHPoint firstPoint = points.get(first);
+            IntHashSet seenEdges = new IntHashSet();
+            int remaining = group.size();
+            boolean[] done = new boolean[group.size()];
+            for (int iteration = 0; iteration < maxRegionSearch && remaining > 0; iteration++) {
+                acceptedEdges.clear();
+                lineIntIndex.findEdgeIdsInNeighborhood(firstPoint.lat, firstPoint.lon, iteration, edgeId -> {
+                    EdgeIteratorState edgeIteratorState = graph.getEdgeIteratorStateForKey(edgeId * 2);
+                    if (seenEdges.add(edgeId) && edgeFilter.accept(edgeIteratorState))
+                        acceptedEdges.add(edgeIteratorState);
+                });
+                for (int i = 0; i < group.size(); i++) {
+                    if (done[i])
+                        continue;
+                    Snap closestMatch = snaps[group.get(i)];
+                    for (EdgeIteratorState edge : acceptedEdges)
+                        checkEdge(closestMatch, edge);
+                    if (canStop(closestMatch, iteration)) {
+                        done[i] = true;
+                        remaining--;
+                    }
                 }
             }
+            for (int i = 0; i < group.size(); i++)
+                finishSnap(snaps[group.get(i)]);
         }
+        return new ArrayList<>(Arrays.asList(snaps));
+    }
 
+    private void checkEdge(Snap closestMatch, EdgeIteratorState edgeIteratorState) {
+        traverseEdge(closestMatch.getQueryPoint().lat, closestMatch.getQueryPoint().lon, edgeIteratorState, (node, normedDist, wayIndex, pos) -> {
+            if (normedDist < closestMatch.getQueryDistance()) {
+                closestMatch.setQueryDistance(normedDist);
+                closestMatch.setClosestNode(node);
+                closestMatch.setClosestEdge(edgeIteratorState.detach(false));
+                closestMatch.setWayIndex(wayIndex);
+                closestMatch.setSnappedPosition(pos);
+            }
+        });
+    }
+
+    private boolean canStop(Snap closestMatch, int iteration) {
+        if (!closestMatch.isValid())
+            return false;
+        double rMin = calculateRMin(closestMatch.getQueryPoint().lat, closestMatch.getQueryPoint().lon, iteration);
+        double minDistance = DIST_PLANE.calcDenormalizedDist(closestMatch.getQueryDistance());
+        // We can (approximately?) guarantee that no closer edges are anywhere else
+        return minDistance < rMin;
+    }
+
+    private void finishSnap(Snap closestMatch) {
         if (closestMatch.isValid()) {
+            GHPoint queryPoint = closestMatch.getQueryPoint();
             closestMatch.calcSnappedPoint(DIST_PLANE);
-            closestMatch.setQueryDistance(DIST_PLANE.calcDist(closestMatch.getSnappedPoint().lat, closestMatch.getSnappedPoint().lon, queryLat, queryLon));
+            closestMatch.setQueryDistance(DIST_PLANE.calcDist(closestMatch.getSnappedPoint().lat, closestMatch.getSnappedPoint().lon, queryPoint.lat, queryPoint.lon));
         }
-        return closestMatch;
     }
 
     @Override
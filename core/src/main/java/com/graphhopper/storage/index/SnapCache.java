@@ -0,0 +1,182 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.*;
+
+import static com.graphhopper.util.DistancePlaneProjection.DIST_PLANE;
+
+/**
+ * Caches the results of {@link LocationIndex#findClosest} for frequently requested locations like depots or hubs. The
+ * entries are keyed by the coordinate rounded to six decimal places and by a filter key that has to identify the edge
+ * filter, e.g. the profile and the snap preventions. Only the snapped edge, node and position are cached and the snapped
+ * point is calculated again for the exact query point.
+ * <p>
+ * A cache belongs to one location index and has to be replaced when the graph is reloaded. It is cleared automatically
+ * if the number of edges changes.
+ */
+public class SnapCache {
+    private static final double PRECISION = 1e6;
+    private static final CachedSnap NOT_FOUND = new CachedSnap(-1, Snap.INVALID_NODE, -1, null);
+    private final Graph graph;
+    private final LocationIndex locationIndex;
+    private final Map<Key, CachedSnap> cache;
+    private volatile int edgeCount;
+
+    public SnapCache(Graph graph, LocationIndex locationIndex, int cacheSize) {
+        this.graph = graph;
+        this.locationIndex = locationIndex;
+        this.edgeCount = graph.getEdges();
+        // Use accessOrder==true to remove oldest accessed entry, not oldest inserted.
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(cacheSize, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * @param filterKey must be the same for all edge filters that accept the same edges
+     */
+    public Snap findClosest(double lat, double lon, EdgeFilter edgeFilter, String filterKey) {
+        return findClosest(Collections.singletonList(new GHPoint(lat, lon)), edgeFilter, filterKey).get(0);
+    }
+
+    /**
+     * Same as {@link #findClosest(double, double, EdgeFilter, String)} for many points. The points that are not cached
+     * are snapped together using {@link LocationIndex#findClosest(List, EdgeFilter)}.
+     */
+    public List<Snap> findClosest(List<GHPoint> points, EdgeFilter edgeFilter, String filterKey) {
+        checkEdgeCount();
+        List<Snap> snaps = new ArrayList<>(points.size());
+        List<GHPoint> missingPoints = new ArrayList<>();
+        List<Integer> missingIndices = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            GHPoint point = points.get(i);
+            CachedSnap cached = cache.get(new Key(point.lat, point.lon, filterKey));
+            Snap snap = cached == null ? null : toSnap(cached, point);
+            if (snap == null) {
+                snaps.add(null);
+                missingPoints.add(point);
+                missingIndices.add(i);
+            } else {
+                snaps.add(snap);
+            }
+        }
+        if (missingPoints.isEmpty())
+            return snaps;
+
+        List<Snap> found = locationIndex.findClosest(missingPoints, edgeFilter);
+        for (int i = 0; i < found.size(); i++) {
+            Snap snap = found.get(i);
+            GHPoint point = missingPoints.get(i);
+            // we do not care for the race condition where two threads snap the same point
+            cache.put(new Key(point.lat, point.lon, filterKey), snap.isValid()
+                    ? new CachedSnap(snap.getClosestEdge().getEdgeKey(), snap.getClosestNode(), snap.getWayIndex(), snap.getSnappedPosition())
+                    : NOT_FOUND);
+            snaps.set(missingIndices.get(i), snap);
+        }
+        return snaps;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private void checkEdgeCount() {
+        int currentEdgeCount = graph.getEdges();
+        if (currentEdgeCount != edgeCount) {
+            cache.clear();
+            edgeCount = currentEdgeCount;
+        }
+    }
+
+    /**
+     * @return null if the cached snap cannot be used for this point
+     */
+    private Snap toSnap(CachedSnap cached, GHPoint point) {
+        Snap snap = new Snap(point.lat, point.lon);
+        if (cached.closestNode == Snap.INVALID_NODE)
+            return snap;
+        EdgeIteratorState edge = graph.getEdgeIteratorStateForKey(cached.edgeKey);
+        if (cached.position == Snap.Position.EDGE) {
+            // the point can differ slightly from the cached one and then it might not project onto the same segment
+            PointList points = edge.fetchWayGeometry(FetchMode.ALL);
+            if (!DIST_PLANE.validEdgeDistance(point.lat, point.lon, points.getLat(cached.wayIndex), points.getLon(cached.wayIndex),
+                    points.getLat(cached.wayIndex + 1), points.getLon(cached.wayIndex + 1)))
+                return null;
+        }
+        snap.setClosestEdge(edge);
+        snap.setClosestNode(cached.closestNode);
+        snap.setWayIndex(cached.wayIndex);
+        snap.setSnappedPosition(cached.position);
+        snap.calcSnappedPoint(DIST_PLANE);
+        snap.setQueryDistance(DIST_PLANE.calcDist(snap.getSnappedPoint().lat, snap.getSnappedPoint().lon, point.lat, point.lon));
+        return snap;
+    }
+
+    private static final class CachedSnap {
+        final int edgeKey;
+        final int closestNode;
+        final int wayIndex;
+        final Snap.Position position;
+
+        CachedSnap(int edgeKey, int closestNode, int wayIndex, Snap.Position position) {
+            this.edgeKey = edgeKey;
+            this.closestNode = closestNode;
+            this.wayIndex = wayIndex;
+            this.position = position;
+        }
+    }
+
+    private static final class Key {
+        final long lat;
+        final long lon;
+        final String filterKey;
+
+        Key(double lat, double lon, String filterKey) {
+            this.lat = Math.round(lat * PRECISION);
+            this.lon = Math.round(lon * PRECISION);
+            this.filterKey = filterKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return lat == key.lat && lon == key.lon && filterKey.equals(key.filterKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lat, lon, filterKey);
+        }
+    }
+}
@@ -56,6 +56,10 @@ public class PathMerger {
     private PathDetailsBuilderFactory pathBuilderFactory;
     private List<String> requestedPathDetails = Collections.emptyList();
     private double favoredHeading = Double.NaN;
+    private long instructionsNanos;
+    private long pathDetailsNanos;
+    private int instructionsCalculations;
+    private int pathDetailsCalculations;
 
     public PathMerger(Graph graph, Weighting weighting) {
         this.graph = graph;
@@ -111,7 +115,10 @@ public class PathMerger {
             fullDistance += path.getDistance();
             fullWeight += path.getWeight();
             if (enableInstructions) {
+                StopWatch sw = new StopWatch().start();
                 InstructionList il = InstructionsFromEdges.calcInstructions(path, graph, weighting, evLookup, tr);
+                instructionsNanos += sw.stop().getNanos();
+                instructionsCalculations++;
 
                 if (!il.isEmpty()) {
                     fullInstructions.addAll(il);
@@ -136,7 +143,12 @@ public class PathMerger {
                 }
 
                 fullPoints.add(tmpPoints);
+                StopWatch sw = new StopWatch().start();
                 responsePath.addPathDetails(PathDetailsFromEdges.calcDetails(path, evLookup, weighting, requestedPathDetails, pathBuilderFactory, origPoints, graph));
+                if (!requestedPathDetails.isEmpty()) {
+                    pathDetailsNanos += sw.stop().getNanos();
+                    pathDetailsCalculations++;
+                }
                 wayPointIndices.add(origPoints);
                 if (pathIndex == paths.size() - 1)
                     wayPointIndices.add(fullPoints.size() - 1);
@@ -249,4 +261,32 @@ public class PathMerger {
     public void setFavoredHeading(double favoredHeading) {
         this.favoredHeading = favoredHeading;
     }
+
+    /**
+     * @return the total time spent calculating the instructions in all calls of {@link #doWork}
+     */
+    public long getInstructionsNanos() {
+        return instructionsNanos;
+    }
+
+    /**
+     * @return the total time spent calculating the path details in all calls of {@link #doWork}
+     */
+    public long getPathDetailsNanos() {
+        return pathDetailsNanos;
+    }
+
+    /**
+     * @return the number of paths the instructions were calculated for in all calls of {@link #doWork}
+     */
+    public int getInstructionsCalculations() {
+        return instructionsCalculations;
+    }
+
+    /**
+     * @return the number of paths the requested path details were calculated for in all calls of {@link #doWork}
+     */
+    public int getPathDetailsCalculations() {
+        return pathDetailsCalculations;
+    }
 }
\ No newline at end of file
@@ -23,6 +23,8 @@ import com.graphhopper.config.Profile;
 import com.graphhopper.reader.ReaderWay;
 import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.reader.dem.SkadiProvider;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingMetrics;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.AllEdgesIterator;
@@ -31,6 +33,7 @@ import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.countryrules.CountryRuleFactory;
 import com.graphhopper.routing.util.parsers.OSMRoadEnvironmentParser;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.IntsRef;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
@@ -39,6 +42,8 @@ import com.graphhopper.util.Parameters.CH;
 import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.Parameters.Routing;
 import com.graphhopper.util.details.PathDetail;
+import com.graphhopper.util.details.PathDetailsBuilder;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
 import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 import com.graphhopper.util.exceptions.MaximumNodesExceededException;
 import com.graphhopper.util.exceptions.PointDistanceExceededException;
@@ -141,6 +146,149 @@ public class GraphHopperTest {
         assertTrue(rsp.getErrors().toString().contains("ConnectionNotFoundException"), rsp.getErrors().toString());
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testRouteBulk(boolean withCH) {
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car"));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+        hopper.importOrLoad();
+
+        List<GHPoint> points = Arrays.asList(new GHPoint(43.727687, 7.418737), new GHPoint(43.74958, 7.436566),
+                new GHPoint(43.730729, 7.42135), new GHPoint(43.727687, 7.418737));
+        List<int[]> pairs = Arrays.asList(new int[]{0, 1}, new int[]{1, 0}, new int[]{2, 1}, new int[]{0, 2}, new int[]{3, 1},
+                new int[]{1, 1});
+        GHRequest bulkRequest = new GHRequest(points).setProfile("profile").putHint(CH.DISABLE, !withCH);
+        List<GHResponse> responses = hopper.routeBulk(bulkRequest, pairs).toList();
+        assertEquals(pairs.size(), responses.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            int[] pair = pairs.get(i);
+            GHResponse rsp = hopper.route(new GHRequest(points.get(pair[0]), points.get(pair[1])).
+                    setProfile("profile").putHint(CH.DISABLE, !withCH));
+            GHResponse bulkRsp = responses.get(i);
+            assertEquals(rsp.hasErrors(), bulkRsp.hasErrors(), "pair " + i + ": " + bulkRsp.getErrors());
+            if (rsp.hasErrors()) {
+                assertEquals(rsp.getErrors().toString(), bulkRsp.getErrors().toString());
+                continue;
+            }
+            assertEquals(rsp.getBest().getDistance(), bulkRsp.getBest().getDistance(), 1.e-3, "pair " + i);
+            assertEquals(rsp.getBest().getTime(), bulkRsp.getBest().getTime(), "pair " + i);
+            assertEquals(rsp.getBest().getRouteWeight(), bulkRsp.getBest().getRouteWeight(), 1.e-3, "pair " + i);
+            assertEquals(rsp.getBest().getPoints().size(), bulkRsp.getBest().getPoints().size(), "pair " + i);
+            assertEquals(rsp.getBest().getInstructions().size(), bulkRsp.getBest().getInstructions().size(), "pair " + i);
+        }
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> hopper.routeBulk(bulkRequest, List.<int[]>of(new int[]{0, 4})));
+        assertTrue(ex.getMessage().contains("Pair 0 refers to point 4"), ex.getMessage());
+
+        // any exception of a single pair only fails this pair
+        AtomicInteger calls = new AtomicInteger();
+        hopper.setPathDetailsBuilderFactory(new PathDetailsBuilderFactory() {
+            @Override
+            public List<PathDetailsBuilder> createPathDetailsBuilders(List<String> requestedPathDetails, Path path, EncodedValueLookup evl, Weighting weighting, Graph graph) {
+                if (calls.incrementAndGet() == 2)
+                    throw new IllegalStateException("path details failed");
+                return super.createPathDetailsBuilders(requestedPathDetails, path, evl, weighting, graph);
+            }
+        });
+        bulkRequest.setPathDetails(List.of("distance"));
+        responses = hopper.routeBulk(bulkRequest, pairs.subList(0, 3)).toList();
+        assertEquals(3, responses.size());
+        assertFalse(responses.get(0).hasErrors(), responses.get(0).getErrors().toString());
+        assertTrue(responses.get(1).hasErrors());
+        assertEquals("path details failed", responses.get(1).getErrors().get(0).getMessage());
+        assertFalse(responses.get(2).hasErrors(), responses.get(2).getErrors().toString());
+    }
+
+    @Test
+    public void testRoutingMetrics() {
+        Map<RoutingMetrics.Phase, Integer> phaseCounts = new EnumMap<>(RoutingMetrics.Phase.class);
+        Map<String, Long> visitedNodes = new HashMap<>();
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setOSMFile(MONACO).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                setRoutingMetrics(new RoutingMetrics() {
+                    @Override
+                    public void recordPhase(String profile, Phase phase, long nanos) {
+                        assertEquals("profile", profile);
+                        assertTrue(nanos >= 0);
+                        phaseCounts.merge(phase, 1, Integer::sum);
+                    }
+
+                    @Override
+                    public void recordVisitedNodes(String profile, String algorithm, long nodes) {
+                        assertEquals("profile", profile);
+                        visitedNodes.merge(algorithm, nodes, Long::sum);
+                    }
+                });
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("profile"));
+        hopper.importOrLoad();
+
+        GHRequest request = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile")
+                .setPathDetails(List.of("distance"));
+        GHResponse rsp = hopper.route(request);
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+        // the instructions and path details are not recorded if they are disabled
+        request.setAlgorithm(DIJKSTRA_BI).setPathDetails(List.of());
+        request.putHint(CH.DISABLE, true).putHint(Routing.INSTRUCTIONS, false);
+        rsp = hopper.route(request);
+        assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+
+        // the serialization is only recorded by the web resources
+        for (RoutingMetrics.Phase phase : RoutingMetrics.Phase.values()) {
+            Integer expected = switch (phase) {
+                case SERIALIZATION -> null;
+                case INSTRUCTIONS, PATH_DETAILS -> 1;
+                default -> 2;
+            };
+            assertEquals(expected, phaseCounts.get(phase), phase.getName());
+        }
+        assertEquals(2, visitedNodes.size(), visitedNodes.toString());
+        assertEquals(rsp.getHints().getLong("visited_nodes.sum", 0), visitedNodes.get("dijkstrabi"));
+    }
+
+    @Test
+    public void testCompactWayGeometry() {
+        GHRequest request = new GHRequest(43.727687, 7.418737, 43.74958, 7.436566).setProfile("profile");
+        PointList points = null;
+        for (boolean compact : new boolean[]{false, true}) {
+            Helper.removeDir(new File(GH_LOCATION));
+            GraphHopper hopper = new GraphHopper().
+                    setGraphHopperLocation(GH_LOCATION).
+                    setOSMFile(MONACO).
+                    setEncodedValuesString("car_access, car_average_speed").
+                    setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                    setCompactWayGeometry(compact).
+                    setStoreOnFlush(true).
+                    importOrLoad();
+            assertEquals(compact, hopper.getBaseGraph().isCompactWayGeometry());
+            GHResponse rsp = hopper.route(request);
+            assertFalse(rsp.hasErrors(), rsp.getErrors().toString());
+            if (points == null)
+                points = rsp.getBest().getPoints();
+            else
+                assertEquals(points, rsp.getBest().getPoints());
+            hopper.close();
+        }
+
+        // the format of an existing graph does not depend on the configuration
+        GraphHopper hopper = new GraphHopper().
+                setGraphHopperLocation(GH_LOCATION).
+                setEncodedValuesString("car_access, car_average_speed").
+                setProfiles(TestProfiles.accessAndSpeed("profile", "car")).
+                setCompactWayGeometry(false);
+        assertTrue(hopper.load());
+        assertTrue(hopper.getBaseGraph().isCompactWayGeometry());
+        assertEquals(points, hopper.route(request).getBest().getPoints());
+        hopper.close();
+    }
+
     @Test
     public void testMonacoWithInstructions() {
         final String profile = "profile";
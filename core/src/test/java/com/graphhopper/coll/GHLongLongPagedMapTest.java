@@ -0,0 +1,119 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GHLongLongPagedMapTest {
+
+    @Test
+    public void testPutAndGet() {
+        GHLongLongPagedMap instance = new GHLongLongPagedMap(new RAMDirectory(), "map", -1);
+        assertEquals(-1, instance.get(0));
+        assertEquals(-1, instance.get(1_234_567_890L));
+        assertEquals(-1, instance.put(1_234_567_890L, 21));
+        assertEquals(21, instance.get(1_234_567_890L));
+        assertEquals(-1, instance.get(1_234_567_891L));
+        assertEquals(21, instance.put(1_234_567_890L, 0));
+        assertEquals(0, instance.get(1_234_567_890L));
+        assertEquals(1, instance.getSize());
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> instance.put(1, -1));
+        assertTrue(ex.getMessage().contains("Value cannot be the 'empty value' -1"));
+    }
+
+    @Test
+    public void testValueRange() {
+        GHLongLongPagedMap instance = new GHLongLongPagedMap(new RAMDirectory(), "map", -1);
+        long min = -1 - (1L << 39);
+        instance.put(0, min);
+        instance.put(1, instance.getMaxValue());
+        instance.put(2, Integer.MIN_VALUE);
+        instance.put(3, -3);
+        assertEquals(min, instance.get(0));
+        assertEquals(instance.getMaxValue(), instance.get(1));
+        assertEquals(Integer.MIN_VALUE, instance.get(2));
+        assertEquals(-3, instance.get(3));
+        assertThrows(IllegalArgumentException.class, () -> instance.put(4, min - 1));
+        assertThrows(IllegalArgumentException.class, () -> instance.put(4, instance.getMaxValue() + 1));
+    }
+
+    @Test
+    public void testNegativeKeys() {
+        GHLongLongPagedMap instance = new GHLongLongPagedMap(new RAMDirectory(), "map", -1);
+        instance.put(-Long.MAX_VALUE, 3);
+        instance.put(-Long.MAX_VALUE + 1, 4);
+        instance.put(5, 6);
+        assertEquals(3, instance.get(-Long.MAX_VALUE));
+        assertEquals(4, instance.get(-Long.MAX_VALUE + 1));
+        assertEquals(-1, instance.get(-5));
+        assertEquals(3, instance.getSize());
+    }
+
+    @Test
+    public void testClear() {
+        RAMDirectory dir = new RAMDirectory();
+        GHLongLongPagedMap instance = new GHLongLongPagedMap(dir, "map", -1);
+        instance.put(100_000, 3);
+        instance.clear();
+        assertEquals(0, instance.getSize());
+        assertEquals(-1, instance.get(100_000));
+        instance.put(100_000, 4);
+        assertEquals(4, instance.get(100_000));
+    }
+
+    @Test
+    public void testRelease() {
+        RAMDirectory dir = new RAMDirectory();
+        GHLongLongPagedMap instance = new GHLongLongPagedMap(dir, "map", -1);
+        instance.put(100_000, 3);
+        assertEquals(Set.of("map", "map_index"), dir.getDAs().keySet());
+        instance.release();
+        assertEquals(Set.of(), dir.getDAs().keySet());
+        // releasing twice does no harm
+        instance.release();
+    }
+
+    @Test
+    public void testRandom() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHLongLongPagedMap instance = new GHLongLongPagedMap(new RAMDirectory(), "map", -1);
+        Map<Long, Long> map = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            // a mix of dense and sparse keys
+            long key = rnd.nextBoolean() ? rnd.nextInt(10_000) : rnd.nextInt(10_000_000) * 4L;
+            long value = rnd.nextInt(1_000_000) - 500_000;
+            if (value == -1)
+                continue;
+            Long old = map.put(key, value);
+            assertEquals(old == null ? -1 : old, instance.put(key, value), "seed: " + seed);
+        }
+        assertEquals(map.size(), instance.getSize(), "seed: " + seed);
+        for (Map.Entry<Long, Long> e : map.entrySet())
+            assertEquals((long) e.getValue(), instance.get(e.getKey()), "seed: " + seed);
+    }
+}
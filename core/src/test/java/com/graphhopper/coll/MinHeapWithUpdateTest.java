@@ -20,6 +20,10 @@ package com.graphhopper.coll;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class MinHeapWithUpdateTest implements BinaryHeapTestInterface {
@@ -131,4 +135,65 @@ public class MinHeapWithUpdateTest implements BinaryHeapTestInterface {
     }
 
 
+    @Test
+    void remove() {
+        create(10);
+        push(1, 0.5f);
+        push(2, 0.1f);
+        push(3, 0.7f);
+        push(4, 0.3f);
+        push(5, 0.9f);
+        heap.remove(4);
+        assertFalse(contains(4));
+        assertEquals(4, size());
+        heap.remove(2);
+        // removing the last element of the tree works, too
+        heap.remove(5);
+        assertThrows(IllegalStateException.class, () -> heap.remove(5));
+        assertEquals(1, poll());
+        assertEquals(3, poll());
+        assertTrue(isEmpty());
+    }
+
+    @Test
+    void removeRandom() {
+        Random rnd = new Random(42);
+        create(100);
+        PriorityQueue<Integer> expected = new PriorityQueue<>(Comparator.comparingDouble(id -> id * 0.1f));
+        for (int i = 0; i < 100; i++) {
+            push(i, i * 0.1f);
+            expected.add(i);
+        }
+        for (int i = 0; i < 50; i++) {
+            int id = rnd.nextInt(100);
+            if (contains(id)) {
+                heap.remove(id);
+                expected.remove(id);
+            }
+        }
+        while (!expected.isEmpty())
+            assertEquals(expected.poll(), poll());
+        assertTrue(isEmpty());
+    }
+
+    @Test
+    void ensureCapacity() {
+        create(2);
+        push(1, 0.3f);
+        push(0, 0.4f);
+        assertThrows(IllegalArgumentException.class, () -> push(2, 0.1f));
+        heap.ensureCapacity(4);
+        assertFalse(contains(3));
+        push(3, 0.1f);
+        push(2, 0.2f);
+        assertEquals(3, poll());
+        assertEquals(2, poll());
+        assertEquals(1, poll());
+        assertEquals(0, poll());
+        // shrinking is not possible
+        heap.ensureCapacity(1);
+        push(3, 0.1f);
+        assertEquals(3, poll());
+    }
+
 }
\ No newline at end of file
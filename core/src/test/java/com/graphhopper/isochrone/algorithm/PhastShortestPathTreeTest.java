@@ -0,0 +1,118 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.isochrone.algorithm;
+
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.graphhopper.isochrone.algorithm.ShortestPathTree.ExploreType.DISTANCE;
+import static com.graphhopper.isochrone.algorithm.ShortestPathTree.ExploreType.TIME;
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhastShortestPathTreeTest {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void sameAsShortestPathTree(boolean reverseFlow) {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        EncodingManager encodingManager = EncodingManager.start().add(speedEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.5, true, speedEnc, null, 0.9, 0);
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        CHConfig chConfig = CHConfig.nodeBased("p", new SpeedWeighting(speedEnc));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+
+        for (int i = 0; i < 20; i++) {
+            Snap snap = createRandomSnaps(graph.getBounds(), locationIndex, rnd, 1, true, EdgeFilter.ALL_EDGES).get(0);
+            QueryGraph queryGraph = QueryGraph.create(graph, snap);
+            // weight, time and distance limits, which are infinite for some of the searches
+            ShortestPathTree.ExploreType exploreType = ShortestPathTree.ExploreType.values()[i % 3];
+            double limit = i % 2 == 0 ? Double.POSITIVE_INFINITY : rnd.nextDouble() * (exploreType == TIME ? 200_000 : 200);
+
+            ShortestPathTree spt = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(chConfig.getWeighting()), reverseFlow, TraversalMode.NODE_BASED);
+            setLimit(spt, exploreType, limit);
+            Map<Integer, double[]> expected = new HashMap<>();
+            OneToAllSearch.Cursor cursor = spt.search(snap.getClosestNode());
+            while (cursor.next())
+                expected.put(cursor.getNode(), new double[]{cursor.getWeight(), cursor.getTime(), cursor.getDistance()});
+
+            // the CH graph and thus the node order of the sweep is the same for all queries
+            PhastShortestPathTree phast = new PhastShortestPathTree(chGraph, queryGraph, reverseFlow);
+            setLimit(phast, exploreType, limit);
+            cursor = phast.search(snap.getClosestNode());
+            int found = 0;
+            while (cursor.next()) {
+                found++;
+                double[] label = expected.get(cursor.getNode());
+                assertNotNull(label, "unexpected node " + cursor.getNode() + ", seed: " + seed);
+                // shortcut weights are stored with limited precision
+                assertEquals(label[0], cursor.getWeight(), 1.e-2, "seed: " + seed);
+                assertEquals(label[1], cursor.getTime(), 1, "seed: " + seed);
+                assertEquals(label[2], cursor.getDistance(), 1.e-3, "seed: " + seed);
+                if (cursor.getNode() == snap.getClosestNode()) {
+                    assertFalse(cursor.hasParent());
+                } else {
+                    assertTrue(cursor.hasParent());
+                    assertTrue(expected.containsKey(cursor.getParentNode()));
+                    assertTrue(cursor.getParentWeight() <= cursor.getWeight());
+                    int edge = cursor.getEdge();
+                    assertEquals(cursor.getNode(), queryGraph.getEdgeIteratorState(edge, cursor.getNode()).getAdjNode());
+                    assertEquals(cursor.getParentNode(), queryGraph.getEdgeIteratorState(edge, cursor.getNode()).getBaseNode());
+                }
+            }
+            assertEquals(expected.size(), found, "seed: " + seed);
+            assertFalse(cursor.next());
+        }
+    }
+
+    private static void setLimit(OneToAllSearch search, ShortestPathTree.ExploreType exploreType, double limit) {
+        if (exploreType == TIME)
+            search.setTimeLimit(limit);
+        else if (exploreType == DISTANCE)
+            search.setDistanceLimit(limit);
+        else
+            search.setWeightLimit(limit);
+    }
+
+}
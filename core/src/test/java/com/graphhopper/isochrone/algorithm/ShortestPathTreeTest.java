@@ -1,6 +1,9 @@
 package com.graphhopper.isochrone.algorithm;
 
+import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.json.Statement;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.DecimalEncodedValue;
 import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
@@ -155,6 +158,63 @@ public class ShortestPathTreeTest {
         assertArrayEquals(new int[]{1, 7}, isochroneEdges.stream().mapToInt(l -> l.node).sorted().toArray());
     }
 
+    @Test
+    public void testCursor() {
+        Weighting weighting = createWeighting();
+        ShortestPathTree instance = new ShortestPathTree(graph, weighting, false, TraversalMode.NODE_BASED);
+        instance.setTimeLimit(Double.MAX_VALUE);
+        OneToAllSearch.Cursor cursor = instance.search(0);
+
+        // the first nodes, see testSPTAndIsochrone25Seconds
+        assertTrue(cursor.next());
+        assertEquals(0, cursor.getNode());
+        assertEquals(EdgeIterator.NO_EDGE, cursor.getEdge());
+        assertEquals(0, cursor.getTime());
+        assertFalse(cursor.hasParent());
+        assertTrue(cursor.next());
+        assertEquals(4, cursor.getNode());
+        assertEquals(9000, cursor.getTime());
+        assertEquals(50, cursor.getDistance());
+        assertEquals(0, cursor.getParentNode());
+        assertEquals(0, cursor.getParentTime());
+        assertTrue(cursor.next());
+        assertEquals(6, cursor.getNode());
+        assertEquals(18000, cursor.getTime());
+        assertEquals(100, cursor.getDistance());
+        assertEquals(4, cursor.getParentNode());
+        assertEquals(9000, cursor.getParentTime());
+        assertEquals(50, cursor.getParentDistance());
+
+        // all the remaining nodes are reached in the order of their weight and with the same values as with a
+        // point-to-point Dijkstra
+        IntHashSet visited = IntHashSet.from(0, 4, 6);
+        double prevWeight = cursor.getWeight();
+        while (cursor.next()) {
+            int node = cursor.getNode();
+            assertTrue(visited.add(node), "node " + node + " was visited twice");
+            assertTrue(cursor.getWeight() >= prevWeight);
+            prevWeight = cursor.getWeight();
+            Path path = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(0, node);
+            assertEquals(path.getWeight(), cursor.getWeight(), 1.e-6, "node " + node);
+            assertEquals(path.getTime(), cursor.getTime(), "node " + node);
+            assertEquals(path.getDistance(), cursor.getDistance(), 1.e-6, "node " + node);
+
+            assertTrue(cursor.hasParent());
+            int parentNode = cursor.getParentNode();
+            assertTrue(visited.contains(parentNode), "the parent of node " + node + " must be visited before");
+            assertEquals(node, graph.getEdgeIteratorState(cursor.getEdge(), node).getAdjNode());
+            assertEquals(parentNode, graph.getEdgeIteratorState(cursor.getEdge(), node).getBaseNode());
+            Path parentPath = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(0, parentNode);
+            assertEquals(parentPath.getWeight(), cursor.getParentWeight(), 1.e-6, "node " + node);
+            assertEquals(parentPath.getTime(), cursor.getParentTime(), "node " + node);
+            assertEquals(parentPath.getDistance(), cursor.getParentDistance(), 1.e-6, "node " + node);
+            if (parentNode != 0)
+                assertEquals(parentPath.calcEdges().get(parentPath.getEdgeCount() - 1).getEdge(), cursor.getParentEdge());
+        }
+        // all nodes can be reached from node 0
+        assertEquals(9, visited.size());
+    }
+
     @Test
     public void testSPT26Seconds() {
         List<ShortestPathTree.IsoLabel> result = new ArrayList<>();
@@ -50,6 +50,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static com.graphhopper.routing.util.TransportationMode.CAR;
 import static com.graphhopper.util.GHUtility.readCountries;
@@ -984,6 +985,66 @@ public class OSMReaderTest {
         assertEquals(Country.BGR, iter.get(countryEnc));
     }
 
+    @Test
+    public void testParseThreads() {
+        GraphHopper single = importAndorra("single", config -> config.setParseThreads(1));
+        GraphHopper multi = importAndorra("multi", config -> config.setParseThreads(4));
+        assertSameGraph(single.getBaseGraph(), multi.getBaseGraph());
+        // Andorra fits into a single batch of the default size, so we also make sure the result is the same when the
+        // segments are handled in many batches
+        GraphHopper batches = importAndorra("batches", config -> config.setParseThreads(4).setParseBatchSize(1_000));
+        assertSameGraph(single.getBaseGraph(), batches.getBaseGraph());
+        GraphHopper tinyBatches = importAndorra("tiny_batches", config -> config.setParseThreads(4).setParseBatchSize(1));
+        assertSameGraph(single.getBaseGraph(), tinyBatches.getBaseGraph());
+        single.close();
+        multi.close();
+        batches.close();
+        tinyBatches.close();
+    }
+
+    @Test
+    public void testPagedNodeIdMap() {
+        GraphHopper tree = importAndorra("tree", config -> config.setPagedNodeIdMap(false));
+        GraphHopper paged = importAndorra("paged", config -> config.setPagedNodeIdMap(true));
+        assertSameGraph(tree.getBaseGraph(), paged.getBaseGraph());
+        // the temporary storage of the paged map is removed after the import
+        assertFalse(paged.getBaseGraph().getDirectory().getDAs().keySet().stream().anyMatch(name -> name.startsWith("tmp_osm_node_ids")),
+                paged.getBaseGraph().getDirectory().getDAs().keySet().toString());
+        tree.close();
+        paged.close();
+    }
+
+    private void assertSameGraph(BaseGraph g1, BaseGraph g2) {
+        assertEquals(g1.getNodes(), g2.getNodes());
+        assertEquals(g1.getEdges(), g2.getEdges());
+        for (int node = 0; node < g1.getNodes(); node++) {
+            assertEquals(g1.getNodeAccess().getLat(node), g2.getNodeAccess().getLat(node));
+            assertEquals(g1.getNodeAccess().getLon(node), g2.getNodeAccess().getLon(node));
+        }
+        AllEdgesIterator iter = g1.getAllEdges();
+        while (iter.next()) {
+            EdgeIteratorState edge = g2.getEdgeIteratorState(iter.getEdge(), iter.getAdjNode());
+            String msg = "edge: " + iter.getEdge();
+            assertEquals(iter.getBaseNode(), edge.getBaseNode(), msg);
+            assertEquals(iter.getDistance(), edge.getDistance(), msg);
+            assertEquals(iter.getFlags(), edge.getFlags(), msg);
+            assertEquals(iter.getKeyValues(), edge.getKeyValues(), msg);
+            assertEquals(iter.fetchWayGeometry(FetchMode.ALL), edge.fetchWayGeometry(FetchMode.ALL), msg);
+        }
+    }
+
+    private GraphHopper importAndorra(String location, Consumer<OSMReaderConfig> configurer) {
+        GraphHopper hopper = new GraphHopper().
+                setStoreOnFlush(false).
+                setOSMFile("../core/files/andorra.osm.pbf").
+                setGraphHopperLocation(dir + "/" + location).
+                setEncodedValuesString("car_access, car_average_speed, foot_access, foot_priority, foot_average_speed, " +
+                        "road_class, road_access, max_speed, surface, country, toll").
+                setProfiles(TestProfiles.accessAndSpeed("car"));
+        configurer.accept(hopper.getReaderConfig());
+        return hopper.importOrLoad();
+    }
+
     @Test
     public void testFixWayName() {
         assertEquals("B8, B12", OSMReader.fixWayName("B8;B12"));
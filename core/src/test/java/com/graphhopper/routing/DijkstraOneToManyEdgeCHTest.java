@@ -0,0 +1,94 @@
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DijkstraOneToManyEdgeCHTest {
+
+    @ParameterizedTest
+    @ValueSource(doubles = {40, Double.POSITIVE_INFINITY})
+    public void sameAsBidirectionalQueries(double uTurnCosts) {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        DecimalEncodedValue turnCostEnc = TurnCost.create("car", 10);
+        EncodingManager encodingManager = EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).withTurnCosts(true).create();
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.5, true, speedEnc, null, 0.9, 0);
+        GHUtility.addRandomTurnCosts(graph, seed, null, turnCostEnc, 10, graph.getTurnCostStorage());
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        CHConfig chConfig = CHConfig.edgeBased("p", new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), uTurnCosts));
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        RoutingCHGraph chGraph = RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+
+        for (int j = 0; j < 5; j++) {
+            // the virtual edges are used to restrict the first and last edges, like for map matching
+            QueryGraph queryGraph = QueryGraph.create(graph, createRandomSnaps(graph.getBounds(), locationIndex, rnd, 20, false, EdgeFilter.ALL_EDGES));
+            RoutingCHGraph queryCHGraph = new QueryRoutingCHGraph(chGraph, queryGraph);
+            EdgeExplorer explorer = queryGraph.createEdgeExplorer();
+            for (int i = 0; i < 20; i++) {
+                int from = rnd.nextInt(queryGraph.getNodes());
+                int fromOutEdge = randomAdjacentEdge(explorer, from, rnd);
+                int[] toNodes = new int[10];
+                int[] toInEdges = new int[toNodes.length];
+                for (int t = 0; t < toNodes.length; t++) {
+                    // include the source as target, too
+                    toNodes[t] = t == 0 ? from : rnd.nextInt(queryGraph.getNodes());
+                    toInEdges[t] = randomAdjacentEdge(explorer, toNodes[t], rnd);
+                }
+                DijkstraOneToManyEdgeCH algo = new DijkstraOneToManyEdgeCH(queryCHGraph);
+                List<Path> paths = algo.calcPaths(from, fromOutEdge, toNodes, toInEdges);
+                assertEquals(toNodes.length, paths.size());
+                for (int t = 0; t < toNodes.length; t++) {
+                    Path expected = new DijkstraBidirectionEdgeCHNoSOD(queryCHGraph).calcPath(from, toNodes[t], fromOutEdge, toInEdges[t]);
+                    String msg = "seed: " + seed + ", from: " + from + " (" + fromOutEdge + "), to: " + toNodes[t] + " (" + toInEdges[t] + ")";
+                    assertEquals(expected.isFound(), paths.get(t).isFound(), msg);
+                    if (!expected.isFound())
+                        continue;
+                    // there can be different paths with the same weight, so we do not compare the distance
+                    assertEquals(expected.getWeight(), paths.get(t).getWeight(), 1.e-3, msg);
+                    assertEquals(from, paths.get(t).calcNodes().get(0), msg);
+                    assertEquals(toNodes[t], paths.get(t).calcNodes().get(paths.get(t).calcNodes().size() - 1), msg);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return one of the edges at the given node or, in a third of the cases, ANY_EDGE
+     */
+    private static int randomAdjacentEdge(EdgeExplorer explorer, int node, Random rnd) {
+        IntArrayList edges = new IntArrayList();
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next())
+            edges.add(iter.getEdge());
+        return edges.isEmpty() || rnd.nextInt(3) == 0 ? ANY_EDGE : edges.get(rnd.nextInt(edges.size()));
+    }
+}
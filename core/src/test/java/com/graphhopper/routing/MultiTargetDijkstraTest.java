@@ -0,0 +1,121 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
+import static com.graphhopper.util.EdgeIterator.NO_EDGE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultiTargetDijkstraTest {
+    private final DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+    private final DecimalEncodedValue turnCostEnc = TurnCost.create("car", 10);
+    private final BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build())
+            .withTurnCosts(true).create();
+
+    @Test
+    public void restrictedEdges() {
+        // 0-1-2
+        //   |
+        //   3->4
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 3).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(3, 4).setDistance(100).set(speedEnc, 10, 0);
+        Weighting weighting = new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), 40);
+        List<Path> paths = new MultiTargetDijkstra(graph, weighting, TraversalMode.EDGE_BASED)
+                .calcPaths(1, 1, new int[]{2, 0, 0, 1, 1, 3, 3, 2}, new int[]{1, ANY_EDGE, NO_EDGE, ANY_EDGE, 0, 2, 3, 0});
+        assertEquals(8, paths.size());
+        assertEquals(IntArrayList.from(1, 2), paths.get(0).calcNodes());
+        // we have to start with edge 1, so we need a u-turn at node 2
+        assertEquals(IntArrayList.from(1, 2, 1, 0), paths.get(1).calcNodes());
+        assertEquals(3 * 10 + 40, paths.get(1).getWeight(), 1.e-6);
+        assertFalse(paths.get(2).isFound());
+        assertEquals(IntArrayList.from(1, 2, 1), paths.get(3).calcNodes());
+        // the only path to node 1 via edge 0 needs two u-turns
+        assertEquals(IntArrayList.from(1, 2, 1, 0, 1), paths.get(4).calcNodes());
+        assertEquals(IntArrayList.from(1, 2, 1, 3), paths.get(5).calcNodes());
+        // edge 3 is a one-way road from 3 to 4 and edge 0 is not adjacent to node 2
+        assertFalse(paths.get(6).isFound());
+        assertFalse(paths.get(7).isFound());
+    }
+
+    @RepeatedTest(10)
+    public void sameAsBidirectionalDijkstra() {
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 100, 2.2, true, speedEnc, null, 0.8, 0.8);
+        GHUtility.addRandomTurnCosts(graph, seed, null, turnCostEnc, 10, graph.getTurnCostStorage());
+        graph.freeze();
+        Weighting weighting = new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), 40);
+        for (int i = 0; i < 20; i++) {
+            int source = rnd.nextInt(graph.getNodes());
+            int sourceOutEdge = getAdjEdge(rnd, source);
+            int[] targets = new int[10];
+            int[] targetInEdges = new int[targets.length];
+            for (int j = 0; j < targets.length; j++) {
+                targets[j] = rnd.nextInt(graph.getNodes());
+                targetInEdges[j] = getAdjEdge(rnd, targets[j]);
+            }
+            MultiTargetDijkstra algo = new MultiTargetDijkstra(graph, weighting, TraversalMode.EDGE_BASED);
+            List<Path> paths = algo.calcPaths(source, sourceOutEdge, targets, targetInEdges);
+            for (int j = 0; j < targets.length; j++) {
+                Path refPath = new DijkstraBidirectionRef(graph, weighting, TraversalMode.EDGE_BASED)
+                        .calcPath(source, targets[j], sourceOutEdge, targetInEdges[j]);
+                Path path = paths.get(j);
+                String msg = source + "->" + targets[j] + ", seed: " + seed;
+                assertEquals(refPath.isFound(), path.isFound(), msg);
+                assertEquals(refPath.getWeight(), path.getWeight(), 1.e-2, msg);
+                if (path.isFound()) {
+                    assertEquals(source, path.calcNodes().get(0), msg);
+                    assertEquals(targets[j], path.calcNodes().get(path.calcNodes().size() - 1), msg);
+                }
+            }
+        }
+    }
+
+    private int getAdjEdge(Random rnd, int node) {
+        // sometimes do not restrict anything
+        if (rnd.nextDouble() < 0.2)
+            return ANY_EDGE;
+        if (rnd.nextDouble() < 0.05)
+            return NO_EDGE;
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(node);
+        List<Integer> edgeIds = new ArrayList<>();
+        while (iter.next())
+            edgeIds.add(iter.getEdge());
+        return edgeIds.isEmpty() ? ANY_EDGE : edgeIds.get(rnd.nextInt(edgeIds.size()));
+    }
+}
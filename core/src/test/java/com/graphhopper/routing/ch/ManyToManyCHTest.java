@@ -0,0 +1,176 @@
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValueImpl;
+import com.graphhopper.routing.ev.TurnCost;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.SpeedWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.CHConfig;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.RoutingCHGraphImpl;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.exceptions.MaximumNodesExceededException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.graphhopper.util.GHUtility.createRandomSnaps;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManyToManyCHTest {
+
+    private BaseGraph graph;
+    private DecimalEncodedValue speedEnc;
+    private DecimalEncodedValue turnCostEnc;
+
+    private void init() {
+        speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        turnCostEnc = TurnCost.create("car", 10);
+        EncodingManager em = EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+        graph = new BaseGraph.Builder(em).withTurnCosts(true).create();
+    }
+
+    private RoutingCHGraph prepareCH(CHConfig chConfig) {
+        PrepareContractionHierarchies.Result res = PrepareContractionHierarchies.fromGraph(graph, chConfig).doWork();
+        return RoutingCHGraphImpl.fromGraph(graph, res.getCHStorage(), res.getCHConfig());
+    }
+
+    @Test
+    public void simpleMatrix() {
+        init();
+        // 0-1-2-3
+        //   |   |
+        //   4---5
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 2).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(2, 3).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(1, 4).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(4, 5).setDistance(300).set(speedEnc, 10, 10);
+        graph.edge(3, 5).setDistance(100).set(speedEnc, 10, 0);
+        graph.freeze();
+        RoutingCHGraph chGraph = prepareCH(CHConfig.nodeBased("p", new SpeedWeighting(speedEnc)));
+
+        ManyToManyCH.Result result = new ManyToManyCH(chGraph).calcMatrix(new int[]{0, 5}, new int[]{5, 0, 3});
+        assertEquals(400, result.getDistance(0, 0), 1.e-3);
+        assertEquals(0, result.getDistance(0, 1), 1.e-3);
+        assertEquals(300, result.getDistance(0, 2), 1.e-3);
+        // 5->3 is a one-way in the wrong direction
+        assertEquals(500, result.getDistance(1, 1), 1.e-3);
+        assertEquals(600, result.getDistance(1, 2), 1.e-3);
+        assertEquals(60_000, result.getTime(1, 2));
+        assertTrue(result.isConnected(1, 0));
+    }
+
+    @Test
+    public void invalidPointsAndDisconnected() {
+        init();
+        graph.edge(0, 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.edge(2, 3).setDistance(100).set(speedEnc, 10, 10);
+        graph.freeze();
+        RoutingCHGraph chGraph = prepareCH(CHConfig.nodeBased("p", new SpeedWeighting(speedEnc)));
+
+        ManyToManyCH.Result result = new ManyToManyCH(chGraph).calcMatrix(new int[]{0, -1}, new int[]{1, 3});
+        assertTrue(result.isConnected(0, 0));
+        assertFalse(result.isConnected(0, 1));
+        assertEquals(Long.MAX_VALUE, result.getTime(0, 1));
+        assertFalse(result.isConnected(1, 0));
+    }
+
+    @Test
+    public void cacheKeysOfLargeEdgeIds() {
+        int[] edges = {0, 1, (1 << 30) - 1, 1 << 30, (1 << 30) + 1, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+        int[] nodes = {0, 1, Integer.MAX_VALUE};
+        Set<Long> keys = new HashSet<>();
+        for (int edge : edges)
+            for (int node : nodes) {
+                keys.add(ManyToManyCH.cacheKey(edge, node, false));
+                keys.add(ManyToManyCH.cacheKey(edge, node, true));
+            }
+        assertEquals(edges.length * nodes.length * 2, keys.size());
+        assertNotEquals(ManyToManyCH.cacheKey(0, 5, false), ManyToManyCH.cacheKey(1 << 30, 5, false));
+    }
+
+    @Test
+    public void maxVisitedNodes() {
+        init();
+        for (int i = 0; i < 10; i++)
+            graph.edge(i, i + 1).setDistance(100).set(speedEnc, 10, 10);
+        graph.freeze();
+        RoutingCHGraph chGraph = prepareCH(CHConfig.nodeBased("p", new SpeedWeighting(speedEnc)));
+        ManyToManyCH manyToMany = new ManyToManyCH(chGraph).setMaxVisitedNodes(1);
+        assertThrows(MaximumNodesExceededException.class, () -> manyToMany.calcMatrix(new int[]{0}, new int[]{10}));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = TraversalMode.class, names = {"NODE_BASED", "EDGE_BASED"})
+    public void random(TraversalMode traversalMode) {
+        init();
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 50, 2.5, true, speedEnc, null, 0.9, 0);
+        if (traversalMode.isEdgeBased())
+            GHUtility.addRandomTurnCosts(graph, seed, null, turnCostEnc, 10, graph.getTurnCostStorage());
+        LocationIndexTree locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+        graph.freeze();
+        CHConfig chConfig = traversalMode.isEdgeBased()
+                ? CHConfig.edgeBased("p", new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), Double.POSITIVE_INFINITY))
+                : CHConfig.nodeBased("p", new SpeedWeighting(speedEnc));
+        RoutingCHGraph chGraph = prepareCH(chConfig);
+
+        List<Snap> snaps = createRandomSnaps(graph.getBounds(), locationIndex, rnd, 20, false, EdgeFilter.ALL_EDGES);
+        QueryGraph queryGraph = QueryGraph.create(graph, snaps);
+        Weighting weighting = queryGraph.wrapWeighting(chConfig.getWeighting());
+        int[] sources = new int[15];
+        int[] targets = new int[10];
+        for (int i = 0; i < sources.length; i++)
+            sources[i] = rnd.nextInt(queryGraph.getNodes());
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = rnd.nextInt(queryGraph.getNodes());
+
+        QueryRoutingCHGraph queryCHGraph = new QueryRoutingCHGraph(chGraph, queryGraph);
+        ManyToManyCH.Result result = new ManyToManyCH(queryCHGraph).calcMatrix(sources, targets);
+        CHRoutingAlgorithmFactory algoFactory = new CHRoutingAlgorithmFactory(queryCHGraph);
+        for (int s = 0; s < sources.length; s++) {
+            for (int t = 0; t < targets.length; t++) {
+                String msg = "seed: " + seed + ", " + sources[s] + "->" + targets[t];
+                Path refPath = new Dijkstra(queryGraph, weighting, traversalMode).calcPath(sources[s], targets[t]);
+                assertEquals(refPath.isFound(), result.isConnected(s, t), msg);
+                if (!refPath.isFound())
+                    continue;
+                // the shortcut weights are rounded, so we can only compare roughly against the search without CH
+                assertEquals(refPath.getWeight(), result.getWeight(s, t), 1.e-2, msg);
+
+                // ... but the bucket search must find exactly the same weights as a bidirectional CH query
+                Path chPath = algoFactory.createAlgo(new PMap()).calcPath(sources[s], targets[t]);
+                assertTrue(chPath.isFound(), msg);
+                assertEquals(chPath.getWeight(), result.getWeight(s, t), 1.e-6, msg);
+                // the time of every edge and turn is its weight in ms rounded down and the shortcut weights are
+                // rounded to 1e-3, so the time must match the weight up to a few milliseconds per edge of the path.
+                // a time that is merged from another bucket entry than the weight would be far off.
+                long time = result.getTime(s, t);
+                double maxTimeError = 2 * queryGraph.getNodes();
+                assertEquals(1000 * result.getWeight(s, t), time, maxTimeError, msg);
+                assertEquals(chPath.getTime(), time, maxTimeError, msg);
+                // distances are not proportional to the weights here and can differ between paths with the same weight
+                assertEquals(refPath.getDistance(), result.getDistance(s, t), 0.1 * refPath.getDistance() + 1, msg);
+            }
+        }
+    }
+}
@@ -32,6 +32,8 @@ import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.util.Random;
 
@@ -576,6 +578,81 @@ public class PrepareContractionHierarchiesTest {
         }
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testConcurrentContraction(boolean edgeBased) {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        DecimalEncodedValue turnCostEnc = TurnCost.create("car", 3);
+        EncodingManager em = EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).withTurnCosts(true).create();
+        long seed = System.nanoTime();
+        Random rnd = new Random(seed);
+        GHUtility.buildRandomGraph(graph, rnd, 1_000, 2.2, true, speedEnc, null, 0.9, 0.8);
+        if (edgeBased)
+            GHUtility.addRandomTurnCosts(graph, seed, null, turnCostEnc, 3, graph.getTurnCostStorage());
+        graph.freeze();
+        Weighting weighting = edgeBased
+                ? new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), Double.POSITIVE_INFINITY)
+                : new SpeedWeighting(speedEnc);
+        PrepareContractionHierarchies.Result sequential = PrepareContractionHierarchies.fromGraph(graph, new CHConfig("c1", weighting, edgeBased))
+                .setParams(new PMap().putObject(CHParameters.CONTRACTION_THREADS, 1)).doWork();
+        PrepareContractionHierarchies.Result concurrent = PrepareContractionHierarchies.fromGraph(graph, new CHConfig("c2", weighting, edgeBased))
+                .setParams(new PMap().putObject(CHParameters.CONTRACTION_THREADS, 4)).doWork();
+
+        // the node ordering is different, but it should not be much worse than the sequential one
+        assertTrue(concurrent.getShortcuts() < 1.5 * sequential.getShortcuts(),
+                "seed: " + seed + ", sequential: " + sequential.getShortcuts() + ", concurrent: " + concurrent.getShortcuts());
+        RoutingCHGraph sequentialCHGraph = RoutingCHGraphImpl.fromGraph(graph, sequential.getCHStorage(), sequential.getCHConfig());
+        RoutingCHGraph concurrentCHGraph = RoutingCHGraphImpl.fromGraph(graph, concurrent.getCHStorage(), concurrent.getCHConfig());
+        TraversalMode traversalMode = edgeBased ? TraversalMode.EDGE_BASED : TraversalMode.NODE_BASED;
+        for (int i = 0; i < 100; i++) {
+            int from = rnd.nextInt(graph.getNodes());
+            int to = rnd.nextInt(graph.getNodes());
+            Path dijkstraPath = new Dijkstra(graph, weighting, traversalMode).calcPath(from, to);
+            Path sequentialPath = new CHRoutingAlgorithmFactory(sequentialCHGraph).createAlgo(new PMap()).calcPath(from, to);
+            Path concurrentPath = new CHRoutingAlgorithmFactory(concurrentCHGraph).createAlgo(new PMap()).calcPath(from, to);
+            String msg = "seed: " + seed + ", from: " + from + ", to: " + to;
+            assertEquals(dijkstraPath.isFound(), sequentialPath.isFound(), msg);
+            assertEquals(dijkstraPath.isFound(), concurrentPath.isFound(), msg);
+            assertEquals(dijkstraPath.getWeight(), sequentialPath.getWeight(), 1.e-2, msg);
+            assertEquals(sequentialPath.getWeight(), concurrentPath.getWeight(), 1.e-2, msg);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testNumberOfThreadsDoesNotChangeTheConcurrentContraction(boolean edgeBased) {
+        DecimalEncodedValue speedEnc = new DecimalEncodedValueImpl("speed", 5, 5, true);
+        DecimalEncodedValue turnCostEnc = TurnCost.create("car", 3);
+        EncodingManager em = EncodingManager.start().add(speedEnc).addTurnCostEncodedValue(turnCostEnc).build();
+        BaseGraph graph = new BaseGraph.Builder(em).withTurnCosts(true).create();
+        long seed = System.nanoTime();
+        GHUtility.buildRandomGraph(graph, new Random(seed), 1_000, 2.2, true, speedEnc, null, 0.9, 0.8);
+        if (edgeBased)
+            GHUtility.addRandomTurnCosts(graph, seed, null, turnCostEnc, 3, graph.getTurnCostStorage());
+        graph.freeze();
+        Weighting weighting = edgeBased
+                ? new SpeedWeighting(speedEnc, turnCostEnc, graph.getTurnCostStorage(), Double.POSITIVE_INFINITY)
+                : new SpeedWeighting(speedEnc);
+
+        // make sure the periodic and lazy updates, which are calculated concurrently as well, are used
+        PMap pMap = new PMap()
+                .putObject(CHParameters.PERIODIC_UPDATES, 10)
+                .putObject(CHParameters.LAST_LAZY_NODES_UPDATES, 50);
+        // multiple threads contract independent node sets, which yields another node ordering than the sequential
+        // contraction, but it should still not depend on the number of threads
+        PrepareContractionHierarchies.Result twoThreads = PrepareContractionHierarchies.fromGraph(graph, new CHConfig("c1", weighting, edgeBased))
+                .setParams(pMap.putObject(CHParameters.CONTRACTION_THREADS, 2)).doWork();
+        PrepareContractionHierarchies.Result fourThreads = PrepareContractionHierarchies.fromGraph(graph, new CHConfig("c2", weighting, edgeBased))
+                .setParams(pMap.putObject(CHParameters.CONTRACTION_THREADS, 4)).doWork();
+
+        assertEquals(twoThreads.getShortcuts(), fourThreads.getShortcuts(), "seed: " + seed);
+        NodeOrderingProvider expected = twoThreads.getCHStorage().getNodeOrderingProvider();
+        NodeOrderingProvider actual = fourThreads.getCHStorage().getNodeOrderingProvider();
+        for (int level = 0; level < graph.getNodes(); level++)
+            assertEquals(expected.getNodeIdForLevel(level), actual.getNodeIdForLevel(level), "seed: " + seed + ", level: " + level);
+    }
+
     private void checkPath(BaseGraph g, CHConfig c, int expShortcuts, double expDistance, IntIndexedContainer expNodes, int[] nodeOrdering) {
         PrepareContractionHierarchies prepare = createPrepareContractionHierarchies(g, c);
         useNodeOrdering(prepare, nodeOrdering);
@@ -30,6 +30,7 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.GHUtility;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,6 +38,7 @@ import org.junit.jupiter.api.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.*;
@@ -152,6 +154,30 @@ public class LandmarkStorageTest {
         assertEquals("[4, 0]", Arrays.toString(storage.getLandmarks(1)));
     }
 
+    @Test
+    public void testConcurrentLandmarkWeights() {
+        long seed = System.nanoTime();
+        GHUtility.buildRandomGraph(graph, new Random(seed), 500, 2.2, true, speedEnc, null, 0.8, 0.8);
+        Weighting weighting = new SpeedWeighting(speedEnc);
+        subnetworkRemoval(weighting, 1);
+
+        LandmarkStorage singleThreaded = new LandmarkStorage(graph, encodingManager, new RAMDirectory(), new LMConfig("car", weighting), 8);
+        singleThreaded.setMinimumNodes(2);
+        singleThreaded.createLandmarks();
+        LandmarkStorage multiThreaded = new LandmarkStorage(graph, encodingManager, new RAMDirectory(), new LMConfig("car", weighting), 8).
+                setLandmarkThreads(4);
+        multiThreaded.setMinimumNodes(2);
+        multiThreaded.createLandmarks();
+
+        assertEquals(singleThreaded.toString(), multiThreaded.toString(), "seed: " + seed);
+        for (int node = 0; node < graph.getNodes(); node++) {
+            for (int lm = 0; lm < 8; lm++) {
+                assertEquals(singleThreaded.getFromWeight(lm, node), multiThreaded.getFromWeight(lm, node), "seed: " + seed);
+                assertEquals(singleThreaded.getToWeight(lm, node), multiThreaded.getToWeight(lm, node), "seed: " + seed);
+            }
+        }
+    }
+
     private void subnetworkRemoval(Weighting weighting, int minNodeSize) {
         // currently we rely on subnetwork removal in Landmark preparation, see #2256
         // PrepareRoutingSubnetworks removes OSM bugs regarding turn restriction mapping which the node-based Tarjan in Landmark preparation can't
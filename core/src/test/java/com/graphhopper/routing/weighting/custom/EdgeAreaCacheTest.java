@@ -0,0 +1,130 @@
+package com.graphhopper.routing.weighting.custom;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.ev.VehicleSpeed;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.weighting.TurnCostProvider;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.CustomModel;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.JsonFeature;
+import com.graphhopper.util.JsonFeatureCollection;
+import com.graphhopper.util.shapes.Polygon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.HashMap;
+
+import static com.graphhopper.json.Statement.If;
+import static com.graphhopper.json.Statement.Op.LIMIT;
+import static com.graphhopper.json.Statement.Op.MULTIPLY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeAreaCacheTest {
+    private final org.locationtech.jts.geom.Polygon triangle = new GeometryFactory().createPolygon(new Coordinate[]{
+            new Coordinate(11.002, 50.002), new Coordinate(11.017, 50.004), new Coordinate(11.006, 50.016), new Coordinate(11.002, 50.002)});
+    private DecimalEncodedValue speedEnc;
+    private EncodingManager encodingManager;
+    private BaseGraph graph;
+    private LocationIndexTree locationIndex;
+
+    @BeforeEach
+    public void setup() {
+        speedEnc = VehicleSpeed.create("car", 5, 5, true);
+        encodingManager = new EncodingManager.Builder().add(speedEnc).build();
+        graph = new BaseGraph.Builder(encodingManager).create();
+        // a grid whose edges have a pillar node that is a bit off the straight line
+        int size = 20;
+        for (int row = 0; row < size; row++)
+            for (int col = 0; col < size; col++)
+                graph.getNodeAccess().setNode(row * size + col, 50 + row * 0.001, 11 + col * 0.001);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int node = row * size + col;
+                if (col + 1 < size)
+                    graph.edge(node, node + 1).setDistance(70).set(speedEnc, 50, 50)
+                            .setWayGeometry(Helper.createPointList(50 + row * 0.001 + 0.0003, 11 + col * 0.001 + 0.0005));
+                if (row + 1 < size)
+                    graph.edge(node, node + size).setDistance(110).set(speedEnc, 50, 50)
+                            .setWayGeometry(Helper.createPointList(50 + row * 0.001 + 0.0005, 11 + col * 0.001 - 0.0003));
+            }
+        }
+        locationIndex = new LocationIndexTree(graph, graph.getDirectory());
+        locationIndex.prepareIndex();
+    }
+
+    @Test
+    public void sameAsIntersection() {
+        Polygon polygon = Polygon.create(triangle);
+        EdgeAreaCache.EdgeSet withIndex = new EdgeAreaCache(graph, () -> locationIndex, 1 << 20).getEdges(polygon);
+        EdgeAreaCache.EdgeSet withoutIndex = new EdgeAreaCache(graph, () -> null, 1 << 20).getEdges(polygon);
+        int inside = 0;
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            boolean expected = CustomWeightingHelper.in(polygon, iter);
+            if (expected)
+                inside++;
+            assertTrue(withIndex.covers(iter.getEdge()));
+            assertEquals(expected, withIndex.contains(iter.getEdge()), "edge " + iter.getEdge());
+            assertEquals(expected, withoutIndex.contains(iter.getEdge()), "edge " + iter.getEdge());
+        }
+        assertTrue(inside > 10 && inside < graph.getEdges() / 2, "inside: " + inside);
+        // e.g. virtual edges are not known and have to be checked geometrically
+        assertFalse(withIndex.covers(graph.getEdges()));
+        assertFalse(withIndex.contains(-1));
+        assertFalse(withIndex.contains(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void cacheByGeometry() {
+        // enough memory for the triangle, but not for the triangle and the square
+        int maxBytes = 2 * triangle.toText().length() + 200;
+        EdgeAreaCache cache = new EdgeAreaCache(graph, () -> locationIndex, maxBytes);
+        EdgeAreaCache.EdgeSet edges = cache.getEdges(Polygon.create(triangle));
+        assertTrue(edges.getBytes() < 200, "bytes: " + edges.getBytes());
+        // another polygon object with the same geometry
+        assertSame(edges, cache.getEdges(Polygon.create((org.locationtech.jts.geom.Polygon) triangle.copy())));
+        // the least recently used entry is evicted
+        cache.getEdges(new Polygon(new double[]{50.001, 50.001, 50.003, 50.003}, new double[]{11.001, 11.003, 11.003, 11.001}));
+        assertNotSame(edges, cache.getEdges(Polygon.create(triangle)));
+    }
+
+    @Test
+    public void sparseEdges() {
+        EdgeAreaCache.EdgeSet sparse = new EdgeAreaCache.EdgeSet(2_000_000, IntArrayList.from(1_999_999, 5, 0, 5));
+        // no bits for the whole range of edge IDs
+        assertEquals(12, sparse.getBytes());
+        EdgeAreaCache.EdgeSet dense = new EdgeAreaCache.EdgeSet(2_000_000, IntArrayList.from(1000, 1001, 1003, 1004, 1005, 1063));
+        assertEquals(8, dense.getBytes());
+        for (int edge = -1; edge <= 2_000_000; edge++) {
+            assertEquals(edge == 0 || edge == 5 || edge == 1_999_999, sparse.contains(edge), "edge " + edge);
+            assertEquals(edge >= 1000 && edge <= 1005 && edge != 1002 || edge == 1063, dense.contains(edge), "edge " + edge);
+        }
+        assertFalse(new EdgeAreaCache.EdgeSet(10, new IntArrayList()).contains(0));
+    }
+
+    @Test
+    public void sameWeightsAsWithoutCache() {
+        JsonFeatureCollection areas = new JsonFeatureCollection();
+        areas.getFeatures().add(new JsonFeature("zone", "Feature", null, triangle, new HashMap<>()));
+        CustomModel customModel = new CustomModel().setAreas(areas);
+        customModel.addToSpeed(If("true", LIMIT, speedEnc.getName()));
+        customModel.addToSpeed(If("in_zone", LIMIT, "20"));
+        customModel.addToPriority(If("!in_zone", MULTIPLY, "0.7"));
+
+        EdgeAreaCache cache = new EdgeAreaCache(graph, () -> locationIndex, 1 << 20);
+        Weighting expected = CustomModelParser.createWeighting(encodingManager, TurnCostProvider.NO_TURN_COST_PROVIDER, customModel);
+        Weighting actual = CustomModelParser.createWeighting(encodingManager, TurnCostProvider.NO_TURN_COST_PROVIDER, customModel, cache);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next()) {
+            assertEquals(expected.calcEdgeWeight(iter, false), actual.calcEdgeWeight(iter, false));
+            assertEquals(expected.calcEdgeWeight(iter, true), actual.calcEdgeWeight(iter, true));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs all tests of {@link BaseGraphTest} with the compact way geometry format.
+ */
+public class BaseGraphWithCompactWayGeometryTest extends BaseGraphTest {
+
+    @Override
+    protected BaseGraph newGHStorage(Directory dir, boolean enabled3D, int segmentSize) {
+        return new BaseGraph.Builder(encodingManager).setDir(dir).set3D(enabled3D).setSegmentSize(segmentSize).setCompactWayGeometry(true).build();
+    }
+
+    @Override
+    @Test
+    public void testDontGrowOnUpdate() {
+        // the sizes differ from the fixed-width format, but like there we reuse the space when updating a geometry
+        graph = createGHStorage(defaultGraphLoc, true);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        na.setNode(2, 12, 12, 0.4);
+
+        EdgeIteratorState iter2 = graph.edge(0, 1).setDistance(100);
+        BaseGraph baseGraph = graph.getBaseGraph();
+        iter2.setWayGeometry(Helper.createPointList3D(1, 2, 3, 3, 4, 5, 5, 6, 7, 7, 8, 9));
+        long maxGeoRef = baseGraph.getMaxGeoRef();
+        iter2.setWayGeometry(Helper.createPointList3D(1, 2, 3, 3, 4, 5, 5, 6, 7));
+        iter2.setWayGeometry(Helper.createPointList3D(1, 2, 3));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        assertEquals(Helper.createPointList3D(1, 2, 3), iter2.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        assertThrows(IllegalStateException.class, () -> iter2.setWayGeometry(Helper.createPointList3D(1.5, 1, 0, 2, 3, 0)));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        graph.edge(0, 2).setDistance(200).setWayGeometry(Helper.createPointList3D(3.5, 4.5, 0, 5, 6, 0));
+        assertTrue(baseGraph.getMaxGeoRef() > maxGeoRef);
+    }
+
+    @Test
+    public void testSameGeometryAsFixedWidthFormat() {
+        Random rnd = new Random(123);
+        for (boolean is3D : new boolean[]{false, true}) {
+            BaseGraph compact = newGHStorage(new RAMDirectory(), is3D, 128).create(defaultSize);
+            BaseGraph fixedWidth = new BaseGraph.Builder(encodingManager).set3D(is3D).setSegmentSize(128).create();
+            for (int node = 0; node < 50; node++) {
+                double lat = -85 + 170 * rnd.nextDouble(), lon = -180 + 360 * rnd.nextDouble(), ele = -500 + 9000 * rnd.nextDouble();
+                compact.getNodeAccess().setNode(node, lat, lon, ele);
+                fixedWidth.getNodeAccess().setNode(node, lat, lon, ele);
+            }
+            for (int i = 0; i < 200; i++) {
+                int from = rnd.nextInt(50), to = rnd.nextInt(50);
+                if (from == to)
+                    continue;
+                // some pillar nodes are close to each other and some are far apart, including the anti-meridian
+                PointList pillarNodes = new PointList(10, is3D);
+                for (int j = 0, count = rnd.nextInt(10); j < count; j++) {
+                    double lat = rnd.nextBoolean() ? -85 + 170 * rnd.nextDouble() : 45 + 0.001 * rnd.nextDouble();
+                    double lon = rnd.nextBoolean() ? (rnd.nextBoolean() ? 179.9999 : -179.9999) : -180 + 360 * rnd.nextDouble();
+                    pillarNodes.add(lat, lon, is3D ? -1100 + 12000 * rnd.nextDouble() : Double.NaN);
+                }
+                compact.edge(from, to).setWayGeometry(pillarNodes.clone(false));
+                fixedWidth.edge(from, to).setWayGeometry(pillarNodes.clone(false));
+            }
+            // overwrite some geometries, also from the other direction
+            for (int i = 0; i < 50; i++) {
+                int edge = rnd.nextInt(compact.getEdges());
+                int adjNode = rnd.nextBoolean() ? compact.getEdgeIteratorState(edge, Integer.MIN_VALUE).getAdjNode() : compact.getEdgeIteratorState(edge, Integer.MIN_VALUE).getBaseNode();
+                PointList pillarNodes = compact.getEdgeIteratorState(edge, adjNode).fetchWayGeometry(FetchMode.PILLAR_ONLY);
+                if (pillarNodes.isEmpty())
+                    continue;
+                for (int j = 0; j < pillarNodes.size(); j++)
+                    pillarNodes.set(j, pillarNodes.getLat(j) + rnd.nextDouble(), pillarNodes.getLon(j), pillarNodes.getEle(j));
+                compact.getEdgeIteratorState(edge, adjNode).setWayGeometry(pillarNodes.clone(false));
+                fixedWidth.getEdgeIteratorState(edge, adjNode).setWayGeometry(pillarNodes.clone(false));
+            }
+            for (int edge = 0; edge < compact.getEdges(); edge++) {
+                EdgeIteratorState compactEdge = compact.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+                EdgeIteratorState fixedWidthEdge = fixedWidth.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+                for (FetchMode mode : FetchMode.values()) {
+                    assertEquals(fixedWidthEdge.fetchWayGeometry(mode), compactEdge.fetchWayGeometry(mode));
+                    assertEquals(fixedWidthEdge.detach(true).fetchWayGeometry(mode), compactEdge.detach(true).fetchWayGeometry(mode));
+                }
+            }
+            compact.close();
+            fixedWidth.close();
+        }
+    }
+
+    @Test
+    public void testSize() {
+        Random rnd = new Random(123);
+        BaseGraph compact = newGHStorage(new RAMDirectory(), true, 128).create(defaultSize);
+        BaseGraph fixedWidth = new BaseGraph.Builder(encodingManager).set3D(true).setSegmentSize(128).create();
+        for (int node = 0; node < 100; node++) {
+            compact.getNodeAccess().setNode(node, 50 + 0.01 * node, 10, 300);
+            fixedWidth.getNodeAccess().setNode(node, 50 + 0.01 * node, 10, 300);
+        }
+        for (int node = 0; node < 99; node++) {
+            // typical road geometry with pillar nodes every few ten meters
+            PointList pillarNodes = new PointList(10, true);
+            for (int i = 1; i < 10; i++)
+                pillarNodes.add(50 + 0.01 * node + 0.0002 * i, 10 + 0.0002 * rnd.nextDouble(), 300 + 5 * rnd.nextDouble());
+            compact.edge(node, node + 1).setWayGeometry(pillarNodes.clone(false));
+            fixedWidth.edge(node, node + 1).setWayGeometry(pillarNodes.clone(false));
+        }
+        assertTrue(compact.getMaxGeoRef() < 0.6 * fixedWidth.getMaxGeoRef(), compact.getMaxGeoRef() + " vs. " + fixedWidth.getMaxGeoRef());
+        compact.close();
+        fixedWidth.close();
+    }
+
+    @Test
+    public void testCopiesFollowMovedGeometry() {
+        BaseGraph graph = createGHStorage();
+        graph.getNodeAccess().setNode(0, 50, 10);
+        graph.getNodeAccess().setNode(1, 50.1, 10.1);
+        EdgeIteratorState edge = graph.edge(0, 1).setWayGeometry(Helper.createPointList(50.01, 10.01, 50.02, 10.02));
+        EdgeIteratorState copy = graph.copyEdge(edge.getEdge(), true);
+        // the copy was created after the geometry was set, so the geo ref must not be negative and we can still
+        // change the geometry. the new geometry needs more space and must be moved together with the copy.
+        PointList pillarNodes = Helper.createPointList(-50, -170, 60, 170);
+        graph.getEdgeIteratorState(edge.getEdge(), 1).setWayGeometry(pillarNodes);
+        assertEquals(pillarNodes, graph.getEdgeIteratorState(edge.getEdge(), 1).fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        assertEquals(pillarNodes, graph.getEdgeIteratorState(copy.getEdge(), 1).fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        AtomicInteger counter = new AtomicInteger();
+        graph.forEdgeAndCopiesOfEdge(graph.createEdgeExplorer(), graph.getEdgeIteratorState(edge.getEdge(), 1), e -> counter.incrementAndGet());
+        assertEquals(2, counter.get());
+        graph.close();
+    }
+
+    @Test
+    public void testLoadKeepsFormat() {
+        BaseGraph graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), false).create(defaultSize);
+        graph.getNodeAccess().setNode(0, 50, 10);
+        graph.getNodeAccess().setNode(1, 50.1, 10.1);
+        graph.edge(0, 1).setWayGeometry(Helper.createPointList(50.01, 10.01, 50.02, 10.02));
+        graph.flush();
+        graph.close();
+
+        // the format is read from the stored graph
+        graph = new BaseGraph.Builder(encodingManager).setDir(new RAMDirectory(defaultGraphLoc, true)).build();
+        assertTrue(graph.loadExisting());
+        assertTrue(graph.isCompactWayGeometry());
+        assertEquals(Helper.createPointList(50.01, 10.01, 50.02, 10.02), graph.getEdgeIteratorState(0, 1).fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        graph.close();
+    }
+}
@@ -21,9 +21,11 @@ package com.graphhopper.storage;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -33,6 +35,7 @@ import java.util.stream.IntStream;
 import static com.graphhopper.util.GHUtility.getEdge;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TurnCostStorageTest {
 
@@ -175,6 +178,91 @@ public class TurnCostStorageTest {
         assertEquals(0, turnCostStorage.get(carEnc, edge32, 2, edge20));
     }
 
+    @Test
+    public void testSortNodes() {
+        BaseGraph g = new BaseGraph.Builder(manager).withTurnCosts(true).create();
+        // node 0 is connected to many edges, so we get enough entries to use a binary search
+        int edges = 30;
+        for (int i = 1; i <= edges; i++)
+            GHUtility.setSpeed(60, 60, accessEnc, speedEnc, g.edge(0, i).setDistance(1));
+        TurnCostStorage turnCostStorage = g.getTurnCostStorage();
+        // add the entries in a mixed order and leave out some of them
+        for (int from = edges - 1; from >= 0; from--)
+            for (int to = 0; to < edges; to++)
+                if ((from + to) % 3 != 0)
+                    turnCostStorage.set(carTurnCostEnc, from, 0, to, (from * to) % 3);
+        turnCostStorage.set(carTurnCostEnc, 0, 1, 0, 2);
+        int count = turnCostStorage.getTurnCostsCount();
+        turnCostStorage.sortNodes();
+        assertEquals(count, turnCostStorage.getTurnCostsCount());
+        assertEquals(count - 1, turnCostStorage.getTurnCostsCount(0));
+        assertEquals(1, turnCostStorage.getTurnCostsCount(1));
+        assertEquals(0, turnCostStorage.getTurnCostsCount(2));
+        checkTurnCosts(turnCostStorage, edges);
+        assertEquals(2, turnCostStorage.get(carTurnCostEnc, 0, 1, 0));
+        assertEquals(0, turnCostStorage.get(carTurnCostEnc, 1, 1, 0));
+
+        // the iterator returns the entries of each node ordered by from and to edge
+        TurnCostStorage.Iterator iterator = turnCostStorage.getAllTurnCosts();
+        long prevKey = -1;
+        int iterated = 0;
+        while (iterator.next()) {
+            if (iterator.getViaNode() != 0)
+                continue;
+            long key = ((long) iterator.getFromEdge() << 32) | iterator.getToEdge();
+            assertTrue(key > prevKey);
+            prevKey = key;
+            iterated++;
+        }
+        assertEquals(count - 1, iterated);
+
+        // adding entries after sorting still works
+        turnCostStorage.set(carTurnCostEnc, 0, 0, 0, 1);
+        turnCostStorage.set(carTurnCostEnc, 3, 2, 4, 2);
+        assertEquals(1, turnCostStorage.get(carTurnCostEnc, 0, 0, 0));
+        assertEquals(2, turnCostStorage.get(carTurnCostEnc, 3, 2, 4));
+        assertEquals(count + 2, turnCostStorage.getTurnCostsCount());
+        assertEquals(count, turnCostStorage.getTurnCostsCount(0));
+        checkTurnCosts(turnCostStorage, edges);
+    }
+
+    @Test
+    public void testSortedLayoutIsPersisted() {
+        Directory dir = new RAMDirectory("target/turn-cost-storage-test", true).create();
+        try {
+            BaseGraph g = new BaseGraph.Builder(manager).setDir(dir).withTurnCosts(true).create();
+            initGraph(g, accessEnc, speedEnc);
+            int edge02 = getEdge(g, 0, 2).getEdge();
+            int edge23 = getEdge(g, 2, 3).getEdge();
+            int edge24 = getEdge(g, 2, 4).getEdge();
+            g.getTurnCostStorage().set(carTurnCostEnc, edge02, 2, edge24, 2);
+            g.getTurnCostStorage().set(carTurnCostEnc, edge02, 2, edge23, 1);
+            g.freeze();
+            g.flush();
+            g.close();
+
+            g = new BaseGraph.Builder(manager).setDir(new RAMDirectory("target/turn-cost-storage-test", true)).withTurnCosts(true).build();
+            assertTrue(g.loadExisting());
+            assertEquals(2, g.getTurnCostStorage().get(carTurnCostEnc, edge02, 2, edge24));
+            assertEquals(1, g.getTurnCostStorage().get(carTurnCostEnc, edge02, 2, edge23));
+            assertEquals(0, g.getTurnCostStorage().get(carTurnCostEnc, edge23, 2, edge24));
+            assertEquals(2, g.getTurnCostStorage().getTurnCostsCount(2));
+            g.close();
+        } finally {
+            Helper.removeDir(new File("target/turn-cost-storage-test"));
+        }
+    }
+
+    private void checkTurnCosts(TurnCostStorage turnCostStorage, int edges) {
+        for (int from = 0; from < edges; from++)
+            for (int to = 0; to < edges; to++) {
+                if (from == 0 && to == 0)
+                    continue;
+                double expected = (from + to) % 3 != 0 ? (from * to) % 3 : 0;
+                assertEquals(expected, turnCostStorage.get(carTurnCostEnc, from, 0, to), from + "->" + to);
+            }
+    }
+
     @Test
     public void testIterateEmptyStore() {
         BaseGraph g = new BaseGraph.Builder(manager).withTurnCosts(true).create();
@@ -36,8 +36,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 
 import java.util.*;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Karich
@@ -679,4 +678,54 @@ public class LocationIndexTreeTest {
                     "1, 78, 1, PILLAR"), output);
         }
     }
+
+    @Test
+    public void testFindClosestBatch() {
+        BaseGraph graph = new BaseGraph.Builder(encodingManager).create();
+        NodeAccess na = graph.getNodeAccess();
+        Random rnd = new Random(42);
+        // a grid with roughly 100m between the nodes and some way geometries
+        int size = 20;
+        for (int latIdx = 0; latIdx < size; latIdx++) {
+            for (int lonIdx = 0; lonIdx < size; lonIdx++) {
+                int node = latIdx * size + lonIdx;
+                na.setNode(node, 50 + 0.001 * latIdx, 10 + 0.0015 * lonIdx);
+                if (latIdx > 0)
+                    graph.edge(node - size, node);
+                if (lonIdx > 0) {
+                    EdgeIteratorState edge = graph.edge(node - 1, node);
+                    if (rnd.nextBoolean())
+                        edge.setWayGeometry(Helper.createPointList(50 + 0.001 * latIdx + 0.0003, 10 + 0.0015 * lonIdx - 0.0007));
+                }
+            }
+        }
+        LocationIndexTree index = createIndexNoPrepare(graph, 100);
+        index.prepareIndex();
+        EdgeFilter filter = edge -> edge.getEdge() % 3 != 0;
+
+        List<GHPoint> points = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+            points.add(new GHPoint(49.999 + rnd.nextDouble() * 0.022, 9.999 + rnd.nextDouble() * 0.031));
+        // the same point twice and a point far away
+        points.add(points.get(0));
+        points.add(new GHPoint(51, 11));
+
+        List<Snap> snaps = index.findClosest(points, filter);
+        assertEquals(points.size(), snaps.size());
+        for (int i = 0; i < points.size(); i++) {
+            Snap expected = index.findClosest(points.get(i).lat, points.get(i).lon, filter);
+            Snap snap = snaps.get(i);
+            assertEquals(expected.isValid(), snap.isValid(), "point " + i);
+            assertEquals(expected.getQueryPoint(), snap.getQueryPoint());
+            if (!expected.isValid())
+                continue;
+            assertEquals(expected.getClosestEdge().getEdge(), snap.getClosestEdge().getEdge(), "point " + i);
+            assertEquals(expected.getClosestNode(), snap.getClosestNode());
+            assertEquals(expected.getWayIndex(), snap.getWayIndex());
+            assertEquals(expected.getSnappedPosition(), snap.getSnappedPosition());
+            assertEquals(expected.getQueryDistance(), snap.getQueryDistance(), 1.e-6);
+        }
+        assertTrue(snaps.get(300).isValid());
+        assertFalse(index.findClosest(points, edge -> false).get(0).isValid());
+    }
 }
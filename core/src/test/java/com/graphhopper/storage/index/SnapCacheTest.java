@@ -0,0 +1,116 @@
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapCacheTest {
+
+    private static BaseGraph createGraph() {
+        //  3 --- 2
+        //  |     |
+        //  0 --- 1
+        BaseGraph graph = new BaseGraph.Builder(EncodingManager.start().build()).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 50.000, 10.000);
+        na.setNode(1, 50.000, 10.010);
+        na.setNode(2, 50.010, 10.010);
+        na.setNode(3, 50.010, 10.000);
+        graph.edge(0, 1).setWayGeometry(Helper.createPointList(49.999, 10.005));
+        graph.edge(1, 2);
+        graph.edge(2, 3);
+        graph.edge(3, 0);
+        return graph;
+    }
+
+    private static LocationIndexTree createIndex(BaseGraph graph) {
+        LocationIndexTree index = new LocationIndexTree(graph, new RAMDirectory());
+        index.setResolution(300);
+        index.prepareIndex();
+        return index;
+    }
+
+    @Test
+    public void testSameAsIndex() {
+        BaseGraph graph = createGraph();
+        LocationIndexTree index = createIndex(graph);
+        SnapCache cache = new SnapCache(graph, index, 10);
+        List<GHPoint> points = List.of(new GHPoint(50.001, 10.004), new GHPoint(50.005, 10.009), new GHPoint(50.012, 10.003),
+                new GHPoint(50.0000001, 10.0000001), new GHPoint(60, 20));
+        for (int run = 0; run < 2; run++) {
+            List<Snap> snaps = cache.findClosest(points, EdgeFilter.ALL_EDGES, "car");
+            assertEquals(points.size(), cache.size());
+            for (int i = 0; i < points.size(); i++) {
+                Snap expected = index.findClosest(points.get(i).lat, points.get(i).lon, EdgeFilter.ALL_EDGES);
+                assertSameSnap(expected, snaps.get(i));
+            }
+        }
+        // not found is cached as well
+        assertFalse(cache.findClosest(50.001, 10.004, edge -> false, "none").isValid());
+        assertFalse(cache.findClosest(50.001, 10.004, edge -> false, "none").isValid());
+        assertEquals(points.size() + 1, cache.size());
+
+        // a slightly different point uses the same entry, but the snapped point is calculated for the exact point
+        Snap expected = index.findClosest(50.0010004, 10.0040004, EdgeFilter.ALL_EDGES);
+        assertSameSnap(expected, cache.findClosest(50.0010004, 10.0040004, EdgeFilter.ALL_EDGES, "car"));
+        assertEquals(points.size() + 1, cache.size());
+    }
+
+    @Test
+    public void testFilterKey() {
+        BaseGraph graph = createGraph();
+        LocationIndexTree index = createIndex(graph);
+        SnapCache cache = new SnapCache(graph, index, 10);
+        EdgeFilter noBottomEdge = edge -> edge.getEdge() != 0;
+        assertEquals(0, cache.findClosest(50.001, 10.004, EdgeFilter.ALL_EDGES, "car").getClosestEdge().getEdge());
+        assertEquals(3, cache.findClosest(50.001, 10.004, noBottomEdge, "car|tunnel").getClosestEdge().getEdge());
+        assertEquals(0, cache.findClosest(50.001, 10.004, EdgeFilter.ALL_EDGES, "car").getClosestEdge().getEdge());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testEviction() {
+        BaseGraph graph = createGraph();
+        SnapCache cache = new SnapCache(graph, createIndex(graph), 2);
+        cache.findClosest(50.001, 10.004, EdgeFilter.ALL_EDGES, "car");
+        cache.findClosest(50.002, 10.004, EdgeFilter.ALL_EDGES, "car");
+        cache.findClosest(50.003, 10.004, EdgeFilter.ALL_EDGES, "car");
+        assertEquals(2, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testClearedIfEdgesChange() {
+        BaseGraph graph = createGraph();
+        SnapCache cache = new SnapCache(graph, createIndex(graph), 10);
+        cache.findClosest(50.001, 10.004, EdgeFilter.ALL_EDGES, "car");
+        assertEquals(1, cache.size());
+        graph.edge(0, 2);
+        cache.findClosest(50.002, 10.004, EdgeFilter.ALL_EDGES, "car");
+        assertEquals(1, cache.size());
+    }
+
+    private static void assertSameSnap(Snap expected, Snap snap) {
+        assertEquals(expected.isValid(), snap.isValid());
+        assertEquals(expected.getQueryPoint(), snap.getQueryPoint());
+        if (!expected.isValid())
+            return;
+        assertEquals(expected.getClosestEdge().getEdge(), snap.getClosestEdge().getEdge());
+        assertEquals(expected.getClosestNode(), snap.getClosestNode());
+        assertEquals(expected.getWayIndex(), snap.getWayIndex());
+        assertEquals(expected.getSnappedPosition(), snap.getSnappedPosition());
+        assertEquals(expected.getSnappedPoint().lat, snap.getSnappedPoint().lat, 1.e-9);
+        assertEquals(expected.getSnappedPoint().lon, snap.getSnappedPoint().lon, 1.e-9);
+        assertEquals(expected.getQueryDistance(), snap.getQueryDistance(), 1.e-6);
+    }
+}
@@ -2,6 +2,7 @@ package com.graphhopper.example;
 
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
+import com.graphhopper.isochrone.algorithm.OneToAllSearch;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.querygraph.QueryGraph;
@@ -13,7 +14,6 @@ import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.PMap;
 
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class IsochroneExample {
     public static void main(String[] args) {
@@ -32,14 +32,14 @@ public class IsochroneExample {
         // find all nodes that are within a radius of 120s
         tree.setTimeLimit(120_000);
 
-        AtomicInteger counter = new AtomicInteger(0);
-        // you need to specify a callback to define what should be done
-        tree.search(snap.getClosestNode(), label -> {
-            // see IsoLabel.java for more properties
-            // System.out.println("node: " + label.node + ", time: " + label.time + ", distance: " + label.distance);
-            counter.incrementAndGet();
-        });
-        assert counter.get() > 200;
+        int counter = 0;
+        // the cursor settles one node after the other, see OneToAllSearch.Cursor for more properties
+        OneToAllSearch.Cursor cursor = tree.search(snap.getClosestNode());
+        while (cursor.next()) {
+            // System.out.println("node: " + cursor.getNode() + ", time: " + cursor.getTime() + ", distance: " + cursor.getDistance());
+            counter++;
+        }
+        assert counter > 200;
     }
 
     /**
@@ -0,0 +1,71 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jmh;
+
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.PointList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BaseGraphBenchmark {
+    private BaseGraph graph;
+    private EdgeExplorer explorer;
+    private int[] edges;
+    private int index;
+
+    @Setup
+    public void setup(GraphState state) {
+        graph = state.hopper.getBaseGraph();
+        explorer = graph.createEdgeExplorer();
+        Random rnd = new Random(123);
+        edges = new int[1000];
+        for (int i = 0; i < edges.length; i++)
+            edges[i] = rnd.nextInt(graph.getEdges());
+    }
+
+    /**
+     * Visits the adjacent edges of every node of the graph
+     */
+    @Benchmark
+    public long iterateAllEdges() {
+        long sum = 0;
+        for (int node = 0; node < graph.getNodes(); node++) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+                sum += iter.getAdjNode();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public PointList fetchWayGeometry() {
+        index = (index + 1) % edges.length;
+        return graph.getEdgeIteratorState(edges[index], Integer.MIN_VALUE).fetchWayGeometry(FetchMode.ALL);
+    }
+}
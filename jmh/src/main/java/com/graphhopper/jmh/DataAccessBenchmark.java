@@ -0,0 +1,87 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jmh;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataAccessBenchmark {
+    private static final int INTS = 4 * 1024 * 1024;
+
+    @Param({"RAM_STORE", "MMAP"})
+    public String type;
+
+    private File location;
+    private Directory dir;
+    private DataAccess da;
+    private long[] positions;
+
+    @Setup
+    public void setup() throws IOException {
+        location = Files.createTempDirectory("gh-jmh").toFile();
+        dir = new GHDirectory(location.getAbsolutePath(), DAType.fromString(type));
+        da = dir.create("ints").create(INTS * 4L);
+        for (int i = 0; i < INTS; i++)
+            da.setInt(i * 4L, i);
+        Random rnd = new Random(123);
+        positions = new long[1000];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = rnd.nextInt(INTS) * 4L;
+    }
+
+    @TearDown
+    public void tearDown() {
+        dir.clear();
+        Helper.removeDir(location);
+    }
+
+    @Benchmark
+    public long sequentialGetInt() {
+        long sum = 0;
+        for (int i = 0; i < INTS; i++)
+            sum += da.getInt(i * 4L);
+        return sum;
+    }
+
+    /**
+     * Reads 1000 ints at random positions
+     */
+    @Benchmark
+    public long randomGetInt() {
+        long sum = 0;
+        for (long position : positions)
+            sum += da.getInt(position);
+        return sum;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jmh;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.shapes.BBox;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Provides the GraphHopper instance for the bundled Andorra extract that is shared by all benchmarks of a fork. The
+ * graph is imported only once and stored in the graph location, so the following forks just load it. Delete the
+ * graph location after changes that affect the import.
+ * <p>
+ * The OSM file and graph location can be changed with the gh.jmh.osm_file and gh.jmh.graph_location system
+ * properties. By default, they are resolved relative to the repository root or the jmh module directory.
+ */
+@State(Scope.Benchmark)
+public class GraphState {
+    public static final String PROFILE = "car";
+
+    GraphHopper hopper;
+    Weighting weighting;
+    EdgeFilter snapFilter;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        hopper = new GraphHopper();
+        hopper.setOSMFile(System.getProperty("gh.jmh.osm_file", resolve("core/files/andorra.osm.pbf")));
+        hopper.setGraphHopperLocation(System.getProperty("gh.jmh.graph_location", resolve("jmh/target/jmh-graph")));
+        hopper.setEncodedValuesString("car_access, car_average_speed, road_access, road_class, max_speed");
+        hopper.setProfiles(new Profile(PROFILE).setCustomModel(GHUtility.loadCustomModelFromJar("car.json")));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile(PROFILE));
+        hopper.importOrLoad();
+        weighting = hopper.createWeighting(hopper.getProfile(PROFILE), new PMap());
+        snapFilter = new DefaultSnapFilter(weighting, hopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(PROFILE)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hopper.close();
+    }
+
+    /**
+     * @return the IDs of random nodes of the road network that can be reached with our profile
+     */
+    int[] createRandomNodes(Random rnd, int count) {
+        BBox bounds = hopper.getBaseGraph().getBounds();
+        int[] nodes = new int[count];
+        for (int i = 0; i < count; ) {
+            double lat = bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat);
+            double lon = bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon);
+            Snap snap = hopper.getLocationIndex().findClosest(lat, lon, snapFilter);
+            if (snap.isValid())
+                nodes[i++] = snap.getClosestNode();
+        }
+        return nodes;
+    }
+
+    private static String resolve(String path) {
+        // we do not know if the benchmarks are run from the repository root or the jmh module
+        return new File(path).getParentFile().exists() ? path : "../" + path;
+    }
+}
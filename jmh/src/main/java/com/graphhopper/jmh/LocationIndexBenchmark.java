@@ -0,0 +1,61 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jmh;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.shapes.BBox;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocationIndexBenchmark {
+    private LocationIndex locationIndex;
+    private EdgeFilter snapFilter;
+    private double[] lats;
+    private double[] lons;
+    private int index;
+
+    @Setup
+    public void setup(GraphState state) {
+        locationIndex = state.hopper.getLocationIndex();
+        snapFilter = state.snapFilter;
+        BBox bounds = state.hopper.getBaseGraph().getBounds();
+        Random rnd = new Random(123);
+        lats = new double[1000];
+        lons = new double[1000];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = bounds.minLat + rnd.nextDouble() * (bounds.maxLat - bounds.minLat);
+            lons[i] = bounds.minLon + rnd.nextDouble() * (bounds.maxLon - bounds.minLon);
+        }
+    }
+
+    @Benchmark
+    public Snap findClosest() {
+        index = (index + 1) % lats.length;
+        return locationIndex.findClosest(lats[index], lons[index], snapFilter);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jmh;
+
+import com.graphhopper.routing.AStarBidirection;
+import com.graphhopper.routing.InstructionsFromEdges;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ev.EncodedValueLookup;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.util.InstructionList;
+import com.graphhopper.util.Translation;
+import com.graphhopper.util.details.PathDetail;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import com.graphhopper.util.details.PathDetailsFromEdges;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.graphhopper.util.Parameters.Details.*;
+
+/**
+ * Measures the work that is done for every path after the actual route search
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PathBenchmark {
+    private static final List<String> PATH_DETAILS = List.of(STREET_NAME, AVERAGE_SPEED, DISTANCE, TIME, "road_class", "max_speed");
+
+    private BaseGraph graph;
+    private Weighting weighting;
+    private EncodedValueLookup evLookup;
+    private PathDetailsBuilderFactory pathDetailsBuilderFactory;
+    private Translation translation;
+    private final List<Path> paths = new ArrayList<>();
+    private int index;
+
+    @Setup
+    public void setup(GraphState state) {
+        graph = state.hopper.getBaseGraph();
+        weighting = state.weighting;
+        evLookup = state.hopper.getEncodingManager();
+        pathDetailsBuilderFactory = state.hopper.getPathDetailsBuilderFactory();
+        translation = state.hopper.getTranslationMap().getWithFallBack(Locale.US);
+        int[] nodes = state.createRandomNodes(new Random(123), 200);
+        for (int i = 0; i < nodes.length - 1; i++) {
+            Path path = new AStarBidirection(graph, weighting, TraversalMode.NODE_BASED).calcPath(nodes[i], nodes[i + 1]);
+            if (path.isFound())
+                paths.add(path);
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<PathDetail>> pathDetails() {
+        index = (index + 1) % paths.size();
+        return PathDetailsFromEdges.calcDetails(paths.get(index), evLookup, weighting, PATH_DETAILS, pathDetailsBuilderFactory, 0, graph);
+    }
+
+    @Benchmark
+    public InstructionList instructions() {
+        index = (index + 1) % paths.size();
+        return InstructionsFromEdges.calcInstructions(paths.get(index), graph, weighting, evLookup, translation);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jmh;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.shapes.GHPoint;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares routing many pairs of points one by one with routing them with a single bulk request, where the routes
+ * share only a few distinct points.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteBulkBenchmark {
+    private GraphHopper hopper;
+    private List<GHPoint> points;
+    private List<int[]> pairs;
+
+    @Param({"20"})
+    int pointCount;
+
+    @Setup
+    public void setup(GraphState state) {
+        hopper = state.hopper;
+        NodeAccess na = hopper.getBaseGraph().getNodeAccess();
+        points = new ArrayList<>();
+        for (int node : state.createRandomNodes(new Random(123), pointCount))
+            points.add(new GHPoint(na.getLat(node), na.getLon(node)));
+        pairs = new ArrayList<>();
+        for (int from = 0; from < pointCount; from++)
+            for (int to = 0; to < pointCount; to++)
+                pairs.add(new int[]{from, to});
+    }
+
+    private GHRequest createRequest(List<GHPoint> points) {
+        return new GHRequest(points).setProfile(GraphState.PROFILE).
+                putHint("instructions", false).
+                putHint("calc_points", false);
+    }
+
+    @Benchmark
+    public void routeEachPair(Blackhole bh) {
+        for (int[] pair : pairs)
+            bh.consume(hopper.route(createRequest(List.of(points.get(pair[0]), points.get(pair[1])))));
+    }
+
+    @Benchmark
+    public void routeBulk(Blackhole bh) {
+        hopper.routeBulk(createRequest(points), pairs).forEach(bh::consume);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jmh;
+
+import com.graphhopper.routing.AStarBidirection;
+import com.graphhopper.routing.DijkstraBidirectionCH;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.RoutingCHGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoutingBenchmark {
+    private BaseGraph graph;
+    private Weighting weighting;
+    private RoutingCHGraph chGraph;
+    private int[] nodes;
+    private int index;
+
+    @Setup
+    public void setup(GraphState state) {
+        graph = state.hopper.getBaseGraph();
+        weighting = state.weighting;
+        chGraph = state.hopper.getCHGraphs().get(GraphState.PROFILE);
+        nodes = state.createRandomNodes(new Random(123), 1001);
+    }
+
+    @Benchmark
+    public Path aStarBidirection() {
+        index = (index + 1) % (nodes.length - 1);
+        return new AStarBidirection(graph, weighting, TraversalMode.NODE_BASED).calcPath(nodes[index], nodes[index + 1]);
+    }
+
+    @Benchmark
+    public Path dijkstraBidirectionCH() {
+        index = (index + 1) % (nodes.length - 1);
+        return new DijkstraBidirectionCH(chGraph).calcPath(nodes[index], nodes[index + 1]);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups a sequence of directed real edges and map matching states into {@link EdgeMatch}es: consecutive occurrences
+ * of the same directed edge are merged and each state is attached to the edge it was observed on.
+ */
+class EdgeMatchCollector {
+    private List<EdgeMatch> edgeMatches = new ArrayList<>();
+    private List<State> states = new ArrayList<>();
+    private EdgeIteratorState currentDirectedRealEdge;
+
+    void addEdge(EdgeIteratorState newDirectedRealEdge) {
+        if (currentDirectedRealEdge != null && !equalEdges(currentDirectedRealEdge, newDirectedRealEdge)) {
+            edgeMatches.add(new EdgeMatch(currentDirectedRealEdge, states));
+            states = new ArrayList<>();
+        }
+        currentDirectedRealEdge = newDirectedRealEdge;
+    }
+
+    /**
+     * @param directedRealEdge the edge the state is on or null if the state is on a node
+     */
+    void addState(State state, EdgeIteratorState directedRealEdge) {
+        if (directedRealEdge != null)
+            addEdge(directedRealEdge);
+        states.add(state);
+    }
+
+    /**
+     * Completes the edge match of the current edge. The states are dropped if no edge was added so far.
+     */
+    void finish() {
+        if (currentDirectedRealEdge != null)
+            edgeMatches.add(new EdgeMatch(currentDirectedRealEdge, states));
+        currentDirectedRealEdge = null;
+        states = new ArrayList<>();
+    }
+
+    /**
+     * Returns the edge matches that were completed since the last call.
+     */
+    List<EdgeMatch> pollEdgeMatches() {
+        List<EdgeMatch> result = edgeMatches;
+        edgeMatches = new ArrayList<>();
+        return result;
+    }
+
+    private static boolean equalEdges(EdgeIteratorState edge1, EdgeIteratorState edge2) {
+        return edge1.getEdge() == edge2.getEdge()
+                && edge1.getBaseNode() == edge2.getBaseNode()
+                && edge1.getAdjNode() == edge2.getAdjNode();
+    }
+}
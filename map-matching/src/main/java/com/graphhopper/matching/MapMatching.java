@@ -21,13 +21,15 @@ import com.carrotsearch.hppc.IntHashSet;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.AStarBidirection;
-import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.DijkstraOneToManyEdgeCH;
+import com.graphhopper.routing.MultiTargetDijkstra;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.Subnetwork;
 import com.graphhopper.routing.lm.LMApproximator;
 import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
 import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
 import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.EdgeFilter;
@@ -35,6 +37,7 @@ import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
@@ -106,71 +109,176 @@ public class MapMatching {
 
         boolean disableLM = hints.getBool(Parameters.Landmark.DISABLE, false);
         boolean disableCH = hints.getBool(Parameters.CH.DISABLE, false);
-
-        // see map-matching/#177: both ch.disable and lm.disable can be used to force Dijkstra which is the better
-        // (=faster) choice when the observations are close to each other
-        boolean useDijkstra = disableLM || disableCH;
-
-        LandmarkStorage landmarks;
-        if (!useDijkstra && graphHopper.getLandmarks().get(profile.getName()) != null) {
-            // using LM because u-turn prevention does not work properly with (node-based) CH
-            landmarks = graphHopper.getLandmarks().get(profile.getName());
-        } else {
-            landmarks = null;
-        }
+        // node-based CH cannot enforce the directed candidate edges (u-turn prevention), so we only use edge-based CH
+        RoutingCHGraph chGraph = disableCH ? null : graphHopper.getCHGraphs().get(profile.getName());
+        if (chGraph != null && !chGraph.isEdgeBased())
+            chGraph = null;
+        // see map-matching/#177: without edge-based CH both ch.disable and lm.disable can be used to force Dijkstra
+        // which is the better (=faster) choice when the observations are close to each other
+        LandmarkStorage landmarks = disableLM || disableCH ? null : graphHopper.getLandmarks().get(profile.getName());
         Weighting weighting = graphHopper.createWeighting(profile, hints);
         BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileStr));
         DefaultSnapFilter snapFilter = new DefaultSnapFilter(weighting, inSubnetworkEnc);
         int maxVisitedNodes = hints.getInt(Parameters.Routing.MAX_VISITED_NODES, Integer.MAX_VALUE);
 
-        Router router = new Router() {
-            @Override
-            public EdgeFilter getSnapFilter() {
-                return snapFilter;
-            }
+        if (chGraph != null)
+            return new CHRouter(chGraph, weighting, snapFilter, maxVisitedNodes);
+        else if (landmarks != null)
+            return new LMRouter(landmarks, weighting, snapFilter, maxVisitedNodes);
+        else
+            return new OneToManyRouter(weighting, snapFilter, maxVisitedNodes);
+    }
 
-            @Override
-            public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges) {
-                assert (toNodes.length == toInEdges.length);
-                List<Path> result = new ArrayList<>();
-                for (int i = 0; i < toNodes.length; i++) {
-                    result.add(calcOnePath(queryGraph, fromNode, toNodes[i], fromOutEdge, toInEdges[i]));
-                }
-                return result;
+    /**
+     * Calculates every transition with its own bidirectional A* search using the landmarks. The landmarks only help
+     * towards a single target, so unlike the {@link OneToManyRouter} the searches for the candidates of the next
+     * observation are not shared, but they are much smaller when the observations are far apart.
+     */
+    private static class LMRouter implements Router {
+        private final LandmarkStorage landmarks;
+        private final Weighting weighting;
+        private final EdgeFilter snapFilter;
+        private final int maxVisitedNodes;
+        private long visitedNodes;
+
+        LMRouter(LandmarkStorage landmarks, Weighting weighting, EdgeFilter snapFilter, int maxVisitedNodes) {
+            this.landmarks = landmarks;
+            this.weighting = weighting;
+            this.snapFilter = snapFilter;
+            this.maxVisitedNodes = maxVisitedNodes;
+        }
+
+        @Override
+        public EdgeFilter getSnapFilter() {
+            return snapFilter;
+        }
+
+        @Override
+        public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+            assert (toNodes.length == toInEdges.length);
+            Weighting queryGraphWeighting = queryGraph.wrapWeighting(weighting);
+            int activeLM = Math.min(8, landmarks.getLandmarkCount());
+            List<Path> result = new ArrayList<>(toNodes.length);
+            for (int i = 0; i < toNodes.length; i++) {
+                AStarBidirection aStarBidirection = new AStarBidirection(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
+                    @Override
+                    protected void initCollections(int size) {
+                        super.initCollections(50);
+                    }
+                };
+                aStarBidirection.setApproximation(LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM));
+                aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
+                result.add(aStarBidirection.calcPath(fromNode, toNodes[i], fromOutEdge, toInEdges[i]));
+                visitedNodes += aStarBidirection.getVisitedNodes();
             }
+            return result;
+        }
+
+        @Override
+        public Weighting getWeighting() {
+            return weighting;
+        }
+
+        @Override
+        public long getVisitedNodes() {
+            return visitedNodes;
+        }
+    }
 
-            private Path calcOnePath(QueryGraph queryGraph, int fromNode, int toNode, int fromOutEdge, int toInEdge) {
-                Weighting queryGraphWeighting = queryGraph.wrapWeighting(weighting);
-                if (landmarks != null) {
-                    AStarBidirection aStarBidirection = new AStarBidirection(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    int activeLM = Math.min(8, landmarks.getLandmarkCount());
-                    LMApproximator lmApproximator = LMApproximator.forLandmarks(queryGraph, queryGraphWeighting, landmarks, activeLM);
-                    aStarBidirection.setApproximation(lmApproximator);
-                    aStarBidirection.setMaxVisitedNodes(maxVisitedNodes);
-                    return aStarBidirection.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
-                } else {
-                    DijkstraBidirectionRef dijkstraBidirectionRef = new DijkstraBidirectionRef(queryGraph, queryGraphWeighting, TraversalMode.EDGE_BASED) {
-                        @Override
-                        protected void initCollections(int size) {
-                            super.initCollections(50);
-                        }
-                    };
-                    dijkstraBidirectionRef.setMaxVisitedNodes(maxVisitedNodes);
-                    return dijkstraBidirectionRef.calcPath(fromNode, toNode, fromOutEdge, toInEdge);
+    /**
+     * Calculates all transitions of one candidate with a single forward Dijkstra that stops as soon as all
+     * candidates of the next observation are settled.
+     */
+    private static class OneToManyRouter implements Router {
+        private final Weighting weighting;
+        private final EdgeFilter snapFilter;
+        private final int maxVisitedNodes;
+        private long visitedNodes;
+
+        OneToManyRouter(Weighting weighting, EdgeFilter snapFilter, int maxVisitedNodes) {
+            this.weighting = weighting;
+            this.snapFilter = snapFilter;
+            this.maxVisitedNodes = maxVisitedNodes;
+        }
+
+        @Override
+        public EdgeFilter getSnapFilter() {
+            return snapFilter;
+        }
+
+        @Override
+        public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+            MultiTargetDijkstra algo = new MultiTargetDijkstra(queryGraph, queryGraph.wrapWeighting(weighting), TraversalMode.EDGE_BASED) {
+                @Override
+                protected void initCollections(int size) {
+                    super.initCollections(50);
                 }
-            }
+            };
+            algo.setMaxVisitedNodes(maxVisitedNodes);
+            List<Path> paths = algo.calcPaths(fromNode, fromOutEdge, toNodes, toInEdges);
+            visitedNodes += algo.getVisitedNodes();
+            return paths;
+        }
+
+        @Override
+        public Weighting getWeighting() {
+            return weighting;
+        }
 
-            @Override
-            public Weighting getWeighting() {
-                return weighting;
+        @Override
+        public long getVisitedNodes() {
+            return visitedNodes;
+        }
+    }
+
+    /**
+     * Calculates the transitions with edge-based CH. The upward search from the candidate is shared by all candidates
+     * of the next step, see {@link DijkstraOneToManyEdgeCH}.
+     */
+    private static class CHRouter implements Router {
+        private final RoutingCHGraph chGraph;
+        private final Weighting weighting;
+        private final EdgeFilter snapFilter;
+        private final int maxVisitedNodes;
+        private QueryGraph queryGraph;
+        private RoutingCHGraph queryCHGraph;
+        private long visitedNodes;
+
+        CHRouter(RoutingCHGraph chGraph, Weighting weighting, EdgeFilter snapFilter, int maxVisitedNodes) {
+            this.chGraph = chGraph;
+            this.weighting = weighting;
+            this.snapFilter = snapFilter;
+            this.maxVisitedNodes = maxVisitedNodes;
+        }
+
+        @Override
+        public EdgeFilter getSnapFilter() {
+            return snapFilter;
+        }
+
+        @Override
+        public List<Path> calcPaths(QueryGraph queryGraph, int fromNode, int fromOutEdge, int[] toNodes, int[] toInEdges) {
+            assert (toNodes.length == toInEdges.length);
+            if (queryGraph != this.queryGraph) {
+                this.queryGraph = queryGraph;
+                queryCHGraph = new QueryRoutingCHGraph(chGraph, queryGraph);
             }
-        };
-        return router;
+            DijkstraOneToManyEdgeCH algo = new DijkstraOneToManyEdgeCH(queryCHGraph);
+            algo.setMaxVisitedNodes(maxVisitedNodes);
+            List<Path> paths = algo.calcPaths(fromNode, fromOutEdge, toNodes, toInEdges);
+            visitedNodes += algo.getVisitedNodes();
+            return paths;
+        }
+
+        @Override
+        public Weighting getWeighting() {
+            return weighting;
+        }
+
+        @Override
+        public long getVisitedNodes() {
+            return visitedNodes;
+        }
     }
 
     public MapMatching(BaseGraph graph, LocationIndexTree locationIndex, Router router) {
@@ -195,6 +303,13 @@ public class MapMatching {
         this.measurementErrorSigma = measurementErrorSigma;
     }
 
+    /**
+     * Starts an incremental map matching session for a live stream of observations, see {@link MapMatchingSession}.
+     */
+    public MapMatchingSession startSession() {
+        return new MapMatchingSession(this, graph, router, measurementErrorSigma, transitionProbabilityBeta);
+    }
+
     public MatchResult match(List<Observation> observations) {
         List<Observation> filteredObservations = filterObservations(observations);
         statistics.put("filteredObservations", filteredObservations.size());
@@ -337,40 +452,46 @@ public class MapMatching {
             Observation observation = filteredObservations.get(i);
             Collection<Snap> splits = splitsPerObservation.get(i);
             List<State> candidates = new ArrayList<>();
-            for (Snap split : splits) {
-                if (queryGraph.isVirtualNode(split.getClosestNode())) {
-                    List<VirtualEdgeIteratorState> virtualEdges = new ArrayList<>();
-                    EdgeIterator iter = queryGraph.createEdgeExplorer().setBaseNode(split.getClosestNode());
-                    while (iter.next()) {
-                        if (!queryGraph.isVirtualEdge(iter.getEdge())) {
-                            throw new RuntimeException("Virtual nodes must only have virtual edges "
-                                    + "to adjacent nodes.");
-                        }
-                        virtualEdges.add((VirtualEdgeIteratorState) queryGraph.getEdgeIteratorState(iter.getEdge(), iter.getAdjNode()));
-                    }
-                    if (virtualEdges.size() != 2) {
-                        throw new RuntimeException("Each virtual node must have exactly 2 "
-                                + "virtual edges (reverse virtual edges are not returned by the "
-                                + "EdgeIterator");
-                    }
-
-                    // Create a directed candidate for each of the two possible directions through
-                    // the virtual node. We need to add candidates for both directions because
-                    // we don't know yet which is the correct one. This will be figured
-                    // out by the Viterbi algorithm.
-                    candidates.add(new State(observation, split, virtualEdges.get(0), virtualEdges.get(1)));
-                    candidates.add(new State(observation, split, virtualEdges.get(1), virtualEdges.get(0)));
-                } else {
-                    // Create an undirected candidate for the real node.
-                    candidates.add(new State(observation, split));
-                }
-            }
+            for (Snap split : splits)
+                candidates.addAll(createCandidates(queryGraph, observation, split));
 
             timeSteps.add(new ObservationWithCandidateStates(observation, candidates));
         }
         return timeSteps;
     }
 
+    /**
+     * Creates two directed candidates if the snap is a virtual node of the given query graph and an undirected
+     * candidate otherwise.
+     */
+    static List<State> createCandidates(QueryGraph queryGraph, Observation observation, Snap split) {
+        if (!queryGraph.isVirtualNode(split.getClosestNode()))
+            // Create an undirected candidate for the real node.
+            return List.of(new State(observation, split));
+
+        List<VirtualEdgeIteratorState> virtualEdges = new ArrayList<>();
+        EdgeIterator iter = queryGraph.createEdgeExplorer().setBaseNode(split.getClosestNode());
+        while (iter.next()) {
+            if (!queryGraph.isVirtualEdge(iter.getEdge())) {
+                throw new RuntimeException("Virtual nodes must only have virtual edges "
+                        + "to adjacent nodes.");
+            }
+            virtualEdges.add((VirtualEdgeIteratorState) queryGraph.getEdgeIteratorState(iter.getEdge(), iter.getAdjNode()));
+        }
+        if (virtualEdges.size() != 2) {
+            throw new RuntimeException("Each virtual node must have exactly 2 "
+                    + "virtual edges (reverse virtual edges are not returned by the "
+                    + "EdgeIterator");
+        }
+
+        // Create a directed candidate for each of the two possible directions through
+        // the virtual node. We need to add candidates for both directions because
+        // we don't know yet which is the correct one. This will be figured
+        // out by the Viterbi algorithm.
+        return List.of(new State(observation, split, virtualEdges.get(0), virtualEdges.get(1)),
+                new State(observation, split, virtualEdges.get(1), virtualEdges.get(0)));
+    }
+
     static class Label {
         int timeStep;
         State state;
@@ -473,43 +594,19 @@ public class MapMatching {
 
         // (Consider totally forbidding candidate states to be snapped to a point, and make them all be on directed
         // edges, then that corner case goes away.)
-        List<EdgeMatch> edgeMatches = new ArrayList<>();
-        List<State> states = new ArrayList<>();
-        EdgeIteratorState currentDirectedRealEdge = null;
+        EdgeMatchCollector collector = new EdgeMatchCollector();
         for (SequenceState<State, Observation, Path> transitionAndState : seq) {
             // transition (except before the first state)
             if (transitionAndState.transitionDescriptor != null) {
-                for (EdgeIteratorState edge : transitionAndState.transitionDescriptor.calcEdges()) {
-                    EdgeIteratorState newDirectedRealEdge = resolveToRealEdge(edge);
-                    if (currentDirectedRealEdge != null) {
-                        if (!equalEdges(currentDirectedRealEdge, newDirectedRealEdge)) {
-                            EdgeMatch edgeMatch = new EdgeMatch(currentDirectedRealEdge, states);
-                            edgeMatches.add(edgeMatch);
-                            states = new ArrayList<>();
-                        }
-                    }
-                    currentDirectedRealEdge = newDirectedRealEdge;
-                }
+                for (EdgeIteratorState edge : transitionAndState.transitionDescriptor.calcEdges())
+                    collector.addEdge(resolveToRealEdge(edge));
             }
             // state
-            if (transitionAndState.state.isOnDirectedEdge()) { // as opposed to on a node
-                EdgeIteratorState newDirectedRealEdge = resolveToRealEdge(transitionAndState.state.getOutgoingVirtualEdge());
-                if (currentDirectedRealEdge != null) {
-                    if (!equalEdges(currentDirectedRealEdge, newDirectedRealEdge)) {
-                        EdgeMatch edgeMatch = new EdgeMatch(currentDirectedRealEdge, states);
-                        edgeMatches.add(edgeMatch);
-                        states = new ArrayList<>();
-                    }
-                }
-                currentDirectedRealEdge = newDirectedRealEdge;
-            }
-            states.add(transitionAndState.state);
-        }
-        if (currentDirectedRealEdge != null) {
-            EdgeMatch edgeMatch = new EdgeMatch(currentDirectedRealEdge, states);
-            edgeMatches.add(edgeMatch);
+            collector.addState(transitionAndState.state, transitionAndState.state.isOnDirectedEdge()
+                    ? resolveToRealEdge(transitionAndState.state.getOutgoingVirtualEdge()) : null);
         }
-        return edgeMatches;
+        collector.finish();
+        return collector.pollEdgeMatches();
     }
 
     private double gpxLength(List<Observation> gpxList) {
@@ -527,14 +624,12 @@ public class MapMatching {
         }
     }
 
-    private boolean equalEdges(EdgeIteratorState edge1, EdgeIteratorState edge2) {
-        return edge1.getEdge() == edge2.getEdge()
-                && edge1.getBaseNode() == edge2.getBaseNode()
-                && edge1.getAdjNode() == edge2.getAdjNode();
-    }
-
-    private EdgeIteratorState resolveToRealEdge(EdgeIteratorState edgeIteratorState) {
-        if (queryGraph.isVirtualNode(edgeIteratorState.getBaseNode()) || queryGraph.isVirtualNode(edgeIteratorState.getAdjNode())) {
+    /**
+     * Returns the directed edge of the base graph for the given edge of a query graph.
+     */
+    EdgeIteratorState resolveToRealEdge(EdgeIteratorState edgeIteratorState) {
+        // virtual nodes are numbered after the nodes of the base graph, so this works for any query graph
+        if (edgeIteratorState.getBaseNode() >= graph.getNodes() || edgeIteratorState.getAdjNode() >= graph.getNodes()) {
             return graph.getEdgeIteratorStateForKey(((VirtualEdgeIteratorState) edgeIteratorState).getOriginalEdgeKey());
         } else {
             return edgeIteratorState;
@@ -0,0 +1,342 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper GmbH licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistancePlaneProjection;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Matches a live stream of observations incrementally, e.g. the GPS positions of a vehicle. In contrast to
+ * {@link MapMatching#match(List)} the observations are passed in one at a time and only the Viterbi labels of the
+ * recent observations are kept. As soon as the most likely sequences of all candidates of the latest observation
+ * share a common prefix this prefix cannot change anymore and its {@link EdgeMatch}es are returned. If they do not
+ * converge within {@link #setMaxWindowSize(int)} observations the prefix of the currently most likely sequence is
+ * used. The transitions are calculated on a query graph that only contains the candidates of the previous and the
+ * latest observation, so the work per observation and the memory of a session are bounded.
+ * <p>
+ * If no candidate of an observation can be reached the sequence matched so far is completed and a new sequence is
+ * started with this observation. Observations without any candidate are ignored.
+ * <p>
+ * A session is not thread-safe and uses the router of the MapMatching instance that started it.
+ */
+public class MapMatchingSession {
+    private final MapMatching mapMatching;
+    private final BaseGraph graph;
+    private final MapMatching.Router router;
+    private final double measurementErrorSigma;
+    private final HmmProbabilities probabilities;
+    private final DistanceCalc distanceCalc = new DistancePlaneProjection();
+    private final EdgeMatchCollector collector = new EdgeMatchCollector();
+    private int maxWindowSize = 50;
+
+    private Observation lastObservation;
+    // the last observation that was used for matching, its candidate snaps (before they were added to a query graph)
+    // and the labels of its candidates
+    private Observation prevObservation;
+    private List<Snap> prevSnaps;
+    private List<Label> labels = new ArrayList<>();
+    private double accumulatedLinearDistance;
+    // the last label of the part of the sequence that was emitted already
+    private Label finalLabel;
+    private double matchLength;
+    private long matchMillis;
+    private boolean finished;
+
+    MapMatchingSession(MapMatching mapMatching, BaseGraph graph, MapMatching.Router router, double measurementErrorSigma, double transitionProbabilityBeta) {
+        this.mapMatching = mapMatching;
+        this.graph = graph;
+        this.router = router;
+        this.measurementErrorSigma = measurementErrorSigma;
+        this.probabilities = new HmmProbabilities(measurementErrorSigma, transitionProbabilityBeta);
+    }
+
+    /**
+     * The maximum number of observations for which the Viterbi labels are kept before the prefix of the most likely
+     * sequence is emitted even though the sequences did not converge.
+     */
+    public MapMatchingSession setMaxWindowSize(int maxWindowSize) {
+        if (maxWindowSize < 1)
+            throw new IllegalArgumentException("maxWindowSize must be positive but was " + maxWindowSize);
+        this.maxWindowSize = maxWindowSize;
+        return this;
+    }
+
+    /**
+     * Adds the next observation and returns the edge matches that became final, which is often an empty list.
+     * Like in {@link MapMatching#filterObservations} observations that are closer than 2 * measurementErrorSigma to
+     * the last used observation are skipped.
+     */
+    public List<EdgeMatch> add(Observation observation) {
+        if (finished)
+            throw new IllegalStateException("The session was finished already");
+        double rawDistance = lastObservation == null ? 0 : calcDist(lastObservation, observation);
+        lastObservation = observation;
+        if (prevObservation != null && calcDist(prevObservation, observation) <= 2 * measurementErrorSigma) {
+            accumulatedLinearDistance += rawDistance;
+            return Collections.emptyList();
+        }
+        match(observation, rawDistance);
+        return collector.pollEdgeMatches();
+    }
+
+    /**
+     * Matches the last observation, even if it was skipped, and returns all remaining edge matches of the most likely
+     * sequence. The session cannot be used afterwards.
+     */
+    public List<EdgeMatch> finish() {
+        if (finished)
+            throw new IllegalStateException("The session was finished already");
+        finished = true;
+        if (lastObservation != null && lastObservation != prevObservation)
+            match(lastObservation, 0);
+        if (!labels.isEmpty())
+            emit(findBest(labels));
+        collector.finish();
+        labels = Collections.emptyList();
+        prevSnaps = null;
+        return collector.pollEdgeMatches();
+    }
+
+    /**
+     * @return the length of the path of all edge matches that were returned so far
+     */
+    public double getMatchLength() {
+        return matchLength;
+    }
+
+    /**
+     * @return the time of the path of all edge matches that were returned so far
+     */
+    public long getMatchMillis() {
+        return matchMillis;
+    }
+
+    private void match(Observation observation, double rawDistance) {
+        List<Snap> snaps = mapMatching.findCandidateSnaps(observation.getPoint().lat, observation.getPoint().lon);
+        if (snaps.isEmpty()) {
+            accumulatedLinearDistance += rawDistance;
+            return;
+        }
+        if (prevObservation != null)
+            observation.setAccumulatedLinearDistanceToPrevious(accumulatedLinearDistance + rawDistance - calcDist(prevObservation, observation));
+        accumulatedLinearDistance = 0;
+
+        List<Label> newLabels = prevObservation == null ? Collections.emptyList() : calcTransitions(observation, snaps);
+        if (newLabels.isEmpty()) {
+            // this is the first observation or the sequence is broken, so we complete the sequence so far and start over
+            if (!labels.isEmpty()) {
+                emit(findBest(labels));
+                collector.finish();
+            }
+            List<Snap> copies = copy(snaps);
+            newLabels = createLabels(QueryGraph.create(graph, copies), observation, copies);
+            for (Label label : newLabels)
+                label.minusLogProbability = -probabilities.emissionLogProbability(label.state.getSnap().getQueryDistance());
+        }
+        labels = newLabels;
+        prevObservation = observation;
+        prevSnaps = snaps;
+        emitConvergedLabels();
+    }
+
+    private List<Label> calcTransitions(Observation observation, List<Snap> snaps) {
+        // the snaps are modified when they are added to a query graph, so we always use copies
+        List<Snap> fromSnaps = copy(prevSnaps);
+        List<Snap> toSnaps = copy(snaps);
+        List<Snap> allSnaps = new ArrayList<>(fromSnaps);
+        allSnaps.addAll(toSnaps);
+        QueryGraph queryGraph = QueryGraph.create(graph, allSnaps);
+
+        final double linearDistance = calcDist(prevObservation, observation) + observation.getAccumulatedLinearDistanceToPrevious();
+        List<Label> toLabels = createLabels(queryGraph, observation, toSnaps);
+        int[] toNodes = toLabels.stream().mapToInt(l -> l.state.getSnap().getClosestNode()).toArray();
+        int[] toInEdges = toLabels.stream().mapToInt(l -> l.state.isOnDirectedEdge() ? l.state.getIncomingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE).toArray();
+        Path[] transitionPaths = new Path[toLabels.size()];
+        for (int i = 0; i < fromSnaps.size(); i++) {
+            for (State from : MapMatching.createCandidates(queryGraph, prevObservation, fromSnaps.get(i))) {
+                Label fromLabel = findLabel(i, getEdgeKey(from));
+                if (fromLabel == null)
+                    continue;
+                int fromOutEdge = from.isOnDirectedEdge() ? from.getOutgoingVirtualEdge().getEdge() : EdgeIterator.ANY_EDGE;
+                List<Path> paths = router.calcPaths(queryGraph, from.getSnap().getClosestNode(), fromOutEdge, toNodes, toInEdges);
+                for (int j = 0; j < toLabels.size(); j++) {
+                    Path path = paths.get(j);
+                    if (!path.isFound())
+                        continue;
+                    Label to = toLabels.get(j);
+                    double minusLogProbability = fromLabel.minusLogProbability
+                            - probabilities.emissionLogProbability(to.state.getSnap().getQueryDistance())
+                            - probabilities.transitionLogProbability(path.getDistance(), linearDistance);
+                    if (minusLogProbability < to.minusLogProbability) {
+                        to.minusLogProbability = minusLogProbability;
+                        to.back = fromLabel;
+                        transitionPaths[j] = path;
+                    }
+                }
+            }
+        }
+        List<Label> result = new ArrayList<>();
+        for (int j = 0; j < toLabels.size(); j++) {
+            Label label = toLabels.get(j);
+            if (label.back == null)
+                continue;
+            // we only keep the real edges, so the query graph can be garbage collected
+            label.transitionEdges = transitionPaths[j].calcEdges().stream().map(mapMatching::resolveToRealEdge).collect(Collectors.toList());
+            label.transitionDistance = transitionPaths[j].getDistance();
+            label.transitionTime = transitionPaths[j].getTime();
+            result.add(label);
+        }
+        return result;
+    }
+
+    private List<Label> createLabels(QueryGraph queryGraph, Observation observation, List<Snap> snaps) {
+        List<Label> result = new ArrayList<>();
+        for (int i = 0; i < snaps.size(); i++) {
+            for (State state : MapMatching.createCandidates(queryGraph, observation, snaps.get(i))) {
+                Label label = new Label();
+                label.snapIndex = i;
+                label.state = state;
+                label.stateEdge = state.isOnDirectedEdge() ? mapMatching.resolveToRealEdge(state.getOutgoingVirtualEdge()) : null;
+                label.edgeKey = label.stateEdge == null ? -1 : label.stateEdge.getEdgeKey();
+                label.minusLogProbability = Double.POSITIVE_INFINITY;
+                result.add(label);
+            }
+        }
+        return result;
+    }
+
+    private int getEdgeKey(State state) {
+        return state.isOnDirectedEdge() ? mapMatching.resolveToRealEdge(state.getOutgoingVirtualEdge()).getEdgeKey() : -1;
+    }
+
+    /**
+     * Finds the label of the given candidate of the previous observation. A snap can be on a tower node in one query
+     * graph and on a virtual node in another, in this case we use the best label of the snap.
+     */
+    private Label findLabel(int snapIndex, int edgeKey) {
+        Label best = null;
+        for (Label label : labels) {
+            if (label.snapIndex != snapIndex)
+                continue;
+            if (label.edgeKey == edgeKey)
+                return label;
+            if (best == null || label.minusLogProbability < best.minusLogProbability)
+                best = label;
+        }
+        return best;
+    }
+
+    private void emitConvergedLabels() {
+        Set<Label> ancestors = Collections.newSetFromMap(new IdentityHashMap<>());
+        ancestors.addAll(labels);
+        int depth = 0;
+        while (ancestors.size() > 1 && depth < maxWindowSize) {
+            Set<Label> backs = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Label label : ancestors) {
+                if (label.back == null)
+                    return;
+                backs.add(label.back);
+            }
+            ancestors = backs;
+            depth++;
+        }
+        if (ancestors.size() == 1) {
+            emit(ancestors.iterator().next());
+            return;
+        }
+
+        // the sequences did not converge within the window, so we use the prefix of the most likely one and drop
+        // all labels that do not share it
+        Label anchor = findAncestor(findBest(labels), maxWindowSize);
+        if (anchor == null)
+            return;
+        labels.removeIf(l -> findAncestor(l, maxWindowSize) != anchor);
+        emit(anchor);
+    }
+
+    private static Label findAncestor(Label label, int depth) {
+        for (int i = 0; i < depth && label != null; i++)
+            label = label.back;
+        return label;
+    }
+
+    private void emit(Label label) {
+        List<Label> sequence = new ArrayList<>();
+        for (Label l = label; l != null && l != finalLabel; l = l.back)
+            sequence.add(l);
+        Collections.reverse(sequence);
+        for (Label l : sequence) {
+            if (l.transitionEdges != null) {
+                for (EdgeIteratorState edge : l.transitionEdges)
+                    collector.addEdge(edge);
+                matchLength += l.transitionDistance;
+                matchMillis += l.transitionTime;
+                l.transitionEdges = null;
+            }
+            collector.addState(l.state, l.stateEdge);
+        }
+        // release everything before this label
+        label.back = null;
+        finalLabel = label;
+    }
+
+    private static Label findBest(List<Label> labels) {
+        return labels.stream().min(Comparator.comparingDouble(l -> l.minusLogProbability)).orElseThrow();
+    }
+
+    private double calcDist(Observation o1, Observation o2) {
+        return distanceCalc.calcDist(o1.getPoint().lat, o1.getPoint().lon, o2.getPoint().lat, o2.getPoint().lon);
+    }
+
+    private static List<Snap> copy(List<Snap> snaps) {
+        List<Snap> result = new ArrayList<>(snaps.size());
+        for (Snap snap : snaps) {
+            Snap copy = new Snap(snap.getQueryPoint().lat, snap.getQueryPoint().lon);
+            copy.setClosestNode(snap.getClosestNode());
+            copy.setClosestEdge(snap.getClosestEdge());
+            copy.setQueryDistance(snap.getQueryDistance());
+            copy.setWayIndex(snap.getWayIndex());
+            copy.setSnappedPosition(snap.getSnappedPosition());
+            copy.setSnappedPoint(snap.getSnappedPoint());
+            result.add(copy);
+        }
+        return result;
+    }
+
+    private static class Label {
+        int snapIndex;
+        // the key of the directed real edge of the state or -1 if the state is on a tower node
+        int edgeKey;
+        State state;
+        EdgeIteratorState stateEdge;
+        double minusLogProbability;
+        Label back;
+        List<EdgeIteratorState> transitionEdges;
+        double transitionDistance;
+        long transitionTime;
+    }
+}
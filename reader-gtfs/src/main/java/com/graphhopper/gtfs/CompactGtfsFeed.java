@@ -0,0 +1,431 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Route;
+import com.conveyal.gtfs.model.Stop;
+import com.conveyal.gtfs.model.StopTime;
+import com.conveyal.gtfs.model.Trip;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.BitUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The parts of a GTFS feed that are needed to route and to build the pt legs of a response: the stops with their
+ * coordinates, the routes with their route types, the trips and their (interpolated) stop times. They are converted
+ * from the {@link GTFSFeed} during the import and stored in flat, index-addressed int arrays of a DataAccess, so
+ * reading them does not deserialize any MapDB entities and the files can be memory-mapped, e.g. with
+ * graph.dataaccess.type.pt_feed_.*: MMAP
+ * <p>
+ * Stops, routes and trips are sorted by the UTF-8 bytes of their id, so they can be found with a binary search.
+ * Strings are stored once in a separate DataAccess and are referenced by their byte position.
+ */
+public class CompactGtfsFeed {
+
+    private static final int NO_STRING = -1;
+    // the order of the UTF-8 bytes, which is the order of the code points
+    private static final Comparator<String> UTF8_ORDER = (a, b) ->
+            Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    // lat and lon (two ints each), stop_id, stop_name, zone_id
+    private static final int STOP_BYTES = 7 * 4;
+    // route_id, route_type
+    private static final int ROUTE_BYTES = 2 * 4;
+    // trip_id, trip_headsign, route index
+    private static final int TRIP_BYTES = 3 * 4;
+    // stop_sequence, stop index, arrival_time, departure_time, pickup_type | drop_off_type << 16
+    private static final int STOP_TIME_BYTES = 5 * 4;
+
+    private final DataAccess table;
+    private final DataAccess strings;
+    private int stopCount;
+    private int routeCount;
+    private int tripCount;
+    private int stopTimeCount;
+    private long routesPointer;
+    private long tripsPointer;
+    private long stopTimeStartPointer;
+    private long stopTimesPointer;
+
+    public CompactGtfsFeed(Directory dir, String feedId) {
+        String name = "pt_feed_" + feedId;
+        table = dir.create(name, dir.getDefaultType(name, true), -1);
+        strings = dir.create(name + "_strings", dir.getDefaultType(name + "_strings", false), -1);
+    }
+
+    public void create(GTFSFeed feed) {
+        List<String> stopIds = new ArrayList<>(feed.stops.keySet());
+        List<String> routeIds = new ArrayList<>(feed.routes.keySet());
+        List<String> tripIds = new ArrayList<>(feed.trips.keySet());
+        // sort by the UTF-8 bytes and not by the chars, so the binary search can compare the stored bytes
+        stopIds.sort(UTF8_ORDER);
+        routeIds.sort(UTF8_ORDER);
+        tripIds.sort(UTF8_ORDER);
+        Map<String, Integer> stopIndex = indexOf(stopIds);
+        Map<String, Integer> routeIndex = indexOf(routeIds);
+        stopCount = stopIds.size();
+        routeCount = routeIds.size();
+        tripCount = tripIds.size();
+        initPointers();
+        // the stop times are the last section, it grows while we write them
+        table.create(stopTimesPointer);
+        table.ensureCapacity(stopTimesPointer);
+        strings.create(1000);
+
+        StringWriter stringWriter = new StringWriter();
+        for (int i = 0; i < stopCount; i++) {
+            Stop stop = feed.stops.get(stopIds.get(i));
+            long pointer = (long) STOP_BYTES * i;
+            setDouble(pointer, stop.stop_lat);
+            setDouble(pointer + 8, stop.stop_lon);
+            table.setInt(pointer + 16, stringWriter.write(stop.stop_id));
+            table.setInt(pointer + 20, stringWriter.write(stop.stop_name));
+            table.setInt(pointer + 24, stringWriter.write(stop.zone_id));
+        }
+        for (int i = 0; i < routeCount; i++) {
+            Route route = feed.routes.get(routeIds.get(i));
+            long pointer = routesPointer + (long) ROUTE_BYTES * i;
+            table.setInt(pointer, stringWriter.write(route.route_id));
+            table.setInt(pointer + 4, route.route_type);
+        }
+        long stopTime = 0;
+        for (int i = 0; i < tripCount; i++) {
+            Trip trip = feed.trips.get(tripIds.get(i));
+            long pointer = tripsPointer + (long) TRIP_BYTES * i;
+            table.setInt(pointer, stringWriter.write(trip.trip_id));
+            table.setInt(pointer + 4, stringWriter.write(trip.trip_headsign));
+            table.setInt(pointer + 8, routeIndex.getOrDefault(trip.route_id, -1));
+            List<StopTime> stopTimesForTrip = feed.getInterpolatedStopTimesForTrip(trip.trip_id);
+            if (stopTime + stopTimesForTrip.size() >= Integer.MAX_VALUE)
+                throw new IllegalStateException("Too many stop times in GTFS feed " + feed.feedId);
+            table.setInt(stopTimeStartPointer + 4L * i, (int) stopTime);
+            table.ensureCapacity(stopTimesPointer + STOP_TIME_BYTES * (stopTime + stopTimesForTrip.size()));
+            for (StopTime st : stopTimesForTrip) {
+                long stPointer = stopTimesPointer + STOP_TIME_BYTES * stopTime;
+                table.setInt(stPointer, st.stop_sequence);
+                table.setInt(stPointer + 4, stopIndex.getOrDefault(st.stop_id, -1));
+                table.setInt(stPointer + 8, st.arrival_time);
+                table.setInt(stPointer + 12, st.departure_time);
+                table.setInt(stPointer + 16, (st.pickup_type & 0xFFFF) | st.drop_off_type << 16);
+                stopTime++;
+            }
+        }
+        table.setInt(stopTimeStartPointer + 4L * tripCount, (int) stopTime);
+        stopTimeCount = (int) stopTime;
+    }
+
+    private static Map<String, Integer> indexOf(List<String> ids) {
+        Map<String, Integer> result = new HashMap<>(ids.size());
+        for (int i = 0; i < ids.size(); i++)
+            result.put(ids.get(i), i);
+        return result;
+    }
+
+    public boolean loadExisting() {
+        if (!table.loadExisting() || !strings.loadExisting())
+            return false;
+        stopCount = table.getHeader(0);
+        routeCount = table.getHeader(4);
+        tripCount = table.getHeader(2 * 4);
+        stopTimeCount = table.getHeader(3 * 4);
+        initPointers();
+        return true;
+    }
+
+    private void initPointers() {
+        routesPointer = (long) STOP_BYTES * stopCount;
+        tripsPointer = routesPointer + (long) ROUTE_BYTES * routeCount;
+        stopTimeStartPointer = tripsPointer + (long) TRIP_BYTES * tripCount;
+        stopTimesPointer = stopTimeStartPointer + 4L * (tripCount + 1);
+    }
+
+    public void flush() {
+        table.setHeader(0, stopCount);
+        table.setHeader(4, routeCount);
+        table.setHeader(2 * 4, tripCount);
+        table.setHeader(3 * 4, stopTimeCount);
+        table.flush();
+        strings.flush();
+    }
+
+    public void close() {
+        table.close();
+        strings.close();
+    }
+
+    public int getStopCount() {
+        return stopCount;
+    }
+
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    public int getStopTimeCount() {
+        return stopTimeCount;
+    }
+
+    /**
+     * @return the index of the stop with the given id or -1 if there is no such stop
+     */
+    public int findStop(String stopId) {
+        return binarySearch(0, STOP_BYTES, 16, stopCount, stopId);
+    }
+
+    public String getStopId(int stop) {
+        return getString(table.getInt((long) STOP_BYTES * stop + 16));
+    }
+
+    public String getStopName(int stop) {
+        return getString(table.getInt((long) STOP_BYTES * stop + 20));
+    }
+
+    public String getStopZoneId(int stop) {
+        return getString(table.getInt((long) STOP_BYTES * stop + 24));
+    }
+
+    public double getStopLat(int stop) {
+        return getDouble((long) STOP_BYTES * stop);
+    }
+
+    public double getStopLon(int stop) {
+        return getDouble((long) STOP_BYTES * stop + 8);
+    }
+
+    /**
+     * @return the index of the route with the given id or -1 if there is no such route
+     */
+    public int findRoute(String routeId) {
+        return binarySearch(routesPointer, ROUTE_BYTES, 0, routeCount, routeId);
+    }
+
+    public String getRouteId(int route) {
+        return getString(table.getInt(routesPointer + (long) ROUTE_BYTES * route));
+    }
+
+    public int getRouteType(int route) {
+        return table.getInt(routesPointer + (long) ROUTE_BYTES * route + 4);
+    }
+
+    /**
+     * @return the index of the trip with the given id or -1 if there is no such trip
+     */
+    public int findTrip(String tripId) {
+        return binarySearch(tripsPointer, TRIP_BYTES, 0, tripCount, tripId);
+    }
+
+    public String getTripId(int trip) {
+        return getString(table.getInt(tripsPointer + (long) TRIP_BYTES * trip));
+    }
+
+    public String getTripHeadsign(int trip) {
+        return getString(table.getInt(tripsPointer + (long) TRIP_BYTES * trip + 4));
+    }
+
+    /**
+     * @return the index of the route of the given trip or -1 if the route is missing in the feed
+     */
+    public int getTripRoute(int trip) {
+        return table.getInt(tripsPointer + (long) TRIP_BYTES * trip + 8);
+    }
+
+    /**
+     * @return the index of the first stop time of the given trip. The stop times of a trip are ordered by their
+     * stop_sequence.
+     */
+    public int getStopTimesStart(int trip) {
+        return table.getInt(stopTimeStartPointer + 4L * trip);
+    }
+
+    /**
+     * @return the index after the last stop time of the given trip
+     */
+    public int getStopTimesEnd(int trip) {
+        return table.getInt(stopTimeStartPointer + 4L * (trip + 1));
+    }
+
+    public int getStopSequence(int stopTime) {
+        return table.getInt(stopTimesPointer + (long) STOP_TIME_BYTES * stopTime);
+    }
+
+    /**
+     * @return the index of the stop of the given stop time or -1 if the stop is missing in the feed
+     */
+    public int getStop(int stopTime) {
+        return table.getInt(stopTimesPointer + (long) STOP_TIME_BYTES * stopTime + 4);
+    }
+
+    public int getArrivalTime(int stopTime) {
+        return table.getInt(stopTimesPointer + (long) STOP_TIME_BYTES * stopTime + 8);
+    }
+
+    public int getDepartureTime(int stopTime) {
+        return table.getInt(stopTimesPointer + (long) STOP_TIME_BYTES * stopTime + 12);
+    }
+
+    public int getPickupType(int stopTime) {
+        return (short) table.getInt(stopTimesPointer + (long) STOP_TIME_BYTES * stopTime + 16);
+    }
+
+    public int getDropOffType(int stopTime) {
+        return table.getInt(stopTimesPointer + (long) STOP_TIME_BYTES * stopTime + 16) >> 16;
+    }
+
+    /**
+     * @return the index of the stop time of the given trip with the given stop_sequence or -1
+     */
+    public int findStopTime(int trip, int stopSequence) {
+        int low = getStopTimesStart(trip), high = getStopTimesEnd(trip) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midSequence = getStopSequence(mid);
+            if (midSequence < stopSequence)
+                low = mid + 1;
+            else if (midSequence > stopSequence)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the interpolated stop time of the given trip with the given stop_sequence, or null if the trip or the
+     * stop time is not part of the static feed
+     */
+    public StopTime getStopTime(String tripId, int stopSequence) {
+        int trip = findTrip(tripId);
+        if (trip < 0)
+            return null;
+        int stopTime = findStopTime(trip, stopSequence);
+        return stopTime < 0 ? null : createStopTime(tripId, stopTime);
+    }
+
+    /**
+     * @return the interpolated stop times of the given trip, ordered by their stop_sequence, like
+     * {@link GTFSFeed#getInterpolatedStopTimesForTrip}
+     */
+    public List<StopTime> getStopTimes(int trip) {
+        String tripId = getTripId(trip);
+        int end = getStopTimesEnd(trip);
+        List<StopTime> result = new ArrayList<>(end - getStopTimesStart(trip));
+        for (int stopTime = getStopTimesStart(trip); stopTime < end; stopTime++)
+            result.add(createStopTime(tripId, stopTime));
+        return result;
+    }
+
+    private StopTime createStopTime(String tripId, int stopTime) {
+        StopTime result = new StopTime();
+        result.trip_id = tripId;
+        result.stop_sequence = getStopSequence(stopTime);
+        int stop = getStop(stopTime);
+        result.stop_id = stop < 0 ? null : getStopId(stop);
+        result.arrival_time = getArrivalTime(stopTime);
+        result.departure_time = getDepartureTime(stopTime);
+        result.pickup_type = getPickupType(stopTime);
+        result.drop_off_type = getDropOffType(stopTime);
+        return result;
+    }
+
+    private int binarySearch(long pointer, int bytesPerEntry, int idOffset, int count, String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(table.getInt(pointer + (long) bytesPerEntry * mid + idOffset), key);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    private void setDouble(long pointer, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        table.setInt(pointer, (int) bits);
+        table.setInt(pointer + 4, (int) (bits >>> 32));
+    }
+
+    private double getDouble(long pointer) {
+        return Double.longBitsToDouble(BitUtil.LITTLE.toLong(table.getInt(pointer), table.getInt(pointer + 4)));
+    }
+
+    /**
+     * Compares the stored string at the given pointer with the given UTF-8 bytes like {@link #UTF8_ORDER}, but
+     * without creating a String.
+     */
+    private int compareString(int pointer, byte[] key) {
+        int length = getStringLength(pointer);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(strings.getByte(pointer + 4L + i), key[i]);
+            if (cmp != 0)
+                return cmp;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private int getStringLength(int pointer) {
+        // the strings are not aligned, so we cannot use getInt, which does not read across segment boundaries
+        return (strings.getByte(pointer) & 0xFF) | (strings.getByte(pointer + 1L) & 0xFF) << 8
+                | (strings.getByte(pointer + 2L) & 0xFF) << 16 | (strings.getByte(pointer + 3L) & 0xFF) << 24;
+    }
+
+    private String getString(int pointer) {
+        if (pointer == NO_STRING)
+            return null;
+        int length = getStringLength(pointer);
+        byte[] bytes = new byte[length];
+        strings.getBytes(pointer + 4, bytes, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private class StringWriter {
+        private final Map<String, Integer> pointers = new HashMap<>();
+        private long pointer = 0;
+
+        int write(String string) {
+            if (string == null)
+                return NO_STRING;
+            Integer existing = pointers.get(string);
+            if (existing != null)
+                return existing;
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            if (pointer + 4 + bytes.length >= Integer.MAX_VALUE)
+                throw new IllegalStateException("Too many strings in GTFS feed");
+            strings.ensureCapacity(pointer + 4 + bytes.length);
+            strings.setBytes(pointer, BitUtil.LITTLE.fromInt(bytes.length), 4);
+            strings.setBytes(pointer + 4, bytes, bytes.length);
+            int result = (int) pointer;
+            pointers.put(string, result);
+            pointer += 4 + bytes.length;
+            return result;
+        }
+    }
+}
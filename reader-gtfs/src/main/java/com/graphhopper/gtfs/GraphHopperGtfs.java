@@ -79,7 +79,10 @@ public class GraphHopperGtfs extends GraphHopper {
                 for (String trafficDayString : ghConfig.getString("gtfs.schedule_day", null).split(",")) {
                     LocalDate trafficDay = LocalDate.parse(trafficDayString);
                     LOGGER.info("Loading trip-based transfers for pt router. Schedule day: {}", trafficDay);
-                    gtfsStorage.tripTransfers.getTripTransfers().put(trafficDay, gtfsStorage.deserializeTripTransfersMap("trip_transfers_" + trafficDayString));
+                    TripTransfers tripTransfers = new TripTransfers(getBaseGraph().getDirectory(), trafficDay);
+                    if (!tripTransfers.loadExisting())
+                        throw new IllegalStateException("The trip-based transfers for schedule day " + trafficDay + " were not calculated during the import");
+                    gtfsStorage.tripTransfers.getTripTransfers().put(trafficDay, tripTransfers);
                 }
                 for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
                     for (Stop stop : entry.getValue().stops.values()) {
@@ -126,10 +129,11 @@ public class GraphHopperGtfs extends GraphHopper {
                     for (String trafficDayString : ghConfig.getString("gtfs.schedule_day", null).split(",")) {
                         LocalDate trafficDay = LocalDate.parse(trafficDayString);
                         LOGGER.info("Computing trip-based transfers for pt router. Schedule day: {}", trafficDay);
-                        Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> tripTransfersMap = gtfsStorage.tripTransfers.getTripTransfers(trafficDay);
-                        gtfsStorage.tripTransfers.findAllTripTransfersInto(tripTransfersMap, trafficDay, allTransfers, stopsForStationNode);
+                        TripTransfers tripTransfers = new TripTransfers(getBaseGraph().getDirectory(), trafficDay);
+                        gtfsStorage.tripTransfers.findAllTripTransfersInto(tripTransfers, trafficDay, allTransfers, stopsForStationNode);
                         LOGGER.info("Writing. Schedule day: {}", trafficDay);
-                        gtfsStorage.serializeTripTransfersMap("trip_transfers_" + trafficDayString, tripTransfersMap);
+                        tripTransfers.flush();
+                        gtfsStorage.tripTransfers.getTripTransfers().put(trafficDay, tripTransfers);
                     }
                 }
             } catch (Exception e) {
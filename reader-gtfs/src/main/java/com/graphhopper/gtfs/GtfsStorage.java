@@ -163,6 +163,7 @@ public class GtfsStorage {
 	private Directory dir;
 	private Set<String> gtfsFeedIds;
 	private Map<String, GTFSFeed> gtfsFeeds = new HashMap<>();
+	private Map<String, CompactGtfsFeed> compactGtfsFeeds = new HashMap<>();
 	private Map<String, Map<String, Fare>> faresByFeed;
 	private Map<FeedIdWithStopId, Integer> stationNodes;
 	private IntObjectHashMap<int[]> skippedEdgesForTransfer;
@@ -199,6 +200,10 @@ public class GtfsStorage {
 
             GTFSFeed feed = new GTFSFeed(dbFile);
             this.gtfsFeeds.put(gtfsFeedId, feed);
+            CompactGtfsFeed compactFeed = new CompactGtfsFeed(dir, gtfsFeedId);
+            if (!compactFeed.loadExisting())
+                throw new IllegalStateException("The compact storage of " + gtfsFeedId + " is missing in " + dir.getLocation() + ", existing pt graphs need a re-import");
+            this.compactGtfsFeeds.put(gtfsFeedId, compactFeed);
         }
 		ptToStreet = deserializeIntoIntIntHashMap("pt_to_street");
 		streetToPt = deserializeIntoIntIntHashMap("street_to_pt");
@@ -284,6 +289,9 @@ public class GtfsStorage {
 			GTFSFeed feed = new GTFSFeed(dbFile);
 			feed.loadFromFileAndLogErrors(zipFileOrDirectory);
 			this.gtfsFeeds.put(id, feed);
+			CompactGtfsFeed compactFeed = new CompactGtfsFeed(dir, id);
+			compactFeed.create(feed);
+			this.compactGtfsFeeds.put(id, compactFeed);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -304,9 +312,14 @@ public class GtfsStorage {
 		if (!isClosed) {
 			isClosed = true;
 			data.close();
+			if (tripTransfers != null)
+				tripTransfers.close();
 			for (GTFSFeed feed : gtfsFeeds.values()) {
 				feed.close();
 			}
+			for (CompactGtfsFeed compactFeed : compactGtfsFeeds.values()) {
+				compactFeed.close();
+			}
 		}
 	}
 
@@ -326,6 +339,14 @@ public class GtfsStorage {
 		return Collections.unmodifiableMap(gtfsFeeds);
 	}
 
+	/**
+	 * @return the stops, routes, trips and stop times of every feed in a form that can be read without deserializing
+	 * MapDB entities, use it instead of {@link #getGtfsFeeds()} when answering requests
+	 */
+	public Map<String, CompactGtfsFeed> getCompactGtfsFeeds() {
+		return Collections.unmodifiableMap(compactGtfsFeeds);
+	}
+
 	public Map<FeedIdWithStopId, Integer> getStationNodes() {
 		return stationNodes;
 	}
@@ -334,6 +355,7 @@ public class GtfsStorage {
 		serialize("pt_to_street", ptToStreet);
 		serialize("street_to_pt", streetToPt);
 		serialize("skipped_edges_for_transfer", skippedEdgesForTransfer);
+		compactGtfsFeeds.values().forEach(CompactGtfsFeed::flush);
 		try (OutputStream os = Files.newOutputStream(Paths.get(dir.getLocation() + "interpolated_transfers"))) {
 			SequenceWriter sequenceWriter = ionMapper.writer().writeValuesAsArray(os);
 			for (Map.Entry<FeedIdWithStopId, Collection<InterpolatedTransfer>> e : interpolatedTransfers.asMap().entrySet()) {
@@ -345,45 +367,6 @@ public class GtfsStorage {
 		}
 	}
 
-	public void serializeTripTransfersMap(String filename, Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> data) {
-		try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(dir.getLocation() + filename))))) {
-			oos.writeInt(data.size());
-			for (Map.Entry<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> entry : data.entrySet()) {
-				oos.writeInt(entry.getKey().tripIdx);
-				oos.writeInt(entry.getKey().stop_sequence);
-				oos.writeInt(entry.getValue().size());
-				for (Trips.TripAtStopTime tripAtStopTime : entry.getValue()) {
-					oos.writeInt(tripAtStopTime.tripIdx);
-					oos.writeInt(tripAtStopTime.stop_sequence);
-				}
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
-	public Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> deserializeTripTransfersMap(String filename) {
-		try (FileInputStream in = new FileInputStream(dir.getLocation() + filename)) {
-			ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(in));
-			int size = ois.readInt();
-			Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> result = new TreeMap<>();
-			for (int i = 0; i < size; i++) {
-				Trips.TripAtStopTime origin = new Trips.TripAtStopTime(ois.readInt(), ois.readInt());
-				int nDestinations = ois.readInt();
-				List<Trips.TripAtStopTime> destinations = new ArrayList<>(nDestinations);
-				for (int j = 0; j < nDestinations; j++) {
-					int tripIdxTo = ois.readInt();
-					int stop_sequenceTo = ois.readInt();
-					destinations.add(new Trips.TripAtStopTime(tripIdxTo, stop_sequenceTo));
-				}
-				result.put(origin, destinations);
-			}
-			return result;
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
 	public void serialize(String filename, IntObjectHashMap<int[]> data) {
 		try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(dir.getLocation() + filename))))) {
 			oos.writeInt(data.size());
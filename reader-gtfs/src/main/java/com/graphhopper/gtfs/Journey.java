@@ -0,0 +1,58 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+/**
+ * A journey found by a {@link TimetableRouter}: the trip segments from an access station to a destination station.
+ * The {@link PtRouterTripBasedImpl} adds the access and egress legs and turns it into a response path.
+ */
+public class Journey {
+    final TripBasedRouter.EnqueuedTripSegment lastSegment;
+    final int alightStopSequence;
+    final TripBasedRouter.StopWithTimeDelta accessStation;
+    final TripBasedRouter.StopWithTimeDelta destination;
+    // seconds since the start of the service day of the profile start, arrival time including all weights and
+    // penalties, and transfers not counting those between trips of the same block
+    final int departureTime;
+    final int arrivalTime;
+    final int transfers;
+
+    Journey(TripBasedRouter.EnqueuedTripSegment lastSegment, int alightStopSequence, TripBasedRouter.StopWithTimeDelta accessStation, TripBasedRouter.StopWithTimeDelta destination, int departureTime, int arrivalTime, int transfers) {
+        this.lastSegment = lastSegment;
+        this.alightStopSequence = alightStopSequence;
+        this.accessStation = accessStation;
+        this.destination = destination;
+        this.departureTime = departureTime;
+        this.arrivalTime = arrivalTime;
+        this.transfers = transfers;
+    }
+
+    boolean isDominatedBy(Journey other) {
+        return other.departureTime >= departureTime && other.arrivalTime <= arrivalTime && other.transfers <= transfers;
+    }
+
+    @Override
+    public String toString() {
+        return "Journey{" +
+                "departureTime=" + departureTime +
+                ", arrivalTime=" + arrivalTime +
+                ", transfers=" + transfers +
+                '}';
+    }
+}
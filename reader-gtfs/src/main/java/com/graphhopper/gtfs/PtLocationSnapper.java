@@ -2,8 +2,6 @@ package com.graphhopper.gtfs;
 
 import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.cursors.IntCursor;
-import com.conveyal.gtfs.GTFSFeed;
-import com.conveyal.gtfs.model.Stop;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.BaseGraph;
@@ -61,8 +59,9 @@ public class PtLocationSnapper {
                     IntCursor stopNodeId = result.iterator().next();
                     for (Map.Entry<GtfsStorage.FeedIdWithStopId, Integer> e : gtfsStorage.getStationNodes().entrySet()) {
                         if (e.getValue() == stopNodeId.value) {
-                            Stop stop = gtfsStorage.getGtfsFeeds().get(e.getKey().feedId).stops.get(e.getKey().stopId);
-                            final Snap stopSnap = new Snap(stop.stop_lat, stop.stop_lon);
+                            CompactGtfsFeed compactFeed = gtfsStorage.getCompactGtfsFeeds().get(e.getKey().feedId);
+                            int stop = compactFeed.findStop(e.getKey().stopId);
+                            final Snap stopSnap = new Snap(compactFeed.getStopLat(stop), compactFeed.getStopLon(stop));
                             stopSnap.setClosestNode(stopNodeId.value);
                             allSnaps.add(() -> new Label.NodeId(gtfsStorage.getPtToStreet().getOrDefault(stopSnap.getClosestNode(), -1), stopSnap.getClosestNode()));
                             points.add(stopSnap.getQueryPoint().lat, stopSnap.getQueryPoint().lon);
@@ -89,11 +88,12 @@ public class PtLocationSnapper {
     }
 
     private Snap findByStopId(GHStationLocation station, int indexForErrorMessage) {
-        for (Map.Entry<String, GTFSFeed> entry : gtfsStorage.getGtfsFeeds().entrySet()) {
+        for (Map.Entry<String, CompactGtfsFeed> entry : gtfsStorage.getCompactGtfsFeeds().entrySet()) {
             final Integer node = gtfsStorage.getStationNodes().get(new GtfsStorage.FeedIdWithStopId(entry.getKey(), station.stop_id));
             if (node != null) {
-                Stop stop = gtfsStorage.getGtfsFeeds().get(entry.getKey()).stops.get(station.stop_id);
-                final Snap stationSnap = new Snap(stop.stop_lat, stop.stop_lon);
+                CompactGtfsFeed compactFeed = entry.getValue();
+                int stop = compactFeed.findStop(station.stop_id);
+                final Snap stationSnap = new Snap(compactFeed.getStopLat(stop), compactFeed.getStopLon(stop));
                 stationSnap.setClosestNode(node);
                 return stationSnap;
             }
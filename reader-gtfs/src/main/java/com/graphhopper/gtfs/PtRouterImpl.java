@@ -102,9 +102,17 @@ public final class PtRouterImpl implements PtRouter {
         }
 
         public PtRouter createWith(GtfsRealtime.FeedMessage realtimeFeed) {
+            return createWith(update(RealtimeFeed.empty(), realtimeFeed));
+        }
+
+        public PtRouter createWith(RealtimeFeed realtimeFeed) {
+            return new PtRouterImpl(config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, realtimeFeed, new PathDetailsBuilderFactory());
+        }
+
+        public RealtimeFeed update(RealtimeFeed realtimeFeed, GtfsRealtime.FeedMessage feedMessage) {
             Map<String, GtfsRealtime.FeedMessage> realtimeFeeds = new HashMap<>();
-            realtimeFeeds.put("gtfs_0", realtimeFeed);
-            return new PtRouterImpl(config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, RealtimeFeed.fromProtobuf(gtfsStorage, this.transfers, realtimeFeeds), new PathDetailsBuilderFactory());
+            realtimeFeeds.put("gtfs_0", feedMessage);
+            return realtimeFeed.update(gtfsStorage, this.transfers, realtimeFeeds);
         }
 
         public PtRouter createWithoutRealtimeFeed() {
@@ -0,0 +1,52 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.TranslationMap;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
+
+import jakarta.inject.Inject;
+
+/**
+ * Routes with the {@link RaptorRouter}. Access, egress and the response are the same as for the
+ * {@link PtRouterTripBasedImpl}, but the timetable is searched round by round on the {@link RaptorNetwork}, which
+ * needs no precomputed trip transfers. Like the {@link PtRouterTripBasedImpl}, it only routes by departure time and
+ * ignores {@link Request#isArriveBy()}.
+ */
+public final class PtRouterRaptorImpl implements PtRouter {
+
+    private final PtRouterTripBasedImpl delegate;
+
+    @Inject
+    public PtRouterRaptorImpl(GraphHopper graphHopper, GraphHopperConfig config, TranslationMap translationMap, BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, GtfsStorage gtfsStorage, PathDetailsBuilderFactory pathDetailsBuilderFactory) {
+        this.delegate = new PtRouterTripBasedImpl(graphHopper, config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, pathDetailsBuilderFactory, storage -> new RaptorRouter(storage.tripTransfers.getRaptorNetwork()));
+    }
+
+    @Override
+    public GHResponse route(Request request) {
+        return delegate.route(request);
+    }
+
+}
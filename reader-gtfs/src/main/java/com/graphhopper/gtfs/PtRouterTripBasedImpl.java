@@ -19,7 +19,6 @@
 package com.graphhopper.gtfs;
 
 import com.conveyal.gtfs.GTFSFeed;
-import com.conveyal.gtfs.model.Stop;
 import com.graphhopper.*;
 import com.graphhopper.config.Profile;
 import com.graphhopper.routing.DefaultWeightingFactory;
@@ -52,6 +51,7 @@ import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public final class PtRouterTripBasedImpl implements PtRouter {
@@ -69,9 +69,19 @@ public final class PtRouterTripBasedImpl implements PtRouter {
     private final WeightingFactory weightingFactory;
     private final Map<String, ZoneId> feedZoneIds = new ConcurrentHashMap<>(); // ad-hoc cache for timezone field of gtfs feed
     private final GraphHopper graphHopper;
+    private final Function<GtfsStorage, TimetableRouter> timetableRouterFactory;
 
     @Inject
     public PtRouterTripBasedImpl(GraphHopper graphHopper, GraphHopperConfig config, TranslationMap translationMap, BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, GtfsStorage gtfsStorage, PathDetailsBuilderFactory pathDetailsBuilderFactory) {
+        this(graphHopper, config, translationMap, baseGraph, encodingManager, locationIndex, gtfsStorage, pathDetailsBuilderFactory, storage -> new TripBasedRouter(storage, storage.tripTransfers));
+    }
+
+    /**
+     * @param timetableRouterFactory creates the router that searches the pt part of a route, access and egress are
+     *                               the same for all of them
+     */
+    PtRouterTripBasedImpl(GraphHopper graphHopper, GraphHopperConfig config, TranslationMap translationMap, BaseGraph baseGraph, EncodingManager encodingManager, LocationIndex locationIndex, GtfsStorage gtfsStorage, PathDetailsBuilderFactory pathDetailsBuilderFactory, Function<GtfsStorage, TimetableRouter> timetableRouterFactory) {
+        this.timetableRouterFactory = timetableRouterFactory;
         this.graphHopper = graphHopper;
         this.config = config;
         this.weightingFactory = new DefaultWeightingFactory(baseGraph, encodingManager);
@@ -92,6 +102,7 @@ public final class PtRouterTripBasedImpl implements PtRouter {
     private class RequestHandler {
         private final int maxVisitedNodesForRequest;
         private final int limitSolutions;
+        private final int limitTransfers;
         private final Duration maxProfileDuration;
         private final Instant initialTime;
         private final boolean profileQuery;
@@ -135,6 +146,7 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             betaTransfers = request.getBetaTransfers();
             betaStreetTime = request.getBetaStreetTime();
             limitSolutions = Optional.ofNullable(request.getLimitSolutions()).orElse(profileQuery ? 50 : ignoreTransfers ? 1 : Integer.MAX_VALUE);
+            limitTransfers = Math.min(TripBasedRouter.MAX_TRANSFERS, Math.max(0, Optional.ofNullable(request.getLimitTransfers()).orElse(TripBasedRouter.MAX_TRANSFERS)));
             initialTime = request.getEarliestDepartureTime();
             maxProfileDuration = request.getMaxProfileDuration();
             arriveBy = request.isArriveBy();
@@ -181,9 +193,8 @@ public final class PtRouterTripBasedImpl implements PtRouter {
                     .collect(Collectors.toList());
             response.addDebugInfo("access/egress routing:" + stopWatch1.stop().getSeconds() + "s");
 
-            TripBasedRouter tripBasedRouter = new TripBasedRouter(gtfsStorage, gtfsStorage.tripTransfers);
-            List<TripBasedRouter.ResultLabel> routes;
-            routes = tripBasedRouter.routeNaiveProfileWithNaiveBetas(new TripBasedRouter.Parameters(accessStations, egressStations, initialTime, maxProfileDuration, trip -> (blockedRouteTypes & (1 << trip.routeType)) == 0, betaAccessTime, betaEgressTime, betaTransfers, transferPenaltiesByRouteType));
+            TripBasedRouter.Parameters parameters = new TripBasedRouter.Parameters(accessStations, egressStations, initialTime, maxProfileDuration, trip -> (blockedRouteTypes & (1 << trip.routeType)) == 0, betaAccessTime, betaEgressTime, betaTransfers, transferPenaltiesByRouteType, limitTransfers);
+            List<Journey> journeys = timetableRouterFactory.apply(gtfsStorage).route(parameters);
 
             tripFromLabel = new TripFromLabel(queryGraph, encodingManager, gtfsStorage, RealtimeFeed.empty(), pathDetailsBuilderFactory, walkSpeedKmH);
             if (walkDestLabel != null) {
@@ -194,8 +205,8 @@ public final class PtRouterTripBasedImpl implements PtRouter {
                 walkResponsePath.setRouteWeight(walkResponsePath.getTime() * betaAccessTime);
                 response.add(walkResponsePath);
             }
-            for (TripBasedRouter.ResultLabel route : routes) {
-                ResponsePath responsePath = extractResponse(route, result);
+            for (Journey journey : journeys) {
+                ResponsePath responsePath = extractResponse(journey, result);
                 if (walkResponsePath != null) {
                     Instant departureTime = responsePath.getLegs().get(0).getDepartureTime().toInstant();
                     Duration waitTimeBeforeDeparture = Duration.between(initialTime, departureTime);
@@ -270,12 +281,11 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             return stationLabels;
         }
 
-        private ResponsePath extractResponse(TripBasedRouter.ResultLabel route, PtLocationSnapper.Result snapResult) {
-            logger.debug("{}", route);
+        private ResponsePath extractResponse(Journey journey, PtLocationSnapper.Result snapResult) {
             GeometryFactory geometryFactory = new GeometryFactory();
 
             List<TripBasedRouter.EnqueuedTripSegment> segments = new ArrayList<>();
-            TripBasedRouter.EnqueuedTripSegment enqueuedTripSegment = route.enqueuedTripSegment;
+            TripBasedRouter.EnqueuedTripSegment enqueuedTripSegment = journey.lastSegment;
             while (enqueuedTripSegment != null) {
                 segments.add(enqueuedTripSegment);
                 enqueuedTripSegment = enqueuedTripSegment.parent;
@@ -284,7 +294,7 @@ public final class PtRouterTripBasedImpl implements PtRouter {
 
             long routeWeight = 0;
             List<Trip.Leg> legs = new ArrayList<>();
-            Optional<Trip.Leg> maybeAccessLeg = extractAccessLeg(route, snapResult);
+            Optional<Trip.Leg> maybeAccessLeg = extractAccessLeg(journey, snapResult);
             logger.debug(" {}", maybeAccessLeg);
             if (maybeAccessLeg.isPresent()) {
                 Trip.Leg accessLeg = maybeAccessLeg.get();
@@ -295,20 +305,21 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             for (int i = 0; i < segments.size(); i++) {
                 TripBasedRouter.EnqueuedTripSegment segment = segments.get(i);
                 GTFSFeed feed = gtfsStorage.getGtfsFeeds().get(segment.tripPointer.feedId);
+                CompactGtfsFeed compactFeed = gtfsStorage.getCompactGtfsFeeds().get(segment.tripPointer.feedId);
                 ZoneId zoneId = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
                 LocalDate day = segment.serviceDay;
                 com.conveyal.gtfs.model.Trip trip = segment.tripPointer.trip;
                 int untilStopSequence;
                 if (i == segments.size() - 1)
-                    untilStopSequence = route.stopTime;
+                    untilStopSequence = journey.alightStopSequence;
                 else
                     untilStopSequence = segments.get(i+1).transferOrigin.stop_sequence;
                 List<Trip.Stop> stops = segment.tripPointer.stopTimes.stream().filter(st -> st != null && st.stop_sequence >= segment.tripAtStopTime.stop_sequence && st.stop_sequence <= untilStopSequence)
                         .map(st -> {
                             Instant departureTime = day.atStartOfDay().plusSeconds(st.departure_time).atZone(zoneId).toInstant();
                             Instant arrivalTime = day.atStartOfDay().plusSeconds(st.arrival_time).atZone(zoneId).toInstant();
-                            Stop stop = feed.stops.get(st.stop_id);
-                            return new Trip.Stop(st.stop_id, st.stop_sequence, stop.stop_name, geometryFactory.createPoint(new Coordinate(stop.stop_lon, stop.stop_lat)), Date.from(arrivalTime), Date.from(arrivalTime), Date.from(arrivalTime), false, Date.from(departureTime), Date.from(departureTime), Date.from(departureTime), false);
+                            int stop = compactFeed.findStop(st.stop_id);
+                            return new Trip.Stop(st.stop_id, st.stop_sequence, compactFeed.getStopName(stop), geometryFactory.createPoint(new Coordinate(compactFeed.getStopLon(stop), compactFeed.getStopLat(stop))), Date.from(arrivalTime), Date.from(arrivalTime), Date.from(arrivalTime), false, Date.from(departureTime), Date.from(departureTime), Date.from(departureTime), false);
                         })
                         .collect(Collectors.toList());
                 boolean isInSameVehicleAsPrevious = trip.block_id != null && trip.block_id.equals(previousBlockId);
@@ -329,7 +340,7 @@ public final class PtRouterTripBasedImpl implements PtRouter {
                 routeWeight += transferPenaltiesByRouteType.getOrDefault(segment.tripPointer.routeType, 0L);
                 previousBlockId = trip.block_id;
             }
-            Optional<Trip.Leg> maybeEgressLeg = extractEgressLeg(route, snapResult);
+            Optional<Trip.Leg> maybeEgressLeg = extractEgressLeg(journey, snapResult);
             if (maybeEgressLeg.isPresent()) {
                 Trip.Leg egressLeg = maybeEgressLeg.get();
                 legs.add(egressLeg);
@@ -349,8 +360,8 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             return responsePath;
         }
 
-        private Optional<Trip.Leg> extractAccessLeg(TripBasedRouter.ResultLabel route, PtLocationSnapper.Result snapResult) {
-            Label accessLabel = accessStationLabels.get(accessStations.indexOf(route.getAccessStop()));
+        private Optional<Trip.Leg> extractAccessLeg(Journey journey, PtLocationSnapper.Result snapResult) {
+            Label accessLabel = accessStationLabels.get(accessStations.indexOf(journey.accessStation));
             List<Label.Transition> accessTransitions = Label.getTransitions(accessLabel, false);
             List<List<Label.Transition>> accessPartitions = tripFromLabel.parsePathToPartitions(accessTransitions);
             List<Trip.Leg> accessPath = tripFromLabel.parsePartitionToLegs(accessPartitions.get(0), snapResult.queryGraph, encodingManager, accessWeighting, translation, requestedPathDetails);
@@ -361,8 +372,8 @@ public final class PtRouterTripBasedImpl implements PtRouter {
             }
         }
 
-        private Optional<Trip.Leg> extractEgressLeg(TripBasedRouter.ResultLabel route, PtLocationSnapper.Result snapResult) {
-            Label egressLabel = egressStationLabels.get(egressStations.indexOf(route.destination));
+        private Optional<Trip.Leg> extractEgressLeg(Journey journey, PtLocationSnapper.Result snapResult) {
+            Label egressLabel = egressStationLabels.get(egressStations.indexOf(journey.destination));
             List<Label.Transition> egressTransitions = Label.getTransitions(egressLabel, true);
             List<List<Label.Transition>> egressPartitions = tripFromLabel.parsePathToPartitions(egressTransitions);
             if (egressPartitions.size() < 2) {
@@ -0,0 +1,425 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.StopTime;
+import com.conveyal.gtfs.model.Transfer;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * The timetable in the array layout used by the {@link RaptorRouter}. The trips of a {@link Trips.Pattern} are
+ * consecutive in {@link Trips#trips}, so a pattern is a range of trip indices plus the list of the stops it serves.
+ * The arrival and departure times and the stop_sequence of every stop of every trip are stored in one int array,
+ * and the patterns serving a stop as well as the footpaths between stops are stored in compressed rows, so the
+ * router only reads from flat arrays and does not allocate while scanning.
+ */
+public class RaptorNetwork {
+
+    // the active trips of a day are needed for every query, but there is no need to keep them for all days that
+    // were ever queried
+    private static final int ACTIVE_TRIPS_CACHE_SIZE = 16;
+
+    private final Trips trips;
+    private final List<String> feedIds = new ArrayList<>();
+    private final ZoneId[] feedZoneIds;
+    private final int[] feedLastDepartureTime;
+    private final Map<GtfsStorage.FeedIdWithStopId, Integer> stopIndex = new HashMap<>();
+    private final List<GtfsStorage.FeedIdWithStopId> stops = new ArrayList<>();
+
+    // for every pattern the first trip (the trips of a pattern are sorted by departure time), the first entry in
+    // patternStops and the feed
+    private final int[] patternFirstTrip;
+    private final int[] patternStopsStart;
+    private final int[] patternFeed;
+    // for every stop of every pattern the stop index, and whether passengers can board or alight there
+    private final int[] patternStops;
+    private final boolean[] patternPickup;
+    private final boolean[] patternDropOff;
+    // for every trip its pattern, its route and the first entry in tripTimes, which has arrival time, departure
+    // time and stop_sequence for every stop of the trip
+    private final int[] tripPattern;
+    private final int[] tripRoute;
+    private final int[] tripTimesStart;
+    private final int[] tripTimes;
+    // for every stop the patterns serving it and the position of the stop in the pattern
+    private final int[] stopPatternsStart;
+    private final int[] stopPatterns;
+    private final int[] stopPatternPositions;
+    // for every stop the stops that can be reached by transferring, including the stop itself, and the time it takes
+    private final int[] footpathsStart;
+    private final int[] footpathStops;
+    private final int[] footpathSeconds;
+    // the stops with transfer rules, for which the footpaths are only lower bounds and the transfer time depends on
+    // the routes
+    private final BitSet stopsWithTransferRules = new BitSet();
+    // the transfer rules from a stop and route, see transferRuleKey, as triples of to stop, to route and seconds
+    private final LongObjectHashMap<int[]> transferRules = new LongObjectHashMap<>();
+
+    private final Map<LocalDate, BitSet> activeTripsByDay = Collections.synchronizedMap(
+            new LinkedHashMap<>(ACTIVE_TRIPS_CACHE_SIZE, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry eldest) {
+                    return size() > ACTIVE_TRIPS_CACHE_SIZE;
+                }
+            });
+
+    public RaptorNetwork(GtfsStorage gtfsStorage, Trips trips) {
+        this.trips = trips;
+        Map<String, Integer> feedIndex = new HashMap<>();
+        for (String feedId : gtfsStorage.getGtfsFeeds().keySet()) {
+            feedIndex.put(feedId, feedIds.size());
+            feedIds.add(feedId);
+        }
+        feedZoneIds = new ZoneId[feedIds.size()];
+        for (int i = 0; i < feedIds.size(); i++)
+            feedZoneIds[i] = ZoneId.of(gtfsStorage.getGtfsFeeds().get(feedIds.get(i)).agency.values().iterator().next().agency_timezone);
+        feedLastDepartureTime = new int[feedIds.size()];
+        Arrays.fill(feedLastDepartureTime, -1);
+
+        int tripCount = trips.trips.size();
+        IntArrayList patternFirstTripList = new IntArrayList();
+        IntArrayList patternStopsStartList = new IntArrayList();
+        IntArrayList patternFeedList = new IntArrayList();
+        IntArrayList patternStopsList = new IntArrayList();
+        List<Boolean> pickupList = new ArrayList<>();
+        List<Boolean> dropOffList = new ArrayList<>();
+        tripPattern = new int[tripCount];
+        tripRoute = new int[tripCount];
+        tripTimesStart = new int[tripCount];
+        // the route ids by feed and route index
+        Map<String, Map<String, Integer>> routeIndexByFeed = new HashMap<>();
+        List<String> routeIds = new ArrayList<>();
+        IntArrayList tripTimesList = new IntArrayList();
+        for (int tripIdx = 0; tripIdx < tripCount; ) {
+            GTFSFeed.StopTimesForTripWithTripPatternKey firstTrip = trips.getTrip(tripIdx);
+            int pattern = patternFirstTripList.size();
+            patternFirstTripList.add(tripIdx);
+            patternStopsStartList.add(patternStopsList.size());
+            patternFeedList.add(feedIndex.get(firstTrip.feedId));
+            for (StopTime stopTime : firstTrip.stopTimes) {
+                if (stopTime == null)
+                    continue;
+                patternStopsList.add(getOrCreateStop(new GtfsStorage.FeedIdWithStopId(firstTrip.feedId, stopTime.stop_id)));
+                // 1 means that there is no pickup or drop off, the pattern key makes sure this is the same for all trips
+                pickupList.add(stopTime.pickup_type != 1);
+                dropOffList.add(stopTime.drop_off_type != 1);
+            }
+            int feed = patternFeedList.get(pattern);
+            for (; tripIdx < firstTrip.endIdxOfPattern; tripIdx++) {
+                GTFSFeed.StopTimesForTripWithTripPatternKey trip = trips.getTrip(tripIdx);
+                tripPattern[tripIdx] = pattern;
+                tripRoute[tripIdx] = routeIndexByFeed.computeIfAbsent(trip.feedId, f -> new HashMap<>()).computeIfAbsent(trip.trip.route_id, r -> {
+                    routeIds.add(r);
+                    return routeIds.size() - 1;
+                });
+                tripTimesStart[tripIdx] = tripTimesList.size();
+                for (StopTime stopTime : trip.stopTimes) {
+                    if (stopTime == null)
+                        continue;
+                    tripTimesList.add(stopTime.arrival_time, stopTime.departure_time, stopTime.stop_sequence);
+                    feedLastDepartureTime[feed] = Math.max(feedLastDepartureTime[feed], stopTime.departure_time);
+                }
+            }
+        }
+        patternStopsStartList.add(patternStopsList.size());
+        patternFirstTripList.add(tripCount);
+        patternFirstTrip = patternFirstTripList.toArray();
+        patternStopsStart = patternStopsStartList.toArray();
+        patternFeed = patternFeedList.toArray();
+        patternStops = patternStopsList.toArray();
+        patternPickup = toArray(pickupList);
+        patternDropOff = toArray(dropOffList);
+        tripTimes = tripTimesList.toArray();
+
+        // patterns by stop
+        int stopCount = stops.size();
+        List<IntArrayList> patternsByStop = new ArrayList<>(stopCount);
+        for (int i = 0; i < stopCount; i++)
+            patternsByStop.add(new IntArrayList());
+        for (int pattern = 0; pattern < getPatternCount(); pattern++)
+            for (int pos = patternStopsStart[pattern]; pos < patternStopsStart[pattern + 1]; pos++)
+                patternsByStop.get(patternStops[pos]).add(pattern, pos - patternStopsStart[pattern]);
+        stopPatternsStart = new int[stopCount + 1];
+        IntArrayList stopPatternsList = new IntArrayList();
+        IntArrayList stopPatternPositionsList = new IntArrayList();
+        for (int stop = 0; stop < stopCount; stop++) {
+            stopPatternsStart[stop] = stopPatternsList.size();
+            IntArrayList patternsAndPositions = patternsByStop.get(stop);
+            for (int i = 0; i < patternsAndPositions.size(); i += 2) {
+                stopPatternsList.add(patternsAndPositions.get(i));
+                stopPatternPositionsList.add(patternsAndPositions.get(i + 1));
+            }
+        }
+        stopPatternsStart[stopCount] = stopPatternsList.size();
+        stopPatterns = stopPatternsList.toArray();
+        stopPatternPositions = stopPatternPositionsList.toArray();
+
+        // footpaths: the same stop, the stops of the same station, the transfers of the feed and the transfers
+        // that were found by walking on the street network during the import
+        Map<String, Transfers> transfersByFeed = new HashMap<>();
+        for (String feedId : feedIds)
+            transfersByFeed.put(feedId, new Transfers(gtfsStorage.getGtfsFeeds().get(feedId)));
+        Map<Integer, List<Integer>> stopsByStationNode = new HashMap<>();
+        gtfsStorage.getStationNodes().forEach((stopId, node) -> {
+            Integer stop = stopIndex.get(stopId);
+            if (stop != null)
+                stopsByStationNode.computeIfAbsent(node, n -> new ArrayList<>()).add(stop);
+        });
+        footpathsStart = new int[stopCount + 1];
+        IntArrayList footpathStopsList = new IntArrayList();
+        IntArrayList footpathSecondsList = new IntArrayList();
+        for (int stop = 0; stop < stopCount; stop++) {
+            GtfsStorage.FeedIdWithStopId stopId = stops.get(stop);
+            IntIntHashMap footpaths = new IntIntHashMap();
+            List<Transfer> transferRules = transfersByFeed.get(stopId.feedId).getTransferRulesFromStop(stopId.stopId);
+            // without a rule for all routes, staying at the stop takes no time at least for some routes
+            boolean hasGeneralRuleForStop = transferRules.stream().anyMatch(t -> t.to_stop_id.equals(stopId.stopId) && t.from_route_id == null && t.to_route_id == null);
+            if (!hasGeneralRuleForStop)
+                footpaths.put(stop, 0);
+            Integer stationNode = gtfsStorage.getStationNodes().get(stopId);
+            if (stationNode != null)
+                for (int otherStop : stopsByStationNode.get(stationNode))
+                    putMin(footpaths, otherStop, 0);
+            for (Transfer transfer : transferRules) {
+                Integer toStop = stopIndex.get(new GtfsStorage.FeedIdWithStopId(stopId.feedId, transfer.to_stop_id));
+                if (toStop != null) {
+                    putMin(footpaths, toStop, Math.max(0, transfer.min_transfer_time));
+                    stopsWithTransferRules.set(stop);
+                }
+            }
+            for (GtfsStorage.InterpolatedTransfer interpolatedTransfer : gtfsStorage.interpolatedTransfers.get(stopId)) {
+                Integer toStop = stopIndex.get(interpolatedTransfer.toPlatformDescriptor);
+                if (toStop != null && toStop != stop)
+                    putMin(footpaths, toStop, interpolatedTransfer.streetTime);
+            }
+            footpathsStart[stop] = footpathStopsList.size();
+            for (IntIntCursor footpath : footpaths) {
+                footpathStopsList.add(footpath.key);
+                footpathSecondsList.add(footpath.value);
+            }
+        }
+        footpathsStart[stopCount] = footpathStopsList.size();
+        footpathStops = footpathStopsList.toArray();
+        footpathSeconds = footpathSecondsList.toArray();
+
+        // the transfer rules that depend on the routes, for every route of a trip that serves a stop with rules
+        for (int stop = stopsWithTransferRules.nextSetBit(0); stop >= 0; stop = stopsWithTransferRules.nextSetBit(stop + 1)) {
+            GtfsStorage.FeedIdWithStopId stopId = stops.get(stop);
+            Map<String, Integer> routeIndex = routeIndexByFeed.getOrDefault(stopId.feedId, Collections.emptyMap());
+            IntHashSet routes = new IntHashSet();
+            for (int entry = stopPatternsStart[stop]; entry < stopPatternsStart[stop + 1]; entry++)
+                for (int trip = patternFirstTrip[stopPatterns[entry]]; trip < patternFirstTrip[stopPatterns[entry] + 1]; trip++)
+                    routes.add(tripRoute[trip]);
+            for (IntCursor route : routes) {
+                IntArrayList rules = new IntArrayList();
+                for (Transfer transfer : transfersByFeed.get(stopId.feedId).getTransfersFromStop(stopId.stopId, routeIds.get(route.value))) {
+                    Integer toStop = stopIndex.get(new GtfsStorage.FeedIdWithStopId(stopId.feedId, transfer.to_stop_id));
+                    Integer toRoute = routeIndex.get(transfer.to_route_id);
+                    if (toStop != null && toRoute != null)
+                        rules.add(toStop, toRoute, Math.max(0, transfer.min_transfer_time));
+                }
+                if (!rules.isEmpty())
+                    transferRules.put(transferRuleKey(stop, route.value), rules.toArray());
+            }
+        }
+    }
+
+    private static long transferRuleKey(int stop, int route) {
+        return ((long) stop << 32) | route;
+    }
+
+    private int getOrCreateStop(GtfsStorage.FeedIdWithStopId stopId) {
+        return stopIndex.computeIfAbsent(stopId, s -> {
+            stops.add(s);
+            return stops.size() - 1;
+        });
+    }
+
+    private static void putMin(IntIntHashMap map, int key, int value) {
+        int index = map.indexOf(key);
+        if (!map.indexExists(index) || value < map.indexGet(index))
+            map.put(key, value);
+    }
+
+    private static boolean[] toArray(List<Boolean> list) {
+        boolean[] result = new boolean[list.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = list.get(i);
+        return result;
+    }
+
+    Trips getTrips() {
+        return trips;
+    }
+
+    int getFeedCount() {
+        return feedIds.size();
+    }
+
+    String getFeedId(int feed) {
+        return feedIds.get(feed);
+    }
+
+    ZoneId getFeedZoneId(int feed) {
+        return feedZoneIds[feed];
+    }
+
+    /**
+     * @return the latest departure time of a trip of the given feed in seconds since the start of its service day,
+     * which can be later than 24:00:00 for trips running past midnight
+     */
+    int getFeedLastDepartureTime(int feed) {
+        return feedLastDepartureTime[feed];
+    }
+
+    int getStopCount() {
+        return stops.size();
+    }
+
+    /**
+     * @return the index of the given stop or -1 if no trip serves it
+     */
+    int getStop(GtfsStorage.FeedIdWithStopId stopId) {
+        return stopIndex.getOrDefault(stopId, -1);
+    }
+
+    int getPatternCount() {
+        return patternFeed.length;
+    }
+
+    int getPatternFirstTrip(int pattern) {
+        return patternFirstTrip[pattern];
+    }
+
+    int getPatternEndTrip(int pattern) {
+        return trips.getTrip(patternFirstTrip[pattern]).endIdxOfPattern;
+    }
+
+    int getPatternStopCount(int pattern) {
+        return patternStopsStart[pattern + 1] - patternStopsStart[pattern];
+    }
+
+    int getPatternStop(int pattern, int pos) {
+        return patternStops[patternStopsStart[pattern] + pos];
+    }
+
+    boolean isPickup(int pattern, int pos) {
+        return patternPickup[patternStopsStart[pattern] + pos];
+    }
+
+    boolean isDropOff(int pattern, int pos) {
+        return patternDropOff[patternStopsStart[pattern] + pos];
+    }
+
+    int getPatternFeed(int pattern) {
+        return patternFeed[pattern];
+    }
+
+    int getTripPattern(int trip) {
+        return tripPattern[trip];
+    }
+
+    int getArrivalTime(int trip, int pos) {
+        return tripTimes[tripTimesStart[trip] + 3 * pos];
+    }
+
+    int getDepartureTime(int trip, int pos) {
+        return tripTimes[tripTimesStart[trip] + 3 * pos + 1];
+    }
+
+    int getStopSequence(int trip, int pos) {
+        return tripTimes[tripTimesStart[trip] + 3 * pos + 2];
+    }
+
+    int getStopPatternsStart(int stop) {
+        return stopPatternsStart[stop];
+    }
+
+    int getStopPatternsEnd(int stop) {
+        return stopPatternsStart[stop + 1];
+    }
+
+    int getStopPattern(int entry) {
+        return stopPatterns[entry];
+    }
+
+    int getStopPatternPosition(int entry) {
+        return stopPatternPositions[entry];
+    }
+
+    int getFootpathsStart(int stop) {
+        return footpathsStart[stop];
+    }
+
+    int getFootpathsEnd(int stop) {
+        return footpathsStart[stop + 1];
+    }
+
+    int getFootpathStop(int footpath) {
+        return footpathStops[footpath];
+    }
+
+    int getFootpathSeconds(int footpath) {
+        return footpathSeconds[footpath];
+    }
+
+    boolean hasTransferRules(int stop) {
+        return stopsWithTransferRules.get(stop);
+    }
+
+    /**
+     * @return the minimum transfer time from the given stop and trip to the given stop and trip according to the
+     * transfer rules of the feed like it is used by the trip-based router, or -1 if there is no rule for this case.
+     */
+    int getTransferRuleSeconds(int fromStop, int fromTrip, int toStop, int toTrip) {
+        if (!stopsWithTransferRules.get(fromStop))
+            return -1;
+        int[] rules = transferRules.get(transferRuleKey(fromStop, tripRoute[fromTrip]));
+        if (rules == null)
+            return -1;
+        int toRoute = tripRoute[toTrip];
+        for (int i = 0; i < rules.length; i += 3) {
+            if (rules[i] == toStop && rules[i + 1] == toRoute)
+                return rules[i + 2];
+        }
+        return -1;
+    }
+
+    /**
+     * @return the trips whose service is active on the given day, cached for the most recently queried days
+     */
+    BitSet getActiveTrips(LocalDate day) {
+        return activeTripsByDay.computeIfAbsent(day, d -> {
+            BitSet result = new BitSet(trips.trips.size());
+            for (int trip = 0; trip < trips.trips.size(); trip++)
+                if (trips.getTrip(trip).service.activeOn(d))
+                    result.set(trip);
+            return result;
+        });
+    }
+}
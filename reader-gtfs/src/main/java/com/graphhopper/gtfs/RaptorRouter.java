@@ -0,0 +1,531 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.SoftReference;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Round-based public transit router (RAPTOR, Delling, Pajor, Werneck 2012) on a {@link RaptorNetwork}. Round k finds
+ * the earliest arrival at every stop with k trips by scanning every pattern that serves a stop that was improved in
+ * the round before, and then relaxes the footpaths of the improved stops.
+ * <p>
+ * Profile queries are answered with range-RAPTOR: the departure minutes are processed from the latest to the
+ * earliest, keeping the labels of the later departures, so that a departure minute only finds the journeys that
+ * are better than those of all later departure minutes. The minutes are split into consecutive ranges which are
+ * processed in parallel, each with its own labels, and the journeys of all ranges are filtered for Pareto-optimality
+ * regarding departure time, arrival time and number of transfers.
+ * <p>
+ * The labels are stored in flat arrays indexed by round and stop. After a range of departure minutes the arrays are
+ * returned to a pool and reused by the next range, so neither the search nor a new query allocates them again unless
+ * the network grew. The pool holds at most as many label sets as ranges can run at the same time in the common
+ * fork-join pool, i.e. its parallelism plus the calling thread, so the memory does not grow with the number of
+ * request threads. Label sets that are created while the pool is empty, e.g. for many concurrent requests, are
+ * dropped after the search if the pool is full. The number of rounds is at most {@link TripBasedRouter#MAX_TRANSFERS} + 1, larger
+ * transfer limits are clamped like in the {@link TripBasedRouter}.
+ * <p>
+ * Like the {@link TripBasedRouter}, the destination is reached at the earliest arrival plus the weighted egress time
+ * and the transfer penalty. The access time weight and the boarding penalties by route type are only taken into
+ * account when comparing the journeys that were found, and transfer rules of the feeds that depend on the route are
+ * only used when boarding a trip right after alighting, not to find alternatives.
+ * <p>
+ * The service day of a departure minute is its date in the time zone of the first access station, for all feeds.
+ * Trips of the service day before, which run after midnight, are found by a separate search on that service day,
+ * so like in the {@link TripBasedRouter} all trips of a journey are from the same service day.
+ */
+public class RaptorRouter implements TimetableRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RaptorRouter.class);
+
+    // softly referenced, so that the pooled labels can be reclaimed when memory gets low
+    private static final BlockingQueue<SoftReference<Labels>> LABELS = new ArrayBlockingQueue<>(ForkJoinPool.getCommonPoolParallelism() + 1);
+
+    private final RaptorNetwork network;
+
+    public RaptorRouter(RaptorNetwork network) {
+        this.network = network;
+    }
+
+    @Override
+    public List<Journey> route(TripBasedRouter.Parameters parameters) {
+        List<TripBasedRouter.StopWithTimeDelta> accessStations = parameters.getAccessStations();
+        List<TripBasedRouter.StopWithTimeDelta> egressStations = parameters.getEgressStations();
+        if (accessStations.isEmpty() || egressStations.isEmpty())
+            return Collections.emptyList();
+        ZoneId zoneId = accessStations.get(0).zoneId;
+        long firstStartOfDay = parameters.getProfileStartTime().atZone(zoneId).toLocalDate().atStartOfDay(zoneId).toEpochSecond();
+        int minuteCount = parameters.getProfileLength().isNegative() ? 1 : (int) (parameters.getProfileLength().getSeconds() / 60) + 1;
+        Map<LocalDate, Query> queries = new HashMap<>();
+        List<Supplier<List<Journey>>> ranges = new ArrayList<>();
+        // the service day is that of the departure minute, so a profile over midnight is split into two queries,
+        // and the trips of the service day before can still run after midnight
+        for (int daysBefore = 0; daysBefore <= 1; daysBefore++) {
+            Query[] queryByMinute = new Query[minuteCount];
+            int[] departureTimeByMinute = new int[minuteCount];
+            for (int minute = 0; minute < minuteCount; minute++) {
+                ZonedDateTime departureTime = parameters.getProfileStartTime().plusSeconds(minute * 60L).atZone(zoneId);
+                Query query = queries.computeIfAbsent(departureTime.toLocalDate().minusDays(daysBefore), day -> new Query(parameters, zoneId, day, firstStartOfDay));
+                int secondOfServiceDay = (int) (departureTime.toEpochSecond() - query.startOfDay);
+                if (secondOfServiceDay <= query.lastDepartureTime) {
+                    queryByMinute[minute] = query;
+                    departureTimeByMinute[minute] = secondOfServiceDay;
+                }
+            }
+            addRanges(ranges, queryByMinute, departureTimeByMinute);
+        }
+        List<Journey> journeys = ranges.parallelStream()
+                .map(Supplier::get)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        return paretoFilter(journeys);
+    }
+
+    /**
+     * Splits the departure minutes into at most one range per processor, and the ranges further so that all minutes
+     * of a range have the same query. Minutes without a query are skipped.
+     */
+    private void addRanges(List<Supplier<List<Journey>>> ranges, Query[] queryByMinute, int[] departureTimeByMinute) {
+        int minuteCount = queryByMinute.length;
+        int rangeCount = Math.min(minuteCount, Runtime.getRuntime().availableProcessors());
+        for (int range = 0; range < rangeCount; range++) {
+            int toMinute = (range + 1) * minuteCount / rangeCount;
+            for (int fromMinute = range * minuteCount / rangeCount; fromMinute < toMinute; ) {
+                Query query = queryByMinute[fromMinute];
+                int minute = fromMinute + 1;
+                while (minute < toMinute && queryByMinute[minute] == query)
+                    minute++;
+                if (query != null) {
+                    int from = fromMinute, to = minute;
+                    ranges.add(() -> new Search(query).route(departureTimeByMinute, from, to));
+                }
+                fromMinute = minute;
+            }
+        }
+    }
+
+    private static List<Journey> paretoFilter(List<Journey> journeys) {
+        journeys.sort(Comparator.<Journey>comparingInt(j -> -j.departureTime).thenComparingInt(j -> j.arrivalTime).thenComparingInt(j -> j.transfers));
+        List<Journey> result = new ArrayList<>();
+        for (Journey journey : journeys) {
+            if (result.stream().noneMatch(journey::isDominatedBy))
+                result.add(journey);
+        }
+        return result;
+    }
+
+    /**
+     * Everything about a request that does not change with the departure minute of one service day.
+     */
+    private class Query {
+        final TripBasedRouter.Parameters parameters;
+        final LocalDate serviceDay;
+        final long startOfDay;
+        final int dayOffset;
+        final int rounds;
+        final int transferPenalty;
+        final int[] accessStops;
+        final int[] accessSeconds;
+        final int[] egressStops;
+        final int[] egressCosts;
+        final int[] feedOffsets;
+        // the latest departure time of a trip of the service day, a departure after it cannot board anything
+        final int lastDepartureTime;
+        final BitSet usableTrips;
+
+        Query(TripBasedRouter.Parameters parameters, ZoneId zoneId, LocalDate serviceDay, long firstStartOfDay) {
+            this.parameters = parameters;
+            this.serviceDay = serviceDay;
+            // the times are in seconds since the start of the service day in the time zone of the first access
+            // station, and the times of the journeys in seconds since the start of the first service day
+            startOfDay = serviceDay.atStartOfDay(zoneId).toEpochSecond();
+            dayOffset = (int) (startOfDay - firstStartOfDay);
+            rounds = Math.max(0, Math.min(parameters.getMaxTransfers(), TripBasedRouter.MAX_TRANSFERS)) + 1;
+            transferPenalty = (int) (parameters.getBetaTransfers() / 1000L);
+            List<TripBasedRouter.StopWithTimeDelta> accessStations = parameters.getAccessStations();
+            List<TripBasedRouter.StopWithTimeDelta> egressStations = parameters.getEgressStations();
+            accessStops = new int[accessStations.size()];
+            accessSeconds = new int[accessStations.size()];
+            for (int i = 0; i < accessStations.size(); i++) {
+                accessStops[i] = network.getStop(accessStations.get(i).stopId);
+                accessSeconds[i] = (int) (accessStations.get(i).timeDelta / 1000L);
+            }
+            egressStops = new int[egressStations.size()];
+            egressCosts = new int[egressStations.size()];
+            for (int i = 0; i < egressStations.size(); i++) {
+                egressStops[i] = network.getStop(egressStations.get(i).stopId);
+                egressCosts[i] = (int) ((egressStations.get(i).timeDelta / 1000L) * parameters.getBetaEgressTime());
+            }
+            feedOffsets = new int[network.getFeedCount()];
+            int lastDepartureTime = -1;
+            for (int feed = 0; feed < feedOffsets.length; feed++) {
+                feedOffsets[feed] = (int) (serviceDay.atStartOfDay(network.getFeedZoneId(feed)).toEpochSecond() - startOfDay);
+                if (network.getFeedLastDepartureTime(feed) >= 0)
+                    lastDepartureTime = Math.max(lastDepartureTime, network.getFeedLastDepartureTime(feed) + feedOffsets[feed]);
+            }
+            this.lastDepartureTime = lastDepartureTime;
+            usableTrips = (BitSet) network.getActiveTrips(serviceDay).clone();
+            for (int trip = usableTrips.nextSetBit(0); trip >= 0; trip = usableTrips.nextSetBit(trip + 1)) {
+                if (!parameters.getTripFilter().test(network.getTrips().getTrip(trip)))
+                    usableTrips.clear(trip);
+            }
+        }
+    }
+
+    /**
+     * The label arrays of a search, which are pooled and reused by later searches. They are at least as large as
+     * needed for the network and {@link TripBasedRouter#MAX_TRANSFERS}, so they only need to be reset.
+     */
+    private static class Labels {
+        final int[] boardableTime;
+        final int[] boardableFromStop;
+        final int[] boardableFromRound;
+        final int[] arrivalTime;
+        final int[] arrivalTrip;
+        final int[] arrivalBoardPos;
+        final int[] arrivalAlightPos;
+        final int[] markedPatternPos;
+        final BitSet markedStops;
+        final BitSet improvedStops;
+        final BitSet markedPatterns;
+
+        Labels(int labelCount, int stopCount, int patternCount) {
+            boardableTime = new int[labelCount];
+            boardableFromStop = new int[labelCount];
+            boardableFromRound = new int[labelCount];
+            arrivalTime = new int[labelCount];
+            arrivalTrip = new int[labelCount];
+            arrivalBoardPos = new int[labelCount];
+            arrivalAlightPos = new int[labelCount];
+            markedPatternPos = new int[patternCount];
+            markedStops = new BitSet(stopCount);
+            improvedStops = new BitSet(stopCount);
+            markedPatterns = new BitSet(patternCount);
+        }
+
+        /**
+         * @return labels from the pool or new ones if there are none that are large enough, reset for labelCount
+         * labels. They must be given back with {@link #release} once the search is done.
+         */
+        static Labels acquire(int labelCount, int stopCount, int patternCount) {
+            Labels labels = null;
+            for (SoftReference<Labels> reference; labels == null && (reference = LABELS.poll()) != null; ) {
+                labels = reference.get();
+                // labels that are too small are from before the network grew, so we let them go
+                if (labels != null && (labels.boardableTime.length < labelCount || labels.markedPatternPos.length < patternCount))
+                    labels = null;
+            }
+            if (labels == null)
+                labels = new Labels((TripBasedRouter.MAX_TRANSFERS + 2) * stopCount, stopCount, patternCount);
+            // the other label arrays are only read where one of these two is set
+            Arrays.fill(labels.boardableTime, 0, labelCount, Integer.MAX_VALUE);
+            Arrays.fill(labels.arrivalTime, 0, labelCount, Integer.MAX_VALUE);
+            Arrays.fill(labels.markedPatternPos, Integer.MAX_VALUE);
+            labels.markedStops.clear();
+            labels.improvedStops.clear();
+            labels.markedPatterns.clear();
+            return labels;
+        }
+
+        /**
+         * Gives the labels back to the pool, or drops them if the pool is full
+         */
+        static void release(Labels labels) {
+            LABELS.offer(new SoftReference<>(labels));
+        }
+    }
+
+    /**
+     * The labels of one range of departure minutes. The labels of round k and stop p are at index k * stopCount + p.
+     */
+    private class Search {
+        private final Query query;
+        private final int rounds;
+        private final int stopCount;
+        // the earliest time at which a trip can be boarded at a stop, and where this label comes from: the stop and
+        // round of the arrival label it was reached from by a footpath, or -(i + 1) for the i-th access station
+        private final int[] boardableTime;
+        private final int[] boardableFromStop;
+        private final int[] boardableFromRound;
+        // the earliest arrival at a stop by a trip, and the trip and the positions in the pattern where it was
+        // boarded and left
+        private final int[] arrivalTime;
+        private final int[] arrivalTrip;
+        private final int[] arrivalBoardPos;
+        private final int[] arrivalAlightPos;
+        private final int[] bestAtDestination;
+        private final int[] markedPatternPos;
+        private final BitSet markedStops;
+        private final BitSet improvedStops;
+        private final BitSet markedPatterns;
+        private final Labels labels;
+        private final List<Journey> journeys = new ArrayList<>();
+
+        /**
+         * Takes the labels from the pool, {@link #route} must be called exactly once to give them back.
+         */
+        Search(Query query) {
+            this.query = query;
+            rounds = query.rounds;
+            stopCount = network.getStopCount();
+            labels = Labels.acquire((rounds + 1) * stopCount, stopCount, network.getPatternCount());
+            boardableTime = labels.boardableTime;
+            boardableFromStop = labels.boardableFromStop;
+            boardableFromRound = labels.boardableFromRound;
+            arrivalTime = labels.arrivalTime;
+            arrivalTrip = labels.arrivalTrip;
+            arrivalBoardPos = labels.arrivalBoardPos;
+            arrivalAlightPos = labels.arrivalAlightPos;
+            markedPatternPos = labels.markedPatternPos;
+            markedStops = labels.markedStops;
+            improvedStops = labels.improvedStops;
+            markedPatterns = labels.markedPatterns;
+            bestAtDestination = new int[rounds + 1];
+            Arrays.fill(bestAtDestination, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Routes for the departure minutes from (inclusive) to (exclusive), starting with the latest one.
+         */
+        List<Journey> route(int[] departureTimeByMinute, int fromMinute, int toMinute) {
+            try {
+                for (int minute = toMinute - 1; minute >= fromMinute; minute--)
+                    routeMinute(departureTimeByMinute[minute]);
+                return journeys;
+            } finally {
+                Labels.release(labels);
+            }
+        }
+
+        /**
+         * @return the time before which a trip must arrive in the given round to possibly improve the destination
+         */
+        private int bound(int round) {
+            int best = bestAtDestination[round];
+            return best == Integer.MAX_VALUE ? best : best - (round - 1) * query.transferPenalty;
+        }
+
+        private void routeMinute(int departureTime) {
+            logger.debug("=== {} ===", departureTime);
+            markedStops.clear();
+            for (int i = 0; i < query.accessStops.length; i++) {
+                int stop = query.accessStops[i];
+                if (stop < 0)
+                    continue;
+                int time = departureTime + query.accessSeconds[i];
+                if (time < boardableTime[stop]) {
+                    boardableTime[stop] = time;
+                    boardableFromStop[stop] = -(i + 1);
+                    boardableFromRound[stop] = 0;
+                    markedStops.set(stop);
+                }
+            }
+            for (int round = 1; round <= rounds && !markedStops.isEmpty(); round++) {
+                collectPatterns(round);
+                improvedStops.clear();
+                for (int pattern = markedPatterns.nextSetBit(0); pattern >= 0; pattern = markedPatterns.nextSetBit(pattern + 1)) {
+                    scanPattern(round, pattern, markedPatternPos[pattern]);
+                    markedPatternPos[pattern] = Integer.MAX_VALUE;
+                }
+                checkDestinations(round);
+                if (round < rounds)
+                    relaxFootpaths(round);
+            }
+        }
+
+        private void collectPatterns(int round) {
+            markedPatterns.clear();
+            int previousOffset = (round - 1) * stopCount;
+            int offset = round * stopCount;
+            for (int stop = markedStops.nextSetBit(0); stop >= 0; stop = markedStops.nextSetBit(stop + 1)) {
+                // a label with k - 1 trips is also a label with at most k trips
+                if (boardableTime[previousOffset + stop] < boardableTime[offset + stop]) {
+                    boardableTime[offset + stop] = boardableTime[previousOffset + stop];
+                    boardableFromStop[offset + stop] = boardableFromStop[previousOffset + stop];
+                    boardableFromRound[offset + stop] = boardableFromRound[previousOffset + stop];
+                }
+                for (int entry = network.getStopPatternsStart(stop); entry < network.getStopPatternsEnd(stop); entry++) {
+                    int pattern = network.getStopPattern(entry);
+                    markedPatterns.set(pattern);
+                    markedPatternPos[pattern] = Math.min(markedPatternPos[pattern], network.getStopPatternPosition(entry));
+                }
+            }
+            markedStops.clear();
+        }
+
+        private void scanPattern(int round, int pattern, int fromPos) {
+            int previousOffset = (round - 1) * stopCount;
+            int offset = round * stopCount;
+            int feedOffset = query.feedOffsets[network.getPatternFeed(pattern)];
+            int bound = bound(round);
+            int trip = -1;
+            int boardPos = -1;
+            int patternStopCount = network.getPatternStopCount(pattern);
+            for (int pos = fromPos; pos < patternStopCount; pos++) {
+                int stop = network.getPatternStop(pattern, pos);
+                if (trip >= 0 && network.isDropOff(pattern, pos)) {
+                    int time = network.getArrivalTime(trip, pos) + feedOffset;
+                    if (time < arrivalTime[offset + stop] && time < bound) {
+                        arrivalTime[offset + stop] = time;
+                        arrivalTrip[offset + stop] = trip;
+                        arrivalBoardPos[offset + stop] = boardPos;
+                        arrivalAlightPos[offset + stop] = pos;
+                        improvedStops.set(stop);
+                    }
+                }
+                int readyTime = boardableTime[previousOffset + stop];
+                if (readyTime != Integer.MAX_VALUE && network.isPickup(pattern, pos)
+                        && (trip < 0 || readyTime <= network.getDepartureTime(trip, pos) + feedOffset)) {
+                    int endTrip = trip < 0 ? network.getPatternEndTrip(pattern) : trip;
+                    int earliestTrip = findEarliestTrip(pattern, pos, readyTime - feedOffset, endTrip);
+                    int fromStop = boardableFromStop[previousOffset + stop];
+                    if (fromStop >= 0 && network.hasTransferRules(fromStop)) {
+                        // the footpath is a lower bound, the transfer time can depend on the routes
+                        int fromLabel = boardableFromRound[previousOffset + stop] * stopCount + fromStop;
+                        while (earliestTrip >= 0) {
+                            int ruleSeconds = network.getTransferRuleSeconds(fromStop, arrivalTrip[fromLabel], stop, earliestTrip);
+                            int exactReadyTime = ruleSeconds < 0 ? readyTime : arrivalTime[fromLabel] + ruleSeconds;
+                            if (exactReadyTime <= network.getDepartureTime(earliestTrip, pos) + feedOffset)
+                                break;
+                            earliestTrip = findEarliestTrip(pattern, pos, exactReadyTime - feedOffset, endTrip);
+                        }
+                    }
+                    if (earliestTrip >= 0) {
+                        trip = earliestTrip;
+                        boardPos = pos;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the first usable trip of the pattern before endTrip that departs at the given position not before
+         * the given time, or -1. The trips of a pattern are sorted by departure time, so like the TripBasedRouter
+         * we assume that they do not overtake each other.
+         */
+        private int findEarliestTrip(int pattern, int pos, int time, int endTrip) {
+            int low = network.getPatternFirstTrip(pattern);
+            int high = endTrip;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (network.getDepartureTime(mid, pos) < time)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            int trip = query.usableTrips.nextSetBit(low);
+            return trip >= 0 && trip < endTrip ? trip : -1;
+        }
+
+        private void relaxFootpaths(int round) {
+            int offset = round * stopCount;
+            int bound = bound(round + 1);
+            for (int stop = improvedStops.nextSetBit(0); stop >= 0; stop = improvedStops.nextSetBit(stop + 1)) {
+                int arrival = arrivalTime[offset + stop];
+                for (int footpath = network.getFootpathsStart(stop); footpath < network.getFootpathsEnd(stop); footpath++) {
+                    int toStop = network.getFootpathStop(footpath);
+                    int time = arrival + network.getFootpathSeconds(footpath);
+                    if (time < boardableTime[offset + toStop] && time < bound) {
+                        boardableTime[offset + toStop] = time;
+                        boardableFromStop[offset + toStop] = stop;
+                        boardableFromRound[offset + toStop] = round;
+                        markedStops.set(toStop);
+                    }
+                }
+            }
+        }
+
+        private void checkDestinations(int round) {
+            int offset = round * stopCount;
+            int bestEgress = -1;
+            for (int i = 0; i < query.egressStops.length; i++) {
+                int stop = query.egressStops[i];
+                if (stop < 0 || !improvedStops.get(stop))
+                    continue;
+                int time = arrivalTime[offset + stop] + query.egressCosts[i] + (round - 1) * query.transferPenalty;
+                if (time < bestAtDestination[round]) {
+                    for (int r = round; r <= rounds; r++)
+                        bestAtDestination[r] = Math.min(bestAtDestination[r], time);
+                    bestEgress = i;
+                }
+            }
+            if (bestEgress >= 0) {
+                Journey journey = extractJourney(round, bestEgress);
+                logger.debug(" {}", journey);
+                journeys.add(journey);
+            }
+        }
+
+        private Journey extractJourney(int round, int egress) {
+            int[] trips = new int[round];
+            int[] boardPositions = new int[round];
+            int[] alightPositions = new int[round];
+            int legCount = 0;
+            int stop = query.egressStops[egress];
+            int labelRound = round;
+            int access;
+            while (true) {
+                int label = labelRound * stopCount + stop;
+                int trip = arrivalTrip[label];
+                trips[legCount] = trip;
+                boardPositions[legCount] = arrivalBoardPos[label];
+                alightPositions[legCount] = arrivalAlightPos[label];
+                legCount++;
+                int boardStop = network.getPatternStop(network.getTripPattern(trip), arrivalBoardPos[label]);
+                int boardableLabel = (labelRound - 1) * stopCount + boardStop;
+                if (boardableFromStop[boardableLabel] < 0) {
+                    access = -boardableFromStop[boardableLabel] - 1;
+                    break;
+                }
+                stop = boardableFromStop[boardableLabel];
+                labelRound = boardableFromRound[boardableLabel];
+            }
+            TripBasedRouter.StopWithTimeDelta accessStation = query.parameters.getAccessStations().get(access);
+            int arrivalTime = bestAtDestination[round] + (int) (((long) (accessStation.timeDelta * (query.parameters.getBetaAccessTime() - 1.0))) / 1000L);
+            int transfers = 0;
+            TripBasedRouter.EnqueuedTripSegment segment = null;
+            for (int leg = legCount - 1; leg >= 0; leg--) {
+                GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer = network.getTrips().getTrip(trips[leg]);
+                arrivalTime += (int) (query.parameters.getTransferPenaltiesByRouteType().getOrDefault(tripPointer.routeType, 0L) / 1000L);
+                if (segment != null && (tripPointer.trip.block_id == null || !tripPointer.trip.block_id.equals(segment.tripPointer.trip.block_id)))
+                    transfers++;
+                Trips.TripAtStopTime transferOrigin = segment == null ? null : new Trips.TripAtStopTime(trips[leg + 1], network.getStopSequence(trips[leg + 1], alightPositions[leg + 1]));
+                segment = new TripBasedRouter.EnqueuedTripSegment(tripPointer,
+                        new Trips.TripAtStopTime(trips[leg], network.getStopSequence(trips[leg], boardPositions[leg])),
+                        network.getStopSequence(trips[leg], alightPositions[leg]), query.serviceDay, transferOrigin, segment, accessStation);
+            }
+            int firstTrip = trips[legCount - 1];
+            int departureTime = network.getDepartureTime(firstTrip, boardPositions[legCount - 1])
+                    + query.feedOffsets[network.getPatternFeed(network.getTripPattern(firstTrip))] - query.accessSeconds[access];
+            return new Journey(segment, network.getStopSequence(trips[0], alightPositions[0]), accessStation,
+                    query.parameters.getEgressStations().get(egress), query.dayOffset + departureTime, query.dayOffset + arrivalTime, transfers);
+        }
+    }
+}
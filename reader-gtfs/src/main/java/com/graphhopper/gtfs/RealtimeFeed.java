@@ -21,6 +21,9 @@ package com.graphhopper.gtfs;
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
 import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.IntLongCursor;
+import com.carrotsearch.hppc.procedures.IntProcedure;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Frequency;
 import com.conveyal.gtfs.model.StopTime;
@@ -53,38 +56,238 @@ public class RealtimeFeed {
     private final TreeSet<PtGraph.PtEdge> additionalEdgesByBaseNode;
     private final TreeSet<PtGraph.PtEdge> additionalEdgesByAdjNode;
     public final Map<String, GtfsRealtime.FeedMessage> feedMessages;
-
-    private RealtimeFeed(Map<String, GtfsRealtime.FeedMessage> feedMessages, IntHashSet blockedEdges,
-                         IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges, List<PtGraph.PtEdge> additionalEdges) {
+    // The overlay contributed by each applied trip update, by feed and trip update key, so that
+    // the next update only has to compute the trip updates which have changed.
+    private final Map<String, Map<String, TripUpdateOverlay>> overlaysByFeed;
+    private final int nextEdge;
+    private final int nextNode;
+
+    private RealtimeFeed(Map<String, GtfsRealtime.FeedMessage> feedMessages, Map<String, Map<String, TripUpdateOverlay>> overlaysByFeed,
+                         IntHashSet blockedEdges, IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges,
+                         TreeSet<PtGraph.PtEdge> additionalEdgesByBaseNode, TreeSet<PtGraph.PtEdge> additionalEdgesByAdjNode,
+                         int nextEdge, int nextNode) {
         this.feedMessages = feedMessages;
+        this.overlaysByFeed = overlaysByFeed;
         this.blockedEdges = blockedEdges;
         this.delaysForBoardEdges = delaysForBoardEdges;
         this.delaysForAlightEdges = delaysForAlightEdges;
-        this.additionalEdgesByBaseNode = new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getBaseNode).thenComparingInt(PtGraph.PtEdge::getId));
-        this.additionalEdgesByBaseNode.addAll(additionalEdges);
-        this.additionalEdgesByAdjNode = new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getAdjNode).thenComparingInt(PtGraph.PtEdge::getId));
-        this.additionalEdgesByAdjNode.addAll(additionalEdges);
+        this.additionalEdgesByBaseNode = additionalEdgesByBaseNode;
+        this.additionalEdgesByAdjNode = additionalEdgesByAdjNode;
+        this.nextEdge = nextEdge;
+        this.nextNode = nextNode;
     }
 
     public static RealtimeFeed empty() {
-        return new RealtimeFeed(Collections.emptyMap(), new IntHashSet(), new IntLongHashMap(), new IntLongHashMap(), Collections.emptyList());
+        return new RealtimeFeed(Collections.emptyMap(), Collections.emptyMap(), new IntHashSet(), new IntLongHashMap(), new IntLongHashMap(),
+                new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getBaseNode).thenComparingInt(PtGraph.PtEdge::getId)),
+                new TreeSet<>(Comparator.comparingInt(PtGraph.PtEdge::getAdjNode).thenComparingInt(PtGraph.PtEdge::getId)),
+                0, 0);
     }
 
     public static RealtimeFeed fromProtobuf(GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> feedMessages) {
-        final IntHashSet blockedEdges = new IntHashSet();
-        final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
-        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
-        final LinkedList<PtGraph.PtEdge> additionalEdges = new LinkedList<>();
-        final GtfsReader.PtGraphOut overlayGraph = new GtfsReader.PtGraphOut() {
-            int nextEdge = staticGtfs.getPtGraph().getEdgeCount();
-            int nextNode = staticGtfs.getPtGraph().getNodeCount();
+        return empty().update(staticGtfs, transfers, feedMessages);
+    }
+
+    /**
+     * Applies the given feed messages as a delta to this feed: Trip updates which are unchanged since the
+     * last application keep their overlay, only new and changed ones are computed, and the overlays of
+     * trip updates which are gone are removed. This instance is not modified, the result is a new snapshot
+     * which can be published atomically to concurrent readers.
+     */
+    public RealtimeFeed update(GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> newFeedMessages) {
+        final int staticEdgeCount = staticGtfs.getPtGraph().getEdgeCount();
+        final int staticNodeCount = staticGtfs.getPtGraph().getNodeCount();
+        final IdAllocator ids = new IdAllocator(Math.max(nextEdge, staticEdgeCount), Math.max(nextNode, staticNodeCount));
+        final Map<String, Map<String, TripUpdateOverlay>> newOverlaysByFeed = new HashMap<>();
+        final List<TripUpdateOverlay> addedOverlays = new ArrayList<>();
+        // the trips of the added and removed trip updates, by feed
+        final Map<String, Set<String>> changedTripsByFeed = new HashMap<>();
+        newFeedMessages.forEach((feedKey, feedMessage) -> {
+            GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
+            ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
+            Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
+            LocalDate dateToChange = timestamp.atZone(timezone).toLocalDate(); //FIXME
+            Map<String, TripUpdateOverlay> oldOverlays = overlaysByFeed.getOrDefault(feedKey, Collections.emptyMap());
+            Map<String, TripUpdateOverlay> newOverlays = new LinkedHashMap<>();
+            Stream.of(GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED, GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED)
+                    .flatMap(scheduleRelationship -> feedMessage.getEntityList().stream()
+                            .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
+                            .map(GtfsRealtime.FeedEntity::getTripUpdate)
+                            .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == scheduleRelationship))
+                    .map(RealtimeFeed::withoutIrrelevantFields)
+                    .forEach(tripUpdate -> {
+                        String key = overlayKey(tripUpdate.getTrip());
+                        for (int i = 1; newOverlays.containsKey(key); i++) {
+                            key = overlayKey(tripUpdate.getTrip()) + "#" + i;
+                        }
+                        TripUpdateOverlay oldOverlay = oldOverlays.get(key);
+                        if (oldOverlay != null && oldOverlay.dateToChange.equals(dateToChange) && oldOverlay.tripUpdate.equals(tripUpdate)) {
+                            newOverlays.put(key, oldOverlay);
+                        } else {
+                            TripUpdateOverlay overlay = createOverlay(staticGtfs, transfers.get(feedKey), feedKey, feed, timezone, dateToChange, tripUpdate, ids);
+                            newOverlays.put(key, overlay);
+                            addedOverlays.add(overlay);
+                            changedTripsByFeed.computeIfAbsent(feedKey, k -> new HashSet<>()).add(tripUpdate.getTrip().getTripId());
+                        }
+                    });
+            newOverlaysByFeed.put(feedKey, newOverlays);
+        });
 
+        final Set<TripUpdateOverlay> keptOverlays = Collections.newSetFromMap(new IdentityHashMap<>());
+        newOverlaysByFeed.values().forEach(overlays -> keptOverlays.addAll(overlays.values()));
+        final List<TripUpdateOverlay> removedOverlays = new ArrayList<>();
+        overlaysByFeed.forEach((feedKey, overlays) -> overlays.values().stream()
+                .filter(overlay -> !keptOverlays.contains(overlay))
+                .forEach(overlay -> {
+                    removedOverlays.add(overlay);
+                    changedTripsByFeed.computeIfAbsent(feedKey, k -> new HashSet<>()).add(overlay.tripUpdate.getTrip().getTripId());
+                }));
+        if (addedOverlays.isEmpty() && removedOverlays.isEmpty()) {
+            return new RealtimeFeed(newFeedMessages, newOverlaysByFeed, blockedEdges, delaysForBoardEdges, delaysForAlightEdges,
+                    additionalEdgesByBaseNode, additionalEdgesByAdjNode, ids.nextEdge, ids.nextNode);
+        }
+        // The ids of removed overlays are not reused individually. Instead, when they make up more than half of the
+        // ids after the static graph, all overlays are moved down to start at the static counts again, so the id
+        // range stays bounded by twice the ids in use, no matter how many updates are applied.
+        int usedEdges = 0, usedNodes = 0;
+        for (Map<String, TripUpdateOverlay> overlays : newOverlaysByFeed.values()) {
+            for (TripUpdateOverlay overlay : overlays.values()) {
+                usedEdges += overlay.edgeEnd - overlay.firstEdge;
+                usedNodes += overlay.nodeEnd - overlay.firstNode;
+            }
+        }
+        if (ids.nextEdge - staticEdgeCount > 2L * usedEdges || ids.nextNode - staticNodeCount > 2L * usedNodes) {
+            logger.debug("Applied realtime update: {} trip updates added or changed, {} removed, compacted the ids", addedOverlays.size(), removedOverlays.size());
+            return compacted(newFeedMessages, newOverlaysByFeed, staticEdgeCount, staticNodeCount);
+        }
+
+        // Copy-on-write: Readers of this instance keep seeing a consistent state while we build the next one.
+        final IntHashSet newBlockedEdges = new IntHashSet(blockedEdges);
+        final IntLongHashMap newDelaysForBoardEdges = new IntLongHashMap(delaysForBoardEdges);
+        final IntLongHashMap newDelaysForAlightEdges = new IntLongHashMap(delaysForAlightEdges);
+        // trip updates with only delays and skipped stops do not add edges, then the edges can be shared
+        final boolean additionalEdgesChanged = Stream.concat(removedOverlays.stream(), addedOverlays.stream())
+                .anyMatch(overlay -> !overlay.additionalEdges.isEmpty());
+        final TreeSet<PtGraph.PtEdge> newAdditionalEdgesByBaseNode = additionalEdgesChanged ? new TreeSet<>(additionalEdgesByBaseNode) : additionalEdgesByBaseNode;
+        final TreeSet<PtGraph.PtEdge> newAdditionalEdgesByAdjNode = additionalEdgesChanged ? new TreeSet<>(additionalEdgesByAdjNode) : additionalEdgesByAdjNode;
+        for (TripUpdateOverlay overlay : removedOverlays) {
+            newBlockedEdges.removeAll(overlay.blockedEdges);
+            overlay.delaysForBoardEdges.keys().forEach((IntProcedure) newDelaysForBoardEdges::remove);
+            overlay.delaysForAlightEdges.keys().forEach((IntProcedure) newDelaysForAlightEdges::remove);
+            overlay.additionalEdges.forEach(newAdditionalEdgesByBaseNode::remove);
+            overlay.additionalEdges.forEach(newAdditionalEdgesByAdjNode::remove);
+        }
+        // Several trip updates can block or delay the same static edges, like the runs of a frequency-based trip or
+        // trip updates with the same trip descriptor, but only if they are for the same trip. Removing a trip update
+        // above also removed the entries of the others, and of the delays of the same edge the trip update which comes
+        // last wins. So all trip updates of the changed trips are applied again, in the same order as when building
+        // the feed from scratch.
+        changedTripsByFeed.forEach((feedKey, tripIds) -> {
+            for (TripUpdateOverlay overlay : newOverlaysByFeed.getOrDefault(feedKey, Collections.emptyMap()).values()) {
+                if (tripIds.contains(overlay.tripUpdate.getTrip().getTripId()))
+                    overlay.addBlockedEdgesAndDelaysTo(newBlockedEdges, newDelaysForBoardEdges, newDelaysForAlightEdges);
+            }
+        });
+        for (TripUpdateOverlay overlay : addedOverlays) {
+            newAdditionalEdgesByBaseNode.addAll(overlay.additionalEdges);
+            newAdditionalEdgesByAdjNode.addAll(overlay.additionalEdges);
+        }
+        logger.debug("Applied realtime update: {} trip updates added or changed, {} removed", addedOverlays.size(), removedOverlays.size());
+        return new RealtimeFeed(newFeedMessages, newOverlaysByFeed, newBlockedEdges, newDelaysForBoardEdges, newDelaysForAlightEdges,
+                newAdditionalEdgesByBaseNode, newAdditionalEdgesByAdjNode, ids.nextEdge, ids.nextNode);
+    }
+
+    private static RealtimeFeed compacted(Map<String, GtfsRealtime.FeedMessage> feedMessages, Map<String, Map<String, TripUpdateOverlay>> overlaysByFeed,
+                                          int staticEdgeCount, int staticNodeCount) {
+        RealtimeFeed empty = empty();
+        IdAllocator ids = new IdAllocator(staticEdgeCount, staticNodeCount);
+        Map<String, Map<String, TripUpdateOverlay>> movedOverlaysByFeed = new HashMap<>();
+        overlaysByFeed.forEach((feedKey, overlays) -> {
+            Map<String, TripUpdateOverlay> movedOverlays = new LinkedHashMap<>();
+            overlays.forEach((key, overlay) -> {
+                TripUpdateOverlay moved = overlay.moveTo(ids);
+                moved.addTo(empty.blockedEdges, empty.delaysForBoardEdges, empty.delaysForAlightEdges, empty.additionalEdgesByBaseNode, empty.additionalEdgesByAdjNode);
+                movedOverlays.put(key, moved);
+            });
+            movedOverlaysByFeed.put(feedKey, movedOverlays);
+        });
+        return new RealtimeFeed(feedMessages, movedOverlaysByFeed, empty.blockedEdges, empty.delaysForBoardEdges, empty.delaysForAlightEdges,
+                empty.additionalEdgesByBaseNode, empty.additionalEdgesByAdjNode, ids.nextEdge, ids.nextNode);
+    }
+
+    /**
+     * @return this feed built from scratch from the overlays of its trip updates, like {@link #compacted} does but
+     * without moving their ids. The incremental updates must lead to the same state, see {@link #hasSameStateAs}.
+     */
+    RealtimeFeed rebuilt() {
+        RealtimeFeed empty = empty();
+        overlaysByFeed.values().forEach(overlays -> overlays.values().forEach(overlay ->
+                overlay.addTo(empty.blockedEdges, empty.delaysForBoardEdges, empty.delaysForAlightEdges, empty.additionalEdgesByBaseNode, empty.additionalEdgesByAdjNode)));
+        return new RealtimeFeed(feedMessages, overlaysByFeed, empty.blockedEdges, empty.delaysForBoardEdges, empty.delaysForAlightEdges,
+                empty.additionalEdgesByBaseNode, empty.additionalEdgesByAdjNode, nextEdge, nextNode);
+    }
+
+    /**
+     * @return true if the other feed blocks, delays and adds the same edges
+     */
+    boolean hasSameStateAs(RealtimeFeed other) {
+        return blockedEdges.equals(other.blockedEdges) && delaysForBoardEdges.equals(other.delaysForBoardEdges)
+                && delaysForAlightEdges.equals(other.delaysForAlightEdges)
+                && additionalEdgesByBaseNode.equals(other.additionalEdgesByBaseNode)
+                && additionalEdgesByAdjNode.equals(other.additionalEdgesByAdjNode);
+    }
+
+    /**
+     * @return the trip update without the fields which do not change its overlay, like its timestamp, so a trip
+     * update which only differs in them is not applied again. The arrival and departure times of the stop time
+     * updates are only used for added trips, scheduled trips use the delays.
+     */
+    private static GtfsRealtime.TripUpdate withoutIrrelevantFields(GtfsRealtime.TripUpdate tripUpdate) {
+        GtfsRealtime.TripUpdate.Builder builder = tripUpdate.toBuilder().clearTimestamp().clearDelay().clearVehicle().clearTripProperties();
+        boolean scheduled = tripUpdate.getTrip().getScheduleRelationship() != GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED;
+        for (GtfsRealtime.TripUpdate.StopTimeUpdate.Builder stopTimeUpdate : builder.getStopTimeUpdateBuilderList()) {
+            stopTimeUpdate.clearStopTimeProperties();
+            if (stopTimeUpdate.hasArrival()) {
+                stopTimeUpdate.getArrivalBuilder().clearUncertainty();
+                if (scheduled)
+                    stopTimeUpdate.getArrivalBuilder().clearTime();
+            }
+            if (stopTimeUpdate.hasDeparture()) {
+                stopTimeUpdate.getDepartureBuilder().clearUncertainty();
+                if (scheduled)
+                    stopTimeUpdate.getDepartureBuilder().clearTime();
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the first edge id after the static graph and the edges of the applied trip updates
+     */
+    public int getNextEdge() {
+        return nextEdge;
+    }
+
+    /**
+     * @return the first node id after the static graph and the nodes of the applied trip updates
+     */
+    public int getNextNode() {
+        return nextNode;
+    }
+
+    private static String overlayKey(GtfsRealtime.TripDescriptor trip) {
+        return trip.getScheduleRelationship() + ":" + trip.getTripId() + ":" + trip.getStartDate() + ":" + trip.getStartTime();
+    }
+
+    private static TripUpdateOverlay createOverlay(GtfsStorage staticGtfs, Transfers transfers, String feedKey, GTFSFeed feed, ZoneId timezone, LocalDate dateToChange, GtfsRealtime.TripUpdate tripUpdate, IdAllocator ids) {
+        final TripUpdateOverlay overlay = new TripUpdateOverlay(tripUpdate, dateToChange, ids.nextEdge, ids.nextNode);
+        final GtfsReader.PtGraphOut overlayGraph = new GtfsReader.PtGraphOut() {
             @Override
             public int createEdge(int src, int dest, PtEdgeAttributes attrs) {
-                int edgeId = nextEdge++;
+                int edgeId = ids.nextEdge++;
                 PtGraph.PtEdge e = new PtGraph.PtEdge(edgeId, src, dest, attrs);
                 assert canBeAdded(e);
-                additionalEdges.add(e);
+                overlay.additionalEdges.add(e);
                 return edgeId;
             }
 
@@ -99,35 +302,99 @@ public class RealtimeFeed {
 
             @Override
             public int createNode() {
-                return nextNode++;
+                return ids.nextNode++;
             }
 
         };
+        PtGraph ptGraphNodesAndEdges = staticGtfs.getPtGraph();
+        final GtfsReader gtfsReader = new GtfsReader(feedKey, ptGraphNodesAndEdges, overlayGraph, staticGtfs, null, transfers, null);
+        BitSet validOnDay = new BitSet();
+        LocalDate startDate = feed.getStartDate();
+        validOnDay.set((int) DAYS.between(startDate, dateToChange));
+        if (tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED) {
+            maybeUpdateScheduledTrip(staticGtfs, feedKey, tripUpdate, feed, overlay.blockedEdges, overlay.delaysForAlightEdges, ptGraphNodesAndEdges, gtfsReader, timezone, validOnDay, overlay.delaysForBoardEdges);
+        } else {
+            maybeAddExtraTrip(staticGtfs, feedKey, tripUpdate, timezone, validOnDay, gtfsReader);
+        }
+        gtfsReader.wireUpAdditionalDeparturesAndArrivals(timezone);
+        // the ids of an overlay are contiguous, so it can be moved to other ids by an offset
+        overlay.edgeEnd = ids.nextEdge;
+        overlay.nodeEnd = ids.nextNode;
+        return overlay;
+    }
 
-        feedMessages.forEach((feedKey, feedMessage) -> {
-            GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
-            ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
-            PtGraph ptGraphNodesAndEdges = staticGtfs.getPtGraph();
-            final GtfsReader gtfsReader = new GtfsReader(feedKey, ptGraphNodesAndEdges, overlayGraph, staticGtfs, null, transfers.get(feedKey), null);
-            Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
-            LocalDate dateToChange = timestamp.atZone(timezone).toLocalDate(); //FIXME
-            BitSet validOnDay = new BitSet();
-            LocalDate startDate = feed.getStartDate();
-            validOnDay.set((int) DAYS.between(startDate, dateToChange));
-            feedMessage.getEntityList().stream()
-                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED)
-                    .forEach(tripUpdate -> maybeUpdateScheduledTrip(staticGtfs, feedKey, tripUpdate, feed, blockedEdges, delaysForAlightEdges, ptGraphNodesAndEdges, gtfsReader, timezone, validOnDay, delaysForBoardEdges));
-            feedMessage.getEntityList().stream()
-                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED)
-                    .forEach(tripUpdate -> maybeAddExtraTrip(staticGtfs, feedKey, tripUpdate, timezone, validOnDay, gtfsReader));
-            gtfsReader.wireUpAdditionalDeparturesAndArrivals(timezone);
-        });
+    private static class IdAllocator {
+        int nextEdge;
+        int nextNode;
 
-        return new RealtimeFeed(feedMessages, blockedEdges, delaysForBoardEdges, delaysForAlightEdges, additionalEdges);
+        IdAllocator(int nextEdge, int nextNode) {
+            this.nextEdge = nextEdge;
+            this.nextNode = nextNode;
+        }
+    }
+
+    private static class TripUpdateOverlay {
+        // without the fields which do not change the overlay, see withoutIrrelevantFields
+        final GtfsRealtime.TripUpdate tripUpdate;
+        final LocalDate dateToChange;
+        final IntHashSet blockedEdges = new IntHashSet();
+        final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
+        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+        final List<PtGraph.PtEdge> additionalEdges = new ArrayList<>();
+        // the ranges of the edge and node ids created for this overlay, all other ids belong to the static graph
+        final int firstEdge;
+        final int firstNode;
+        int edgeEnd;
+        int nodeEnd;
+
+        TripUpdateOverlay(GtfsRealtime.TripUpdate tripUpdate, LocalDate dateToChange, int firstEdge, int firstNode) {
+            this.tripUpdate = tripUpdate;
+            this.dateToChange = dateToChange;
+            this.firstEdge = firstEdge;
+            this.firstNode = firstNode;
+        }
+
+        TripUpdateOverlay moveTo(IdAllocator ids) {
+            int edgeOffset = ids.nextEdge - firstEdge;
+            int nodeOffset = ids.nextNode - firstNode;
+            ids.nextEdge += edgeEnd - firstEdge;
+            ids.nextNode += nodeEnd - firstNode;
+            if (edgeOffset == 0 && nodeOffset == 0)
+                return this;
+            TripUpdateOverlay result = new TripUpdateOverlay(tripUpdate, dateToChange, firstEdge + edgeOffset, firstNode + nodeOffset);
+            result.edgeEnd = edgeEnd + edgeOffset;
+            result.nodeEnd = nodeEnd + nodeOffset;
+            for (IntCursor c : blockedEdges)
+                result.blockedEdges.add(moveEdge(c.value, edgeOffset));
+            for (IntLongCursor c : delaysForBoardEdges)
+                result.delaysForBoardEdges.put(moveEdge(c.key, edgeOffset), c.value);
+            for (IntLongCursor c : delaysForAlightEdges)
+                result.delaysForAlightEdges.put(moveEdge(c.key, edgeOffset), c.value);
+            for (PtGraph.PtEdge e : additionalEdges)
+                result.additionalEdges.add(new PtGraph.PtEdge(moveEdge(e.getId(), edgeOffset), moveNode(e.getBaseNode(), nodeOffset), moveNode(e.getAdjNode(), nodeOffset), e.getAttrs()));
+            return result;
+        }
+
+        private int moveEdge(int edge, int offset) {
+            return edge >= firstEdge && edge < edgeEnd ? edge + offset : edge;
+        }
+
+        private int moveNode(int node, int offset) {
+            return node >= firstNode && node < nodeEnd ? node + offset : node;
+        }
+
+        void addTo(IntHashSet blockedEdges, IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges,
+                   TreeSet<PtGraph.PtEdge> additionalEdgesByBaseNode, TreeSet<PtGraph.PtEdge> additionalEdgesByAdjNode) {
+            addBlockedEdgesAndDelaysTo(blockedEdges, delaysForBoardEdges, delaysForAlightEdges);
+            additionalEdgesByBaseNode.addAll(additionalEdges);
+            additionalEdgesByAdjNode.addAll(additionalEdges);
+        }
+
+        void addBlockedEdgesAndDelaysTo(IntHashSet blockedEdges, IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges) {
+            blockedEdges.addAll(this.blockedEdges);
+            delaysForBoardEdges.putAll(this.delaysForBoardEdges);
+            delaysForAlightEdges.putAll(this.delaysForAlightEdges);
+        }
     }
 
     private static void maybeUpdateScheduledTrip(GtfsStorage staticGtfs, String feedKey, GtfsRealtime.TripUpdate tripUpdate, GTFSFeed feed, IntHashSet blockedEdges, IntLongHashMap delaysForAlightEdges, PtGraph ptGraphNodesAndEdges, GtfsReader gtfsReader, ZoneId timezone, BitSet validOnDay, IntLongHashMap delaysForBoardEdges) {
@@ -486,8 +753,8 @@ public class RealtimeFeed {
         }).findFirst().orElse(Instant.now());
     }
 
-    public StopTime getStopTime(GTFSFeed staticFeed, GtfsRealtime.TripDescriptor tripDescriptor, Instant boardTime, int stopSequence) {
-        StopTime stopTime = staticFeed.stop_times.get(new Fun.Tuple2<>(tripDescriptor.getTripId(), stopSequence));
+    public StopTime getStopTime(GTFSFeed staticFeed, CompactGtfsFeed compactStaticFeed, GtfsRealtime.TripDescriptor tripDescriptor, Instant boardTime, int stopSequence) {
+        StopTime stopTime = compactStaticFeed.getStopTime(tripDescriptor.getTripId(), stopSequence);
         if (stopTime == null) {
             return getTripUpdate(staticFeed, tripDescriptor, boardTime).get().stopTimes.get(stopSequence - 1);
         } else {
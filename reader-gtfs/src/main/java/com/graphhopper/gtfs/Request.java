@@ -36,6 +36,7 @@ public class Request {
     private double betaAccessTime = 1.0;
     private double betaEgressTime = 1.0;
     private Integer limitSolutions;
+    private Integer limitTransfers;
     private boolean arriveBy;
     private double walkSpeedKmH = 5.0;
     private int blockedRouteTypes;
@@ -105,6 +106,14 @@ public class Request {
         this.limitSolutions = limitSolutions;
     }
 
+    public Integer getLimitTransfers() {
+        return limitTransfers;
+    }
+
+    public void setLimitTransfers(Integer limitTransfers) {
+        this.limitTransfers = limitTransfers;
+    }
+
     public Instant getEarliestDepartureTime() {
         return earliestDepartureTime;
     }
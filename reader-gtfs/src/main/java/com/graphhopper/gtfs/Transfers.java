@@ -144,6 +144,15 @@ public class Transfers {
         return result;
     }
 
+    /**
+     * @return the transfer rules from the given stop, for any arriving and departing route
+     */
+    List<Transfer> getTransferRulesFromStop(String fromStopId) {
+        return transfersFromStop.getOrDefault(fromStopId, Collections.emptyList()).stream()
+                .filter(t -> t.transfer_type == 0 || t.transfer_type == 2)
+                .collect(Collectors.toList());
+    }
+
     private Transfer findMostSpecificRule(List<Transfer> transfers, String fromRouteId, String toRouteId) {
         final ArrayList<Transfer> transfersBySpecificity = new ArrayList<>(transfers);
         transfersBySpecificity.sort(Comparator.comparingInt(t -> {
@@ -17,7 +17,7 @@ import java.util.stream.Collectors;
 import static com.graphhopper.gtfs.Trips.TripAtStopTime.ArrivalDeparture.ARRIVAL;
 import static com.graphhopper.gtfs.Trips.TripAtStopTime.print;
 
-public class TripBasedRouter {
+public class TripBasedRouter implements TimetableRouter {
 
     private static final Logger logger = LoggerFactory.getLogger(TripBasedRouter.class);
 
@@ -27,7 +27,9 @@ public class TripBasedRouter {
     private int[][] tripDoneFromIndex;
     private List<ResultLabel> result = new ArrayList<>();
     private Parameters parameters;
-    private final int N_ROUNDS = 8;
+    // the default and the maximum number of transfers, the labels of every round are allocated up front
+    static final int MAX_TRANSFERS = 8;
+    private final int N_ROUNDS = MAX_TRANSFERS;
     int round;
 
     public TripBasedRouter(GtfsStorage gtfsStorage, Trips tripTransfers) {
@@ -61,6 +63,16 @@ public class TripBasedRouter {
         }
     }
 
+    @Override
+    public List<Journey> route(Parameters parameters) {
+        List<Journey> journeys = new ArrayList<>();
+        for (ResultLabel route : routeNaiveProfileWithNaiveBetas(parameters)) {
+            logger.debug("{}", route);
+            journeys.add(route.toJourney());
+        }
+        return journeys;
+    }
+
     public List<ResultLabel> routeNaiveProfileWithNaiveBetas(Parameters parameters) {
         routeNaiveProfile(parameters);
         return result;
@@ -115,7 +127,7 @@ public class TripBasedRouter {
         logger.debug("Round {}: {}", round, queue.size());
         reportQueue(queue);
         checkArrivals(queue, round);
-        while (queue.size() != 0 && round < N_ROUNDS) {
+        while (queue.size() != 0 && round < Math.min(N_ROUNDS, parameters.getMaxTransfers())) {
             List<EnqueuedTripSegment> queue1 = enqueueTransfers(queue);
             queue = queue1;
             round = round + 1;
@@ -177,26 +189,30 @@ public class TripBasedRouter {
             logger.debug("{}", enqueuedTripSegment);
             GTFSFeed sourceFeed = gtfsStorage.getGtfsFeeds().get(enqueuedTripSegment.tripPointer.feedId);
             ZoneId sourceZoneId = ZoneId.of(sourceFeed.agency.values().stream().findFirst().get().agency_timezone);
+            TripTransfers transfers = tripTransfers.getTripTransfers(enqueuedTripSegment.serviceDay);
+            if (transfers == null) continue; // currently if we didn't build the service day.
+            int tripIdx = enqueuedTripSegment.tripPointer.idx;
             int toStopSequence = Math.min(enqueuedTripSegment.toStopSequence, enqueuedTripSegment.tripPointer.stopTimes.size());
             for (int i = enqueuedTripSegment.tripAtStopTime.stop_sequence + 1; i < toStopSequence; i++) {
                 StopTime stopTime = enqueuedTripSegment.tripPointer.stopTimes.get(i);
                 if (stopTime == null) continue;
                 if (! (getArrivalTime(enqueuedTripSegment, stopTime, 0) < earliestArrivalTime[round]))
                     break;
-                Trips.TripAtStopTime transferOrigin = new Trips.TripAtStopTime(enqueuedTripSegment.tripPointer.idx, stopTime.stop_sequence);
-                logger.debug("  {}", print(transferOrigin, tripTransfers, ARRIVAL));
-                Collection<Trips.TripAtStopTime> transferDestinations = gtfsStorage.tripTransfers.getTripTransfers(enqueuedTripSegment.serviceDay).get(transferOrigin);
-                if (transferDestinations == null) continue; // currently if we didn't build the service day.
-                for (Trips.TripAtStopTime transferDestination : transferDestinations) {
-                    GTFSFeed.StopTimesForTripWithTripPatternKey destinationTripPointer = tripTransfers.getTrip(transferDestination.tripIdx);
+                if (logger.isDebugEnabled())
+                    logger.debug("  {}", print(new Trips.TripAtStopTime(tripIdx, stopTime.stop_sequence), tripTransfers, ARRIVAL));
+                int transfersEnd = transfers.getTransfersEnd(tripIdx, stopTime.stop_sequence);
+                for (int transfer = transfers.getTransfersStart(tripIdx, stopTime.stop_sequence); transfer < transfersEnd; transfer++) {
+                    int destinationStopSequence = transfers.getDestinationStopSequence(transfer);
+                    GTFSFeed.StopTimesForTripWithTripPatternKey destinationTripPointer = tripTransfers.getTrip(transfers.getDestinationTrip(transfer));
                     GTFSFeed destinationFeed = gtfsStorage.getGtfsFeeds().get(destinationTripPointer.feedId);
                     ZoneId destinationZoneId = ZoneId.of(destinationFeed.agency.values().stream().findFirst().get().agency_timezone);
-                    StopTime transferStopTime = destinationTripPointer.stopTimes.get(transferDestination.stop_sequence);
+                    StopTime transferStopTime = destinationTripPointer.stopTimes.get(destinationStopSequence);
                     LocalDateTime scheduleArrivalTime = enqueuedTripSegment.serviceDay.atStartOfDay().plusSeconds(stopTime.arrival_time);
                     int timeZoneOffset = (int) (scheduleArrivalTime.atZone(sourceZoneId).toEpochSecond() - scheduleArrivalTime.atZone(destinationZoneId).toEpochSecond());
                     if (transferStopTime.departure_time >= stopTime.arrival_time + timeZoneOffset && destinationTripPointer.service.activeOn(enqueuedTripSegment.serviceDay) && parameters.getTripFilter().test(destinationTripPointer)) {
+                        Trips.TripAtStopTime transferDestination = new Trips.TripAtStopTime(destinationTripPointer.idx, destinationStopSequence);
                         logger.debug("    {}", transferDestination);
-                        enqueue(queue1, destinationTripPointer, transferDestination, transferOrigin, enqueuedTripSegment, enqueuedTripSegment.serviceDay, enqueuedTripSegment.accessStation, round + 1);
+                        enqueue(queue1, destinationTripPointer, transferDestination, new Trips.TripAtStopTime(tripIdx, stopTime.stop_sequence), enqueuedTripSegment, enqueuedTripSegment.serviceDay, enqueuedTripSegment.accessStation, round + 1);
                     }
                 }
             }
@@ -333,6 +349,10 @@ public class TripBasedRouter {
             return TripBasedRouter.this.getArrivalTime(enqueuedTripSegment, getStopTime(), (int) ((destination.timeDelta / 1000L) * parameters.getBetaEgressTime() + getRouteTypePenalty()));
         }
 
+        Journey toJourney() {
+            return new Journey(enqueuedTripSegment, stopTime, getAccessStop(), destination, getDepartureTime(), getArrivalTime(), getRealTransfers());
+        }
+
         public int getRound() {
             return round;
         }
@@ -372,8 +392,9 @@ public class TripBasedRouter {
         private final double betaEgressTime;
         private final double betaTransfers;
         private final Map<Integer, Long> transferPenaltiesByRouteType;
+        private final int maxTransfers;
 
-        Parameters(List<StopWithTimeDelta> accessStations, List<StopWithTimeDelta> egressStations, Instant profileStartTime, Duration profileLength, Predicate<GTFSFeed.StopTimesForTripWithTripPatternKey> tripFilter, double betaAccessTime, double betaEgressTime, double betaTransfers, Map<Integer, Long> transferPenaltiesByRouteType) {
+        Parameters(List<StopWithTimeDelta> accessStations, List<StopWithTimeDelta> egressStations, Instant profileStartTime, Duration profileLength, Predicate<GTFSFeed.StopTimesForTripWithTripPatternKey> tripFilter, double betaAccessTime, double betaEgressTime, double betaTransfers, Map<Integer, Long> transferPenaltiesByRouteType, int maxTransfers) {
             this.accessStations = accessStations;
             this.egressStations = egressStations;
             this.profileStartTime = profileStartTime;
@@ -383,6 +404,7 @@ public class TripBasedRouter {
             this.betaEgressTime = betaEgressTime;
             this.betaTransfers = betaTransfers;
             this.transferPenaltiesByRouteType = transferPenaltiesByRouteType;
+            this.maxTransfers = maxTransfers;
         }
 
         public List<StopWithTimeDelta> getAccessStations() {
@@ -420,5 +442,13 @@ public class TripBasedRouter {
         public double getBetaTransfers() {
             return betaTransfers;
         }
+
+        public Map<Integer, Long> getTransferPenaltiesByRouteType() {
+            return transferPenaltiesByRouteType;
+        }
+
+        public int getMaxTransfers() {
+            return maxTransfers;
+        }
     }
 }
@@ -19,7 +19,6 @@
 package com.graphhopper.gtfs;
 
 import com.conveyal.gtfs.GTFSFeed;
-import com.conveyal.gtfs.model.Stop;
 import com.conveyal.gtfs.model.StopTime;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -41,6 +40,7 @@ import com.graphhopper.util.details.PathDetailsFromEdges;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -179,11 +179,11 @@ class TripFromLabel {
                             .filter(leg -> leg instanceof Trip.PtLeg)
                             .map(leg -> (Trip.PtLeg) leg)
                             .map(ptLeg -> {
-                                final GTFSFeed gtfsFeed = gtfsStorage.getGtfsFeeds().get(ptLeg.feed_id);
+                                final CompactGtfsFeed compactFeed = gtfsStorage.getCompactGtfsFeeds().get(ptLeg.feed_id);
                                 return new com.graphhopper.gtfs.fare.Trip.Segment(ptLeg.feed_id, ptLeg.route_id,
                                         Duration.between(firstPtDepartureTime, GtfsHelper.localDateTimeFromDate(ptLeg.getDepartureTime())).getSeconds(),
-                                        gtfsFeed.stops.get(ptLeg.stops.get(0).stop_id).zone_id, gtfsFeed.stops.get(ptLeg.stops.get(ptLeg.stops.size() - 1).stop_id).zone_id,
-                                        ptLeg.stops.stream().map(s -> gtfsFeed.stops.get(s.stop_id).zone_id).collect(Collectors.toSet()));
+                                        compactFeed.getStopZoneId(compactFeed.findStop(ptLeg.stops.get(0).stop_id)), compactFeed.getStopZoneId(compactFeed.findStop(ptLeg.stops.get(ptLeg.stops.size() - 1).stop_id)),
+                                        ptLeg.stops.stream().map(s -> compactFeed.getStopZoneId(compactFeed.findStop(s.stop_id))).collect(Collectors.toSet()));
                             })
                             .forEach(faresTrip.segments::add);
                     return Fares.cheapestFare(gtfsStorage.getFares(), faresTrip);
@@ -222,6 +222,7 @@ class TripFromLabel {
         private final GtfsRealtime.TripDescriptor tripDescriptor;
         private final List<Trip.Stop> stops = new ArrayList<>();
         private final GTFSFeed gtfsFeed;
+        private final CompactGtfsFeed compactFeed;
         private Instant boardTime;
         private Instant arrivalTimeFromHopEdge;
         private Optional<Instant> updatedArrival;
@@ -232,6 +233,7 @@ class TripFromLabel {
         StopsFromBoardHopDwellEdges(String feedId, GtfsRealtime.TripDescriptor tripDescriptor) {
             this.tripDescriptor = tripDescriptor;
             this.gtfsFeed = gtfsStorage.getGtfsFeeds().get(feedId);
+            this.compactFeed = gtfsStorage.getCompactGtfsFeeds().get(feedId);
             if (this.tripUpdate != null) {
                 validateTripUpdate(this.tripUpdate);
             }
@@ -242,12 +244,12 @@ class TripFromLabel {
                 case BOARD: {
                     boardTime = Instant.ofEpochMilli(t.label.currentTime);
                     stopSequence = t.edge.getStopSequence();
-                    stopTime = realtimeFeed.getStopTime(gtfsFeed, tripDescriptor, boardTime, stopSequence);
+                    stopTime = realtimeFeed.getStopTime(gtfsFeed, compactFeed, tripDescriptor, boardTime, stopSequence);
                     tripUpdate = realtimeFeed.getTripUpdate(gtfsFeed, tripDescriptor, boardTime).orElse(null);
                     Instant plannedDeparture = Instant.ofEpochMilli(t.label.currentTime);
                     Optional<Instant> updatedDeparture = getDepartureDelay(stopSequence).map(delay -> plannedDeparture.plus(delay, SECONDS));
-                    Stop stop = gtfsFeed.stops.get(stopTime.stop_id);
-                    stops.add(new Trip.Stop(stop.stop_id, stopTime.stop_sequence, stop.stop_name, geometryFactory.createPoint(new Coordinate(stop.stop_lon, stop.stop_lat)),
+                    int stop = compactFeed.findStop(stopTime.stop_id);
+                    stops.add(new Trip.Stop(stopTime.stop_id, stopTime.stop_sequence, compactFeed.getStopName(stop), createPoint(stop),
                             null, null, null, isArrivalCancelled(stopSequence),
                             updatedDeparture.map(Date::from).orElse(Date.from(plannedDeparture)), Date.from(plannedDeparture),
                             updatedDeparture.map(Date::from).orElse(null), isDepartureCancelled(stopSequence)));
@@ -255,7 +257,7 @@ class TripFromLabel {
                 }
                 case HOP: {
                     stopSequence = t.edge.getStopSequence();
-                    stopTime = realtimeFeed.getStopTime(gtfsFeed, tripDescriptor, boardTime, stopSequence);
+                    stopTime = realtimeFeed.getStopTime(gtfsFeed, compactFeed, tripDescriptor, boardTime, stopSequence);
                     arrivalTimeFromHopEdge = Instant.ofEpochMilli(t.label.currentTime);
                     updatedArrival = getArrivalDelay(stopSequence).map(delay -> arrivalTimeFromHopEdge.plus(delay, SECONDS));
                     break;
@@ -263,8 +265,8 @@ class TripFromLabel {
                 case DWELL: {
                     Instant plannedDeparture = Instant.ofEpochMilli(t.label.currentTime);
                     Optional<Instant> updatedDeparture = getDepartureDelay(stopTime.stop_sequence).map(delay -> plannedDeparture.plus(delay, SECONDS));
-                    Stop stop = gtfsFeed.stops.get(stopTime.stop_id);
-                    stops.add(new Trip.Stop(stop.stop_id, stopTime.stop_sequence, stop.stop_name, geometryFactory.createPoint(new Coordinate(stop.stop_lon, stop.stop_lat)),
+                    int stop = compactFeed.findStop(stopTime.stop_id);
+                    stops.add(new Trip.Stop(stopTime.stop_id, stopTime.stop_sequence, compactFeed.getStopName(stop), createPoint(stop),
                             updatedArrival.map(Date::from).orElse(Date.from(arrivalTimeFromHopEdge)), Date.from(arrivalTimeFromHopEdge),
                             updatedArrival.map(Date::from).orElse(null), isArrivalCancelled(stopSequence),
                             updatedDeparture.map(Date::from).orElse(Date.from(plannedDeparture)), Date.from(plannedDeparture),
@@ -314,8 +316,8 @@ class TripFromLabel {
         }
 
         void finish() {
-            Stop stop = gtfsFeed.stops.get(stopTime.stop_id);
-            stops.add(new Trip.Stop(stop.stop_id, stopTime.stop_sequence, stop.stop_name, geometryFactory.createPoint(new Coordinate(stop.stop_lon, stop.stop_lat)),
+            int stop = compactFeed.findStop(stopTime.stop_id);
+            stops.add(new Trip.Stop(stopTime.stop_id, stopTime.stop_sequence, compactFeed.getStopName(stop), createPoint(stop),
                     updatedArrival.map(Date::from).orElse(Date.from(arrivalTimeFromHopEdge)), Date.from(arrivalTimeFromHopEdge),
                     updatedArrival.map(Date::from).orElse(null), isArrivalCancelled(stopSequence), null,
                     null, null, isDepartureCancelled(stopSequence)));
@@ -324,6 +326,10 @@ class TripFromLabel {
             }
         }
 
+        private Point createPoint(int stop) {
+            return geometryFactory.createPoint(new Coordinate(compactFeed.getStopLon(stop), compactFeed.getStopLat(stop)));
+        }
+
         private void validateTripUpdate(GtfsReader.TripWithStopTimes tripUpdate) {
             try {
                 Iterable<StopTime> interpolatedStopTimesForTrip = gtfsFeed.getInterpolatedStopTimesForTrip(tripUpdate.trip.trip_id);
@@ -339,6 +345,12 @@ class TripFromLabel {
 
     }
 
+    private String getTripHeadsign(String feedId, String tripId) {
+        CompactGtfsFeed compactFeed = gtfsStorage.getCompactGtfsFeeds().get(feedId);
+        int trip = compactFeed.findTrip(tripId);
+        return Optional.ofNullable(trip < 0 ? null : compactFeed.getTripHeadsign(trip)).orElse("extra");
+    }
+
     // We are parsing a string of edges into a hierarchical trip.
     // One could argue that one should never write a parser
     // by hand, because it is always ugly, but use a parser library.
@@ -375,7 +387,7 @@ class TripFromLabel {
                             feedId, partition.get(0).edge.getTransfers() == 0,
                             tripDescriptor.getTripId(),
                             tripDescriptor.getRouteId(),
-                            Optional.ofNullable(gtfsStorage.getGtfsFeeds().get(feedId).trips.get(tripDescriptor.getTripId())).map(t -> t.trip_headsign).orElse("extra"),
+                            getTripHeadsign(feedId, tripDescriptor.getTripId()),
                             stops,
                             partition.stream().mapToDouble(t -> t.edge.getDistance()).sum(),
                             path.get(i - 1).label.currentTime - boardTime,
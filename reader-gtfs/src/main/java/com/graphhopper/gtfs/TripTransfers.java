@@ -0,0 +1,180 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The transfers between trips for one schedule day, as used by the {@link TripBasedRouter}. They are stored in three
+ * int arrays of a DataAccess: for every trip the index of its first stop in the stop array, for every stop of every
+ * trip (including the padding, so the index is the index of the first stop plus the stop sequence) the index of its
+ * first transfer in the transfer array, and for every transfer the trip index and stop sequence of the destination.
+ * Reading the transfers does not create any objects and the file can be memory-mapped, e.g. with
+ * graph.dataaccess.type.pt_trip_transfers_.*: MMAP
+ */
+public class TripTransfers {
+
+    private final DataAccess table;
+    private int tripCount;
+    private int stopCount;
+    private int transferCount;
+    private long stopsPointer;
+    private long transfersPointer;
+
+    public TripTransfers(Directory dir, LocalDate trafficDay) {
+        String name = "pt_trip_transfers_" + trafficDay;
+        table = dir.create(name, dir.getDefaultType(name, true), -1);
+    }
+
+    /**
+     * @param transfersByTrip the transfers of every trip, see {@link #encodeTrip}
+     */
+    public void create(int[][] transfersByTrip) {
+        tripCount = transfersByTrip.length;
+        long stops = 0, transfers = 0;
+        for (int[] trip : transfersByTrip) {
+            int stopsOfTrip = trip[0];
+            stops += stopsOfTrip;
+            transfers += (trip.length - stopsOfTrip - 2) / 2;
+        }
+        if (stops >= Integer.MAX_VALUE || transfers >= Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many trip transfers: " + stops + " stops, " + transfers + " transfers");
+        stopCount = (int) stops;
+        transferCount = (int) transfers;
+        initPointers();
+        table.create(transfersPointer + 8L * transferCount);
+        table.ensureCapacity(transfersPointer + 8L * transferCount);
+
+        int stop = 0, transfer = 0;
+        for (int tripIdx = 0; tripIdx < tripCount; tripIdx++) {
+            int[] trip = transfersByTrip[tripIdx];
+            int stopsOfTrip = trip[0];
+            table.setInt(4L * tripIdx, stop);
+            for (int i = 0; i < stopsOfTrip; i++)
+                table.setInt(stopsPointer + 4L * (stop + i), transfer + trip[1 + i]);
+            for (int i = stopsOfTrip + 2; i < trip.length; i++)
+                table.setInt(transfersPointer + 4L * (2 * transfer + i - stopsOfTrip - 2), trip[i]);
+            stop += stopsOfTrip;
+            transfer += (trip.length - stopsOfTrip - 2) / 2;
+        }
+        table.setInt(4L * tripCount, stop);
+        table.setInt(stopsPointer + 4L * stopCount, transfer);
+    }
+
+    /**
+     * Encodes the transfers of one trip into the format expected by {@link #create}: the number of stops of the trip,
+     * then for every stop (and one more) the index of its first transfer relative to the trip, then the trip index and
+     * stop sequence of every transfer destination.
+     *
+     * @param destinationsByStop the trip indices and stop sequences of the transfer destinations for every stop
+     *                           sequence of the trip, can contain null for stops without transfers
+     */
+    public static int[] encodeTrip(int[][] destinationsByStop) {
+        int stopsOfTrip = destinationsByStop.length;
+        int length = stopsOfTrip + 2;
+        for (int[] destinations : destinationsByStop)
+            if (destinations != null)
+                length += destinations.length;
+        int[] result = new int[length];
+        result[0] = stopsOfTrip;
+        int index = stopsOfTrip + 2;
+        for (int i = 0; i < stopsOfTrip; i++) {
+            result[1 + i] = (index - stopsOfTrip - 2) / 2;
+            if (destinationsByStop[i] != null) {
+                System.arraycopy(destinationsByStop[i], 0, result, index, destinationsByStop[i].length);
+                index += destinationsByStop[i].length;
+            }
+        }
+        result[1 + stopsOfTrip] = (index - stopsOfTrip - 2) / 2;
+        return result;
+    }
+
+    public boolean loadExisting() {
+        if (!table.loadExisting())
+            return false;
+        tripCount = table.getHeader(0);
+        stopCount = table.getHeader(4);
+        transferCount = table.getHeader(2 * 4);
+        initPointers();
+        return true;
+    }
+
+    private void initPointers() {
+        stopsPointer = 4L * (tripCount + 1);
+        transfersPointer = stopsPointer + 4L * (stopCount + 1);
+    }
+
+    public void flush() {
+        table.setHeader(0, tripCount);
+        table.setHeader(4, stopCount);
+        table.setHeader(2 * 4, transferCount);
+        table.flush();
+    }
+
+    public void close() {
+        table.close();
+    }
+
+    public int getTripCount() {
+        return tripCount;
+    }
+
+    public int getTransferCount() {
+        return transferCount;
+    }
+
+    /**
+     * @return the index of the first transfer from the given trip at the given stop, use it with
+     * {@link #getDestinationTrip} and {@link #getDestinationStopSequence}
+     */
+    public int getTransfersStart(int tripIdx, int stopSequence) {
+        return table.getInt(stopsPointer + 4L * (table.getInt(4L * tripIdx) + stopSequence));
+    }
+
+    /**
+     * @return the index after the last transfer from the given trip at the given stop
+     */
+    public int getTransfersEnd(int tripIdx, int stopSequence) {
+        return table.getInt(stopsPointer + 4L * (table.getInt(4L * tripIdx) + stopSequence + 1));
+    }
+
+    public int getDestinationTrip(int transfer) {
+        return table.getInt(transfersPointer + 8L * transfer);
+    }
+
+    public int getDestinationStopSequence(int transfer) {
+        return table.getInt(transfersPointer + 8L * transfer + 4);
+    }
+
+    /**
+     * Convenience method for debugging and tests. Use {@link #getTransfersStart} and {@link #getTransfersEnd} for
+     * routing.
+     */
+    public List<Trips.TripAtStopTime> getTransfers(int tripIdx, int stopSequence) {
+        List<Trips.TripAtStopTime> result = new ArrayList<>();
+        for (int i = getTransfersStart(tripIdx, stopSequence); i < getTransfersEnd(tripIdx, stopSequence); i++)
+            result.add(new Trips.TripAtStopTime(getDestinationTrip(i), getDestinationStopSequence(i)));
+        return result;
+    }
+}
@@ -14,13 +14,15 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 public class Trips {
 
     public final List<GTFSFeed.StopTimesForTripWithTripPatternKey> trips;
     private Map<GtfsStorage.FeedIdWithStopId, Map<String, List<TripAtStopTime>>> boardingsForStopByPattern = new ConcurrentHashMap<>();
-    private Map<LocalDate, Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>>> tripTransfersPerDay = new ConcurrentHashMap<>();
+    private Map<LocalDate, TripTransfers> tripTransfersPerDay = new ConcurrentHashMap<>();
     public int idx;
+    private volatile RaptorNetwork raptorNetwork;
 
     public Trips(GtfsStorage gtfsStorage) {
         this.gtfsStorage = gtfsStorage;
@@ -28,14 +30,19 @@ public class Trips {
         idx = 0;
         for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
             GTFSFeed feed = entry.getValue();
+            CompactGtfsFeed compactFeed = this.gtfsStorage.getCompactGtfsFeeds().get(entry.getKey());
             Map<TripPatternKey, Pattern> patterns = new LinkedHashMap<>();
             int nextPatternId = 1;
-            for (Trip trip : feed.trips.values()) {
+            for (int compactTripIdx = 0; compactTripIdx < compactFeed.getTripCount(); compactTripIdx++) {
+                Trip trip = feed.trips.get(compactFeed.getTripId(compactTripIdx));
                 TripPatternKey key = new TripPatternKey();
-                Route route = feed.routes.get(trip.route_id);
+                int route = compactFeed.getTripRoute(compactTripIdx);
+                if (route < 0)
+                    throw new IllegalStateException("Trip " + trip.trip_id + " refers to route " + trip.route_id + ", which is not in feed " + entry.getKey());
+                int routeType = compactFeed.getRouteType(route);
                 Service service = feed.services.get(trip.service_id);
                 List<StopTime> orderedStopTimesForTripWithPadding = new ArrayList<>();
-                List<StopTime> interpolatedStopTimesForTrip = feed.getInterpolatedStopTimesForTrip(trip.trip_id);
+                List<StopTime> interpolatedStopTimesForTrip = compactFeed.getStopTimes(compactTripIdx);
                 if (interpolatedStopTimesForTrip.isEmpty()) {
                     System.out.println("empty trip: "+trip.trip_id);
                     continue;
@@ -56,7 +63,7 @@ public class Trips {
                 }
                 Collection<Frequency> frequencies = feed.getFrequencies(trip.trip_id);
                 if (frequencies.isEmpty()) {
-                    GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer = new GTFSFeed.StopTimesForTripWithTripPatternKey(entry.getKey(), trip, service, route.route_type, orderedStopTimesForTripWithPadding, pattern);
+                    GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer = new GTFSFeed.StopTimesForTripWithTripPatternKey(entry.getKey(), trip, service, routeType, orderedStopTimesForTripWithPadding, pattern);
                     pattern.trips.add(tripPointer);
                 } else {
                     for (Frequency frequency : frequencies) {
@@ -72,7 +79,7 @@ public class Trips {
                                     orderedStopTimesForUnrolledTripWithPadding.add(null);
                                 }
                             }
-                            GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer = new GTFSFeed.StopTimesForTripWithTripPatternKey(entry.getKey(), trip, service, route.route_type, orderedStopTimesForUnrolledTripWithPadding, pattern);
+                            GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer = new GTFSFeed.StopTimesForTripWithTripPatternKey(entry.getKey(), trip, service, routeType, orderedStopTimesForUnrolledTripWithPadding, pattern);
                             pattern.trips.add(tripPointer);
                         }
                     }
@@ -109,9 +116,9 @@ public class Trips {
 
     GtfsStorage gtfsStorage;
 
-    private Map<TripAtStopTime, Collection<TripAtStopTime>> findTripTransfers(GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer, String feedKey, LocalDate trafficDay, Map<String, Transfers> transfers, ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode) {
+    private int[] findTripTransfers(GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer, String feedKey, LocalDate trafficDay, Map<String, Transfers> transfers, ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode) {
         Transfers transfersForFeed = transfers.get(feedKey);
-        Map<TripAtStopTime, Collection<TripAtStopTime>> result = new HashMap<>();
+        int[][] result = new int[tripPointer.stopTimes.size()][];
         List<StopTime> stopTimesExceptFirst = tripPointer.stopTimes.subList(1, tripPointer.stopTimes.size());
         ObjectIntHashMap<GtfsStorage.FeedIdWithStopId> arrivalTimes = new ObjectIntHashMap<>();
         for (StopTime stopTime : Lists.reverse(stopTimesExceptFirst)) {
@@ -128,7 +135,6 @@ public class Trips {
         for (StopTime stopTime : Lists.reverse(stopTimesExceptFirst)) {
             if (stopTime == null)
                 continue;
-            TripAtStopTime origin = new TripAtStopTime(tripPointer.idx, stopTime.stop_sequence);
             List<TripAtStopTime> destinations = new ArrayList<>();
             GtfsStorage.FeedIdWithStopId stopId = new GtfsStorage.FeedIdWithStopId(feedKey, stopTime.stop_id);
             List<Transfer> transfersFromStop = transfersForFeed.getTransfersFromStop(stopId.stopId, tripPointer.trip.route_id);
@@ -150,9 +156,14 @@ public class Trips {
             for (GtfsStorage.InterpolatedTransfer it : gtfsStorage.interpolatedTransfers.get(stopId)) {
                 insertTripTransfers(trafficDay, arrivalTimes, feedKey, stopTime, destinations, it.toPlatformDescriptor, it.streetTime, Collections.emptyList());
             }
-            result.put(origin, destinations);
+            int[] destinationsArray = new int[2 * destinations.size()];
+            for (int i = 0; i < destinations.size(); i++) {
+                destinationsArray[2 * i] = destinations.get(i).tripIdx;
+                destinationsArray[2 * i + 1] = destinations.get(i).stop_sequence;
+            }
+            result[stopTime.stop_sequence] = destinationsArray;
         }
-        return result;
+        return TripTransfers.encodeTrip(result);
     }
 
     private void insertTripTransfers(LocalDate trafficDay, ObjectIntHashMap<GtfsStorage.FeedIdWithStopId> arrivalTimes, String feedKey, StopTime arrivalStopTime, List<TripAtStopTime> destinations, GtfsStorage.FeedIdWithStopId boardingStop, int streetTime, List<Transfer> transfers) {
@@ -207,23 +218,47 @@ public class Trips {
         }
     }
 
-    public void findAllTripTransfersInto(Map<TripAtStopTime, Collection<TripAtStopTime>> result, LocalDate trafficDay, Map<String, Transfers> transfers, ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode) {
-        Map<TripAtStopTime, Collection<TripAtStopTime>> r = Collections.synchronizedMap(result);
-        trips.stream()
-            .filter(trip -> trip.service.activeOn(trafficDay))
-            .parallel()
-            .forEach(tripPointer -> {
-                Map<TripAtStopTime, Collection<TripAtStopTime>> reducedTripTransfers = findTripTransfers(tripPointer, tripPointer.feedId, trafficDay, transfers, stopsForStationNode);
-                r.putAll(reducedTripTransfers);
-            });
+    /**
+     * Calculates the transfers of all trips that are active on the given day. The trips are processed in parallel and
+     * every trip writes its result into its own slot, so there is no need for synchronization.
+     */
+    public void findAllTripTransfersInto(TripTransfers result, LocalDate trafficDay, Map<String, Transfers> transfers, ArrayListMultimap<Integer, GtfsStorage.FeedIdWithStopId> stopsForStationNode) {
+        int[][] transfersByTrip = new int[trips.size()][];
+        IntStream.range(0, trips.size()).parallel().forEach(tripIdx -> {
+            GTFSFeed.StopTimesForTripWithTripPatternKey tripPointer = trips.get(tripIdx);
+            transfersByTrip[tripIdx] = tripPointer.service.activeOn(trafficDay)
+                    ? findTripTransfers(tripPointer, tripPointer.feedId, trafficDay, transfers, stopsForStationNode)
+                    : TripTransfers.encodeTrip(new int[tripPointer.stopTimes.size()][]);
+        });
+        result.create(transfersByTrip);
     }
 
-    public Map<LocalDate, Map<TripAtStopTime, Collection<TripAtStopTime>>> getTripTransfers() {
+    public Map<LocalDate, TripTransfers> getTripTransfers() {
         return tripTransfersPerDay;
     }
 
-    public Map<Trips.TripAtStopTime, Collection<Trips.TripAtStopTime>> getTripTransfers(LocalDate trafficDay) {
-        return tripTransfersPerDay.computeIfAbsent(trafficDay, k -> new TreeMap<>());
+    /**
+     * @return the transfers of the given schedule day or null if they were not calculated for this day
+     */
+    public TripTransfers getTripTransfers(LocalDate trafficDay) {
+        return tripTransfersPerDay.get(trafficDay);
+    }
+
+    /**
+     * @return the timetable in the layout of the {@link RaptorRouter}, which is created when it is needed first
+     */
+    public RaptorNetwork getRaptorNetwork() {
+        if (raptorNetwork == null) {
+            synchronized (this) {
+                if (raptorNetwork == null)
+                    raptorNetwork = new RaptorNetwork(gtfsStorage, this);
+            }
+        }
+        return raptorNetwork;
+    }
+
+    public void close() {
+        tripTransfersPerDay.values().forEach(TripTransfers::close);
     }
 
     public GTFSFeed.StopTimesForTripWithTripPatternKey getTrip(int tripIdx) {
@@ -104,7 +104,7 @@ public interface GraphHopperGtfsIT<T extends PtRouter> {
         public void testTransferForRoute5IsAvailable() {
             Trips tripTransfers = graphHopperGtfs().getGtfsStorage().tripTransfers;
             int tripIdx = findTrip("STBA", LocalTime.of(7, 50), 2, ARRIVAL);
-            Collection<Trips.TripAtStopTime> transferDestinations = tripTransfers.getTripTransfers(LocalDate.of(2007, 1, 1)).get(new Trips.TripAtStopTime(tripIdx, 2));
+            Collection<Trips.TripAtStopTime> transferDestinations = tripTransfers.getTripTransfers(LocalDate.of(2007, 1, 1)).getTransfers(tripIdx, 2);
             assertThat(transferDestinations).extracting(td -> print(td, tripTransfers, DEPARTURE)).contains("4 AB1 @ 1 BEATTY_AIRPORT 28800");
         }
 
@@ -120,6 +120,77 @@ public interface GraphHopperGtfsIT<T extends PtRouter> {
             throw new RuntimeException();
         }
 
+        @Test
+        public void testLimitTransfers() {
+            assertTransfersAreLimited();
+        }
+
+        @AfterAll
+        public static void close() {
+            graphHopperGtfs.close();
+        }
+    }
+
+    class RaptorPtRouterTest implements GraphHopperGtfsIT<PtRouterRaptorImpl> {
+
+        private static GraphHopperGtfs graphHopperGtfs;
+        static PtRouterRaptorImpl ptRouter;
+
+        @BeforeAll
+        static void init() {
+            Helper.removeDir(new File(GRAPH_LOC));
+            GraphHopperConfig ghConfig = new GraphHopperConfig();
+            ghConfig.putObject("graph.location", GRAPH_LOC);
+            ghConfig.putObject("import.osm.ignored_highways", "");
+            ghConfig.putObject("gtfs.file", "files/sample-feed");
+            ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
+            ghConfig.setProfiles(List.of(
+                    TestProfiles.accessSpeedAndPriority("foot"),
+                    TestProfiles.accessAndSpeed("car")));
+            graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+            graphHopperGtfs.init(ghConfig);
+            graphHopperGtfs.importOrLoad();
+            ptRouter = new PtRouterRaptorImpl(graphHopperGtfs, ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage(), graphHopperGtfs.getPathDetailsBuilderFactory());
+        }
+
+        public GraphHopperGtfs graphHopperGtfs() {
+            return graphHopperGtfs;
+        }
+
+        public PtRouterRaptorImpl ptRouter() {
+            return ptRouter;
+        }
+
+        @Override
+        public GHResponse route(Request request) {
+            // like the trip-based router, RAPTOR only routes by departure time and ignores arrive_by
+            assumeFalse(request.isArriveBy(), "We are excused from queries by arrival time so far");
+            return ptRouter().route(request);
+        }
+
+        @Override
+        @Test
+        public void testVeryShortProfileQuery() {
+            Request ghRequest = new Request(Arrays.asList(
+                    new GHStationLocation("BEATTY_AIRPORT"),
+                    new GHStationLocation("FUR_CREEK_RES")),
+                    LocalDateTime.of(2007, 1, 1, 8, 0).atZone(zoneId).toInstant());
+            ghRequest.setProfileQuery(true);
+            ghRequest.setMaxProfileDuration(Duration.ofSeconds(1));
+            ghRequest.setIgnoreTransfers(true);
+            GHResponse response = ptRouter().route(ghRequest);
+            // Range-RAPTOR only returns the journeys that are Pareto-optimal for a departure within the profile. The
+            // second solution of the other routers departs later and arrives later, so it is not one of them.
+            assertEquals(1, response.getAll().size());
+            assertEquals(time(1, 20), response.getAll().get(0).getTime(), "Expected travel time == scheduled travel time");
+            assertThat(response.getHints().getInt("visited_nodes.sum", Integer.MAX_VALUE)).isLessThanOrEqualTo(904);
+        }
+
+        @Test
+        public void testLimitTransfers() {
+            assertTransfersAreLimited();
+        }
+
         @AfterAll
         public static void close() {
             graphHopperGtfs.close();
@@ -624,6 +695,34 @@ public interface GraphHopperGtfsIT<T extends PtRouter> {
     }
 
 
+
+    /**
+     * Only the routers on the timetable, {@link PtRouterTripBasedImpl} and {@link PtRouterRaptorImpl}, limit the
+     * number of transfers.
+     */
+    default void assertTransfersAreLimited() {
+        Request request = new Request(Arrays.asList(
+                new GHStationLocation("STAGECOACH"),
+                new GHStationLocation("AMV")),
+                LocalDateTime.of(2007, 1, 6, 7, 30).atZone(zoneId).toInstant());
+        GHResponse response = ptRouter().route(request);
+        assertEquals(time(6, 30), response.getBest().getTime());
+        assertEquals(1, response.getBest().getNumChanges());
+
+        request.setLimitTransfers(0);
+        response = ptRouter().route(request);
+        assertTrue(response.getAll().isEmpty(), "There is no connection without a transfer");
+        request.setLimitTransfers(-1);
+        response = ptRouter().route(request);
+        assertTrue(response.getAll().isEmpty());
+
+        request.setLimitTransfers(1);
+        assertEquals(time(6, 30), ptRouter().route(request).getBest().getTime());
+        // larger limits than the default are clamped to it
+        request.setLimitTransfers(Integer.MAX_VALUE);
+        assertEquals(time(6, 30), ptRouter().route(request).getBest().getTime());
+    }
+
     default void assertTravelTimeIs(PtRouter graphHopper, String from, String to, LocalTime expectedTime) {
         Request ghRequest = new Request(Arrays.asList(
                 new GHStationLocation(from),
@@ -22,6 +22,7 @@ import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.gtfs.GraphHopperGtfs;
 import com.graphhopper.gtfs.PtRouter;
 import com.graphhopper.gtfs.PtRouterImpl;
+import com.graphhopper.gtfs.RealtimeFeed;
 import com.graphhopper.gtfs.Request;
 import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.util.Helper;
@@ -758,6 +759,131 @@ public class RealtimeIT {
         checkDelayAtEnd(feedMessage);
     }
 
+    @Test
+    public void testIncrementalUpdateIsSameAsFullRebuild() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        Request ghRequest = new Request(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.setEarliestDepartureTime(LocalDateTime.of(2007, 1, 1, 6, 44).atZone(zoneId).toInstant());
+
+        // The 6:00 departure of my line skips my departure stop..
+        final GtfsRealtime.FeedMessage.Builder skipped = GtfsRealtime.FeedMessage.newBuilder();
+        skipped.setHeader(header());
+        skipped.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(3)
+                .setScheduleRelationship(SKIPPED);
+
+        // ..and then, in the next version of the feed, it calls there but is an hour late, and another trip is late, too.
+        final GtfsRealtime.FeedMessage.Builder delayed = GtfsRealtime.FeedMessage.newBuilder();
+        delayed.setHeader(header());
+        delayed.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(3)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(3600).build());
+        delayed.addEntityBuilder()
+                .setId("2")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY1").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(2)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(300).build());
+
+        RealtimeFeed skippedFeed = graphHopperFactory.update(RealtimeFeed.empty(), skipped.build());
+        RealtimeFeed delayedFeed = graphHopperFactory.update(skippedFeed, delayed.build());
+        assertSameResponse(graphHopperFactory.createWith(delayed.build()).route(ghRequest), graphHopperFactory.createWith(delayedFeed).route(ghRequest));
+        RealtimeFeed skippedAgainFeed = graphHopperFactory.update(delayedFeed, skipped.build());
+        assertSameResponse(graphHopperFactory.createWith(skipped.build()).route(ghRequest), graphHopperFactory.createWith(skippedAgainFeed).route(ghRequest));
+        assertSameResponse(graphHopperFactory.createWithoutRealtimeFeed().route(ghRequest), graphHopperFactory.createWith(graphHopperFactory.update(skippedAgainFeed, GtfsRealtime.FeedMessage.newBuilder().setHeader(header()).build())).route(ghRequest));
+
+        // The snapshot which was current when the update arrived is not affected by it.
+        assertSameResponse(graphHopperFactory.createWith(skipped.build()).route(ghRequest), graphHopperFactory.createWith(skippedFeed).route(ghRequest));
+    }
+
+    @Test
+    public void testIdsStayBoundedOverManyUpdates() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        Request ghRequest = new Request(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.setEarliestDepartureTime(LocalDateTime.of(2007, 1, 1, 6, 44).atZone(zoneId).toInstant());
+        int staticEdgeCount = graphHopperGtfs.getGtfsStorage().getPtGraph().getEdgeCount();
+        int staticNodeCount = graphHopperGtfs.getGtfsStorage().getPtGraph().getNodeCount();
+
+        RealtimeFeed realtimeFeed = RealtimeFeed.empty();
+        int maxEdges = 0, maxNodes = 0;
+        GtfsRealtime.FeedMessage feedMessage = null;
+        for (int i = 0; i < 500; i++) {
+            // every update delays the departures of a trip by another minute, which adds a new board edge each time
+            feedMessage = delayedDepartures(60 + 60 * (i % 50), i);
+            realtimeFeed = graphHopperFactory.update(realtimeFeed, feedMessage);
+            maxEdges = Math.max(maxEdges, realtimeFeed.getNextEdge() - staticEdgeCount);
+            maxNodes = Math.max(maxNodes, realtimeFeed.getNextNode() - staticNodeCount);
+        }
+        RealtimeFeed fromScratch = graphHopperFactory.update(RealtimeFeed.empty(), feedMessage);
+        int edgesOfOneUpdate = fromScratch.getNextEdge() - staticEdgeCount;
+        int nodesOfOneUpdate = fromScratch.getNextNode() - staticNodeCount;
+        assertTrue(edgesOfOneUpdate > 0);
+        // the ids of the previous versions of the trip update are reused
+        assertTrue(maxEdges <= 3 * edgesOfOneUpdate, maxEdges + " vs. " + edgesOfOneUpdate);
+        assertTrue(maxNodes <= 3 * Math.max(1, nodesOfOneUpdate), maxNodes + " vs. " + nodesOfOneUpdate);
+        assertSameResponse(graphHopperFactory.createWith(fromScratch).route(ghRequest), graphHopperFactory.createWith(realtimeFeed).route(ghRequest));
+
+        // the timestamps do not change the overlay, so nothing is recomputed
+        RealtimeFeed sameFeed = graphHopperFactory.update(realtimeFeed, delayedDepartures(60 + 60 * (499 % 50), 1000));
+        assertEquals(realtimeFeed.getNextEdge(), sameFeed.getNextEdge());
+        assertEquals(realtimeFeed.getNextNode(), sameFeed.getNextNode());
+
+        // without trip updates we are back to the static graph
+        RealtimeFeed emptyFeed = graphHopperFactory.update(realtimeFeed, GtfsRealtime.FeedMessage.newBuilder().setHeader(header()).build());
+        assertEquals(staticEdgeCount, emptyFeed.getNextEdge());
+        assertEquals(staticNodeCount, emptyFeed.getNextNode());
+    }
+
+    private GtfsRealtime.FeedMessage delayedDepartures(int delay, int timestamp) {
+        final GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(header());
+        feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .setTimestamp(header().getTimestamp() + timestamp)
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(3)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(delay).build())
+                .setDeparture(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(delay).build());
+        return feedMessageBuilder.build();
+    }
+
+    private static void assertSameResponse(GHResponse expected, GHResponse actual) {
+        assertEquals(expected.getAll().size(), actual.getAll().size());
+        for (int i = 0; i < expected.getAll().size(); i++) {
+            ResponsePath expectedPath = expected.getAll().get(i);
+            ResponsePath actualPath = actual.getAll().get(i);
+            assertEquals(expectedPath.isImpossible(), actualPath.isImpossible());
+            assertEquals(expectedPath.getTime(), actualPath.getTime());
+            assertEquals(expectedPath.getLegs().size(), actualPath.getLegs().size());
+            for (int j = 0; j < expectedPath.getLegs().size(); j++) {
+                assertEquals(expectedPath.getLegs().get(j).getDepartureTime(), actualPath.getLegs().get(j).getDepartureTime());
+                assertEquals(expectedPath.getLegs().get(j).getArrivalTime(), actualPath.getLegs().get(j).getArrivalTime());
+            }
+        }
+    }
+
     public GtfsRealtime.FeedHeader.Builder header() {
         return GtfsRealtime.FeedHeader.newBuilder()
                 .setGtfsRealtimeVersion("1")
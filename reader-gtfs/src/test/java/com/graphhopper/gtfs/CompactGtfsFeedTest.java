@@ -0,0 +1,217 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Stop;
+import com.conveyal.gtfs.model.StopTime;
+import com.conveyal.gtfs.model.Trip;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactGtfsFeedTest {
+
+    private static final String LOCATION = "./target/compact-gtfs-feed-test/";
+
+    private GTFSFeed feed;
+    private CompactGtfsFeed compactFeed;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Helper.removeDir(new File(LOCATION));
+        // a feed with the things the sample feeds do not have: interpolated stop times, gaps in the stop sequences,
+        // fare zones and pickup and drop off types
+        Path dir = Files.createDirectories(Path.of(LOCATION, "feed"));
+        Files.writeString(dir.resolve("agency.txt"), "agency_id,agency_name,agency_url,agency_timezone\n" +
+                "A,Agency,http://example.com,Europe/Berlin\n");
+        Files.writeString(dir.resolve("calendar.txt"), "service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date\n" +
+                "ALL,1,1,1,1,1,1,1,20240101,20241231\n");
+        Files.writeString(dir.resolve("routes.txt"), "route_id,agency_id,route_short_name,route_type\n" +
+                "BUS,A,1,3\n" +
+                "TRAM,A,2,0\n");
+        // the stops of the tram are on one parallel with the same distances, so the interpolated times are in the middle
+        Files.writeString(dir.resolve("stops.txt"), "stop_id,stop_name,stop_lat,stop_lon,zone_id\n" +
+                "WEST,West,50.0,10.0,Z1\n" +
+                "CENTER,Center,50.0,10.01,Z1\n" +
+                "EAST,East,50.0,10.02,Z2\n" +
+                "NORTH,North,50.1,10.01,\n");
+        Files.writeString(dir.resolve("trips.txt"), "route_id,service_id,trip_id,trip_headsign\n" +
+                "TRAM,ALL,TRAM1,East\n" +
+                "BUS,ALL,BUS1,\n");
+        Files.writeString(dir.resolve("stop_times.txt"), "trip_id,arrival_time,departure_time,stop_id,stop_sequence,pickup_type,drop_off_type\n" +
+                "TRAM1,08:00:00,08:00:00,WEST,10,0,1\n" +
+                "TRAM1,,,CENTER,20,0,0\n" +
+                "TRAM1,08:10:00,08:11:00,EAST,30,1,0\n" +
+                "BUS1,09:00:00,09:00:00,NORTH,1,,\n" +
+                "BUS1,09:05:00,09:06:00,CENTER,2,,\n");
+        feed = new GTFSFeed();
+        feed.loadFromZipfileOrDirectory(dir.toFile(), "gtfs_0");
+        compactFeed = new CompactGtfsFeed(new GHDirectory(LOCATION, DAType.RAM_STORE).create(), "gtfs_0");
+        compactFeed.create(feed);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        compactFeed.close();
+        feed.close();
+        Helper.removeDir(new File(LOCATION));
+    }
+
+    @Test
+    public void testFindStop() {
+        // the location snapper and the fare calculation look up the stops by their id
+        int center = compactFeed.findStop("CENTER");
+        assertEquals("CENTER", compactFeed.getStopId(center));
+        assertEquals("Center", compactFeed.getStopName(center));
+        assertEquals(50.0, compactFeed.getStopLat(center));
+        assertEquals(10.01, compactFeed.getStopLon(center));
+        assertEquals("Z1", compactFeed.getStopZoneId(center));
+        assertEquals("Z2", compactFeed.getStopZoneId(compactFeed.findStop("EAST")));
+        assertNull(compactFeed.getStopZoneId(compactFeed.findStop("NORTH")));
+        // the ids are sorted, ids before the first and after the last are not found
+        assertEquals(0, compactFeed.findStop("CENTER"));
+        assertEquals(3, compactFeed.findStop("WEST"));
+        assertEquals(-1, compactFeed.findStop("A"));
+        assertEquals(-1, compactFeed.findStop("Z"));
+        assertEquals(-1, compactFeed.findStop("DOWNTOWN"));
+    }
+
+    @Test
+    public void testFindNonAsciiIds() throws IOException {
+        // the binary search compares the UTF-8 bytes, which order U+FFFD before the surrogate pair of U+1F68B,
+        // unlike String.compareTo
+        String[] stopIds = {"Z", "Zürich", "Z\uFFFD", "Z\uD83D\uDE8B", "Zz"};
+        Path dir = Files.createDirectories(Path.of(LOCATION, "non_ascii_feed"));
+        for (String file : new String[]{"agency.txt", "calendar.txt", "routes.txt", "trips.txt", "stop_times.txt"})
+            Files.copy(Path.of(LOCATION, "feed", file), dir.resolve(file));
+        StringBuilder stops = new StringBuilder("stop_id,stop_name,stop_lat,stop_lon\n" +
+                "WEST,West,50.0,10.0\nCENTER,Center,50.0,10.01\nEAST,East,50.0,10.02\nNORTH,North,50.1,10.01\n");
+        for (String stopId : stopIds)
+            stops.append(stopId).append(",Stop,50.0,10.0\n");
+        Files.writeString(dir.resolve("stops.txt"), stops.toString());
+        GTFSFeed nonAsciiFeed = new GTFSFeed();
+        nonAsciiFeed.loadFromZipfileOrDirectory(dir.toFile(), "gtfs_1");
+        CompactGtfsFeed compactNonAsciiFeed = new CompactGtfsFeed(new GHDirectory(LOCATION, DAType.RAM_STORE).create(), "gtfs_1");
+        compactNonAsciiFeed.create(nonAsciiFeed);
+        for (String stopId : stopIds)
+            assertEquals(stopId, compactNonAsciiFeed.getStopId(compactNonAsciiFeed.findStop(stopId)));
+        assertEquals(compactNonAsciiFeed.findStop("Z\uFFFD") + 1, compactNonAsciiFeed.findStop("Z\uD83D\uDE8B"));
+        assertEquals(-1, compactNonAsciiFeed.findStop("Zürichsee"));
+        compactNonAsciiFeed.close();
+        nonAsciiFeed.close();
+    }
+
+    @Test
+    public void testStopTimesOfTrip() {
+        // Trips reads the stop times and the route type of every trip when it builds the trip patterns
+        int tram = compactFeed.findTrip("TRAM1");
+        assertEquals(0, compactFeed.getRouteType(compactFeed.getTripRoute(tram)));
+        assertEquals("East", compactFeed.getTripHeadsign(tram));
+        List<StopTime> stopTimes = compactFeed.getStopTimes(tram);
+        assertEquals(3, stopTimes.size());
+        assertStopTime(stopTimes.get(0), "WEST", 10, 8 * 3600, 8 * 3600, 0, 1);
+        // the missing times are interpolated
+        assertStopTime(stopTimes.get(1), "CENTER", 20, 8 * 3600 + 300, 8 * 3600 + 300, 0, 0);
+        assertStopTime(stopTimes.get(2), "EAST", 30, 8 * 3600 + 600, 8 * 3600 + 660, 1, 0);
+
+        int bus = compactFeed.findTrip("BUS1");
+        assertEquals(3, compactFeed.getRouteType(compactFeed.getTripRoute(bus)));
+        assertNull(compactFeed.getTripHeadsign(bus));
+        assertEquals(2, compactFeed.getStopTimesEnd(bus) - compactFeed.getStopTimesStart(bus));
+        assertEquals(compactFeed.findStop("NORTH"), compactFeed.getStop(compactFeed.getStopTimesStart(bus)));
+        assertEquals(-1, compactFeed.findTrip("TRAM2"));
+    }
+
+    @Test
+    public void testGetStopTime() {
+        // the realtime feed looks up the scheduled stop time of a trip update by trip id and stop sequence
+        assertStopTime(compactFeed.getStopTime("TRAM1", 20), "CENTER", 20, 8 * 3600 + 300, 8 * 3600 + 300, 0, 0);
+        assertStopTime(compactFeed.getStopTime("TRAM1", 30), "EAST", 30, 8 * 3600 + 600, 8 * 3600 + 660, 1, 0);
+        assertStopTime(compactFeed.getStopTime("BUS1", 1), "NORTH", 1, 9 * 3600, 9 * 3600, 0, 0);
+        // the stop sequences have gaps
+        assertNull(compactFeed.getStopTime("TRAM1", 15));
+        assertNull(compactFeed.getStopTime("TRAM1", 1));
+        assertNull(compactFeed.getStopTime("TRAM1", 40));
+        assertNull(compactFeed.getStopTime("TRAM2", 10));
+    }
+
+    @Test
+    public void testLoadExisting() {
+        compactFeed.flush();
+        compactFeed.close();
+        compactFeed = new CompactGtfsFeed(new GHDirectory(LOCATION, DAType.MMAP), "gtfs_0");
+        assertTrue(compactFeed.loadExisting());
+        assertEquals(4, compactFeed.getStopCount());
+        assertEquals(2, compactFeed.getRouteCount());
+        assertEquals(2, compactFeed.getTripCount());
+        assertEquals(5, compactFeed.getStopTimeCount());
+        assertEquals(10.02, compactFeed.getStopLon(compactFeed.findStop("EAST")));
+        assertStopTime(compactFeed.getStopTime("TRAM1", 20), "CENTER", 20, 8 * 3600 + 300, 8 * 3600 + 300, 0, 0);
+        assertFalse(new CompactGtfsFeed(new GHDirectory(LOCATION, DAType.RAM_STORE), "gtfs_1").loadExisting());
+    }
+
+    @Test
+    public void testSameAsGtfsFeed() throws IOException {
+        GTFSFeed sampleFeed = new GTFSFeed();
+        sampleFeed.loadFromZipfileOrDirectory(new File("files/sample-feed"), "sample");
+        CompactGtfsFeed compactSampleFeed = new CompactGtfsFeed(new GHDirectory(LOCATION, DAType.RAM_STORE).create(), "sample");
+        compactSampleFeed.create(sampleFeed);
+        assertEquals(sampleFeed.stops.size(), compactSampleFeed.getStopCount());
+        for (Stop stop : sampleFeed.stops.values()) {
+            int idx = compactSampleFeed.findStop(stop.stop_id);
+            assertEquals(stop.stop_lat, compactSampleFeed.getStopLat(idx));
+            assertEquals(stop.stop_lon, compactSampleFeed.getStopLon(idx));
+        }
+        assertEquals(sampleFeed.trips.size(), compactSampleFeed.getTripCount());
+        for (Trip trip : sampleFeed.trips.values()) {
+            int idx = compactSampleFeed.findTrip(trip.trip_id);
+            assertEquals(trip.route_id, compactSampleFeed.getRouteId(compactSampleFeed.getTripRoute(idx)));
+            List<StopTime> expected = sampleFeed.getInterpolatedStopTimesForTrip(trip.trip_id);
+            List<StopTime> actual = compactSampleFeed.getStopTimes(idx);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++)
+                assertStopTime(actual.get(i), expected.get(i).stop_id, expected.get(i).stop_sequence, expected.get(i).arrival_time,
+                        expected.get(i).departure_time, expected.get(i).pickup_type, expected.get(i).drop_off_type);
+        }
+        compactSampleFeed.close();
+        sampleFeed.close();
+    }
+
+    private static void assertStopTime(StopTime stopTime, String stopId, int stopSequence, int arrivalTime, int departureTime, int pickupType, int dropOffType) {
+        assertNotNull(stopTime);
+        assertEquals(stopId, stopTime.stop_id);
+        assertEquals(stopSequence, stopTime.stop_sequence);
+        assertEquals(arrivalTime, stopTime.arrival_time);
+        assertEquals(departureTime, stopTime.departure_time);
+        assertEquals(pickupType, stopTime.pickup_type);
+        assertEquals(dropOffType, stopTime.drop_off_type);
+    }
+}
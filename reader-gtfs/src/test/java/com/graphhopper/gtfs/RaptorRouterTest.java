@@ -0,0 +1,194 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RaptorRouterTest {
+
+    private static final String LOCATION = "./target/raptor-router-test/";
+    private static final ZoneId ZONE = ZoneId.of("America/Los_Angeles");
+
+    private static GraphHopperGtfs graphHopperGtfs;
+    private static RaptorNetwork network;
+
+    @BeforeAll
+    public static void init() throws IOException {
+        Helper.removeDir(new File(LOCATION));
+        // all trips run after midnight of their service day. From A to C there is a direct trip, which is slow,
+        // and a faster connection with a transfer at B, where a transfer rule requires ten minutes from R1 to R2,
+        // so the first trip of R2 cannot be reached.
+        Path dir = Files.createDirectories(Path.of(LOCATION, "feed"));
+        Files.writeString(dir.resolve("agency.txt"), "agency_id,agency_name,agency_url,agency_timezone\n" +
+                "AG,Agency,http://example.com,America/Los_Angeles\n");
+        Files.writeString(dir.resolve("calendar.txt"), "service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date\n" +
+                "ALL,1,1,1,1,1,1,1,20070101,20101231\n");
+        Files.writeString(dir.resolve("routes.txt"), "route_id,agency_id,route_short_name,route_type\n" +
+                "R1,AG,1,3\n" +
+                "R2,AG,2,3\n" +
+                "R3,AG,3,3\n");
+        Files.writeString(dir.resolve("stops.txt"), "stop_id,stop_name,stop_lat,stop_lon\n" +
+                "A,A,36.9,-116.75\n" +
+                "B,B,36.95,-116.75\n" +
+                "C,C,37.0,-116.75\n");
+        Files.writeString(dir.resolve("trips.txt"), "route_id,service_id,trip_id\n" +
+                "R1,ALL,T1\n" +
+                "R2,ALL,T2A\n" +
+                "R2,ALL,T2B\n" +
+                "R3,ALL,T3\n");
+        Files.writeString(dir.resolve("stop_times.txt"), "trip_id,arrival_time,departure_time,stop_id,stop_sequence\n" +
+                "T1,25:00:00,25:00:00,A,1\n" +
+                "T1,25:30:00,25:30:00,B,2\n" +
+                "T2A,25:35:00,25:35:00,B,1\n" +
+                "T2A,26:00:00,26:00:00,C,2\n" +
+                "T2B,25:45:00,25:45:00,B,1\n" +
+                "T2B,26:10:00,26:10:00,C,2\n" +
+                "T3,25:00:00,25:00:00,A,1\n" +
+                "T3,27:00:00,27:00:00,C,2\n");
+        Files.writeString(dir.resolve("transfers.txt"), "from_stop_id,to_stop_id,from_route_id,to_route_id,transfer_type,min_transfer_time\n" +
+                "B,B,R1,R2,2,600\n");
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.location", LOCATION + "graph");
+        ghConfig.putObject("import.osm.ignored_highways", "");
+        ghConfig.putObject("gtfs.file", dir.toString());
+        ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed");
+        ghConfig.setProfiles(List.of(TestProfiles.accessSpeedAndPriority("foot")));
+        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+        network = graphHopperGtfs.getGtfsStorage().tripTransfers.getRaptorNetwork();
+    }
+
+    @AfterAll
+    public static void close() {
+        graphHopperGtfs.close();
+        Helper.removeDir(new File(LOCATION));
+    }
+
+    @Test
+    public void testPreviousServiceDay() {
+        // right after midnight, the trips of the service day before are found, and the times are relative to the
+        // start of the day of the departure. The trips of the service day of the departure run a day later, which
+        // is a later departure, so they are found as well.
+        List<Journey> journeys = route(LocalDateTime.of(2007, 1, 2, 0, 50), TripBasedRouter.MAX_TRANSFERS);
+        assertEquals(List.of(List.of(90000, 94200, 1), List.of(90000, 97200, 0), List.of(3600, 7800, 1), List.of(3600, 10800, 0)), times(journeys));
+        assertEquals(List.of(LocalDate.of(2007, 1, 2), LocalDate.of(2007, 1, 2), LocalDate.of(2007, 1, 1), LocalDate.of(2007, 1, 1)), serviceDays(journeys));
+
+        // on the first day of the calendar there is no service day before
+        journeys = route(LocalDateTime.of(2007, 1, 1, 0, 50), TripBasedRouter.MAX_TRANSFERS);
+        assertEquals(List.of(List.of(90000, 94200, 1), List.of(90000, 97200, 0)), times(journeys));
+        assertEquals(List.of(LocalDate.of(2007, 1, 1), LocalDate.of(2007, 1, 1)), serviceDays(journeys));
+
+        // after the last departure of the service day before
+        journeys = route(LocalDateTime.of(2007, 1, 2, 1, 10), TripBasedRouter.MAX_TRANSFERS);
+        assertEquals(List.of(List.of(90000, 94200, 1), List.of(90000, 97200, 0)), times(journeys));
+        assertEquals(List.of(LocalDate.of(2007, 1, 2), LocalDate.of(2007, 1, 2)), serviceDays(journeys));
+    }
+
+    @Test
+    public void testTransferRules() {
+        // T1 arrives at B at 01:30 and T2A departs at 01:35, but the transfer from R1 to R2 takes ten minutes
+        Journey journey = route(LocalDateTime.of(2007, 1, 2, 0, 50), TripBasedRouter.MAX_TRANSFERS).get(2);
+        assertEquals(7800, journey.arrivalTime);
+        assertEquals("T2B", journey.lastSegment.tripPointer.trip.trip_id);
+        assertEquals("T1", journey.lastSegment.parent.tripPointer.trip.trip_id);
+        assertTrue(network.hasTransferRules(network.getStop(new GtfsStorage.FeedIdWithStopId("gtfs_0", "B"))));
+        assertFalse(network.hasTransferRules(network.getStop(new GtfsStorage.FeedIdWithStopId("gtfs_0", "A"))));
+    }
+
+    @Test
+    public void testLimitTransfers() {
+        LocalDateTime departure = LocalDateTime.of(2007, 1, 2, 0, 50);
+        List<List<Integer>> direct = List.of(List.of(90000, 97200, 0), List.of(3600, 10800, 0));
+        assertEquals(direct, times(route(departure, 0)));
+        assertEquals(direct, times(route(departure, -1)));
+        assertEquals(List.of(List.of(90000, 94200, 1), List.of(90000, 97200, 0), List.of(3600, 7800, 1), List.of(3600, 10800, 0)), times(route(departure, 1)));
+        // larger limits are clamped, instead of allocating labels for every round
+        assertEquals(times(route(departure, TripBasedRouter.MAX_TRANSFERS)), times(route(departure, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void testLabelsAreReusedAndReset() {
+        // the labels are kept per thread, so a search must not see the labels of a search before
+        LocalDateTime departure = LocalDateTime.of(2007, 1, 2, 0, 50);
+        List<List<Integer>> expected = times(route(departure, TripBasedRouter.MAX_TRANSFERS));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(List.of(List.of(90000, 97200, 0), List.of(3600, 10800, 0)), times(route(departure, 0)));
+            assertEquals(List.of(List.of(90000, 94200, 1), List.of(90000, 97200, 0)), times(route(LocalDateTime.of(2007, 1, 2, 3, 0), TripBasedRouter.MAX_TRANSFERS)));
+            assertEquals(expected, times(route(departure, TripBasedRouter.MAX_TRANSFERS)));
+        }
+    }
+
+    @Test
+    public void testActiveTripsCache() {
+        LocalDate day = LocalDate.of(2008, 1, 1);
+        BitSet activeTrips = network.getActiveTrips(day);
+        assertEquals(4, activeTrips.cardinality());
+        assertSame(activeTrips, network.getActiveTrips(day));
+        // the least recently used days are dropped, and computed again when they are needed
+        for (int i = 1; i <= 16; i++)
+            network.getActiveTrips(day.plusDays(i));
+        BitSet recomputed = network.getActiveTrips(day);
+        assertNotSame(activeTrips, recomputed);
+        assertEquals(activeTrips, recomputed);
+        // a day that was used recently is kept
+        for (int i = 1; i <= 15; i++)
+            network.getActiveTrips(day.minusDays(i));
+        assertSame(recomputed, network.getActiveTrips(day));
+        assertTrue(network.getActiveTrips(LocalDate.of(2011, 1, 1)).isEmpty());
+    }
+
+    private static List<Journey> route(LocalDateTime departureTime, int maxTransfers) {
+        TripBasedRouter.Parameters parameters = new TripBasedRouter.Parameters(List.of(stop("A")), List.of(stop("C")),
+                departureTime.atZone(ZONE).toInstant(), Duration.ZERO, trip -> true, 1.0, 1.0, 0.0, Collections.emptyMap(), maxTransfers);
+        return new RaptorRouter(network).route(parameters);
+    }
+
+    private static TripBasedRouter.StopWithTimeDelta stop(String stopId) {
+        return new TripBasedRouter.StopWithTimeDelta(new GtfsStorage.FeedIdWithStopId("gtfs_0", stopId), ZONE, 0);
+    }
+
+    private static List<LocalDate> serviceDays(List<Journey> journeys) {
+        return journeys.stream().map(j -> j.lastSegment.serviceDay).collect(Collectors.toList());
+    }
+
+    private static List<List<Integer>> times(List<Journey> journeys) {
+        return journeys.stream().map(j -> List.of(j.departureTime, j.arrivalTime, j.transfers)).collect(Collectors.toList());
+    }
+}
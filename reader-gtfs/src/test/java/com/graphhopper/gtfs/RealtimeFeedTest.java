@@ -0,0 +1,132 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.TranslationMap;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SCHEDULED;
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RealtimeFeedTest {
+
+    private static final String GRAPH_LOC = "target/RealtimeFeedTest";
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static PtRouterImpl.Factory graphHopperFactory;
+    private static GraphHopperGtfs graphHopperGtfs;
+
+    @BeforeAll
+    public static void init() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("gtfs.file", "files/sample-feed");
+        ghConfig.putObject("graph.location", GRAPH_LOC);
+        ghConfig.putObject("import.osm.ignored_highways", "");
+        ghConfig.putObject("graph.encoded_values", "foot_access, foot_priority, foot_average_speed, car_access, car_average_speed");
+        ghConfig.setProfiles(List.of(
+                TestProfiles.accessSpeedAndPriority("foot"),
+                TestProfiles.accessAndSpeed("car")));
+        Helper.removeDir(new File(GRAPH_LOC));
+        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+        graphHopperFactory = new PtRouterImpl.Factory(ghConfig, new TranslationMap().doImport(), graphHopperGtfs.getBaseGraph(), graphHopperGtfs.getEncodingManager(), graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage());
+    }
+
+    @AfterAll
+    public static void close() {
+        graphHopperGtfs.close();
+        Helper.removeDir(new File(GRAPH_LOC));
+    }
+
+    @Test
+    public void testIncrementalUpdatesOfTheSameTrip() {
+        // CITY2 is frequency-based, so its runs, which only differ in their start time, block and delay the same
+        // static edges. The same goes for trip updates with the same trip descriptor.
+        List<GtfsRealtime.FeedMessage> feedMessages = List.of(
+                feedMessage(skipped("CITY2", "06:00:00", 3), skipped("CITY2", "06:30:00", 3), delayed("CITY1", "06:00:00", 2, 300)),
+                // one run is not skipped anymore, but the other still is
+                feedMessage(skipped("CITY2", "06:30:00", 3), delayed("CITY1", "06:00:00", 2, 300)),
+                feedMessage(delayed("CITY2", "06:00:00", 3, 300), delayed("CITY2", "06:30:00", 3, 600)),
+                // the first run changes, but the delay of the second comes last
+                feedMessage(delayed("CITY2", "06:00:00", 3, 400), delayed("CITY2", "06:30:00", 3, 600)),
+                feedMessage(delayed("CITY2", "06:30:00", 3, 600), delayed("CITY2", "06:00:00", 3, 400)),
+                feedMessage(skipped("CITY2", "06:00:00", 3), skipped("CITY2", "06:00:00", 3)),
+                feedMessage(skipped("CITY2", "06:00:00", 3)),
+                feedMessage(skipped("CITY2", "06:00:00", 3), delayed("CITY2", "06:00:00", 3, 300)),
+                feedMessage(delayed("CITY2", "06:00:00", 3, 300)),
+                feedMessage()
+        );
+        RealtimeFeed realtimeFeed = RealtimeFeed.empty();
+        for (int i = 0; i < feedMessages.size(); i++) {
+            realtimeFeed = graphHopperFactory.update(realtimeFeed, feedMessages.get(i));
+            assertTrue(realtimeFeed.hasSameStateAs(realtimeFeed.rebuilt()), "feed message " + i);
+            if (i == 1) {
+                GtfsStorage gtfsStorage = graphHopperGtfs.getGtfsStorage();
+                GTFSFeed feed = gtfsStorage.getGtfsFeeds().get("gtfs_0");
+                int[] boardEdges = RealtimeFeed.findBoardEdgesForTrip(gtfsStorage, "gtfs_0", feed, tripDescriptor("CITY2", "06:30:00"));
+                assertTrue(realtimeFeed.isBlocked(boardEdges[3]));
+            }
+        }
+        assertTrue(realtimeFeed.hasSameStateAs(RealtimeFeed.empty()));
+    }
+
+    private GtfsRealtime.FeedMessage feedMessage(GtfsRealtime.TripUpdate... tripUpdates) {
+        GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setTimestamp(LocalDateTime.of(2007, 1, 1, 0, 0).atZone(zoneId).toEpochSecond()));
+        for (int i = 0; i < tripUpdates.length; i++)
+            feedMessageBuilder.addEntityBuilder().setId(Integer.toString(i)).setTripUpdate(tripUpdates[i]);
+        return feedMessageBuilder.build();
+    }
+
+    private static GtfsRealtime.TripDescriptor tripDescriptor(String tripId, String startTime) {
+        return GtfsRealtime.TripDescriptor.newBuilder().setTripId(tripId).setStartTime(startTime).build();
+    }
+
+    private static GtfsRealtime.TripUpdate skipped(String tripId, String startTime, int stopSequence) {
+        GtfsRealtime.TripUpdate.Builder tripUpdate = GtfsRealtime.TripUpdate.newBuilder().setTrip(tripDescriptor(tripId, startTime));
+        tripUpdate.addStopTimeUpdateBuilder()
+                .setStopSequence(stopSequence)
+                .setScheduleRelationship(SKIPPED);
+        return tripUpdate.build();
+    }
+
+    private static GtfsRealtime.TripUpdate delayed(String tripId, String startTime, int stopSequence, int delay) {
+        GtfsRealtime.TripUpdate.Builder tripUpdate = GtfsRealtime.TripUpdate.newBuilder().setTrip(tripDescriptor(tripId, startTime));
+        tripUpdate.addStopTimeUpdateBuilder()
+                .setStopSequence(stopSequence)
+                .setScheduleRelationship(SCHEDULED)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(delay).build());
+        return tripUpdate.build();
+    }
+}
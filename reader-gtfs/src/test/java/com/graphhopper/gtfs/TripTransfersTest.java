@@ -0,0 +1,151 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TripTransfersTest {
+
+    private static final String LOCATION = "./target/trip-transfers-test/";
+    private static final LocalDate DAY = LocalDate.of(2007, 1, 1);
+
+    @BeforeEach
+    @AfterEach
+    public void cleanUp() {
+        Helper.removeDir(new File(LOCATION));
+    }
+
+    @Test
+    public void testTransfers() {
+        TripTransfers tripTransfers = create(new int[][]{
+                // trip 0 has three stops and transfers to trip 1 at stop 1 and to trips 1 and 2 at stop 2
+                TripTransfers.encodeTrip(new int[][]{null, {1, 1}, {1, 2, 2, 0}}),
+                // trip 1 has no transfers
+                TripTransfers.encodeTrip(new int[2][]),
+                TripTransfers.encodeTrip(new int[][]{{0, 1}})
+        });
+        assertEquals(3, tripTransfers.getTripCount());
+        assertEquals(4, tripTransfers.getTransferCount());
+        assertEquals(List.of(), tripTransfers.getTransfers(0, 0));
+        assertEquals(List.of(new Trips.TripAtStopTime(1, 1)), tripTransfers.getTransfers(0, 1));
+        assertEquals(List.of(new Trips.TripAtStopTime(1, 2), new Trips.TripAtStopTime(2, 0)), tripTransfers.getTransfers(0, 2));
+        assertEquals(List.of(), tripTransfers.getTransfers(1, 0));
+        assertEquals(List.of(), tripTransfers.getTransfers(1, 1));
+        assertEquals(List.of(new Trips.TripAtStopTime(0, 1)), tripTransfers.getTransfers(2, 0));
+        tripTransfers.close();
+    }
+
+    @Test
+    public void testNoTransfers() {
+        TripTransfers tripTransfers = create(new int[0][]);
+        assertEquals(0, tripTransfers.getTripCount());
+        assertEquals(0, tripTransfers.getTransferCount());
+        tripTransfers.close();
+
+        // trips without any transfers, e.g. a feed with a single line, and a trip without stops
+        tripTransfers = create(new int[][]{
+                TripTransfers.encodeTrip(new int[3][]),
+                TripTransfers.encodeTrip(new int[0][]),
+                TripTransfers.encodeTrip(new int[2][])
+        });
+        assertEquals(3, tripTransfers.getTripCount());
+        assertEquals(0, tripTransfers.getTransferCount());
+        for (int stopSequence = 0; stopSequence < 3; stopSequence++) {
+            assertEquals(0, tripTransfers.getTransfersStart(0, stopSequence));
+            assertEquals(0, tripTransfers.getTransfersEnd(0, stopSequence));
+        }
+        assertEquals(0, tripTransfers.getTransfersStart(2, 1));
+        assertEquals(0, tripTransfers.getTransfersEnd(2, 1));
+        tripTransfers.close();
+    }
+
+    @Test
+    public void testStopOffsetOfLaterTrips() {
+        // the stops of a trip are found via the offset of its first stop, which depends on the number of stops of all
+        // trips before it, so the trips here have different lengths and the transfers are at their first and last stops
+        int[][] destinationsOfTrip0 = new int[5][];
+        destinationsOfTrip0[4] = new int[]{2, 0};
+        int[][] destinationsOfTrip2 = new int[4][];
+        destinationsOfTrip2[0] = new int[]{0, 3, 1, 1};
+        destinationsOfTrip2[3] = new int[]{1, 0};
+        TripTransfers tripTransfers = create(new int[][]{
+                TripTransfers.encodeTrip(destinationsOfTrip0),
+                TripTransfers.encodeTrip(new int[][]{null, {0, 4}}),
+                TripTransfers.encodeTrip(destinationsOfTrip2)
+        });
+        assertEquals(5, tripTransfers.getTransferCount());
+        // the transfers of a stop directly follow those of the previous stop, even across trips
+        assertEquals(0, tripTransfers.getTransfersStart(0, 4));
+        assertEquals(1, tripTransfers.getTransfersEnd(0, 4));
+        assertEquals(1, tripTransfers.getTransfersStart(1, 0));
+        assertEquals(1, tripTransfers.getTransfersEnd(1, 0));
+        assertEquals(1, tripTransfers.getTransfersStart(1, 1));
+        assertEquals(2, tripTransfers.getTransfersEnd(1, 1));
+        assertEquals(2, tripTransfers.getTransfersStart(2, 0));
+        assertEquals(4, tripTransfers.getTransfersEnd(2, 0));
+        assertEquals(4, tripTransfers.getTransfersStart(2, 3));
+        assertEquals(5, tripTransfers.getTransfersEnd(2, 3));
+
+        assertEquals(2, tripTransfers.getDestinationTrip(0));
+        assertEquals(0, tripTransfers.getDestinationStopSequence(0));
+        assertEquals(List.of(new Trips.TripAtStopTime(0, 4)), tripTransfers.getTransfers(1, 1));
+        assertEquals(List.of(new Trips.TripAtStopTime(0, 3), new Trips.TripAtStopTime(1, 1)), tripTransfers.getTransfers(2, 0));
+        assertEquals(List.of(), tripTransfers.getTransfers(2, 2));
+        assertEquals(List.of(new Trips.TripAtStopTime(1, 0)), tripTransfers.getTransfers(2, 3));
+        tripTransfers.close();
+    }
+
+    @Test
+    public void testLoadExisting() {
+        TripTransfers tripTransfers = create(new int[][]{
+                TripTransfers.encodeTrip(new int[][]{{1, 1}, null}),
+                TripTransfers.encodeTrip(new int[][]{null, {0, 0}})
+        });
+        tripTransfers.flush();
+        tripTransfers.close();
+
+        tripTransfers = new TripTransfers(new GHDirectory(LOCATION, DAType.MMAP), DAY);
+        assertTrue(tripTransfers.loadExisting());
+        assertEquals(2, tripTransfers.getTripCount());
+        assertEquals(2, tripTransfers.getTransferCount());
+        assertEquals(List.of(new Trips.TripAtStopTime(1, 1)), tripTransfers.getTransfers(0, 0));
+        assertEquals(List.of(), tripTransfers.getTransfers(0, 1));
+        assertEquals(List.of(new Trips.TripAtStopTime(0, 0)), tripTransfers.getTransfers(1, 1));
+        tripTransfers.close();
+        // the transfers are stored per traffic day
+        assertFalse(new TripTransfers(new GHDirectory(LOCATION, DAType.RAM_STORE), DAY.plusDays(1)).loadExisting());
+    }
+
+    private static TripTransfers create(int[][] transfersByTrip) {
+        TripTransfers tripTransfers = new TripTransfers(new GHDirectory(LOCATION, DAType.RAM_STORE).create(), DAY);
+        tripTransfers.create(transfersByTrip);
+        return tripTransfers;
+    }
+}
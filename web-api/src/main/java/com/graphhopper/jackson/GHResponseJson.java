@@ -0,0 +1,93 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jackson;
+
+import com.graphhopper.GHResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The JSON response of the routing API for a GHResponse. Instead of building a JSON tree first, the
+ * {@link GHResponseJsonSerializer} writes the paths directly to the output, which avoids a lot of allocations for long
+ * routes with path details. {@link ResponsePathSerializer#jsonObject} uses the same serializer to create the tree.
+ */
+public class GHResponseJson {
+    private final GHResponse ghResponse;
+    private final ResponsePathSerializer.Info info;
+    private final boolean enableInstructions;
+    private final boolean calcPoints;
+    private final boolean enableElevation;
+    private final boolean pointsEncoded;
+    private final double pointsMultiplier;
+    private final Map<String, Object> additionalFields = new LinkedHashMap<>(2);
+
+    public GHResponseJson(GHResponse ghResponse, ResponsePathSerializer.Info info, boolean enableInstructions,
+                          boolean calcPoints, boolean enableElevation, boolean pointsEncoded, double pointsMultiplier) {
+        this.ghResponse = ghResponse;
+        this.info = info;
+        this.enableInstructions = enableInstructions;
+        this.calcPoints = calcPoints;
+        this.enableElevation = enableElevation;
+        this.pointsEncoded = pointsEncoded;
+        this.pointsMultiplier = pointsMultiplier;
+    }
+
+    /**
+     * Adds a field that is written after the paths, e.g. the map matching statistics.
+     */
+    public GHResponseJson putPOJO(String fieldName, Object value) {
+        additionalFields.put(fieldName, value);
+        return this;
+    }
+
+    public GHResponse getGHResponse() {
+        return ghResponse;
+    }
+
+    /**
+     * @return the info object, can be null
+     */
+    public ResponsePathSerializer.Info getInfo() {
+        return info;
+    }
+
+    public boolean isEnableInstructions() {
+        return enableInstructions;
+    }
+
+    public boolean isCalcPoints() {
+        return calcPoints;
+    }
+
+    public boolean isEnableElevation() {
+        return enableElevation;
+    }
+
+    public boolean isPointsEncoded() {
+        return pointsEncoded;
+    }
+
+    public double getPointsMultiplier() {
+        return pointsMultiplier;
+    }
+
+    public Map<String, Object> getAdditionalFields() {
+        return additionalFields;
+    }
+}
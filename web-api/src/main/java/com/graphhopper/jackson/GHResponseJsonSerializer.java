@@ -0,0 +1,110 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Map;
+
+public class GHResponseJsonSerializer extends JsonSerializer<GHResponseJson> {
+
+    @Override
+    public void serialize(GHResponseJson json, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        GHResponse ghRsp = json.getGHResponse();
+        gen.writeStartObject();
+        serializers.defaultSerializeField("hints", ghRsp.getHints().toMap(), gen);
+        serializers.defaultSerializeField("info", json.getInfo(), gen);
+        gen.writeArrayFieldStart("paths");
+        for (ResponsePath p : ghRsp.getAll()) {
+            writePath(p, json, gen, serializers);
+        }
+        gen.writeEndArray();
+        for (Map.Entry<String, Object> entry : json.getAdditionalFields().entrySet()) {
+            serializers.defaultSerializeField(entry.getKey(), entry.getValue(), gen);
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writePath(ResponsePath p, GHResponseJson json, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("distance", Helper.round(p.getDistance(), 3));
+        gen.writeNumberField("weight", Helper.round6(p.getRouteWeight()));
+        gen.writeNumberField("time", p.getTime());
+        gen.writeNumberField("transfers", p.getNumChanges());
+        serializers.defaultSerializeField("legs", p.getLegs(), gen);
+        if (!p.getDescription().isEmpty())
+            serializers.defaultSerializeField("description", p.getDescription(), gen);
+
+        // for points and snapped_waypoints:
+        gen.writeBooleanField("points_encoded", json.isPointsEncoded());
+        if (json.isPointsEncoded())
+            gen.writeNumberField("points_encoded_multiplier", json.getPointsMultiplier());
+
+        if (json.isCalcPoints()) {
+            serializers.defaultSerializeField("bbox", p.calcBBox2D(), gen);
+            gen.writeFieldName("points");
+            writePoints(p.getPoints(), json, gen);
+            if (json.isEnableInstructions())
+                serializers.defaultSerializeField("instructions", p.getInstructions(), gen);
+            serializers.defaultSerializeField("details", p.getPathDetails(), gen);
+            gen.writeNumberField("ascend", p.getAscend());
+            gen.writeNumberField("descend", p.getDescend());
+        }
+        gen.writeFieldName("snapped_waypoints");
+        writePoints(p.getWaypoints(), json, gen);
+        if (p.getFare() != null)
+            gen.writeStringField("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(p.getFare()));
+        gen.writeEndObject();
+    }
+
+    private static void writePoints(PointList points, GHResponseJson json, JsonGenerator gen) throws IOException {
+        if (json.isPointsEncoded()) {
+            gen.writeString(ResponsePathSerializer.encodePolyline(points, json.isEnableElevation(), json.getPointsMultiplier()));
+            return;
+        }
+        // the same GeoJSON as for PointList.toLineString, but without creating the JTS coordinates
+        gen.writeStartObject();
+        gen.writeStringField("type", "LineString");
+        gen.writeArrayFieldStart("coordinates");
+        // a single point is not supported in the specification #1412, so we write it twice
+        int count = points.size() == 1 ? 2 : points.size();
+        for (int i = 0; i < count; i++) {
+            int index = Math.min(i, points.size() - 1);
+            gen.writeStartArray();
+            gen.writeNumber(Helper.round6(points.getLon(index)));
+            gen.writeNumber(Helper.round6(points.getLat(index)));
+            if (json.isEnableElevation()) {
+                double ele = Helper.round2(points.getEle(index));
+                if (!Double.isNaN(ele))
+                    gen.writeNumber(ele);
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+}
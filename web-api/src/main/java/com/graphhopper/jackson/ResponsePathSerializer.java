@@ -18,17 +18,12 @@
 
 package com.graphhopper.jackson;
 
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GHResponse;
-import com.graphhopper.ResponsePath;
-import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 
-import java.text.NumberFormat;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * Code which constructs the JSON response of the routing API, including polyline encoding.
@@ -42,6 +37,8 @@ import java.util.Locale;
  */
 public class ResponsePathSerializer {
 
+    private static final ObjectMapper TREE_MAPPER = Jackson.newObjectMapper();
+
     public static String encodePolyline(PointList poly, boolean includeElevation, double multiplier) {
         if (multiplier < 1)
             throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + multiplier + " for polyline");
@@ -84,42 +81,12 @@ public class ResponsePathSerializer {
     public record Info(List<String> copyrights, long took, String roadDataTimestamp) {
     }
 
+    /**
+     * Creates the JSON tree of the routing API response. The tree is written by {@link GHResponseJsonSerializer}, so it
+     * is always the same as the JSON that is streamed for a {@link GHResponseJson}.
+     */
     public static ObjectNode jsonObject(GHResponse ghRsp, Info info, boolean enableInstructions,
                                         boolean calcPoints, boolean enableElevation, boolean pointsEncoded, double pointsMultiplier) {
-        ObjectNode json = JsonNodeFactory.instance.objectNode();
-        json.putPOJO("hints", ghRsp.getHints().toMap());
-        json.putPOJO("info", info);
-        ArrayNode jsonPathList = json.putArray("paths");
-        for (ResponsePath p : ghRsp.getAll()) {
-            ObjectNode jsonPath = jsonPathList.addObject();
-            jsonPath.put("distance", Helper.round(p.getDistance(), 3));
-            jsonPath.put("weight", Helper.round6(p.getRouteWeight()));
-            jsonPath.put("time", p.getTime());
-            jsonPath.put("transfers", p.getNumChanges());
-            jsonPath.putPOJO("legs", p.getLegs());
-            if (!p.getDescription().isEmpty()) {
-                jsonPath.putPOJO("description", p.getDescription());
-            }
-
-            // for points and snapped_waypoints:
-            jsonPath.put("points_encoded", pointsEncoded);
-            if (pointsEncoded) jsonPath.put("points_encoded_multiplier", pointsMultiplier);
-
-            if (calcPoints) {
-                jsonPath.putPOJO("bbox", p.calcBBox2D());
-                jsonPath.putPOJO("points", pointsEncoded ? encodePolyline(p.getPoints(), enableElevation, pointsMultiplier) : p.getPoints().toLineString(enableElevation));
-                if (enableInstructions) {
-                    jsonPath.putPOJO("instructions", p.getInstructions());
-                }
-                jsonPath.putPOJO("details", p.getPathDetails());
-                jsonPath.put("ascend", p.getAscend());
-                jsonPath.put("descend", p.getDescend());
-            }
-            jsonPath.putPOJO("snapped_waypoints", pointsEncoded ? encodePolyline(p.getWaypoints(), enableElevation, pointsMultiplier) : p.getWaypoints().toLineString(enableElevation));
-            if (p.getFare() != null) {
-                jsonPath.put("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(p.getFare()));
-            }
-        }
-        return json;
+        return TREE_MAPPER.valueToTree(new GHResponseJson(ghRsp, info, enableInstructions, calcPoints, enableElevation, pointsEncoded, pointsMultiplier));
     }
 }
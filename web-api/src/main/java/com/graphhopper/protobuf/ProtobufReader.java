@@ -0,0 +1,240 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.protobuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.graphhopper.protobuf.ProtobufWriter.*;
+
+/**
+ * A minimal reader for the protocol buffers wire format, see {@link ProtobufWriter}. Use {@link #next()} to move to
+ * the next field and then read its value with the method matching the type of this field or skip it with
+ * {@link #skip()}.
+ */
+public class ProtobufReader {
+    private final byte[] bytes;
+    private final int limit;
+    private int pos;
+    private int field;
+    private int wireType;
+
+    public ProtobufReader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    private ProtobufReader(byte[] bytes, int offset, int limit) {
+        this.bytes = bytes;
+        this.pos = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * @return false if there are no more fields in this message
+     */
+    public boolean next() {
+        if (pos >= limit)
+            return false;
+        long tag = readRawVarint();
+        field = (int) (tag >>> 3);
+        wireType = (int) (tag & 0x7);
+        if (field <= 0)
+            throw new IllegalStateException("Invalid field number " + field + " at " + pos);
+        return true;
+    }
+
+    public int getField() {
+        return field;
+    }
+
+    public long readInt64() {
+        checkWireType(WIRE_TYPE_VARINT);
+        return readRawVarint();
+    }
+
+    public int readInt32() {
+        return (int) readInt64();
+    }
+
+    public long readSInt64() {
+        return unZigZag(readInt64());
+    }
+
+    public boolean readBool() {
+        return readInt64() != 0;
+    }
+
+    public double readDouble() {
+        checkWireType(WIRE_TYPE_FIXED64);
+        return Double.longBitsToDouble(readRawFixed64());
+    }
+
+    public String readString() {
+        int length = readLength();
+        String value = new String(bytes, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    public ProtobufReader readMessage() {
+        int length = readLength();
+        ProtobufReader message = new ProtobufReader(bytes, pos, pos + length);
+        pos += length;
+        return message;
+    }
+
+    /**
+     * Reads the current value(s) of a repeated uint32 or int64 field and appends them to the given values. Like the
+     * other readRepeated methods this accepts the packed and the non-packed encoding.
+     */
+    public void readRepeatedInt64(LongValues values) {
+        if (wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+            ProtobufReader packed = readMessage();
+            while (packed.pos < packed.limit)
+                values.add(packed.readRawVarint());
+        } else {
+            values.add(readInt64());
+        }
+    }
+
+    public void readRepeatedSInt64(LongValues values) {
+        if (wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+            ProtobufReader packed = readMessage();
+            while (packed.pos < packed.limit)
+                values.add(unZigZag(packed.readRawVarint()));
+        } else {
+            values.add(readSInt64());
+        }
+    }
+
+    public void readRepeatedDouble(DoubleValues values) {
+        if (wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+            ProtobufReader packed = readMessage();
+            while (packed.pos < packed.limit)
+                values.add(Double.longBitsToDouble(packed.readRawFixed64()));
+        } else {
+            values.add(readDouble());
+        }
+    }
+
+    /**
+     * Skips the value of the current field, e.g. because it is unknown.
+     */
+    public void skip() {
+        switch (wireType) {
+            case WIRE_TYPE_VARINT -> readRawVarint();
+            case WIRE_TYPE_FIXED64 -> skipRaw(8, "Truncated fixed64");
+            case WIRE_TYPE_LENGTH_DELIMITED -> {
+                int length = readLength();
+                pos += length;
+            }
+            case WIRE_TYPE_FIXED32 -> skipRaw(4, "Truncated fixed32");
+            default -> throw new IllegalStateException("Unsupported wire type " + wireType + " of field " + field);
+        }
+    }
+
+    private int readLength() {
+        checkWireType(WIRE_TYPE_LENGTH_DELIMITED);
+        long length = readRawVarint();
+        if (length < 0 || pos + length > limit)
+            throw new IllegalStateException("Invalid length " + length + " of field " + field);
+        return (int) length;
+    }
+
+    private void checkWireType(int expected) {
+        if (wireType != expected)
+            throw new IllegalStateException("Field " + field + " has wire type " + wireType + " but expected " + expected);
+    }
+
+    private long readRawVarint() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= limit)
+                throw new IllegalStateException("Truncated varint");
+            byte b = bytes[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return result;
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    private void skipRaw(int length, String message) {
+        if (pos + length > limit)
+            throw new IllegalStateException(message);
+        pos += length;
+    }
+
+    private long readRawFixed64() {
+        if (pos + 8 > limit)
+            throw new IllegalStateException("Truncated fixed64");
+        long result = 0;
+        for (int i = 0; i < 8; i++)
+            result |= (bytes[pos++] & 0xFFL) << (8 * i);
+        return result;
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A growable array to collect the values of repeated fields.
+     */
+    public static class LongValues {
+        private long[] values = new long[16];
+        private int size;
+
+        public void add(long value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        public long get(int index) {
+            if (index >= size)
+                throw new IndexOutOfBoundsException("index " + index + " >= size " + size);
+            return values[index];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    public static class DoubleValues {
+        private double[] values = new double[16];
+        private int size;
+
+        public void add(double value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        public double get(int index) {
+            if (index >= size)
+                throw new IndexOutOfBoundsException("index " + index + " >= size " + size);
+            return values[index];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
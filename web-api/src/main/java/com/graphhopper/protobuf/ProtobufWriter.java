@@ -0,0 +1,170 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.protobuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A minimal writer for the protocol buffers wire format. We do not use generated classes, because the web-api and
+ * its clients should not depend on protobuf-java. Nested messages are written into a separate ProtobufWriter and then
+ * added via {@link #writeMessage(int, ProtobufWriter)}, because the length of a message has to be known before its
+ * content.
+ */
+public class ProtobufWriter {
+    static final int WIRE_TYPE_VARINT = 0;
+    static final int WIRE_TYPE_FIXED64 = 1;
+    static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+    static final int WIRE_TYPE_FIXED32 = 5;
+
+    private byte[] bytes;
+    private int size;
+
+    public ProtobufWriter() {
+        this(64);
+    }
+
+    public ProtobufWriter(int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public ProtobufWriter writeInt64(int field, long value) {
+        writeTag(field, WIRE_TYPE_VARINT);
+        writeRawVarint(value);
+        return this;
+    }
+
+    public ProtobufWriter writeSInt64(int field, long value) {
+        writeTag(field, WIRE_TYPE_VARINT);
+        writeRawVarint(zigZag(value));
+        return this;
+    }
+
+    public ProtobufWriter writeBool(int field, boolean value) {
+        writeTag(field, WIRE_TYPE_VARINT);
+        writeRawByte(value ? 1 : 0);
+        return this;
+    }
+
+    public ProtobufWriter writeDouble(int field, double value) {
+        writeTag(field, WIRE_TYPE_FIXED64);
+        writeRawFixed64(Double.doubleToRawLongBits(value));
+        return this;
+    }
+
+    public ProtobufWriter writeString(int field, String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeTag(field, WIRE_TYPE_LENGTH_DELIMITED);
+        writeRawVarint(utf8.length);
+        writeRawBytes(utf8, 0, utf8.length);
+        return this;
+    }
+
+    public ProtobufWriter writeMessage(int field, ProtobufWriter message) {
+        writeTag(field, WIRE_TYPE_LENGTH_DELIMITED);
+        writeRawVarint(message.size);
+        writeRawBytes(message.bytes, 0, message.size);
+        return this;
+    }
+
+    /**
+     * Writes the given values as packed repeated uint32 or int64 field. Nothing is written for an empty array.
+     */
+    public ProtobufWriter writePackedInt64(int field, long[] values, int count) {
+        if (count == 0)
+            return this;
+        ProtobufWriter packed = new ProtobufWriter(count * 2);
+        for (int i = 0; i < count; i++)
+            packed.writeRawVarint(values[i]);
+        return writeMessage(field, packed);
+    }
+
+    /**
+     * Writes the given values as packed repeated sint64 field. Nothing is written for an empty array.
+     */
+    public ProtobufWriter writePackedSInt64(int field, long[] values, int count) {
+        if (count == 0)
+            return this;
+        ProtobufWriter packed = new ProtobufWriter(count * 2);
+        for (int i = 0; i < count; i++)
+            packed.writeRawVarint(zigZag(values[i]));
+        return writeMessage(field, packed);
+    }
+
+    /**
+     * Writes the given values as packed repeated double field. Nothing is written for an empty array.
+     */
+    public ProtobufWriter writePackedDouble(int field, double[] values, int count) {
+        if (count == 0)
+            return this;
+        writeTag(field, WIRE_TYPE_LENGTH_DELIMITED);
+        writeRawVarint(count * 8L);
+        for (int i = 0; i < count; i++)
+            writeRawFixed64(Double.doubleToRawLongBits(values[i]));
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void writeTag(int field, int wireType) {
+        writeRawVarint(((long) field << 3) | wireType);
+    }
+
+    private void writeRawVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    private void writeRawFixed64(long value) {
+        ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            bytes[size++] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private void writeRawByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    private void writeRawBytes(byte[] values, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(values, offset, bytes, size, length);
+        size += length;
+    }
+
+    private void ensureCapacity(int additionalBytes) {
+        if (size + additionalBytes > bytes.length)
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additionalBytes));
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
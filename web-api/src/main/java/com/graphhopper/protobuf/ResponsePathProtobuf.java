@@ -0,0 +1,459 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.protobuf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.*;
+
+/**
+ * Writes and reads the binary route response, an alternative to the JSON response for clients that want to avoid
+ * parsing large JSON documents. The schema is described in docs/web/route.proto.
+ */
+public class ResponsePathProtobuf {
+    public static final String MEDIA_TYPE = "application/x-protobuf";
+    private static final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    /**
+     * Creates the RouteResponse message. The caller can add further fields like the map matching statistics before
+     * calling {@link ProtobufWriter#toByteArray()}.
+     */
+    public static ProtobufWriter write(GHResponse ghRsp, ResponsePathSerializer.Info info, boolean enableInstructions,
+                                      boolean calcPoints, boolean enableElevation, double pointsMultiplier) {
+        if (pointsMultiplier < 1)
+            throw new IllegalArgumentException("multiplier cannot be smaller than 1 but was " + pointsMultiplier + " for points");
+        ProtobufWriter rsp = new ProtobufWriter(1024);
+        for (ResponsePath path : ghRsp.getAll())
+            rsp.writeMessage(1, writePath(path, enableInstructions, calcPoints, enableElevation, pointsMultiplier));
+        if (info != null) {
+            ProtobufWriter infoMsg = new ProtobufWriter();
+            for (String copyright : info.copyrights())
+                infoMsg.writeString(1, copyright);
+            infoMsg.writeInt64(2, info.took());
+            if (info.roadDataTimestamp() != null)
+                infoMsg.writeString(3, info.roadDataTimestamp());
+            rsp.writeMessage(2, infoMsg);
+        }
+        for (Map.Entry<String, Object> hint : ghRsp.getHints().toMap().entrySet()) {
+            ProtobufWriter entry = new ProtobufWriter();
+            entry.writeString(1, hint.getKey());
+            entry.writeString(2, String.valueOf(hint.getValue()));
+            rsp.writeMessage(3, entry);
+        }
+        return rsp;
+    }
+
+    private static ProtobufWriter writePath(ResponsePath p, boolean enableInstructions, boolean calcPoints,
+                                            boolean enableElevation, double pointsMultiplier) {
+        ProtobufWriter path = new ProtobufWriter(256 + (calcPoints ? p.getPoints().size() * 8 : 0));
+        path.writeDouble(1, Helper.round(p.getDistance(), 3));
+        path.writeDouble(2, Helper.round6(p.getRouteWeight()));
+        path.writeInt64(3, p.getTime());
+        path.writeInt64(4, p.getNumChanges());
+        for (String description : p.getDescription())
+            path.writeString(5, description);
+        if (calcPoints) {
+            Envelope bbox = p.calcBBox2D();
+            path.writePackedDouble(6, new double[]{bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY()}, 4);
+            path.writeMessage(7, writePoints(p.getPoints(), enableElevation, pointsMultiplier));
+            if (enableInstructions)
+                for (ProtobufWriter instruction : writeInstructions(p.getInstructions()))
+                    path.writeMessage(9, instruction);
+            for (Map.Entry<String, List<PathDetail>> detail : p.getPathDetails().entrySet())
+                path.writeMessage(10, writePathDetail(detail.getKey(), detail.getValue()));
+            path.writeDouble(11, p.getAscend());
+            path.writeDouble(12, p.getDescend());
+        }
+        path.writeMessage(8, writePoints(p.getWaypoints(), enableElevation, pointsMultiplier));
+        return path;
+    }
+
+    private static ProtobufWriter writePoints(PointList points, boolean enableElevation, double multiplier) {
+        int size = points.size();
+        long[] lats = new long[size];
+        long[] lons = new long[size];
+        long[] eles = new long[enableElevation ? size : 0];
+        long prevLat = 0, prevLon = 0, prevEle = 0;
+        for (int i = 0; i < size; i++) {
+            long lat = Math.round(points.getLat(i) * multiplier);
+            long lon = Math.round(points.getLon(i) * multiplier);
+            lats[i] = lat - prevLat;
+            lons[i] = lon - prevLon;
+            prevLat = lat;
+            prevLon = lon;
+            if (enableElevation) {
+                long ele = Math.round(points.getEle(i) * 100);
+                eles[i] = ele - prevEle;
+                prevEle = ele;
+            }
+        }
+        ProtobufWriter msg = new ProtobufWriter(16 + size * (enableElevation ? 9 : 6));
+        msg.writeDouble(1, multiplier);
+        msg.writePackedSInt64(2, lats, size);
+        msg.writePackedSInt64(3, lons, size);
+        msg.writePackedSInt64(4, eles, eles.length);
+        return msg;
+    }
+
+    private static List<ProtobufWriter> writeInstructions(InstructionList instructions) {
+        List<ProtobufWriter> result = new ArrayList<>(instructions.size());
+        int pointsIndex = 0;
+        for (Instruction instruction : instructions) {
+            ProtobufWriter msg = new ProtobufWriter();
+            msg.writeString(1, Helper.firstBig(instruction.getTurnDescription(instructions.getTr())));
+            if (instruction.getName() != null)
+                msg.writeString(2, instruction.getName());
+            msg.writeInt64(3, instruction.getTime());
+            msg.writeDouble(4, Helper.round(instruction.getDistance(), 3));
+            msg.writeSInt64(5, instruction.getSign());
+            int tmpIndex = pointsIndex + instruction.getLength();
+            msg.writeInt64(6, pointsIndex);
+            msg.writeInt64(7, tmpIndex);
+            pointsIndex = tmpIndex;
+
+            Map<String, Object> extraInfo = instruction.getExtraInfoJSON();
+            if (extraInfo.get("exit_number") instanceof Number exitNumber)
+                msg.writeSInt64(8, exitNumber.intValue());
+            if (extraInfo.get("exited") instanceof Boolean exited)
+                msg.writeBool(9, exited);
+            if (extraInfo.get("turn_angle") instanceof Number turnAngle)
+                msg.writeDouble(10, turnAngle.doubleValue());
+            if (extraInfo.get("heading") instanceof Number heading)
+                msg.writeDouble(11, heading.doubleValue());
+            result.add(msg);
+        }
+        return result;
+    }
+
+    private static ProtobufWriter writePathDetail(String name, List<PathDetail> details) {
+        Class<?> type = getValueType(name, details);
+        int size = details.size();
+        long[] firsts = new long[size];
+        long[] lasts = new long[size];
+        long[] longValues = new long[type == Long.class ? size : 0];
+        double[] doubleValues = new double[type == Double.class ? size : 0];
+        long[] booleanValues = new long[type == Boolean.class ? size : 0];
+        long[] nullIndices = new long[size];
+        int nullCount = 0;
+        ProtobufWriter msg = new ProtobufWriter(32 + size * 8);
+        msg.writeString(1, name);
+        for (int i = 0; i < size; i++) {
+            PathDetail detail = details.get(i);
+            firsts[i] = detail.getFirst();
+            lasts[i] = detail.getLast();
+            Object value = detail.getValue();
+            if (value == null)
+                nullIndices[nullCount++] = i;
+            if (type == Long.class)
+                longValues[i] = value == null ? 0 : ((Number) value).longValue();
+            else if (type == Double.class)
+                doubleValues[i] = value == null ? 0 : ((Number) value).doubleValue();
+            else if (type == Boolean.class)
+                booleanValues[i] = value != null && (Boolean) value ? 1 : 0;
+            else if (type == String.class)
+                // repeated strings cannot be packed, so they are written in place
+                msg.writeString(7, value == null ? "" : (String) value);
+            else if (type == Map.class)
+                msg.writeString(9, value == null ? "" : toJson(value));
+        }
+        msg.writePackedInt64(2, firsts, size);
+        msg.writePackedInt64(3, lasts, size);
+        msg.writePackedDouble(4, doubleValues, doubleValues.length);
+        msg.writePackedSInt64(5, longValues, longValues.length);
+        msg.writePackedInt64(6, booleanValues, booleanValues.length);
+        msg.writePackedInt64(8, nullIndices, nullCount);
+        return msg;
+    }
+
+    /**
+     * @return the type of the value array that is used for the given path details, or null if all values are null
+     */
+    private static Class<?> getValueType(String name, List<PathDetail> details) {
+        Class<?> type = null;
+        for (PathDetail detail : details) {
+            Object value = detail.getValue();
+            Class<?> valueType;
+            if (value == null)
+                continue;
+            else if (value instanceof Double || value instanceof Float)
+                valueType = Double.class;
+            else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+                valueType = Long.class;
+            else if (value instanceof Boolean)
+                valueType = Boolean.class;
+            else if (value instanceof String)
+                valueType = String.class;
+            else if (value instanceof Map)
+                valueType = Map.class;
+            else
+                throw new IllegalArgumentException("The path detail '" + name + "' is not supported for the protobuf format, value type: " + value.getClass().getSimpleName());
+
+            if (type == null || type == valueType)
+                type = valueType;
+            else if ((type == Long.class || type == Double.class) && (valueType == Long.class || valueType == Double.class))
+                // integers and decimals are mixed, so we need the decimal array for all of them
+                type = Double.class;
+            else
+                throw new IllegalArgumentException("The path detail '" + name + "' has values of different types: " + type.getSimpleName() + " and " + valueType.getSimpleName());
+        }
+        return type;
+    }
+
+    private static String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot write path detail value " + value, e);
+        }
+    }
+
+    private static Map<?, ?> fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, Map.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read path detail value " + json, e);
+        }
+    }
+
+    /**
+     * Reads a RouteResponse message into a GHResponse, like GraphHopperWeb does for the JSON response.
+     *
+     * @param turnDescription if false the street name instead of the text of the instructions is used
+     */
+    public static GHResponse read(byte[] bytes, boolean turnDescription) {
+        GHResponse rsp = new GHResponse();
+        ProtobufReader reader = new ProtobufReader(bytes);
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1 -> rsp.add(readPath(reader.readMessage(), turnDescription));
+                case 3 -> {
+                    ProtobufReader entry = reader.readMessage();
+                    String key = null, value = null;
+                    while (entry.next()) {
+                        if (entry.getField() == 1) key = entry.readString();
+                        else if (entry.getField() == 2) value = entry.readString();
+                        else entry.skip();
+                    }
+                    if (key != null && value != null)
+                        rsp.getHints().putObject(key, Helper.toObject(value));
+                }
+                default -> reader.skip();
+            }
+        }
+        return rsp;
+    }
+
+    private static ResponsePath readPath(ProtobufReader reader, boolean turnDescription) {
+        ResponsePath path = new ResponsePath();
+        List<String> description = new ArrayList<>();
+        List<ProtobufReader> instructions = new ArrayList<>();
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1 -> path.setDistance(reader.readDouble());
+                case 2 -> path.setRouteWeight(reader.readDouble());
+                case 3 -> path.setTime(reader.readInt64());
+                case 4 -> path.setNumChanges(reader.readInt32());
+                case 5 -> description.add(reader.readString());
+                case 7 -> path.setPoints(readPoints(reader.readMessage()));
+                case 8 -> path.setWaypoints(readPoints(reader.readMessage()));
+                // the instructions refer to the points, which are not necessarily read yet
+                case 9 -> instructions.add(reader.readMessage());
+                case 10 -> readPathDetail(reader.readMessage(), details);
+                case 11 -> path.setAscend(reader.readDouble());
+                case 12 -> path.setDescend(reader.readDouble());
+                default -> reader.skip();
+            }
+        }
+        if (!description.isEmpty())
+            path.setDescription(description);
+        if (!instructions.isEmpty()) {
+            InstructionList il = new InstructionList(null);
+            int viaCount = 1;
+            for (ProtobufReader instruction : instructions) {
+                Instruction instr = readInstruction(instruction, path.getPoints(), viaCount, turnDescription);
+                if (instr.getSign() == Instruction.REACHED_VIA)
+                    viaCount++;
+                il.add(instr);
+            }
+            path.setInstructions(il);
+        }
+        if (!details.isEmpty())
+            path.addPathDetails(details);
+        List<Integer> pointsOrder = new ArrayList<>(path.getWaypoints().size());
+        for (int i = 0; i < path.getWaypoints().size(); i++)
+            pointsOrder.add(i);
+        path.setPointsOrder(pointsOrder);
+        return path;
+    }
+
+    private static PointList readPoints(ProtobufReader reader) {
+        double multiplier = 1e5;
+        ProtobufReader.LongValues lats = new ProtobufReader.LongValues();
+        ProtobufReader.LongValues lons = new ProtobufReader.LongValues();
+        ProtobufReader.LongValues eles = new ProtobufReader.LongValues();
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1 -> multiplier = reader.readDouble();
+                case 2 -> reader.readRepeatedSInt64(lats);
+                case 3 -> reader.readRepeatedSInt64(lons);
+                case 4 -> reader.readRepeatedSInt64(eles);
+                default -> reader.skip();
+            }
+        }
+        if (lats.size() != lons.size() || eles.size() > 0 && eles.size() != lats.size())
+            throw new IllegalStateException("The number of coordinates does not match: " + lats.size() + ", " + lons.size() + ", " + eles.size());
+        boolean is3D = eles.size() > 0;
+        PointList points = new PointList(lats.size(), is3D);
+        long lat = 0, lon = 0, ele = 0;
+        for (int i = 0; i < lats.size(); i++) {
+            lat += lats.get(i);
+            lon += lons.get(i);
+            if (is3D) {
+                ele += eles.get(i);
+                points.add(lat / multiplier, lon / multiplier, ele / 100.0);
+            } else {
+                points.add(lat / multiplier, lon / multiplier);
+            }
+        }
+        return points;
+    }
+
+    private static Instruction readInstruction(ProtobufReader reader, PointList points, int viaCount, boolean turnDescription) {
+        String text = "", streetName = "";
+        long time = 0;
+        double distance = 0;
+        int sign = 0, from = 0, to = 0;
+        Integer exitNumber = null;
+        boolean exited = false;
+        Double turnAngle = null, heading = null;
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1 -> text = reader.readString();
+                case 2 -> streetName = reader.readString();
+                case 3 -> time = reader.readInt64();
+                case 4 -> distance = reader.readDouble();
+                case 5 -> sign = (int) reader.readSInt64();
+                case 6 -> from = reader.readInt32();
+                case 7 -> to = reader.readInt32();
+                case 8 -> exitNumber = (int) reader.readSInt64();
+                case 9 -> exited = reader.readBool();
+                case 10 -> turnAngle = reader.readDouble();
+                case 11 -> heading = reader.readDouble();
+                default -> reader.skip();
+            }
+        }
+        PointList instPL = new PointList(to - from, points.is3D());
+        for (int j = from; j <= to; j++)
+            instPL.add(points, j);
+
+        String name = turnDescription ? text : streetName;
+        Instruction instr;
+        if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT) {
+            RoundaboutInstruction ri = new RoundaboutInstruction(sign, name, instPL);
+            if (exitNumber != null)
+                ri.setExitNumber(exitNumber);
+            if (exited)
+                ri.setExited();
+            if (turnAngle != null) {
+                ri.setDirOfRotation(turnAngle);
+                ri.setRadian((turnAngle < 0 ? -Math.PI : Math.PI) - turnAngle);
+            }
+            instr = ri;
+        } else if (sign == Instruction.REACHED_VIA) {
+            ViaInstruction tmpInstr = new ViaInstruction(name, instPL);
+            tmpInstr.setViaCount(viaCount);
+            instr = tmpInstr;
+        } else if (sign == Instruction.FINISH) {
+            instr = new FinishInstruction(name, instPL, 0);
+        } else {
+            instr = new Instruction(sign, name, instPL);
+            if (sign == Instruction.CONTINUE_ON_STREET && heading != null)
+                instr.setExtraInfo("heading", heading);
+        }
+        // see ResponsePathDeserializerHelper: the text is already translated by the server
+        if (turnDescription)
+            instr.setUseRawName();
+        instr.setDistance(distance).setTime(time);
+        return instr;
+    }
+
+    private static void readPathDetail(ProtobufReader reader, Map<String, List<PathDetail>> details) {
+        String name = null;
+        ProtobufReader.LongValues firsts = new ProtobufReader.LongValues();
+        ProtobufReader.LongValues lasts = new ProtobufReader.LongValues();
+        ProtobufReader.DoubleValues doubleValues = new ProtobufReader.DoubleValues();
+        ProtobufReader.LongValues longValues = new ProtobufReader.LongValues();
+        ProtobufReader.LongValues booleanValues = new ProtobufReader.LongValues();
+        List<String> stringValues = new ArrayList<>();
+        List<String> jsonValues = new ArrayList<>();
+        Set<Integer> nullIndices = new HashSet<>();
+        ProtobufReader.LongValues tmpNullIndices = new ProtobufReader.LongValues();
+        while (reader.next()) {
+            switch (reader.getField()) {
+                case 1 -> name = reader.readString();
+                case 2 -> reader.readRepeatedInt64(firsts);
+                case 3 -> reader.readRepeatedInt64(lasts);
+                case 4 -> reader.readRepeatedDouble(doubleValues);
+                case 5 -> reader.readRepeatedSInt64(longValues);
+                case 6 -> reader.readRepeatedInt64(booleanValues);
+                case 7 -> stringValues.add(reader.readString());
+                case 9 -> jsonValues.add(reader.readString());
+                case 8 -> reader.readRepeatedInt64(tmpNullIndices);
+                default -> reader.skip();
+            }
+        }
+        if (name == null)
+            throw new IllegalStateException("Path detail without name");
+        if (firsts.size() != lasts.size())
+            throw new IllegalStateException("The number of intervals does not match for path detail " + name);
+        for (int i = 0; i < tmpNullIndices.size(); i++)
+            nullIndices.add((int) tmpNullIndices.get(i));
+        List<PathDetail> list = new ArrayList<>(firsts.size());
+        for (int i = 0; i < firsts.size(); i++) {
+            Object value;
+            if (nullIndices.contains(i))
+                value = null;
+            else if (doubleValues.size() > 0)
+                value = doubleValues.get(i);
+            else if (longValues.size() > 0)
+                value = longValues.get(i);
+            else if (booleanValues.size() > 0)
+                value = booleanValues.get(i) != 0;
+            else if (!stringValues.isEmpty())
+                value = stringValues.get(i);
+            else if (!jsonValues.isEmpty())
+                value = fromJson(jsonValues.get(i));
+            else
+                throw new IllegalStateException("No value for interval " + i + " of path detail " + name);
+            PathDetail pd = new PathDetail(value);
+            pd.setFirst((int) firsts.get(i));
+            pd.setLast((int) lasts.get(i));
+            list.add(pd);
+        }
+        details.put(name, list);
+    }
+}
@@ -0,0 +1,108 @@
+package com.graphhopper.jackson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GHResponseJsonTest {
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    @Test
+    public void sameAsJsonObject() throws IOException {
+        GHResponse rsp = new GHResponse();
+        rsp.add(createPath(false));
+        rsp.add(createPath(true));
+        rsp.getHints().putObject("visited_nodes.sum", 42);
+        ResponsePathSerializer.Info info = new ResponsePathSerializer.Info(List.of("GraphHopper", "OpenStreetMap contributors"), 5, "2024-01-01");
+        for (boolean instructions : new boolean[]{true, false})
+            for (boolean calcPoints : new boolean[]{true, false})
+                for (boolean elevation : new boolean[]{true, false})
+                    for (boolean pointsEncoded : new boolean[]{true, false}) {
+                        ObjectNode expected = ResponsePathSerializer.jsonObject(rsp, info, instructions, calcPoints, elevation, pointsEncoded, 1e5);
+                        JsonNode actual = objectMapper.readTree(objectMapper.writeValueAsString(
+                                new GHResponseJson(rsp, info, instructions, calcPoints, elevation, pointsEncoded, 1e5)));
+                        // compare the serialized tree, because the tree contains the POJOs
+                        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(expected)), actual);
+                    }
+    }
+
+    @Test
+    public void additionalFields() throws IOException {
+        GHResponse rsp = new GHResponse();
+        rsp.add(createPath(false));
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(
+                new GHResponseJson(rsp, null, true, true, false, true, 1e5).putPOJO("pair", 3).putPOJO("map_matching", Map.of("distance", 12.5))));
+        assertEquals(3, json.get("pair").asInt());
+        assertEquals(12.5, json.get("map_matching").get("distance").asDouble());
+        // the info is always written, like it was for the JSON tree
+        assertTrue(json.has("info"));
+        assertTrue(json.get("info").isNull());
+        assertTrue(ResponsePathSerializer.jsonObject(rsp, null, true, true, false, true, 1e5).get("info").isNull());
+        assertEquals(1, json.get("paths").size());
+    }
+
+    private static ResponsePath createPath(boolean singlePoint) {
+        PointList points = singlePoint ? Helper.createPointList3D(52.514, 13.349, 34.123) :
+                Helper.createPointList3D(52.514, 13.349, 34.123, 52.5135, 13.35, 35.5, 52.514, 13.351, 36.25);
+        ResponsePath path = new ResponsePath();
+        path.setPoints(points);
+        path.setWaypoints(singlePoint ? points : Helper.createPointList3D(52.514, 13.349, 34.123, 52.514, 13.351, 36.25));
+        path.setDistance(123.4567).setTime(12345).setRouteWeight(17.1234567).setAscend(2.5).setDescend(0.5);
+        path.setDescription(List.of("description"));
+        path.setFare(singlePoint ? new BigDecimal("2.50") : null);
+        InstructionList instructions = new InstructionList(TR);
+        Instruction instruction = new Instruction(Instruction.CONTINUE_ON_STREET, "main street", points);
+        instruction.setDistance(123.4567).setTime(12345);
+        instruction.setExtraInfo("heading", 12.34);
+        instructions.add(instruction);
+        instructions.add(new FinishInstruction("main street", points.getLat(points.size() - 1), points.getLon(points.size() - 1), points.getEle(points.size() - 1)));
+        path.setInstructions(instructions);
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        details.put("max_speed", List.of(createDetail(50.0, 0, 1), createDetail(null, 1, 2)));
+        details.put("street_name", List.of(createDetail("main street", 0, 2)));
+        path.addPathDetails(details);
+        return path;
+    }
+
+    private static final Translation TR = new Translation() {
+        @Override
+        public String tr(String key, Object... params) {
+            return key;
+        }
+
+        @Override
+        public Map<String, String> asMap() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Locale getLocale() {
+            return Locale.US;
+        }
+
+        @Override
+        public String getLanguage() {
+            return "en";
+        }
+    };
+
+    private static PathDetail createDetail(Object value, int first, int last) {
+        PathDetail detail = new PathDetail(value);
+        detail.setFirst(first);
+        detail.setLast(last);
+        return detail;
+    }
+}
@@ -0,0 +1,199 @@
+package com.graphhopper.protobuf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.jackson.GHResponseJson;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.jackson.ResponsePathDeserializerHelper;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponsePathProtobufTest {
+
+    @Test
+    public void writeAndReadValues() {
+        ProtobufWriter writer = new ProtobufWriter(1);
+        writer.writeInt64(1, 300).writeSInt64(2, -123456789012L).writeBool(3, true).writeDouble(4, -1.5)
+                .writeString(5, "Straße").writePackedSInt64(6, new long[]{-1, 0, Long.MAX_VALUE, Long.MIN_VALUE}, 4)
+                .writeMessage(7, new ProtobufWriter().writeInt64(1, -1)).writeInt64(8, 42);
+        ProtobufReader reader = new ProtobufReader(writer.toByteArray());
+        assertTrue(reader.next());
+        assertEquals(1, reader.getField());
+        assertEquals(300, reader.readInt64());
+        assertTrue(reader.next());
+        assertEquals(-123456789012L, reader.readSInt64());
+        assertTrue(reader.next());
+        assertTrue(reader.readBool());
+        assertTrue(reader.next());
+        assertEquals(-1.5, reader.readDouble());
+        assertTrue(reader.next());
+        assertEquals("Straße", reader.readString());
+        assertTrue(reader.next());
+        ProtobufReader.LongValues values = new ProtobufReader.LongValues();
+        reader.readRepeatedSInt64(values);
+        assertEquals(4, values.size());
+        assertEquals(-1, values.get(0));
+        assertEquals(Long.MAX_VALUE, values.get(2));
+        assertEquals(Long.MIN_VALUE, values.get(3));
+        // unknown fields can be skipped
+        assertTrue(reader.next());
+        assertEquals(7, reader.getField());
+        reader.skip();
+        assertTrue(reader.next());
+        assertEquals(42, reader.readInt64());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void skipFixedValues() {
+        // field 1 with wire type fixed64, field 2 with wire type fixed32 and then field 3 with a varint
+        byte[] bytes = {(1 << 3) | 1, 1, 2, 3, 4, 5, 6, 7, 8, (2 << 3) | 5, 1, 2, 3, 4, 3 << 3, 42};
+        ProtobufReader reader = new ProtobufReader(bytes);
+        assertTrue(reader.next());
+        reader.skip();
+        assertTrue(reader.next());
+        reader.skip();
+        assertTrue(reader.next());
+        assertEquals(3, reader.getField());
+        assertEquals(42, reader.readInt64());
+        assertFalse(reader.next());
+
+        // truncated values must not be skipped beyond the end of the message
+        ProtobufReader truncated64 = new ProtobufReader(Arrays.copyOf(bytes, 5));
+        assertTrue(truncated64.next());
+        IllegalStateException e = assertThrows(IllegalStateException.class, truncated64::skip);
+        assertEquals("Truncated fixed64", e.getMessage());
+        ProtobufReader truncated32 = new ProtobufReader(Arrays.copyOfRange(bytes, 9, 12));
+        assertTrue(truncated32.next());
+        e = assertThrows(IllegalStateException.class, truncated32::skip);
+        assertEquals("Truncated fixed32", e.getMessage());
+    }
+
+    @Test
+    public void sameAsJson() throws IOException {
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        GHResponse rsp = new GHResponse();
+        rsp.add(createPath());
+        rsp.getHints().putObject("visited_nodes.sum", 42);
+        for (boolean elevation : new boolean[]{true, false}) {
+            byte[] bytes = ResponsePathProtobuf.write(rsp, null, true, true, elevation, 1e6).toByteArray();
+            GHResponse fromProtobuf = ResponsePathProtobuf.read(bytes, true);
+
+            JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(new GHResponseJson(rsp, null, true, true, elevation, true, 1e6)));
+            ResponsePath expected = ResponsePathDeserializerHelper.createResponsePath(objectMapper, json.get("paths").get(0), elevation, true);
+            ResponsePath actual = fromProtobuf.getBest();
+            assertEquals(1, fromProtobuf.getAll().size());
+            assertEquals(42, fromProtobuf.getHints().getInt("visited_nodes.sum", 0));
+            assertEquals(expected.getDistance(), actual.getDistance());
+            assertEquals(expected.getRouteWeight(), actual.getRouteWeight());
+            assertEquals(expected.getTime(), actual.getTime());
+            assertEquals(expected.getAscend(), actual.getAscend());
+            assertEquals(expected.getDescend(), actual.getDescend());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getPoints(), actual.getPoints());
+            assertEquals(expected.getWaypoints(), actual.getWaypoints());
+            assertEquals(expected.getPointsOrder(), actual.getPointsOrder());
+            assertEquals(expected.getInstructions().size(), actual.getInstructions().size());
+            for (int i = 0; i < expected.getInstructions().size(); i++) {
+                Instruction expectedInstruction = expected.getInstructions().get(i);
+                Instruction actualInstruction = actual.getInstructions().get(i);
+                assertEquals(expectedInstruction.getClass(), actualInstruction.getClass());
+                assertEquals(expectedInstruction.getSign(), actualInstruction.getSign());
+                assertEquals(expectedInstruction.getName(), actualInstruction.getName());
+                assertEquals(expectedInstruction.getDistance(), actualInstruction.getDistance());
+                assertEquals(expectedInstruction.getTime(), actualInstruction.getTime());
+                assertEquals(expectedInstruction.getPoints(), actualInstruction.getPoints());
+                assertEquals(expectedInstruction.getExtraInfoJSON(), actualInstruction.getExtraInfoJSON());
+            }
+            assertEquals(expected.getPathDetails().keySet(), actual.getPathDetails().keySet());
+            for (String key : expected.getPathDetails().keySet()) {
+                List<PathDetail> expectedDetails = expected.getPathDetails().get(key);
+                List<PathDetail> actualDetails = actual.getPathDetails().get(key);
+                assertEquals(expectedDetails.size(), actualDetails.size());
+                for (int i = 0; i < expectedDetails.size(); i++) {
+                    assertEquals(expectedDetails.get(i).getFirst(), actualDetails.get(i).getFirst());
+                    assertEquals(expectedDetails.get(i).getLast(), actualDetails.get(i).getLast());
+                    assertEquals(expectedDetails.get(i).getValue(), actualDetails.get(i).getValue(), key);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unsupportedPathDetail() {
+        GHResponse rsp = new GHResponse();
+        ResponsePath path = new ResponsePath();
+        path.setPoints(Helper.createPointList(52.514, 13.349, 52.5135, 13.35, 52.514, 13.351));
+        path.addPathDetails(Map.of("mixed", List.of(createDetail("a", 0, 1), createDetail(Map.of("b", 1), 1, 2))));
+        rsp.add(path);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ResponsePathProtobuf.write(rsp, null, false, true, false, 1e5));
+        assertTrue(e.getMessage().contains("mixed"), e.getMessage());
+    }
+
+    private static ResponsePath createPath() {
+        PointList points = Helper.createPointList3D(52.514, 13.349, 34.12, 52.5135, 13.35, 35.5, 52.514, 13.351, 36.25, 52.515, 13.352, 36);
+        ResponsePath path = new ResponsePath();
+        path.setPoints(points);
+        path.setWaypoints(Helper.createPointList3D(52.514, 13.349, 34.12, 52.515, 13.352, 36));
+        path.setDistance(123.4567).setTime(12345).setRouteWeight(17.1234567).setAscend(2.5).setDescend(0.5);
+        path.setDescription(List.of("description"));
+        InstructionList instructions = new InstructionList(TR);
+        Instruction instruction = new Instruction(Instruction.CONTINUE_ON_STREET, "main street", Helper.createPointList3D(52.514, 13.349, 34.12));
+        instruction.setDistance(100.5).setTime(10000);
+        instruction.setExtraInfo("heading", 12.34);
+        instructions.add(instruction);
+        RoundaboutInstruction roundabout = new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "side street",
+                Helper.createPointList3D(52.5135, 13.35, 35.5, 52.514, 13.351, 36.25))
+                .setDirOfRotation(-0.1).setRadian(-Math.PI + 1).setExitNumber(2).setExited();
+        roundabout.setDistance(22.9567).setTime(2345);
+        instructions.add(roundabout);
+        instructions.add(new FinishInstruction("side street", 52.515, 13.352, 36));
+        path.setInstructions(instructions);
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        details.put("max_speed", List.of(createDetail(50.0, 0, 1), createDetail(null, 1, 3)));
+        details.put("edge_id", List.of(createDetail(3, 0, 2), createDetail(17L, 2, 3)));
+        details.put("street_name", List.of(createDetail("main street", 0, 1), createDetail("side street", 1, 3)));
+        details.put("toll", List.of(createDetail(false, 0, 3)));
+        details.put("intersection", List.of(createDetail(Map.of("bearings", List.of(10, 190), "entries", List.of(true, false), "out", 1), 0, 2),
+                createDetail(Map.of("bearings", List.of(20, 200, 290), "in", 0), 2, 3)));
+        path.addPathDetails(details);
+        return path;
+    }
+
+    private static PathDetail createDetail(Object value, int first, int last) {
+        PathDetail detail = new PathDetail(value);
+        detail.setFirst(first);
+        detail.setLast(last);
+        return detail;
+    }
+
+    private static final Translation TR = new Translation() {
+        @Override
+        public String tr(String key, Object... params) {
+            return key;
+        }
+
+        @Override
+        public Map<String, String> asMap() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Locale getLocale() {
+            return Locale.US;
+        }
+
+        @Override
+        public String getLanguage() {
+            return "en";
+        }
+    };
+}
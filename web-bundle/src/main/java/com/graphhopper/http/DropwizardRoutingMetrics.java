@@ -0,0 +1,45 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.codahale.metrics.MetricRegistry;
+import com.graphhopper.routing.RoutingMetrics;
+
+/**
+ * Publishes the routing metrics as histograms of the Dropwizard metric registry, e.g. the snapping time of the
+ * profile car as 'routing.car.snapping' in microseconds and the visited nodes of the bidirectional Dijkstra as
+ * 'routing.car.visited_nodes.dijkstrabi'. The '|' in algorithm names like 'dijkstrabi|ch' is replaced by '_'. The
+ * histograms are available via the admin port like all other metrics.
+ */
+public class DropwizardRoutingMetrics implements RoutingMetrics {
+    private final MetricRegistry registry;
+
+    public DropwizardRoutingMetrics(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordPhase(String profile, Phase phase, long nanos) {
+        registry.histogram(MetricRegistry.name("routing", profile, phase.getName())).update(nanos / 1000);
+    }
+
+    @Override
+    public void recordVisitedNodes(String profile, String algorithm, long visitedNodes) {
+        registry.histogram(MetricRegistry.name("routing", profile, "visited_nodes", algorithm.replace('|', '_'))).update(visitedNodes);
+    }
+}
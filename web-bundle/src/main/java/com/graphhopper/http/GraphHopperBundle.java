@@ -19,6 +19,7 @@
 package com.graphhopper.http;
 
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.graphhopper.GraphHopper;
@@ -45,6 +46,8 @@ import org.apache.hc.client5.http.classic.HttpClient;
 import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 
+import java.util.concurrent.ExecutorService;
+
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
 
     static class TranslationMapFactory implements Factory<TranslationMap> {
@@ -275,13 +278,22 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         final GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration.getGraphHopperConfiguration());
         environment.lifecycle().manage(graphHopperManaged);
         final GraphHopper graphHopper = graphHopperManaged.getGraphHopper();
+        graphHopper.setRoutingMetrics(new DropwizardRoutingMetrics(environment.metrics()));
+        final MVTTileCache mvtTileCache = new MVTTileCache(graphHopper, configuration.getGraphHopperConfiguration());
+        environment.lifecycle().manage(mvtTileCache);
+        int isochroneBulkThreads = configuration.getGraphHopperConfiguration().getInt("isochrone.bulk.threads", Runtime.getRuntime().availableProcessors());
+        final ExecutorService isochroneBulkExecutor = environment.lifecycle().executorService("isochrone-bulk-%d")
+                .minThreads(isochroneBulkThreads).maxThreads(isochroneBulkThreads).build();
         environment.jersey().register(new AbstractBinder() {
             @Override
             protected void configure() {
                 bind(configuration.getGraphHopperConfiguration()).to(GraphHopperConfig.class);
                 bind(graphHopper).to(GraphHopper.class);
+                bind(environment.getObjectMapper()).to(ObjectMapper.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
+                bind(isochroneBulkExecutor).to(ExecutorService.class).named("isochroneBulkExecutor");
+                bind(mvtTileCache).to(MVTTileCache.class);
                 bindFactory(MapMatchingRouterFactoryFactory.class).to(MapMatchingResource.MapMatchingRouterFactory.class);
                 bindFactory(PathDetailsBuilderFactoryFactory.class).to(PathDetailsBuilderFactory.class);
                 bindFactory(ProfileResolverFactory.class).to(ProfileResolver.class);
@@ -298,7 +310,10 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(MVTResource.class);
         environment.jersey().register(NearestResource.class);
         environment.jersey().register(RouteResource.class);
+        environment.jersey().register(RouteBulkResource.class);
+        environment.jersey().register(MatrixResource.class);
         environment.jersey().register(IsochroneResource.class);
+        environment.jersey().register(IsochroneBulkResource.class);
         environment.jersey().register(MapMatchingResource.class);
 
         if (configuration.getGraphHopperConfiguration().has("gtfs.file")) {
@@ -318,6 +333,7 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
                     bind(PtRouterImpl.class).to(PtRouter.class).named("classic");
                     bind(PtRouterFreeWalkImpl.class).to(PtRouter.class).named("free_walk");
                     bind(PtRouterTripBasedImpl.class).to(PtRouter.class).named("trip_based");
+                    bind(PtRouterRaptorImpl.class).to(PtRouter.class).named("raptor");
                 }
             });
             environment.jersey().register(PtRouteResource.class);
@@ -5,6 +5,9 @@ import com.graphhopper.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
@@ -13,11 +16,16 @@ import jakarta.ws.rs.ext.Provider;
 public class IllegalArgumentExceptionMapper implements ExceptionMapper<IllegalArgumentException> {
     private static final Logger logger = LoggerFactory.getLogger(IllegalArgumentExceptionMapper.class);
 
+    @Context
+    private HttpHeaders httpHeaders;
+
     @Override
     public Response toResponse(IllegalArgumentException e) {
         logger.info("bad request: " + (Helper.isEmpty(e.getMessage()) ? "unknown reason" : e.getMessage()), e);
         return Response.status(Response.Status.BAD_REQUEST)
                 .entity(new MultiException(e))
+                // there is no binary error format, so errors are returned as JSON even if protobuf was requested
+                .type(ProtobufNegotiation.acceptsProtobuf(httpHeaders) ? MediaType.APPLICATION_JSON_TYPE : null)
                 .build();
     }
 }
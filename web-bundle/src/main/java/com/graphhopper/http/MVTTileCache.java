@@ -0,0 +1,433 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.routing.ev.*;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.search.KVStorage;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import io.dropwizard.lifecycle.Managed;
+import no.ecc.vectortile.VectorTileEncoder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.util.AffineTransformation;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the vector tiles of the road network and keeps them in a cache of limited size, which is possible because
+ * the graph does not change after it was loaded. Tiles up to zoom 9 contain only the most important road classes.
+ * For these tiles the roads are merged into lines between their junctions once on startup, simplified for every zoom
+ * and assigned to the tiles they overlap, so creating such a tile does not need to look at any other roads.
+ * Optionally all tiles up to mvt.prerender.max_zoom are rendered in the background on startup.
+ */
+public class MVTTileCache implements Managed {
+
+    private static final Logger logger = LoggerFactory.getLogger(MVTTileCache.class);
+    static final int MAX_GENERALIZED_ZOOM = 9;
+    static final int MAX_ZOOM = 22;
+    private final GraphHopper graphHopper;
+    private final Cache<String, byte[]> cache;
+    private final int prerenderMaxZoom;
+    private ExecutorService executor;
+    private Future<?> prerendering;
+    // the generalized lines of every zoom up to MAX_GENERALIZED_ZOOM
+    private GeneralizedZoom[] generalizedZooms;
+
+    public MVTTileCache(GraphHopper graphHopper, GraphHopperConfig config) {
+        this.graphHopper = graphHopper;
+        long maxBytes = config.getLong("mvt.cache.max_size_mb", 50) * 1024 * 1024;
+        this.cache = maxBytes <= 0 ? null : CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .<String, byte[]>weigher((key, bytes) -> bytes.length)
+                .build();
+        this.prerenderMaxZoom = config.getInt("mvt.prerender.max_zoom", -1);
+        if (prerenderMaxZoom > 14)
+            throw new IllegalArgumentException("mvt.prerender.max_zoom must not be larger than 14 but was " + prerenderMaxZoom);
+    }
+
+    @Override
+    public void start() {
+        EncodingManager encodingManager = graphHopper.getEncodingManager();
+        if (!encodingManager.hasEncodedValue(RoadClass.KEY))
+            return;
+        long start = System.currentTimeMillis();
+        List<GeneralizedLine> lines = createGeneralizedLines(encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class));
+        generalizedZooms = new GeneralizedZoom[MAX_GENERALIZED_ZOOM + 1];
+        for (int z = 0; z <= MAX_GENERALIZED_ZOOM; z++)
+            generalizedZooms[z] = new GeneralizedZoom(z, lines);
+        logger.info("created " + lines.size() + " generalized lines for the vector tiles up to zoom " + MAX_GENERALIZED_ZOOM
+                + ", took: " + (System.currentTimeMillis() - start) + "ms");
+
+        if (prerenderMaxZoom >= 0 && cache != null) {
+            executor = Executors.newSingleThreadExecutor();
+            prerendering = executor.submit(this::prerender);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    /**
+     * Merges the edges of the generalized road classes into lines. A line continues at a node as long as there is
+     * exactly one other such edge, and it has the same road class.
+     */
+    private List<GeneralizedLine> createGeneralizedLines(EnumEncodedValue<RoadClass> roadClassEnc) {
+        BaseGraph graph = graphHopper.getBaseGraph();
+        BitSet generalizedEdges = new BitSet(graph.getEdges());
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+            if (getGeneralizedMinZoom(iter.get(roadClassEnc)) <= MAX_GENERALIZED_ZOOM)
+                generalizedEdges.set(iter.getEdge());
+
+        List<GeneralizedLine> lines = new ArrayList<>();
+        BitSet visited = new BitSet(graph.getEdges());
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int edge = generalizedEdges.nextSetBit(0); edge >= 0; edge = generalizedEdges.nextSetBit(edge + 1)) {
+            if (visited.get(edge))
+                continue;
+            visited.set(edge);
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            RoadClass roadClass = edgeState.get(roadClassEnc);
+            // the points before the edge are collected in reverse order starting at the base node
+            PointList points = new PointList(10, false);
+            points.add(graph.getNodeAccess().getLat(edgeState.getBaseNode()), graph.getNodeAccess().getLon(edgeState.getBaseNode()));
+            continueLine(points, edgeState.getBaseNode(), edge, roadClass, roadClassEnc, explorer, generalizedEdges, visited);
+            points.reverse();
+            points.add(edgeState.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ));
+            continueLine(points, edgeState.getAdjNode(), edge, roadClass, roadClassEnc, explorer, generalizedEdges, visited);
+            lines.add(new GeneralizedLine(edge, roadClass, getGeneralizedMinZoom(roadClass), points.toLineString(false)));
+        }
+        return lines;
+    }
+
+    private static void continueLine(PointList points, int node, int prevEdge, RoadClass roadClass, EnumEncodedValue<RoadClass> roadClassEnc,
+                                     EdgeExplorer explorer, BitSet generalizedEdges, BitSet visited) {
+        while (true) {
+            EdgeIterator iter = explorer.setBaseNode(node);
+            EdgeIteratorState next = null;
+            int count = 0;
+            while (iter.next()) {
+                if (iter.getEdge() == prevEdge || !generalizedEdges.get(iter.getEdge()))
+                    continue;
+                count++;
+                next = iter.detach(false);
+            }
+            if (count != 1 || visited.get(next.getEdge()) || next.get(roadClassEnc) != roadClass)
+                return;
+            visited.set(next.getEdge());
+            points.add(next.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ));
+            node = next.getAdjNode();
+            prevEdge = next.getEdge();
+        }
+    }
+
+    private static int getGeneralizedMinZoom(RoadClass roadClass) {
+        if (roadClass == RoadClass.MOTORWAY)
+            return 5;
+        if (roadClass == RoadClass.TRUNK)
+            return 6;
+        if (roadClass == RoadClass.PRIMARY)
+            return 8;
+        return Integer.MAX_VALUE;
+    }
+
+    private void prerender() {
+        BBox bounds = graphHopper.getBaseGraph().getBounds();
+        int tiles = 0;
+        long start = System.currentTimeMillis();
+        for (int z = 0; z <= prerenderMaxZoom; z++) {
+            if (z <= MAX_GENERALIZED_ZOOM && generalizedZooms != null) {
+                // all other tiles of these zooms are empty
+                for (IntCursor tile : generalizedZooms[z].linesByTile.keys()) {
+                    if (Thread.currentThread().isInterrupted())
+                        return;
+                    getTile(z, tile.value >>> z, tile.value & ((1 << z) - 1), false);
+                    tiles++;
+                }
+                continue;
+            }
+            int minX = lon2tile(bounds.minLon, z), maxX = lon2tile(bounds.maxLon, z);
+            int minY = lat2tile(bounds.maxLat, z), maxY = lat2tile(bounds.minLat, z);
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    if (Thread.currentThread().isInterrupted())
+                        return;
+                    getTile(z, x, y, false);
+                    tiles++;
+                }
+            }
+        }
+        logger.info("pre-rendered " + tiles + " vector tiles up to zoom " + prerenderMaxZoom + ", took: " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Waits until the tiles that are pre-rendered on startup are in the cache.
+     */
+    void awaitPrerendering(long timeoutMillis) throws InterruptedException, ExecutionException, TimeoutException {
+        if (prerendering != null)
+            prerendering.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    boolean isCached(int z, int x, int y) {
+        return cache != null && cache.getIfPresent(getCacheKey(z, x, y, false)) != null;
+    }
+
+    private static String getCacheKey(int z, int x, int y, boolean renderAll) {
+        return z + "/" + x + "/" + y + (renderAll ? "/all" : "");
+    }
+
+    public byte[] getTile(int z, int x, int y, boolean renderAll) {
+        // we check this before the cache lookup so invalid tiles can neither be cached nor share the key of a valid tile
+        if (z < 0 || z > MAX_ZOOM)
+            throw new IllegalArgumentException("The zoom must be between 0 and " + MAX_ZOOM + " but was " + z);
+        int n = 1 << z;
+        if (x < 0 || x >= n || y < 0 || y >= n)
+            throw new IllegalArgumentException("The tile " + z + "/" + x + "/" + y + " does not exist, x and y must be between 0 and " + (n - 1) + " at zoom " + z);
+        if (cache == null)
+            return createTile(z, x, y, renderAll);
+        try {
+            return cache.get(getCacheKey(z, x, y, renderAll), () -> createTile(z, x, y, renderAll));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private byte[] createTile(int zInfo, int xInfo, int yInfo, boolean renderAll) {
+        EncodingManager encodingManager = graphHopper.getEncodingManager();
+        if (!encodingManager.hasEncodedValue(RoadClass.KEY))
+            throw new IllegalStateException("You need to configure GraphHopper to store road_class, e.g. graph.encoded_values: road_class,max_speed,... ");
+
+        Coordinate nw = num2deg(xInfo, yInfo, zInfo);
+        Coordinate se = num2deg(xInfo + 1, yInfo + 1, zInfo);
+        final NodeAccess na = graphHopper.getBaseGraph().getNodeAccess();
+        BBox bbox = new BBox(nw.x, se.x, se.y, nw.y);
+        if (!bbox.isValid())
+            throw new IllegalStateException("Invalid bbox " + bbox);
+
+        final GeometryFactory geometryFactory = new GeometryFactory();
+        final EnumEncodedValue<RoadClass> roadClassEnc = encodingManager.getEnumEncodedValue(RoadClass.KEY, RoadClass.class);
+        final AtomicInteger edgeCounter = new AtomicInteger(0);
+
+        // 256x256 pixels per MVT. here we transform from the global coordinate system to the local one of the tile.
+        AffineTransformation affineTransformation = new AffineTransformation();
+        affineTransformation.translate(-nw.x, -se.y);
+        affineTransformation.scale(
+                256.0 / (se.x - nw.x),
+                -256.0 / (nw.y - se.y)
+        );
+        affineTransformation.translate(0, 256);
+
+        // if performance of the vector tile encoding becomes an issue it might be worth to get rid of the simplification
+        // and clipping in the no.ecc code? https://github.com/graphhopper/graphhopper/commit/0f96c2deddb24efa97109e35e0c05f1c91221f59#r90830001
+        VectorTileEncoder vectorTileEncoder = new VectorTileEncoder();
+        if (zInfo <= MAX_GENERALIZED_ZOOM) {
+            if (generalizedZooms == null)
+                return vectorTileEncoder.encode();
+            // only the simplified lines of the most important roads and only a few attributes
+            GeneralizedZoom zoom = generalizedZooms[zInfo];
+            IntArrayList lineIndices = zoom.linesByTile.get(zoom.getTileKey(xInfo, yInfo));
+            if (lineIndices != null) {
+                for (IntCursor c : lineIndices) {
+                    GeneralizedLine line = zoom.lines.get(c.value);
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    map.put("edge_id", line.firstEdge);
+                    map.put(RoadClass.KEY, line.roadClass.toString());
+                    vectorTileEncoder.addFeature("roads", map, affineTransformation.transform(line.geometry), line.firstEdge);
+                }
+            }
+            logger.debug("generalized tile " + zInfo + "/" + xInfo + "/" + yInfo + ", lines:" + (lineIndices == null ? 0 : lineIndices.size()));
+            return vectorTileEncoder.encode();
+        }
+
+        LocationIndexTree locationIndex = (LocationIndexTree) graphHopper.getLocationIndex();
+        locationIndex.query(bbox, edgeId -> {
+            EdgeIteratorState edge = graphHopper.getBaseGraph().getEdgeIteratorStateForKey(edgeId * 2);
+            LineString lineString;
+            if (renderAll) {
+                PointList pl = edge.fetchWayGeometry(FetchMode.ALL);
+                lineString = pl.toLineString(false);
+            } else {
+                RoadClass rc = edge.get(roadClassEnc);
+                if (zInfo >= 14) {
+                    PointList pl = edge.fetchWayGeometry(FetchMode.ALL);
+                    lineString = pl.toLineString(false);
+                } else if (rc == RoadClass.MOTORWAY
+                        || zInfo > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
+                        || zInfo > 11 && (rc == RoadClass.SECONDARY)
+                        || zInfo > 12) {
+                    double lat = na.getLat(edge.getBaseNode());
+                    double lon = na.getLon(edge.getBaseNode());
+                    double toLat = na.getLat(edge.getAdjNode());
+                    double toLon = na.getLon(edge.getAdjNode());
+                    lineString = geometryFactory.createLineString(new Coordinate[]{new Coordinate(lon, lat), new Coordinate(toLon, toLat)});
+                } else {
+                    // skip edge for certain zoom
+                    return;
+                }
+            }
+
+            edgeCounter.incrementAndGet();
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<String, KVStorage.KValue> e : edge.getKeyValues().entrySet()) {
+                map.put(e.getKey(), e.getValue().toString());
+            }
+            map.put("edge_id", edge.getEdge());
+            map.put("edge_key", edge.getEdgeKey());
+            map.put("base_node", edge.getBaseNode());
+            map.put("adj_node", edge.getAdjNode());
+            map.put("distance", edge.getDistance());
+            encodingManager.getEncodedValues().forEach(ev -> {
+                if (ev instanceof EnumEncodedValue)
+                    map.put(ev.getName(), edge.get((EnumEncodedValue) ev).toString() + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((EnumEncodedValue) ev).toString() : ""));
+                else if (ev instanceof DecimalEncodedValue)
+                    map.put(ev.getName(), edge.get((DecimalEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((DecimalEncodedValue) ev) : ""));
+                else if (ev instanceof BooleanEncodedValue)
+                    map.put(ev.getName(), edge.get((BooleanEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((BooleanEncodedValue) ev) : ""));
+                else if (ev instanceof StringEncodedValue)
+                    map.put(ev.getName(), edge.get((StringEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((StringEncodedValue) ev) : ""));
+                else if (ev instanceof IntEncodedValue)
+                    map.put(ev.getName(), edge.get((IntEncodedValue) ev) + (ev.isStoreTwoDirections() ? " | " + edge.getReverse((IntEncodedValue) ev) : ""));
+            });
+            lineString.setUserData(map);
+
+            Geometry g = affineTransformation.transform(lineString);
+            vectorTileEncoder.addFeature("roads", map, g, edge.getEdge());
+        });
+
+        logger.debug("tile " + zInfo + "/" + xInfo + "/" + yInfo + ", edges:" + edgeCounter.get());
+        return vectorTileEncoder.encode();
+    }
+
+    static Coordinate num2deg(int xInfo, int yInfo, int zoom) {
+        // inverse web mercator projection
+        double n = Math.pow(2, zoom);
+        double lonDeg = xInfo / n * 360.0 - 180.0;
+        // unfortunately latitude numbers goes from north to south
+        double latRad = Math.atan(Math.sinh(Math.PI * (1 - 2 * yInfo / n)));
+        double latDeg = Math.toDegrees(latRad);
+        return new Coordinate(lonDeg, latDeg);
+    }
+
+    static int lon2tile(double lon, int zoom) {
+        int n = 1 << zoom;
+        return Math.max(0, Math.min(n - 1, (int) Math.floor((lon + 180) / 360 * n)));
+    }
+
+    static int lat2tile(double lat, int zoom) {
+        int n = 1 << zoom;
+        double latRad = Math.toRadians(lat);
+        return Math.max(0, Math.min(n - 1, (int) Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n)));
+    }
+
+    private static class GeneralizedLine {
+        // the edge the line was started with, used as the id of the feature
+        final int firstEdge;
+        final RoadClass roadClass;
+        final int minZoom;
+        final LineString geometry;
+
+        GeneralizedLine(int firstEdge, RoadClass roadClass, int minZoom, LineString geometry) {
+            this.firstEdge = firstEdge;
+            this.roadClass = roadClass;
+            this.minZoom = minZoom;
+            this.geometry = geometry;
+        }
+    }
+
+    /**
+     * The lines shown at one zoom, simplified to about one pixel, and for every tile the indices of the lines whose
+     * bounding box overlaps it.
+     */
+    private static class GeneralizedZoom {
+        final int zoom;
+        final List<GeneralizedLine> lines = new ArrayList<>();
+        final GHIntObjectHashMap<IntArrayList> linesByTile = new GHIntObjectHashMap<>();
+
+        GeneralizedZoom(int zoom, List<GeneralizedLine> allLines) {
+            this.zoom = zoom;
+            // the width of one of the 256 pixels of a tile in degrees
+            double tolerance = 360.0 / (256 << zoom);
+            for (GeneralizedLine line : allLines) {
+                if (line.minZoom > zoom)
+                    continue;
+                Envelope envelope = line.geometry.getEnvelopeInternal();
+                // lines that fit into a single pixel are not visible
+                if (envelope.getWidth() < tolerance && envelope.getHeight() < tolerance)
+                    continue;
+                LineString simplified = (LineString) DouglasPeuckerSimplifier.simplify(line.geometry, tolerance);
+                int index = lines.size();
+                lines.add(new GeneralizedLine(line.firstEdge, line.roadClass, line.minZoom, simplified));
+                int minX = lon2tile(envelope.getMinX(), zoom), maxX = lon2tile(envelope.getMaxX(), zoom);
+                int minY = lat2tile(envelope.getMaxY(), zoom), maxY = lat2tile(envelope.getMinY(), zoom);
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        int key = getTileKey(x, y);
+                        IntArrayList tileLines = linesByTile.get(key);
+                        if (tileLines == null) {
+                            tileLines = new IntArrayList();
+                            linesByTile.put(key, tileLines);
+                        }
+                        tileLines.add(index);
+                    }
+                }
+            }
+        }
+
+        int getTileKey(int x, int y) {
+            // there are at most 2^9 x 2^9 tiles, so this fits into an int
+            return (x << zoom) | y;
+        }
+    }
+}
@@ -23,6 +23,9 @@ import com.graphhopper.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
@@ -31,6 +34,9 @@ import jakarta.ws.rs.ext.Provider;
 public class MultiExceptionMapper implements ExceptionMapper<MultiException> {
     private static final Logger logger = LoggerFactory.getLogger(MultiExceptionMapper.class);
 
+    @Context
+    private HttpHeaders httpHeaders;
+
     @Override
     public Response toResponse(MultiException e) {
         logger.info("bad request: " + (Helper.isEmpty(e.getMessage())
@@ -38,6 +44,8 @@ public class MultiExceptionMapper implements ExceptionMapper<MultiException> {
                 : e.getErrors()));
         return Response.status(Response.Status.BAD_REQUEST)
                 .entity(e)
+                // there is no binary error format, so errors are returned as JSON even if protobuf was requested
+                .type(ProtobufNegotiation.acceptsProtobuf(httpHeaders) ? MediaType.APPLICATION_JSON_TYPE : null)
                 .build();
     }
 }
@@ -0,0 +1,50 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.graphhopper.protobuf.ResponsePathProtobuf;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import java.util.List;
+
+/**
+ * Decides whether a response is written in the binary protobuf format of {@link ResponsePathProtobuf} instead of
+ * JSON. This is used by the resources that can write it as well as by the exception mappers, which return errors
+ * as JSON in any case.
+ */
+public class ProtobufNegotiation {
+
+    private ProtobufNegotiation() {
+        // utility class
+    }
+
+    /**
+     * The binary response is only returned if the client explicitly prefers it, i.e. a wildcard like *&#47;* still
+     * leads to JSON.
+     */
+    public static boolean acceptsProtobuf(HttpHeaders httpHeaders) {
+        List<MediaType> acceptableTypes = httpHeaders.getAcceptableMediaTypes();
+        if (acceptableTypes.isEmpty())
+            return false;
+        MediaType preferred = acceptableTypes.get(0);
+        return !preferred.isWildcardType() && !preferred.isWildcardSubtype()
+                && preferred.isCompatible(MediaType.valueOf(ResponsePathProtobuf.MEDIA_TYPE));
+    }
+}
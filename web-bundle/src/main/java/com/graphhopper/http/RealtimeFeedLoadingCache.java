@@ -73,12 +73,12 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
                 .refreshAfterWrite(1, TimeUnit.MINUTES)
                 .build(new CacheLoader<String, RealtimeFeed>() {
                     public RealtimeFeed load(String key) {
-                        return fetchFeedsAndCreateGraph();
+                        return RealtimeFeed.fromProtobuf(graphHopper.getGtfsStorage(), transfers, fetchFeeds());
                     }
 
                     @Override
                     public ListenableFuture<RealtimeFeed> reload(String key, RealtimeFeed oldValue) {
-                        ListenableFutureTask<RealtimeFeed> task = ListenableFutureTask.create(() -> fetchFeedsAndCreateGraph());
+                        ListenableFutureTask<RealtimeFeed> task = ListenableFutureTask.create(() -> oldValue.update(graphHopper.getGtfsStorage(), transfers, fetchFeeds()));
                         executor.execute(task);
                         return task;
                     }
@@ -104,7 +104,7 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
     public void stop() {
     }
 
-    private RealtimeFeed fetchFeedsAndCreateGraph() {
+    private Map<String, GtfsRealtime.FeedMessage> fetchFeeds() {
         Map<String, GtfsRealtime.FeedMessage> feedMessageMap = new HashMap<>();
         for (FeedConfiguration configuration : bundleConfiguration.gtfsrealtime().getFeeds()) {
             try {
@@ -125,7 +125,7 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
                 throw new RuntimeException(e);
             }
         }
-        return RealtimeFeed.fromProtobuf(graphHopper.getGtfsStorage(), this.transfers, feedMessageMap);
+        return feedMessageMap;
     }
 
     private void validate(RealtimeFeed realtimeFeed) {
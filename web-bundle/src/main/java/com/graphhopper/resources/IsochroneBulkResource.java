@@ -0,0 +1,277 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
+import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.isochrone.algorithm.ContourBuilder;
+import com.graphhopper.isochrone.algorithm.OneToAllSearch;
+import com.graphhopper.isochrone.algorithm.Triangulator;
+import com.graphhopper.jackson.MultiException;
+import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.*;
+import com.graphhopper.util.exceptions.PointNotFoundException;
+import com.graphhopper.util.shapes.GHPoint;
+import org.locationtech.jts.geom.Geometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToDoubleFunction;
+
+import static com.graphhopper.http.NdjsonNegotiation.NDJSON;
+import static com.graphhopper.http.NdjsonNegotiation.acceptsNdjson;
+import static com.graphhopper.resources.IsochroneResource.buildIsochrone;
+import static com.graphhopper.resources.IsochroneResource.degreesFromMeters;
+import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
+import static com.graphhopper.routing.util.TraversalMode.EDGE_BASED;
+import static com.graphhopper.routing.util.TraversalMode.NODE_BASED;
+
+/**
+ * Calculates the isochrones of many points with a single request. The parameters are the same as for a GET request to
+ * /isochrone, but they are passed as JSON and apply to all points. All points are snapped at once and share one
+ * QueryGraph. The shortest path trees and the contours of the buckets are calculated concurrently on a bounded
+ * executor. The response is streamed as newline delimited GeoJSON features if the client explicitly accepts
+ * application/x-ndjson, or as a JSON array of them otherwise, e.g. for *&#47;*. The features of a point are written as soon as all its buckets are finished, so the points
+ * do not come back in the order of the request.
+ */
+@Path("isochrone-bulk")
+public class IsochroneBulkResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(IsochroneBulkResource.class);
+
+    private final GraphHopper graphHopper;
+    private final Triangulator triangulator;
+    private final ProfileResolver profileResolver;
+    private final ExecutorService executor;
+    private final int maxPoints;
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public IsochroneBulkResource(GraphHopperConfig config, GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver,
+                                 @Named("isochroneBulkExecutor") ExecutorService executor, ObjectMapper objectMapper) {
+        this.graphHopper = graphHopper;
+        this.triangulator = triangulator;
+        this.profileResolver = profileResolver;
+        this.executor = executor;
+        this.maxPoints = config.getInt("isochrone.bulk.max_points", 1_000);
+        this.objectMapper = objectMapper;
+    }
+
+    public static class IsochroneBulkRequest {
+        @JsonProperty
+        public String profile;
+        @JsonProperty
+        public List<GHPoint> points;
+        @JsonProperty
+        public int buckets = 1;
+        @JsonProperty("reverse_flow")
+        public boolean reverseFlow;
+        @JsonProperty("time_limit")
+        public long timeLimit = 600;
+        @JsonProperty("distance_limit")
+        public long distanceLimit = -1;
+        @JsonProperty("weight_limit")
+        public long weightLimit = -1;
+        @JsonProperty
+        public double tolerance;
+        @JsonProperty("full_geometry")
+        public boolean fullGeometry;
+        private final PMap hints = new PMap();
+
+        @JsonAnySetter
+        public void putHint(String fieldName, Object value) {
+            hints.putObject(fieldName, value);
+        }
+
+        public PMap getHints() {
+            return hints;
+        }
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, NDJSON})
+    public Response doPost(@NotNull IsochroneBulkRequest request, @Context HttpServletRequest httpReq, @Context HttpHeaders httpHeaders) {
+        StopWatch sw = new StopWatch().start();
+        if (request.points == null || request.points.isEmpty())
+            throw new IllegalArgumentException("You have to pass at least one point");
+        if (request.points.size() > maxPoints)
+            throw new IllegalArgumentException("The number of points " + request.points.size() + " exceeds the maximum of " + maxPoints);
+        if (request.buckets < 1 || request.buckets > 20)
+            throw new IllegalArgumentException("The number of buckets must be between 1 and 20, but was: " + request.buckets);
+        for (int i = 0; i < request.points.size(); i++)
+            if (request.points.get(i) == null)
+                throw new IllegalArgumentException("Point " + i + " is null");
+
+        PMap hintsMap = request.getHints();
+        boolean useCH = !hintsMap.getBool(Parameters.CH.DISABLE, true);
+        hintsMap.putObject(Parameters.CH.DISABLE, true);
+        hintsMap.putObject(Parameters.Landmark.DISABLE, true);
+        PMap profileResolverHints = new PMap(hintsMap);
+        profileResolverHints.putObject("profile", request.profile);
+        String profileName = profileResolver.resolveProfile(profileResolverHints);
+        removeLegacyParameters(hintsMap);
+        Profile profile = graphHopper.getProfile(profileName);
+        if (profile == null)
+            throw new IllegalArgumentException("The requested profile '" + profileName + "' does not exist");
+
+        LocationIndex locationIndex = graphHopper.getLocationIndex();
+        Weighting weighting = graphHopper.createWeighting(profile, hintsMap);
+        BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
+        DefaultSnapFilter snapFilter = new DefaultSnapFilter(weighting, inSubnetworkEnc);
+        List<Snap> snaps = new ArrayList<>(request.points.size());
+        List<Snap> validSnaps = new ArrayList<>(request.points.size());
+        for (GHPoint point : request.points) {
+            Snap snap = locationIndex.findClosest(point.lat, point.lon, snapFilter);
+            snaps.add(snap);
+            if (snap.isValid())
+                validSnaps.add(snap);
+        }
+        // one query graph for all points, so we cannot use PHAST here, see IsochroneResource#createOneToAllSearch
+        QueryGraph queryGraph = QueryGraph.create(graphHopper.getBaseGraph(), validSnaps);
+        TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
+        double limit;
+        if (request.weightLimit > 0)
+            limit = request.weightLimit;
+        else if (request.distanceLimit > 0)
+            limit = request.distanceLimit;
+        else
+            limit = request.timeLimit * 1000d;
+        double delta = limit / request.buckets;
+        double tolerance = degreesFromMeters(request.tolerance);
+
+        // the isochrones are written in the order in which they are finished
+        BlockingQueue<List<ObjectNode>> finished = new LinkedBlockingQueue<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        for (int i = 0; i < snaps.size(); i++) {
+            final int pointIndex = i;
+            final Snap snap = snaps.get(i);
+            CompletableFuture.supplyAsync(() -> {
+                if (cancelled.get())
+                    throw new CancellationException();
+                if (!snap.isValid())
+                    throw new PointNotFoundException("Cannot find point " + pointIndex + ": " + request.points.get(pointIndex), pointIndex);
+                OneToAllSearch search = IsochroneResource.createOneToAllSearch(graphHopper, profileName, useCH, queryGraph, weighting, request.reverseFlow, traversalMode);
+                ToDoubleFunction<OneToAllSearch.Cursor> fz;
+                if (request.weightLimit > 0) {
+                    search.setWeightLimit(limit + Math.max(limit * 0.14, 200));
+                    fz = OneToAllSearch.Cursor::getWeight;
+                } else if (request.distanceLimit > 0) {
+                    search.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
+                    fz = OneToAllSearch.Cursor::getDistance;
+                } else {
+                    search.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
+                    fz = OneToAllSearch.Cursor::getTime;
+                }
+                return triangulator.triangulate(snap, queryGraph, search, fz, tolerance);
+            }, executor).thenCompose(result -> {
+                // all buckets share the triangulation and their contours are built in parallel
+                ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
+                List<CompletableFuture<Geometry>> isochrones = new ArrayList<>(request.buckets);
+                for (int bucket = 0; bucket < request.buckets; bucket++) {
+                    double z = (bucket + 1) * delta;
+                    isochrones.add(CompletableFuture.supplyAsync(() -> buildIsochrone(contourBuilder, result, z, request.fullGeometry, request.points.get(pointIndex)), executor));
+                }
+                return CompletableFuture.allOf(isochrones.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+                    List<ObjectNode> features = new ArrayList<>(isochrones.size());
+                    for (int bucket = 0; bucket < isochrones.size(); bucket++) {
+                        Map<String, Object> properties = new HashMap<>();
+                        properties.put("point", pointIndex);
+                        properties.put("bucket", bucket);
+                        features.add(objectMapper.valueToTree(new JsonFeature(null, "Feature", null, isochrones.get(bucket).join(), properties)));
+                    }
+                    return features;
+                });
+            }).whenComplete((features, e) -> {
+                if (e == null) {
+                    finished.add(features);
+                } else {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    ObjectNode json = objectMapper.valueToTree(new MultiException(cause));
+                    json.put("point", pointIndex);
+                    finished.add(List.of(json));
+                }
+            });
+        }
+
+        String logStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")
+                + " " + snaps.size() + " points, buckets: " + request.buckets + ", profile: " + profileName;
+        // clients that only accept JSON get the same objects as one array, which is still streamed
+        boolean jsonArray = !acceptsNdjson(httpHeaders);
+        StreamingOutput out = output -> {
+            int failed = 0;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, Helper.UTF_CS))) {
+                if (jsonArray)
+                    writer.write('[');
+                boolean first = true;
+                for (int i = 0; i < snaps.size(); i++) {
+                    List<ObjectNode> lines = finished.take();
+                    if (lines.get(0).has("message"))
+                        failed++;
+                    for (ObjectNode json : lines) {
+                        if (jsonArray && !first)
+                            writer.write(',');
+                        first = false;
+                        writer.write(objectMapper.writeValueAsString(json));
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                }
+                if (jsonArray)
+                    writer.write(']');
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebApplicationException(e);
+            } finally {
+                // the remaining points are skipped if the client went away
+                cancelled.set(true);
+            }
+            logger.info(logStr + ", took: " + String.format("%.1f", sw.stop().getMillisDouble()) + " ms, failed: " + failed);
+        };
+        return Response.ok(out).type(jsonArray ? MediaType.APPLICATION_JSON : NDJSON).build();
+    }
+}
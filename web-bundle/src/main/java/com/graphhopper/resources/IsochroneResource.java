@@ -8,6 +8,8 @@ import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
+import com.graphhopper.isochrone.algorithm.OneToAllSearch;
+import com.graphhopper.isochrone.algorithm.PhastShortestPathTree;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.isochrone.algorithm.Triangulator;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
@@ -17,9 +19,11 @@ import com.graphhopper.routing.util.DefaultSnapFilter;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.RoutingCHGraph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint;
 import org.hibernate.validator.constraints.Range;
 import org.locationtech.jts.geom.*;
 import org.slf4j.Logger;
@@ -82,6 +86,8 @@ public class IsochroneResource {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        // the one-to-all search can only use CH if it is explicitly enabled, because it pays off for large limits only
+        boolean useCH = !hintsMap.getBool(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.Landmark.DISABLE, true);
 
@@ -102,22 +108,22 @@ public class IsochroneResource {
             throw new IllegalArgumentException("Point not found:" + point);
         QueryGraph queryGraph = QueryGraph.create(graph, snap);
         TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        OneToAllSearch shortestPathTree = createOneToAllSearch(graphHopper, profileName, useCH, queryGraph, weighting, reverseFlow, traversalMode);
 
         double limit;
-        ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
+        ToDoubleFunction<OneToAllSearch.Cursor> fz;
         if (weightLimit.orElseThrow(() -> new IllegalArgumentException("query param weight_limit is not a number.")) > 0) {
             limit = weightLimit.getAsLong();
             shortestPathTree.setWeightLimit(limit + Math.max(limit * 0.14, 200));
-            fz = l -> l.weight;
+            fz = OneToAllSearch.Cursor::getWeight;
         } else if (distanceLimitInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
             limit = distanceLimitInMeter.getAsLong();
             shortestPathTree.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
-            fz = l -> l.distance;
+            fz = OneToAllSearch.Cursor::getDistance;
         } else {
             limit = timeLimitInSeconds.orElseThrow(() -> new IllegalArgumentException("query param time_limit is not a number.")) * 1000d;
             shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
-            fz = l -> l.time;
+            fz = OneToAllSearch.Cursor::getTime;
         }
         ArrayList<Double> zs = new ArrayList<>();
         double delta = limit / nBuckets.orElseThrow(() -> new IllegalArgumentException("query param buckets is not a number."));
@@ -131,13 +137,7 @@ public class IsochroneResource {
         ArrayList<Geometry> isochrones = new ArrayList<>();
         for (Double z : zs) {
             logger.info("Building contour z={}", z);
-            MultiPolygon isochrone = contourBuilder.computeIsoline(z, result.seedEdges);
-            if (fullGeometry) {
-                isochrones.add(isochrone);
-            } else {
-                Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, isochrone.getFactory().createPoint(new Coordinate(point.get().lon, point.get().lat)));
-                isochrones.add(isochrone.getFactory().createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
-            }
+            isochrones.add(buildIsochrone(contourBuilder, result, z, fullGeometry, point.get()));
         }
         ArrayList<JsonFeature> features = new ArrayList<>();
         for (Geometry isochrone : isochrones) {
@@ -173,7 +173,31 @@ public class IsochroneResource {
                 build();
     }
 
-    private Polygon heuristicallyFindMainConnectedComponent(MultiPolygon multiPolygon, Point point) {
+    /**
+     * Creates a {@link PhastShortestPathTree} if CH was requested, a node-based CH preparation exists for the
+     * profile and the query graph contains a single snap, and a plain {@link ShortestPathTree} otherwise.
+     */
+    static OneToAllSearch createOneToAllSearch(GraphHopper graphHopper, String profileName, boolean useCH, QueryGraph queryGraph,
+                                               Weighting weighting, boolean reverseFlow, TraversalMode traversalMode) {
+        RoutingCHGraph chGraph = useCH ? graphHopper.getCHGraphs().get(profileName) : null;
+        if (chGraph != null && !chGraph.isEdgeBased() && queryGraph.getNodes() <= queryGraph.getBaseGraph().getNodes() + 1)
+            return new PhastShortestPathTree(chGraph, queryGraph, reverseFlow);
+        return new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+    }
+
+    /**
+     * Builds the isochrone for the given bucket limit z. Unless the full geometry is requested only the outer ring of
+     * the polygon containing the point is kept.
+     */
+    static Geometry buildIsochrone(ContourBuilder contourBuilder, Triangulator.Result result, double z, boolean fullGeometry, GHPoint point) {
+        MultiPolygon isochrone = contourBuilder.computeIsoline(z, result.seedEdges);
+        if (fullGeometry)
+            return isochrone;
+        Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, isochrone.getFactory().createPoint(new Coordinate(point.lon, point.lat)));
+        return isochrone.getFactory().createPolygon(((LinearRing) maxPolygon.getExteriorRing()));
+    }
+
+    private static Polygon heuristicallyFindMainConnectedComponent(MultiPolygon multiPolygon, Point point) {
         int maxPoints = 0;
         Polygon maxPolygon = null;
         for (int j = 0; j < multiPolygon.getNumGeometries(); j++) {
@@ -28,10 +28,13 @@ import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.gpx.GpxConversions;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.jackson.GHResponseJson;
 import com.graphhopper.jackson.Gpx;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.jackson.ResponsePathSerializer;
 import com.graphhopper.matching.*;
+import com.graphhopper.protobuf.ProtobufWriter;
+import com.graphhopper.protobuf.ResponsePathProtobuf;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.util.*;
 import org.slf4j.Logger;
@@ -41,11 +44,13 @@ import jakarta.inject.Inject;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import java.util.*;
 
+import static com.graphhopper.http.ProtobufNegotiation.acceptsProtobuf;
 import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
 import static com.graphhopper.util.Parameters.Details.PATH_DETAILS;
 import static com.graphhopper.util.Parameters.Routing.*;
@@ -84,10 +89,11 @@ public class MapMatchingResource {
 
     @POST
     @Consumes({MediaType.APPLICATION_XML, "application/gpx+xml"})
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml"})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml", ResponsePathProtobuf.MEDIA_TYPE})
     public Response match(
             @NotNull Gpx gpx,
             @Context UriInfo uriInfo,
+            @Context HttpHeaders httpHeaders,
             @QueryParam(WAY_POINT_MAX_DISTANCE) @DefaultValue("0.5") double minPathPrecision,
             @QueryParam("type") @DefaultValue("json") String outType,
             @QueryParam(INSTRUCTIONS) @DefaultValue("true") boolean instructions,
@@ -167,8 +173,24 @@ public class MapMatchingResource {
                 return Response.ok(GpxConversions.createGPX(rsp.getBest().getInstructions(), gpx.trk.get(0).name != null ? gpx.trk.get(0).name : "", time, enableElevation, withRoute, withTrack, false, Constants.VERSION, tr), "application/gpx+xml").
                         header("X-GH-Took", "" + Math.round(sw.getMillisDouble())).
                         build();
+            } else if (acceptsProtobuf(httpHeaders)) {
+                ProtobufWriter rspMsg = ResponsePathProtobuf.write(rsp, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(sw.getMillisDouble()), osmDate),
+                        instructions, calcPoints, enableElevation, pointsEncodedMultiplier);
+                rspMsg.writeMessage(4, new ProtobufWriter().
+                        writeDouble(1, matchResult.getMatchLength()).
+                        writeInt64(2, matchResult.getMatchMillis()).
+                        writeDouble(3, matchResult.getGpxEntriesLength()));
+                if (enableTraversalKeys) {
+                    long[] traversalKeys = new long[matchResult.getEdgeMatches().size()];
+                    for (int i = 0; i < traversalKeys.length; i++)
+                        traversalKeys[i] = matchResult.getEdgeMatches().get(i).getEdgeState().getEdgeKey();
+                    rspMsg.writePackedInt64(5, traversalKeys, traversalKeys.length);
+                }
+                return Response.ok(rspMsg.toByteArray(), ResponsePathProtobuf.MEDIA_TYPE).
+                        header("X-GH-Took", "" + Math.round(sw.getMillisDouble())).
+                        build();
             } else {
-                ObjectNode map = ResponsePathSerializer.jsonObject(rsp, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(sw.getMillisDouble()), osmDate), instructions,
+                GHResponseJson map = new GHResponseJson(rsp, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(sw.getMillisDouble()), osmDate), instructions,
                         calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier);
 
                 Map<String, Object> matchStatistics = new HashMap<>();
@@ -0,0 +1,294 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.jackson.MultiException;
+import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.routing.ViaRouting;
+import com.graphhopper.routing.ch.ManyToManyCH;
+import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.querygraph.QueryRoutingCHGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
+import com.graphhopper.util.exceptions.PointNotFoundException;
+import com.graphhopper.util.exceptions.PointOutOfBoundsException;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.util.*;
+
+import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
+
+/**
+ * Calculates the weights, times and distances between many points at once. The points are snapped only once, all
+ * snaps share one QueryGraph and the matrix is calculated with a bucket-based many-to-many search, see
+ * {@link ManyToManyCH}. This requires a CH preparation for the requested profile. The request and response format
+ * is the same as the one used by GraphHopperMatrixWeb in the client-hc module.
+ */
+@Path("matrix")
+public class MatrixResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixResource.class);
+
+    private final GraphHopperConfig config;
+    private final GraphHopper graphHopper;
+    private final ProfileResolver profileResolver;
+    private final String osmDate;
+    private final int maxSize;
+
+    @Inject
+    public MatrixResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver) {
+        this.config = config;
+        this.graphHopper = graphHopper;
+        this.profileResolver = profileResolver;
+        this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
+        this.maxSize = config.getInt("routing.matrix.max_size", 1_000_000);
+    }
+
+    public static class MatrixRequest {
+        @JsonProperty
+        public String profile;
+        @JsonProperty
+        public List<GHPoint> points;
+        @JsonProperty("from_points")
+        public List<GHPoint> fromPoints;
+        @JsonProperty("to_points")
+        public List<GHPoint> toPoints;
+        @JsonProperty("point_hints")
+        public List<String> pointHints;
+        @JsonProperty("from_point_hints")
+        public List<String> fromPointHints;
+        @JsonProperty("to_point_hints")
+        public List<String> toPointHints;
+        @JsonProperty
+        public List<String> curbsides;
+        @JsonProperty("from_curbsides")
+        public List<String> fromCurbsides;
+        @JsonProperty("to_curbsides")
+        public List<String> toCurbsides;
+        @JsonProperty("snap_preventions")
+        public List<String> snapPreventions;
+        @JsonProperty("out_arrays")
+        public List<String> outArrays;
+        @JsonProperty("fail_fast")
+        public boolean failFast = true;
+        private final PMap hints = new PMap();
+
+        @JsonAnySetter
+        public void putHint(String fieldName, Object value) {
+            hints.putObject(fieldName, value);
+        }
+
+        public PMap getHints() {
+            return hints;
+        }
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response doPost(@NotNull MatrixRequest request, @Context HttpServletRequest httpReq) {
+        StopWatch sw = new StopWatch().start();
+        List<GHPoint> fromPoints, toPoints;
+        List<String> fromPointHints, toPointHints;
+        if (request.points != null) {
+            if (request.fromPoints != null || request.toPoints != null)
+                throw new IllegalArgumentException("If 'points' is specified you cannot use 'from_points' or 'to_points'");
+            fromPoints = toPoints = request.points;
+            fromPointHints = toPointHints = emptyIfNull(request.pointHints);
+        } else {
+            if (request.fromPoints == null || request.toPoints == null)
+                throw new IllegalArgumentException("Either specify 'points' or both, 'from_points' and 'to_points'");
+            fromPoints = request.fromPoints;
+            toPoints = request.toPoints;
+            fromPointHints = emptyIfNull(request.fromPointHints);
+            toPointHints = emptyIfNull(request.toPointHints);
+        }
+        if (fromPoints.isEmpty() || toPoints.isEmpty())
+            throw new IllegalArgumentException("You have to pass at least one from and one to point");
+        if ((long) fromPoints.size() * toPoints.size() > maxSize)
+            throw new IllegalArgumentException("The matrix size " + fromPoints.size() + "x" + toPoints.size() + " exceeds the maximum of " + maxSize + " entries");
+        if (!fromPointHints.isEmpty() && fromPointHints.size() != fromPoints.size() || !toPointHints.isEmpty() && toPointHints.size() != toPoints.size())
+            throw new IllegalArgumentException("If you pass point hints, you need to pass exactly one hint for every point, empty hints will be ignored");
+        if (!emptyIfNull(request.curbsides).isEmpty() || !emptyIfNull(request.fromCurbsides).isEmpty() || !emptyIfNull(request.toCurbsides).isEmpty())
+            throw new IllegalArgumentException("The 'curbsides' parameter is currently not supported for the matrix");
+        List<String> outArrays = request.outArrays == null || request.outArrays.isEmpty() ? List.of("weights") : request.outArrays;
+        for (String outArray : outArrays)
+            if (!List.of("weights", "times", "distances").contains(outArray))
+                throw new IllegalArgumentException("Unknown value in 'out_arrays': " + outArray + ", use 'weights', 'times' or 'distances'");
+
+        PMap profileResolverHints = new PMap(request.getHints());
+        profileResolverHints.putObject("profile", request.profile);
+        String profileName = profileResolver.resolveProfile(profileResolverHints);
+        removeLegacyParameters(request.getHints());
+        RoutingCHGraph chGraph = graphHopper.getCHGraphs().get(profileName);
+        if (chGraph == null)
+            throw new IllegalArgumentException("The matrix requires a CH preparation, but there is none for the requested profile: '" + profileName + "'" +
+                    "\navailable CH profiles: " + graphHopper.getCHGraphs().keySet());
+
+        List<GHPoint> allPoints = new ArrayList<>(fromPoints);
+        List<String> allPointHints = new ArrayList<>(fromPointHints);
+        boolean symmetric = fromPoints == toPoints;
+        if (!symmetric) {
+            allPoints.addAll(toPoints);
+            if (!fromPointHints.isEmpty() || !toPointHints.isEmpty()) {
+                if (fromPointHints.isEmpty())
+                    allPointHints.addAll(Collections.nCopies(fromPoints.size(), ""));
+                allPointHints.addAll(toPointHints.isEmpty() ? Collections.nCopies(toPoints.size(), "") : toPointHints);
+            }
+        }
+        checkPointsInBounds(allPoints);
+
+        BooleanEncodedValue inSubnetworkEnc = graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(profileName));
+        EdgeFilter snapFilter = new DefaultSnapFilter(chGraph.getWeighting(), inSubnetworkEnc);
+        List<String> snapPreventions = request.snapPreventions == null
+                ? Arrays.stream(config.getString("routing.snap_preventions_default", "").split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList()
+                : request.snapPreventions;
+        List<Snap> snaps = ViaRouting.lookupAll(graphHopper.getEncodingManager(), allPoints, snapFilter, graphHopper.getLocationIndex(),
+                snapPreventions, allPointHints, null, List.of(), graphHopper.getSnapCache(), profileName);
+        List<Integer> invalidFromPoints = new ArrayList<>();
+        List<Integer> invalidToPoints = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int i = 0; i < snaps.size(); i++) {
+            if (snaps.get(i).isValid())
+                continue;
+            if (i < fromPoints.size())
+                invalidFromPoints.add(i);
+            if (symmetric)
+                invalidToPoints.add(i);
+            else if (i >= fromPoints.size())
+                invalidToPoints.add(i - fromPoints.size());
+            errors.add(new PointNotFoundException("Cannot find point " + i + ": " + allPoints.get(i), i));
+        }
+        if (request.failFast && !errors.isEmpty())
+            throw new MultiException(errors);
+
+        List<Snap> validSnaps = new ArrayList<>(snaps.size());
+        for (Snap snap : snaps)
+            if (snap.isValid())
+                validSnaps.add(snap);
+        QueryGraph queryGraph = QueryGraph.create(graphHopper.getBaseGraph(), validSnaps);
+        int[] sources = new int[fromPoints.size()];
+        int[] targets = new int[toPoints.size()];
+        for (int i = 0; i < sources.length; i++)
+            sources[i] = snaps.get(i).isValid() ? snaps.get(i).getClosestNode() : -1;
+        for (int i = 0; i < targets.length; i++) {
+            Snap snap = snaps.get(symmetric ? i : fromPoints.size() + i);
+            targets[i] = snap.isValid() ? snap.getClosestNode() : -1;
+        }
+
+        int maxVisitedNodes = request.getHints().getInt(Parameters.Routing.MAX_VISITED_NODES, graphHopper.getRouterConfig().getMaxVisitedNodes());
+        ManyToManyCH manyToMany = new ManyToManyCH(new QueryRoutingCHGraph(chGraph, queryGraph)).setMaxVisitedNodes(maxVisitedNodes);
+        ManyToManyCH.Result result = manyToMany.calcMatrix(sources, targets);
+
+        List<int[]> disconnected = new ArrayList<>();
+        for (int s = 0; s < sources.length; s++)
+            for (int t = 0; t < targets.length; t++)
+                if (sources[s] >= 0 && targets[t] >= 0 && !result.isConnected(s, t))
+                    disconnected.add(new int[]{s, t});
+        if (request.failFast && !disconnected.isEmpty())
+            throw new MultiException(List.of(new ConnectionNotFoundException("Connection between locations not found: "
+                    + disconnected.size() + " of " + sources.length * targets.length + " pairs are disconnected, e.g. "
+                    + disconnected.get(0)[0] + "->" + disconnected.get(0)[1], Map.of())));
+
+        double took = sw.stop().getMillisDouble();
+        logger.info(httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")
+                + " " + sources.length + "x" + targets.length + ", took: " + String.format("%.1f", took) + "ms, profile: " + profileName
+                + ", visited nodes: " + manyToMany.getVisitedNodes() + ", disconnected: " + disconnected.size());
+
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        for (String outArray : outArrays) {
+            ArrayNode rows = json.putArray(outArray);
+            for (int s = 0; s < sources.length; s++) {
+                ArrayNode row = rows.addArray();
+                for (int t = 0; t < targets.length; t++) {
+                    if (!result.isConnected(s, t))
+                        row.addNull();
+                    else if (outArray.equals("weights"))
+                        row.add(Helper.round(result.getWeight(s, t), 1));
+                    else if (outArray.equals("times"))
+                        row.add(Math.round(result.getTime(s, t) / 1000.0));
+                    else
+                        row.add(Math.round(result.getDistance(s, t)));
+                }
+            }
+        }
+        json.putPOJO("info", new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate));
+        if (!disconnected.isEmpty() || !invalidFromPoints.isEmpty() || !invalidToPoints.isEmpty()) {
+            ArrayNode hints = json.putArray("hints");
+            if (!disconnected.isEmpty()) {
+                ObjectNode hint = hints.addObject();
+                hint.put("message", "Connection between locations not found");
+                ArrayNode pairs = hint.putArray("point_pairs");
+                for (int[] pair : disconnected)
+                    pairs.addArray().add(pair[0]).add(pair[1]);
+            }
+            if (!invalidFromPoints.isEmpty() || !invalidToPoints.isEmpty()) {
+                ObjectNode hint = hints.addObject();
+                hint.put("message", "Cannot find from_points or to_points");
+                invalidFromPoints.forEach(hint.putArray("invalid_from_points")::add);
+                invalidToPoints.forEach(hint.putArray("invalid_to_points")::add);
+            }
+        }
+        return Response.ok(json).
+                header("X-GH-Took", "" + Math.round(took)).
+                type(MediaType.APPLICATION_JSON).
+                build();
+    }
+
+    private void checkPointsInBounds(List<GHPoint> points) {
+        BBox bounds = graphHopper.getBaseGraph().getBounds();
+        for (int i = 0; i < points.size(); i++) {
+            GHPoint point = points.get(i);
+            if (point == null)
+                throw new IllegalArgumentException("Point " + i + " is null");
+            if (!bounds.contains(point.getLat(), point.getLon()))
+                throw new PointOutOfBoundsException("Point " + i + " is out of bounds: " + point + ", the bounds are: " + bounds, i);
+        }
+    }
+
+    private static List<String> emptyIfNull(List<String> list) {
+        return list == null ? List.of() : list;
+    }
+}
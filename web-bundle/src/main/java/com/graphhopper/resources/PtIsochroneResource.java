@@ -18,7 +18,6 @@
 
 package com.graphhopper.resources;
 
-import com.conveyal.gtfs.model.Stop;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.gtfs.*;
 import com.graphhopper.http.GHLocationParam;
@@ -124,8 +123,9 @@ public class PtIsochroneResource {
                 z1.merge(nodeCoordinate, (double) (label.currentTime - initialTime.toEpochMilli()) * (reverseFlow ? -1 : 1), Math::min);
             } else if (label.edge != null && (label.edge.getType() == GtfsStorage.EdgeType.EXIT_PT || label.edge.getType() == GtfsStorage.EdgeType.ENTER_PT)) {
                 GtfsStorage.PlatformDescriptor platformDescriptor = label.edge.getPlatformDescriptor();
-                Stop stop = gtfsStorage.getGtfsFeeds().get(platformDescriptor.feed_id).stops.get(platformDescriptor.stop_id);
-                Coordinate nodeCoordinate = new Coordinate(stop.stop_lon, stop.stop_lat);
+                CompactGtfsFeed compactFeed = gtfsStorage.getCompactGtfsFeeds().get(platformDescriptor.feed_id);
+                int stop = compactFeed.findStop(platformDescriptor.stop_id);
+                Coordinate nodeCoordinate = new Coordinate(compactFeed.getStopLon(stop), compactFeed.getStopLat(stop));
                 z1.merge(nodeCoordinate, (double) (label.currentTime - initialTime.toEpochMilli()) * (reverseFlow ? -1 : 1), Math::min);
             }
         }
@@ -1,8 +1,8 @@
 package com.graphhopper.resources;
 
-import com.conveyal.gtfs.model.Stop;
 import com.google.protobuf.ByteString;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.gtfs.CompactGtfsFeed;
 import com.graphhopper.gtfs.GtfsStorage;
 import com.graphhopper.gtfs.PtGraph;
 import com.graphhopper.matching.MatchResult;
@@ -75,11 +75,12 @@ public class PtMVTResource {
             for (PtGraph.PtEdge ptEdge : gtfsStorage.getPtGraph().backEdgesAround(edgeId)) {
                 if (ptEdge.getType() == GtfsStorage.EdgeType.EXIT_PT) {
                     GtfsStorage.PlatformDescriptor fromPlatformDescriptor = ptEdge.getAttrs().platformDescriptor;
-                    Stop stop = gtfsStorage.getGtfsFeeds().get(fromPlatformDescriptor.feed_id).stops.get(fromPlatformDescriptor.stop_id);
+                    CompactGtfsFeed compactFeed = gtfsStorage.getCompactGtfsFeeds().get(fromPlatformDescriptor.feed_id);
+                    int stop = compactFeed.findStop(fromPlatformDescriptor.stop_id);
                     Map<String, Object> properties = new HashMap<>(2);
                     properties.put("feed_id", fromPlatformDescriptor.feed_id);
                     properties.put("stop_id", fromPlatformDescriptor.stop_id);
-                    Point feature = geometryFactory.createPoint(new Coordinate(stop.stop_lon, stop.stop_lat));
+                    Point feature = geometryFactory.createPoint(new Coordinate(compactFeed.getStopLon(stop), compactFeed.getStopLat(stop)));
                     feature.setUserData(properties);
                     Geometry g = affineTransformation.transform(feature);
                     vectorTileEncoder.addFeature("stops", properties, g);
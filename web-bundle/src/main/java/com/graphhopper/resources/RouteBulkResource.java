@@ -0,0 +1,170 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.http.GHRequestTransformer;
+import com.graphhopper.http.NdjsonNegotiation;
+import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.jackson.GHResponseJson;
+import com.graphhopper.jackson.MultiException;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.graphhopper.resources.RouteResource.removeLegacyParameters;
+import static com.graphhopper.routing.RoutingMetrics.Phase.SERIALIZATION;
+import static com.graphhopper.util.Parameters.Routing.CALC_POINTS;
+import static com.graphhopper.util.Parameters.Routing.INSTRUCTIONS;
+
+/**
+ * Calculates the routes between many pairs of points with a single request. The request has the same JSON format as a
+ * POST request to /route, but the routes are calculated between the pairs of point indices given in the additional
+ * 'pairs' field. Every distinct point is snapped only once and all routes share one QueryGraph, see
+ * {@link GraphHopper#routeBulk}. Clients that explicitly accept application/x-ndjson get the response streamed as
+ * newline delimited JSON with one line per pair, in the order of the pairs, as soon as its route is calculated. All
+ * other clients, including those accepting *&#47;*, get the same objects in a JSON array. A pair that fails gets an
+ * error object with its index.
+ */
+@Path("route-bulk")
+public class RouteBulkResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteBulkResource.class);
+    public static final String NDJSON = NdjsonNegotiation.NDJSON;
+
+    private final GraphHopper graphHopper;
+    private final ProfileResolver profileResolver;
+    private final GHRequestTransformer ghRequestTransformer;
+    private final List<String> snapPreventionsDefault;
+    private final int maxPairs;
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public RouteBulkResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, ObjectMapper objectMapper) {
+        this.graphHopper = graphHopper;
+        this.profileResolver = profileResolver;
+        this.ghRequestTransformer = ghRequestTransformer;
+        this.snapPreventionsDefault = Arrays.stream(config.getString("routing.snap_preventions_default", "")
+                .split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        this.maxPairs = config.getInt("routing.bulk.max_pairs", 100_000);
+        this.objectMapper = objectMapper;
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, NDJSON})
+    public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq, @Context HttpHeaders httpHeaders) {
+        if (!request.hasSnapPreventions())
+            request.setSnapPreventions(snapPreventionsDefault);
+
+        StopWatch sw = new StopWatch().start();
+        List<int[]> pairs = getPairs(request.getHints());
+        request.getHints().remove("pairs");
+        if (pairs.size() > maxPairs)
+            throw new IllegalArgumentException("The number of pairs " + pairs.size() + " exceeds the maximum of " + maxPairs);
+        request = ghRequestTransformer.transformRequest(request);
+
+        if (Helper.isEmpty(request.getProfile()) && request.getCustomModel() != null)
+            throw new IllegalArgumentException("The 'profile' parameter is required when you use the `custom_model` parameter");
+
+        PMap profileResolverHints = new PMap(request.getHints());
+        profileResolverHints.putObject("profile", request.getProfile());
+        profileResolverHints.putObject("has_curbsides", !request.getCurbsides().isEmpty());
+        request.setProfile(profileResolver.resolveProfile(profileResolverHints));
+        removeLegacyParameters(request.getHints());
+
+        boolean instructions = request.getHints().getBool(INSTRUCTIONS, true);
+        boolean enableElevation = request.getHints().getBool("elevation", false);
+        boolean calcPoints = request.getHints().getBool(CALC_POINTS, true);
+        boolean pointsEncoded = request.getHints().getBool("points_encoded", true);
+        double pointsEncodedMultiplier = request.getHints().getDouble("points_encoded_multiplier", 1e5);
+        // the points are snapped before we start streaming, so errors of the request itself still lead to a JSON error
+        // response with status 400
+        Iterator<GHResponse> responses = graphHopper.routeBulk(request, pairs).iterator();
+        String profile = request.getProfile();
+        String logStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent")
+                + " " + request.getPoints().size() + " points, " + pairs.size() + " pairs, profile: " + request.getProfile();
+
+        // clients that only accept JSON get the same objects as one array, which is still streamed
+        boolean jsonArray = !NdjsonNegotiation.acceptsNdjson(httpHeaders);
+        StreamingOutput out = output -> {
+            int failed = 0;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, Helper.UTF_CS))) {
+                if (jsonArray)
+                    writer.write('[');
+                for (int pair = 0; responses.hasNext(); pair++) {
+                    GHResponse ghResponse = responses.next();
+                    StopWatch serializationSW = new StopWatch().start();
+                    if (jsonArray && pair > 0)
+                        writer.write(',');
+                    if (ghResponse.hasErrors()) {
+                        failed++;
+                        ObjectNode json = objectMapper.valueToTree(new MultiException(ghResponse.getErrors()));
+                        json.put("pair", pair);
+                        writer.write(objectMapper.writeValueAsString(json));
+                    } else {
+                        GHResponseJson json = new GHResponseJson(ghResponse, null, instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier);
+                        json.putPOJO("pair", pair);
+                        writer.write(objectMapper.writeValueAsString(json));
+                    }
+                    writer.write('\n');
+                    graphHopper.getRoutingMetrics().recordPhase(profile, SERIALIZATION, serializationSW.stop().getNanos());
+                }
+                if (jsonArray)
+                    writer.write(']');
+            }
+            logger.info(logStr + ", took: " + String.format("%.1f", sw.stop().getMillisDouble()) + " ms, failed: " + failed);
+        };
+        return Response.ok(out).type(jsonArray ? MediaType.APPLICATION_JSON : NDJSON).build();
+    }
+
+    private static List<int[]> getPairs(PMap hints) {
+        Object pairsObject = hints.getObject("pairs", null);
+        if (!(pairsObject instanceof List<?> list))
+            throw new IllegalArgumentException("You have to specify the 'pairs' to be routed as an array of [from_index, to_index] arrays");
+        List<int[]> pairs = new ArrayList<>(list.size());
+        for (Object pairObject : list) {
+            if (!(pairObject instanceof List<?> pair) || pair.size() != 2 || !(pair.get(0) instanceof Integer) || !(pair.get(1) instanceof Integer))
+                throw new IllegalArgumentException("Every pair must be an array of two point indices, but was: " + pairObject);
+            pairs.add(new int[]{(Integer) pair.get(0), (Integer) pair.get(1)});
+        }
+        return pairs;
+    }
+}
@@ -17,6 +17,9 @@
  */
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
@@ -25,8 +28,10 @@ import com.graphhopper.gpx.GpxConversions;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.GHRequestTransformer;
 import com.graphhopper.http.ProfileResolver;
+import com.graphhopper.jackson.GHResponseJson;
 import com.graphhopper.jackson.MultiException;
 import com.graphhopper.jackson.ResponsePathSerializer;
+import com.graphhopper.protobuf.ResponsePathProtobuf;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 import io.dropwizard.jersey.params.AbstractParam;
@@ -43,6 +48,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import static com.graphhopper.http.ProtobufNegotiation.acceptsProtobuf;
+import static com.graphhopper.routing.RoutingMetrics.Phase.SERIALIZATION;
 import static com.graphhopper.util.Parameters.Details.PATH_DETAILS;
 import static com.graphhopper.util.Parameters.Routing.*;
 import static java.util.stream.Collectors.toList;
@@ -66,9 +73,10 @@ public class RouteResource {
     private final Boolean hasElevation;
     private final String osmDate;
     private final List<String> snapPreventionsDefault;
+    private final ObjectWriter jsonWriter;
 
     @Inject
-    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation) {
+    public RouteResource(GraphHopperConfig config, GraphHopper graphHopper, ProfileResolver profileResolver, GHRequestTransformer ghRequestTransformer, @Named("hasElevation") Boolean hasElevation, ObjectMapper objectMapper) {
         this.config = config;
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
@@ -77,12 +85,15 @@ public class RouteResource {
         this.osmDate = graphHopper.getProperties().getAll().get("datareader.data.date");
         this.snapPreventionsDefault = Arrays.stream(config.getString("routing.snap_preventions_default", "")
                 .split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        // the output stream belongs to the container, so we must not close it
+        this.jsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml"})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml", ResponsePathProtobuf.MEDIA_TYPE})
     public Response doGet(
             @Context HttpServletRequest httpReq,
+            @Context HttpHeaders httpHeaders,
             @Context UriInfo uriInfo,
             @QueryParam(WAY_POINT_MAX_DISTANCE) @DefaultValue("0.5") double minPathPrecision,
             @QueryParam(ELEVATION_WAY_POINT_MAX_DISTANCE) Double minPathElevationPrecision,
@@ -169,22 +180,26 @@ public class RouteResource {
                     + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
                     + ", points0: " + ghResponse.getBest().getPoints().size()
                     + ", debugInfo: " + ghResponse.getDebugInfo());
-            return writeGPX ?
-                    gpxSuccessResponseBuilder(ghResponse, timeString, trackName, enableElevation, withRoute, withTrack, withWayPoints, Constants.VERSION).
-                            header("X-GH-Took", "" + Math.round(took)).
-                            build()
-                    :
-                    Response.ok(ResponsePathSerializer.jsonObject(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
-                            header("X-GH-Took", "" + Math.round(took)).
-                            type(MediaType.APPLICATION_JSON).
-                            build();
+            Response.ResponseBuilder builder;
+            if (writeGPX) {
+                // we measure the conversion into the GPX document, but not writing it to the output stream
+                StopWatch serializationSW = new StopWatch().start();
+                builder = gpxSuccessResponseBuilder(ghResponse, timeString, trackName, enableElevation, withRoute, withTrack, withWayPoints, Constants.VERSION);
+                graphHopper.getRoutingMetrics().recordPhase(profileName, SERIALIZATION, serializationSW.stop().getNanos());
+            } else if (acceptsProtobuf(httpHeaders)) {
+                builder = Response.ok(writeProtobuf(ghResponse, Math.round(took), instructions, calcPoints, enableElevation, pointsEncodedMultiplier, profileName), ResponsePathProtobuf.MEDIA_TYPE);
+            } else {
+                GHResponseJson json = new GHResponseJson(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier);
+                builder = Response.ok(streamJson(json, profileName)).type(MediaType.APPLICATION_JSON);
+            }
+            return builder.header("X-GH-Took", "" + Math.round(took)).build();
         }
     }
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq) {
+    @Produces({MediaType.APPLICATION_JSON, ResponsePathProtobuf.MEDIA_TYPE})
+    public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq, @Context HttpHeaders httpHeaders) {
         if (!request.hasSnapPreventions())
             request.setSnapPreventions(snapPreventionsDefault);
 
@@ -223,13 +238,39 @@ public class RouteResource {
                     + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
                     + ", points0: " + ghResponse.getBest().getPoints().size()
                     + ", debugInfo: " + ghResponse.getDebugInfo());
-            return Response.ok(ResponsePathSerializer.jsonObject(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier)).
+            if (acceptsProtobuf(httpHeaders))
+                return Response.ok(writeProtobuf(ghResponse, Math.round(took), instructions, calcPoints, enableElevation, pointsEncodedMultiplier, request.getProfile()), ResponsePathProtobuf.MEDIA_TYPE).
+                        header("X-GH-Took", "" + Math.round(took)).
+                        build();
+            GHResponseJson json = new GHResponseJson(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), Math.round(took), osmDate), instructions, calcPoints, enableElevation, pointsEncoded, pointsEncodedMultiplier);
+            return Response.ok(streamJson(json, request.getProfile())).
                     header("X-GH-Took", "" + Math.round(took)).
                     type(MediaType.APPLICATION_JSON).
                     build();
         }
     }
 
+    /**
+     * The paths are written directly to the output stream without building a JSON tree first. Therefore, the
+     * serialization time we record for JSON responses includes writing them to the output stream.
+     */
+    private StreamingOutput streamJson(GHResponseJson json, String profileName) {
+        return output -> {
+            StopWatch serializationSW = new StopWatch().start();
+            jsonWriter.writeValue(output, json);
+            graphHopper.getRoutingMetrics().recordPhase(profileName, SERIALIZATION, serializationSW.stop().getNanos());
+        };
+    }
+
+    private byte[] writeProtobuf(GHResponse ghResponse, long took, boolean instructions, boolean calcPoints,
+                                 boolean enableElevation, double pointsMultiplier, String profileName) {
+        StopWatch serializationSW = new StopWatch().start();
+        byte[] bytes = ResponsePathProtobuf.write(ghResponse, new ResponsePathSerializer.Info(config.getCopyrights(), took, osmDate),
+                instructions, calcPoints, enableElevation, pointsMultiplier).toByteArray();
+        graphHopper.getRoutingMetrics().recordPhase(profileName, SERIALIZATION, serializationSW.stop().getNanos());
+        return bytes;
+    }
+
     public static void removeLegacyParameters(PMap hints) {
         // these parameters should only be used to resolve the profile, but should not be passed to GraphHopper
         hints.remove("weighting");
@@ -4,7 +4,7 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
 import com.graphhopper.http.ProfileResolver;
-import com.graphhopper.isochrone.algorithm.ShortestPathTree;
+import com.graphhopper.isochrone.algorithm.OneToAllSearch;
 import com.graphhopper.routing.ev.*;
 import com.graphhopper.routing.querygraph.QueryGraph;
 import com.graphhopper.routing.util.DefaultSnapFilter;
@@ -80,6 +80,8 @@ public class SPTResource {
         StopWatch sw = new StopWatch().start();
         PMap hintsMap = new PMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        // the one-to-all search can only use CH if it is explicitly enabled, because it pays off for large limits only
+        boolean useCH = !hintsMap.getBool(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.CH.DISABLE, true);
         hintsMap.putObject(Parameters.Landmark.DISABLE, true);
 
@@ -101,7 +103,7 @@ public class SPTResource {
         QueryGraph queryGraph = QueryGraph.create(graph, snap);
         NodeAccess nodeAccess = queryGraph.getNodeAccess();
         TraversalMode traversalMode = profile.hasTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, queryGraph.wrapWeighting(weighting), reverseFlow, traversalMode);
+        OneToAllSearch shortestPathTree = IsochroneResource.createOneToAllSearch(graphHopper, profileName, useCH, queryGraph, weighting, reverseFlow, traversalMode);
 
         if (distanceInMeter.orElseThrow(() -> new IllegalArgumentException("query param distance_limit is not a number.")) > 0) {
             shortestPathTree.setDistanceLimit(distanceInMeter.getAsLong());
@@ -136,8 +138,9 @@ public class SPTResource {
                 }
                 sb.append(LINE_SEP);
                 writer.write(sb.toString());
-                shortestPathTree.search(snap.getClosestNode(), l -> {
-                    IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
+                OneToAllSearch.Cursor cursor = shortestPathTree.search(snap.getClosestNode());
+                while (cursor.next()) {
+                    IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, cursor);
                     sb.setLength(0);
                     for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
                         String col = columns.get(colIndex);
@@ -213,12 +216,8 @@ public class SPTResource {
                         }
                     }
                     sb.append(LINE_SEP);
-                    try {
-                        writer.write(sb.toString());
-                    } catch (IOException ex) {
-                        throw new RuntimeException(ex);
-                    }
-                });
+                    writer.write(sb.toString());
+                }
 
                 logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
             } catch (IOException e) {
@@ -229,25 +228,24 @@ public class SPTResource {
         return Response.ok(out).type("text/csv").build();
     }
 
-    private IsoLabelWithCoordinates isoLabelWithCoordinates(NodeAccess na, ShortestPathTree.IsoLabel label) {
-        double lat = na.getLat(label.node);
-        double lon = na.getLon(label.node);
+    private IsoLabelWithCoordinates isoLabelWithCoordinates(NodeAccess na, OneToAllSearch.Cursor label) {
+        double lat = na.getLat(label.getNode());
+        double lon = na.getLon(label.getNode());
         IsoLabelWithCoordinates isoLabelWC = new IsoLabelWithCoordinates();
-        isoLabelWC.nodeId = label.node;
+        isoLabelWC.nodeId = label.getNode();
         isoLabelWC.coordinate = new GHPoint(lat, lon);
-        isoLabelWC.timeMillis = Math.round(label.time);
-        isoLabelWC.distance = (int) Math.round(label.distance);
-        isoLabelWC.edgeId = label.edge;
-        if (label.parent != null) {
-            ShortestPathTree.IsoLabel prevLabel = label.parent;
-            int prevNodeId = prevLabel.node;
+        isoLabelWC.timeMillis = Math.round(label.getTime());
+        isoLabelWC.distance = (int) Math.round(label.getDistance());
+        isoLabelWC.edgeId = label.getEdge();
+        if (label.hasParent()) {
+            int prevNodeId = label.getParentNode();
             double prevLat = na.getLat(prevNodeId);
             double prevLon = na.getLon(prevNodeId);
             isoLabelWC.prevNodeId = prevNodeId;
-            isoLabelWC.prevEdgeId = prevLabel.edge;
+            isoLabelWC.prevEdgeId = label.getParentEdge();
             isoLabelWC.prevCoordinate = new GHPoint(prevLat, prevLon);
-            isoLabelWC.prevDistance = (int) Math.round(prevLabel.distance);
-            isoLabelWC.prevTimeMillis = Math.round(prevLabel.time);
+            isoLabelWC.prevDistance = (int) Math.round(label.getParentDistance());
+            isoLabelWC.prevTimeMillis = Math.round(label.getParentTime());
         }
         return isoLabelWC;
     }
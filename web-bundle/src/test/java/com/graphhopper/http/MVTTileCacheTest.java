@@ -0,0 +1,112 @@
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import no.ecc.vectortile.VectorTileDecoder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static com.graphhopper.http.MVTTileCache.MAX_GENERALIZED_ZOOM;
+import static com.graphhopper.http.MVTTileCache.lat2tile;
+import static com.graphhopper.http.MVTTileCache.lon2tile;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MVTTileCacheTest {
+    private static final String DIR = "./target/mvt-tile-cache-gh/";
+    private static GraphHopper hopper;
+
+    @BeforeAll
+    public static void setup() {
+        Helper.removeDir(new File(DIR));
+        GraphHopperConfig config = new GraphHopperConfig().
+                putObject("graph.encoded_values", "road_class").
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.location", DIR).
+                setProfiles(List.of(TestProfiles.constantSpeed("car")));
+        hopper = new GraphHopper().init(config);
+        hopper.importOrLoad();
+    }
+
+    @AfterAll
+    public static void cleanUp() {
+        hopper.close();
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testInvalidTiles() {
+        MVTTileCache tileCache = new MVTTileCache(hopper, new GraphHopperConfig());
+        tileCache.start();
+        try {
+            // the generalized tiles use x << z | y as key, so y = 2^z would be the key of tile 1/0 otherwise
+            assertThrows(IllegalArgumentException.class, () -> tileCache.getTile(1, 0, 2, false));
+            assertThrows(IllegalArgumentException.class, () -> tileCache.getTile(1, 2, 0, false));
+            assertThrows(IllegalArgumentException.class, () -> tileCache.getTile(12, -1, 0, false));
+            assertThrows(IllegalArgumentException.class, () -> tileCache.getTile(12, 0, -1, false));
+            assertThrows(IllegalArgumentException.class, () -> tileCache.getTile(-1, 0, 0, false));
+            assertThrows(IllegalArgumentException.class, () -> tileCache.getTile(MVTTileCache.MAX_ZOOM + 1, 0, 0, false));
+            assertFalse(tileCache.isCached(1, 0, 2));
+            tileCache.getTile(1, 1, 1, false);
+            assertTrue(tileCache.isCached(1, 1, 1));
+        } finally {
+            tileCache.stop();
+        }
+    }
+
+    @Test
+    public void testPrerender() throws Exception {
+        MVTTileCache tileCache = new MVTTileCache(hopper, new GraphHopperConfig().putObject("mvt.prerender.max_zoom", 10));
+        tileCache.start();
+        try {
+            tileCache.awaitPrerendering(60_000);
+            // Andorra la Vella
+            double lat = 42.5063, lon = 1.5218;
+            for (int z = 0; z <= 10; z++) {
+                int x = lon2tile(lon, z), y = lat2tile(lat, z);
+                boolean cached = tileCache.isCached(z, x, y);
+                if (z <= MAX_GENERALIZED_ZOOM)
+                    // there are only primary roads in Andorra, and empty tiles are not pre-rendered
+                    assertEquals(z >= 8, cached, "zoom " + z);
+                else
+                    assertTrue(cached, "zoom " + z);
+            }
+            // tiles outside of the graph bounds are not rendered
+            assertFalse(tileCache.isCached(10, lon2tile(lon, 10) + 10, lat2tile(lat, 10)));
+
+            int z = 8, x = lon2tile(lon, z), y = lat2tile(lat, z);
+            List<VectorTileDecoder.Feature> features = getFeatures(tileCache, z, x, y);
+            assertFalse(features.isEmpty());
+            for (VectorTileDecoder.Feature feature : features)
+                assertEquals("primary", feature.getAttributes().get("road_class"));
+            // the edges are merged into lines, which still follow the curves of the roads
+            assertTrue(features.stream().anyMatch(f -> f.getGeometry().getCoordinates().length > 2));
+
+            // the lines are simplified more at lower zoom levels, so the four tiles of the next zoom covering the same
+            // area contain more coordinates
+            int coordinates = countCoordinates(features);
+            int nextZoomCoordinates = 0;
+            for (int i = 0; i < 4; i++)
+                nextZoomCoordinates += countCoordinates(getFeatures(tileCache, z + 1, 2 * x + i % 2, 2 * y + i / 2));
+            assertTrue(coordinates < nextZoomCoordinates, coordinates + " vs. " + nextZoomCoordinates);
+        } finally {
+            tileCache.stop();
+        }
+    }
+
+    private static List<VectorTileDecoder.Feature> getFeatures(MVTTileCache tileCache, int z, int x, int y) throws IOException {
+        return new VectorTileDecoder().decode(tileCache.getTile(z, x, y, false)).asList();
+    }
+
+    private static int countCoordinates(List<VectorTileDecoder.Feature> features) {
+        return features.stream().mapToInt(f -> f.getGeometry().getCoordinates().length).sum();
+    }
+}
@@ -19,6 +19,7 @@ package com.graphhopper.application;
 
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.LMProfile;
 import com.graphhopper.gpx.GpxConversions;
 import com.graphhopper.jackson.Gpx;
@@ -30,6 +31,7 @@ import com.graphhopper.routing.TestProfiles;
 import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PMap;
+import com.graphhopper.util.TurnCostsConfig;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,6 +39,8 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.graphhopper.application.MapMatchingTest.fetchStreets;
 import static org.junit.jupiter.api.Assertions.*;
@@ -80,6 +84,62 @@ public class MapMatching2Test {
         assertEquals(28790, mr.getMatchMillis(), 50);
     }
 
+    @Test
+    public void testEdgeBasedCH() throws IOException {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(TestProfiles.accessAndSpeed("my_profile", "car").setTurnCostsConfig(TurnCostsConfig.car()));
+        hopper.getCHPreparationHandler().setCHProfiles(new CHProfile("my_profile"));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("my_profile"));
+        hopper.importOrLoad();
+        Gpx gpx = xmlMapper.readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+
+        // edge-based CH, LM is only used without it, and Dijkstra
+        MatchResult chResult = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile"))
+                .match(GpxConversions.getEntries(gpx.trk.get(0)));
+        MatchResult dijkstraResult = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile").putObject("ch.disable", true))
+                .match(GpxConversions.getEntries(gpx.trk.get(0)));
+
+        int edgeCount = hopper.getBaseGraph().getAllEdges().length();
+        for (EdgeMatch em : chResult.getEdgeMatches()) {
+            assertTrue(em.getEdgeState().getEdge() < edgeCount, "result contains virtual edges:" + em.getEdgeState().toString());
+            validateEdgeMatch(em);
+        }
+        assertEquals(chResult.getGpxEntriesLength(), chResult.getMatchLength(), 2.5);
+        assertEquals(28790, chResult.getMatchMillis(), 50);
+        assertEquals(edges(dijkstraResult), edges(chResult));
+        assertEquals(dijkstraResult.getMatchLength(), chResult.getMatchLength(), 1.e-3);
+        assertEquals(dijkstraResult.getMatchMillis(), chResult.getMatchMillis());
+    }
+
+    @Test
+    public void testLandmarksCanBeDisabled() throws IOException {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/map-issue13.osm.gz");
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(TestProfiles.accessAndSpeed("my_profile", "car"));
+        hopper.getLMPreparationHandler().setLMProfiles(new LMProfile("my_profile"));
+        hopper.importOrLoad();
+        Gpx gpx = xmlMapper.readValue(getClass().getResourceAsStream("/issue-13.gpx"), Gpx.class);
+
+        MapMatching lm = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile"));
+        MatchResult lmResult = lm.match(GpxConversions.getEntries(gpx.trk.get(0)));
+        MapMatching dijkstra = MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile").putObject("lm.disable", true));
+        MatchResult dijkstraResult = dijkstra.match(GpxConversions.getEntries(gpx.trk.get(0)));
+        assertEquals(edges(dijkstraResult), edges(lmResult));
+        assertEquals(dijkstraResult.getMatchMillis(), lmResult.getMatchMillis());
+        // the searches towards the single targets explore less than the one-to-many searches
+        assertTrue((long) lm.getStatistics().get("visitedNodes") < (long) dijkstra.getStatistics().get("visitedNodes"),
+                lm.getStatistics().get("visitedNodes") + " vs. " + dijkstra.getStatistics().get("visitedNodes"));
+    }
+
+    private static List<Integer> edges(MatchResult matchResult) {
+        return matchResult.getEdgeMatches().stream().map(em -> em.getEdgeState().getEdge()).collect(Collectors.toList());
+    }
+
     @Test
     public void testIssue70() throws IOException {
         GraphHopper hopper = new GraphHopper();
@@ -0,0 +1,119 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.gpx.GpxConversions;
+import com.graphhopper.jackson.Gpx;
+import com.graphhopper.matching.*;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapMatchingSessionTest {
+    private static final String GH_LOCATION = "../target/mapmatchingsessiontest-gh";
+    private final XmlMapper xmlMapper = new XmlMapper();
+
+    @BeforeEach
+    @AfterEach
+    public void clean() {
+        Helper.removeDir(new File(GH_LOCATION));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"map-issue13.osm.gz,/issue-13.gpx", "issue-70.osm.gz,/issue-70.gpx", "map-issue13.osm.gz,/issue-127.gpx"})
+    public void sameAsMatch(String osmFile, String gpxFile) throws IOException {
+        MapMatching mapMatching = createMapMatching(osmFile);
+        List<Observation> observations = GpxConversions.getEntries(readGpx(gpxFile).trk.get(0));
+        MatchResult mr = mapMatching.match(observations);
+
+        MapMatchingSession session = mapMatching.startSession();
+        List<EdgeMatch> edgeMatches = new ArrayList<>();
+        for (Observation observation : GpxConversions.getEntries(readGpx(gpxFile).trk.get(0)))
+            edgeMatches.addAll(session.add(observation));
+        edgeMatches.addAll(session.finish());
+
+        assertEquals(toString(mr.getEdgeMatches()), toString(edgeMatches));
+        assertEquals(mr.getMatchLength(), session.getMatchLength(), 1.e-3);
+        assertEquals(mr.getMatchMillis(), session.getMatchMillis());
+        assertEquals(mr.getEdgeMatches().stream().mapToInt(em -> em.getStates().size()).sum(),
+                edgeMatches.stream().mapToInt(em -> em.getStates().size()).sum());
+    }
+
+    @Test
+    public void emitEdgeMatchesBeforeFinish() throws IOException {
+        MapMatching mapMatching = createMapMatching("map-issue13.osm.gz");
+        List<Observation> observations = GpxConversions.getEntries(readGpx("/issue-13.gpx").trk.get(0));
+        MatchResult mr = mapMatching.match(observations);
+
+        // with a window of a single observation the matches are emitted right away and the result is still a
+        // connected path
+        MapMatchingSession session = mapMatching.startSession().setMaxWindowSize(1);
+        List<EdgeMatch> edgeMatches = new ArrayList<>();
+        int emittedBeforeFinish = 0;
+        for (Observation observation : GpxConversions.getEntries(readGpx("/issue-13.gpx").trk.get(0))) {
+            List<EdgeMatch> emitted = session.add(observation);
+            emittedBeforeFinish += emitted.size();
+            edgeMatches.addAll(emitted);
+        }
+        edgeMatches.addAll(session.finish());
+        assertTrue(emittedBeforeFinish > 0);
+        for (int i = 1; i < edgeMatches.size(); i++)
+            assertEquals(edgeMatches.get(i - 1).getEdgeState().getAdjNode(), edgeMatches.get(i).getEdgeState().getBaseNode());
+        assertEquals(mr.getMatchLength(), session.getMatchLength(), 50);
+
+        assertThrows(IllegalStateException.class, () -> session.add(observations.get(0)));
+    }
+
+    private MapMatching createMapMatching(String osmFile) {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("../map-matching/files/" + osmFile);
+        hopper.setGraphHopperLocation(GH_LOCATION);
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(TestProfiles.accessAndSpeed("my_profile", "car"));
+        hopper.importOrLoad();
+        return MapMatching.fromGraphHopper(hopper, new PMap().putObject("profile", "my_profile"));
+    }
+
+    private Gpx readGpx(String file) throws IOException {
+        return xmlMapper.readValue(getClass().getResourceAsStream(file), Gpx.class);
+    }
+
+    private static List<String> toString(List<EdgeMatch> edgeMatches) {
+        List<String> result = new ArrayList<>();
+        for (EdgeMatch edgeMatch : edgeMatches) {
+            EdgeIteratorState edge = edgeMatch.getEdgeState();
+            result.add(edge.getEdge() + ":" + edge.getBaseNode() + "->" + edge.getAdjNode());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.JsonFeature;
+import com.graphhopper.util.TurnCostsConfig;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static com.graphhopper.http.NdjsonNegotiation.NDJSON;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class IsochroneBulkResourceTest {
+    private static final String DIR = "./target/andorra-isochrone-bulk-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+    private static final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.location", DIR).
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                putObject("isochrone.bulk.threads", 2).
+                setProfiles(List.of(TestProfiles.accessAndSpeed("fast_car", "car").setTurnCostsConfig(TurnCostsConfig.car())));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private static List<JsonNode> postBulk(String body) throws Exception {
+        String rsp = clientTarget(app, "/isochrone-bulk").request(NDJSON).post(Entity.json(body), String.class);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : rsp.split("\n"))
+            lines.add(objectMapper.readTree(line));
+        return lines;
+    }
+
+    @Test
+    public void testTimeLimit() throws Exception {
+        List<JsonNode> lines = postBulk("{ \"profile\": \"fast_car\", \"points\": [[1.573792, 42.531073], [1.5274, 42.5093], [1.573792, 42.531073]]," +
+                " \"time_limit\": 300, \"buckets\": 2 }");
+        assertEquals(6, lines.size());
+        Map<String, Geometry> isochrones = new HashMap<>();
+        for (JsonNode line : lines) {
+            assertFalse(line.has("message"), line.toString());
+            JsonFeature feature = objectMapper.treeToValue(line, JsonFeature.class);
+            assertEquals("Feature", feature.getType());
+            assertNull(isochrones.put(feature.getProperty("point") + "_" + feature.getProperty("bucket"), feature.getGeometry()));
+        }
+        for (String point : new String[]{"0", "2"}) {
+            // same as in IsochroneResourceTest#requestByTimeLimit
+            Geometry polygon0 = isochrones.get(point + "_0");
+            Geometry polygon1 = isochrones.get(point + "_1");
+            assertTrue(polygon0.contains(geometryFactory.createPoint(new Coordinate(1.587224, 42.5386))));
+            assertFalse(polygon0.contains(geometryFactory.createPoint(new Coordinate(1.589756, 42.558012))));
+            assertTrue(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.589756, 42.558012))));
+            assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
+        }
+        assertTrue(isochrones.get("1_1").contains(geometryFactory.createPoint(new Coordinate(1.5274, 42.5093))));
+    }
+
+    @Test
+    public void testPointNotFound() throws Exception {
+        // the first point is within the bounds but cannot be snapped to a road accessible by car
+        List<JsonNode> lines = postBulk("{ \"profile\": \"fast_car\", \"points\": [[1.602974, 42.49058], [1.5274, 42.5093]], \"distance_limit\": 2000 }");
+        assertEquals(2, lines.size());
+        for (JsonNode line : lines) {
+            if (line.has("message")) {
+                assertEquals(0, line.get("point").asInt());
+                assertTrue(line.get("message").asText().contains("Cannot find point 0"), line.toString());
+            } else {
+                assertEquals(1, line.get("properties").get("point").asInt());
+                assertEquals(0, line.get("properties").get("bucket").asInt());
+            }
+        }
+    }
+
+    @Test
+    public void testMediaType() throws Exception {
+        String body = "{ \"profile\": \"fast_car\", \"points\": [[1.573792, 42.531073], [1.5274, 42.5093]], \"buckets\": 2 }";
+        Response rsp = clientTarget(app, "/isochrone-bulk").request(NDJSON).post(Entity.json(body));
+        assertEquals(200, rsp.getStatus());
+        assertEquals(NDJSON, rsp.getMediaType().toString());
+        assertEquals(4, rsp.readEntity(String.class).split("\n").length);
+
+        // clients that do not explicitly ask for NDJSON get a JSON array with the same features, also for wildcards
+        for (String accept : new String[]{MediaType.APPLICATION_JSON, MediaType.WILDCARD, null}) {
+            rsp = accept == null
+                    ? clientTarget(app, "/isochrone-bulk").request().post(Entity.json(body))
+                    : clientTarget(app, "/isochrone-bulk").request(accept).post(Entity.json(body));
+            assertEquals(200, rsp.getStatus());
+            assertEquals(MediaType.APPLICATION_JSON, rsp.getMediaType().toString(), "accept: " + accept);
+            JsonNode array = objectMapper.readTree(rsp.readEntity(String.class));
+            assertTrue(array.isArray());
+            assertEquals(4, array.size());
+            for (JsonNode feature : array) {
+                assertEquals("Feature", feature.get("type").asText());
+                assertEquals("Polygon", feature.get("geometry").get("type").asText());
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        Response rsp = clientTarget(app, "/isochrone-bulk").request().post(Entity.json("{ \"profile\": \"fast_car\", \"points\": [] }"));
+        assertEquals(400, rsp.getStatus());
+        assertTrue(rsp.readEntity(JsonNode.class).get("message").asText().contains("at least one point"));
+
+        rsp = clientTarget(app, "/isochrone-bulk").request().post(Entity.json("{ \"profile\": \"fast_car\", \"points\": [[1.5274, 42.5093]], \"buckets\": 21 }"));
+        assertEquals(400, rsp.getStatus());
+        assertTrue(rsp.readEntity(JsonNode.class).get("message").asText().contains("between 1 and 20"));
+
+        rsp = clientTarget(app, "/isochrone-bulk").request().post(Entity.json("{ \"profile\": \"bike\", \"points\": [[1.5274, 42.5093]] }"));
+        assertEquals(400, rsp.getStatus());
+    }
+}
@@ -39,10 +39,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.graphhopper.application.util.TestUtils.clientTarget;
 import static com.graphhopper.util.Parameters.Details.STREET_NAME;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Peter Karich
@@ -60,6 +61,7 @@ public class MVTResourceTest {
                 putObject("datareader.file", "../core/files/andorra.osm.pbf").
                 putObject("import.osm.ignored_highways", "").
                 putObject("graph.location", DIR).
+                putObject("mvt.prerender.max_zoom", 9).
                 setProfiles(List.of(TestProfiles.constantSpeed("car")));
         return config;
     }
@@ -96,6 +98,31 @@ public class MVTResourceTest {
         assertEquals("primary", feature.getAttributes().get("road_class"));
     }
 
+    @Test
+    public void testGeneralizedLowZoomTile() throws IOException {
+        byte[] bytes = readInputStream(clientTarget(app, "/mvt/9/258/189.mvt").request().get(InputStream.class));
+        List<VectorTileDecoder.Feature> features = new VectorTileDecoder().decode(bytes).asList();
+        assertFalse(features.isEmpty());
+        for (VectorTileDecoder.Feature feature : features) {
+            assertEquals("roads", feature.getLayerName());
+            assertTrue(Set.of("motorway", "trunk", "primary").contains(feature.getAttributes().get("road_class")), feature.getAttributes().toString());
+        }
+
+        // tiles are cached, so the same tile is returned again
+        assertArrayEquals(bytes, readInputStream(clientTarget(app, "/mvt/9/258/189.mvt").request().get(InputStream.class)));
+        // there are no primary roads at zoom 7
+        List<VectorTileDecoder.Feature> z7Features = new VectorTileDecoder().decode(readInputStream(clientTarget(app, "/mvt/7/64/47.mvt").request().get(InputStream.class))).asList();
+        assertTrue(z7Features.size() < features.size());
+        assertTrue(z7Features.stream().noneMatch(f -> "primary".equals(f.getAttributes().get("road_class"))));
+    }
+
+    @Test
+    public void testInvalidTile() {
+        assertEquals(400, clientTarget(app, "/mvt/9/258/512.mvt").request().get().getStatus());
+        assertEquals(400, clientTarget(app, "/mvt/9/-1/189.mvt").request().get().getStatus());
+        assertEquals(400, clientTarget(app, "/mvt/23/0/0.mvt").request().get().getStatus());
+    }
+
     private static byte[] readInputStream(InputStream is) throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         int nRead;
@@ -93,6 +93,19 @@ public class PtRouteResourceTest {
         assertEquals(1, jsonNode.at("/paths/0/legs").size());
     }
 
+    @Test
+    public void testStationStationQueryWithRaptor() {
+        JsonNode jsonNode = clientTarget(app, "/route")
+                .queryParam("point", "Stop(NADAV)")
+                .queryParam("point", "Stop(NANAA)")
+                .queryParam("profile", "pt")
+                .queryParam("pt.earliest_departure_time", "2007-01-01T15:44:00Z")
+                .queryParam("pt.algorithm", "raptor")
+                .request().get(JsonNode.class);
+        assertEquals(1, jsonNode.at("/paths/0/legs").size());
+        assertEquals("NANAA", jsonNode.at("/paths/0/legs/0/stops/1/stop_id").asText());
+    }
+
     @Test
     public void testPointPointQuery() {
         JsonNode jsonNode = clientTarget(app, "/route")
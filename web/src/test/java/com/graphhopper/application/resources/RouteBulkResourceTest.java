@@ -0,0 +1,160 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.resources.RouteBulkResource;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class RouteBulkResourceTest {
+    private static final String DIR = "./target/andorra-route-bulk-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+    private static final ObjectMapper objectMapper = Jackson.newObjectMapper();
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.location", DIR).
+                putObject("graph.encoded_values", "car_access, car_average_speed").
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car"))).
+                setCHProfiles(List.of(new CHProfile("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    private static final String POINTS = "[[1.5274, 42.5093], [1.5410, 42.5126], [1.5323, 42.5571], [1.5880, 42.5350]]";
+
+    private static List<JsonNode> postBulk(String body) throws Exception {
+        String rsp = clientTarget(app, "/route-bulk").request(RouteBulkResource.NDJSON).post(Entity.json(body), String.class);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : rsp.split("\n"))
+            lines.add(objectMapper.readTree(line));
+        return lines;
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testMatchesRoute(boolean chDisabled) throws Exception {
+        String pairs = "[[0, 1], [1, 0], [2, 3], [3, 0], [0, 0]]";
+        List<JsonNode> lines = postBulk("{ \"profile\": \"car\", \"points\": " + POINTS + ", \"pairs\": " + pairs
+                + ", \"calc_points\": false, \"instructions\": false, \"ch.disable\": " + chDisabled + " }");
+        assertEquals(5, lines.size());
+        JsonNode points = objectMapper.readTree(POINTS);
+        JsonNode pairsJson = objectMapper.readTree(pairs);
+        for (JsonNode line : lines) {
+            int pair = line.get("pair").asInt();
+            assertFalse(line.has("message"), line.toString());
+            assertFalse(line.get("paths").get(0).has("points"));
+            JsonNode from = points.get(pairsJson.get(pair).get(0).asInt());
+            JsonNode to = points.get(pairsJson.get(pair).get(1).asInt());
+            String routeBody = "{ \"profile\": \"car\", \"points\": [" + from + ", " + to + "], \"calc_points\": false, \"instructions\": false }";
+            JsonNode route = clientTarget(app, "/route").request().post(Entity.json(routeBody), JsonNode.class);
+            assertEquals(route.get("paths").get(0).get("distance").asDouble(), line.get("paths").get(0).get("distance").asDouble(), 1, "pair " + pair);
+            assertEquals(route.get("paths").get(0).get("time").asLong(), line.get("paths").get(0).get("time").asLong(), 1000, "pair " + pair);
+        }
+    }
+
+    @Test
+    public void testPointNotFound() throws Exception {
+        // the first point is within the bounds but cannot be snapped to a road accessible by car
+        String points = "[[1.602974, 42.49058], [1.5274, 42.5093], [1.5410, 42.5126]]";
+        List<JsonNode> lines = postBulk("{ \"profile\": \"car\", \"points\": " + points + ", \"pairs\": [[0, 1], [1, 2]] }");
+        assertEquals(2, lines.size());
+        for (JsonNode line : lines) {
+            if (line.get("pair").asInt() == 0) {
+                assertTrue(line.get("message").asText().contains("Cannot find point 0"), line.toString());
+            } else {
+                assertFalse(line.has("message"), line.toString());
+                assertTrue(line.get("paths").get(0).has("points"));
+                assertTrue(line.get("paths").get(0).has("instructions"));
+            }
+        }
+    }
+
+    @Test
+    public void testMediaType() throws Exception {
+        String body = "{ \"profile\": \"car\", \"points\": " + POINTS + ", \"pairs\": [[0, 1], [2, 3], [1, 1]], \"calc_points\": false }";
+        Response rsp = clientTarget(app, "/route-bulk").request(RouteBulkResource.NDJSON).post(Entity.json(body));
+        assertEquals(200, rsp.getStatus());
+        assertEquals(RouteBulkResource.NDJSON, rsp.getMediaType().toString());
+        assertEquals(3, rsp.readEntity(String.class).split("\n").length);
+
+        // clients that do not explicitly ask for NDJSON get a JSON array with the same objects, also for wildcards
+        for (String accept : new String[]{MediaType.APPLICATION_JSON, MediaType.WILDCARD, null}) {
+            rsp = accept == null
+                    ? clientTarget(app, "/route-bulk").request().post(Entity.json(body))
+                    : clientTarget(app, "/route-bulk").request(accept).post(Entity.json(body));
+            assertEquals(200, rsp.getStatus());
+            assertEquals(MediaType.APPLICATION_JSON, rsp.getMediaType().toString(), "accept: " + accept);
+            JsonNode array = objectMapper.readTree(rsp.readEntity(String.class));
+            assertTrue(array.isArray());
+            assertEquals(3, array.size());
+            for (int pair = 0; pair < 3; pair++) {
+                assertEquals(pair, array.get(pair).get("pair").asInt());
+                assertFalse(array.get(pair).has("message"), array.get(pair).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        Response rsp = clientTarget(app, "/route-bulk").request().post(Entity.json("{ \"profile\": \"car\", \"points\": " + POINTS + " }"));
+        assertEquals(400, rsp.getStatus());
+        assertTrue(rsp.readEntity(JsonNode.class).get("message").asText().contains("You have to specify the 'pairs'"));
+
+        rsp = clientTarget(app, "/route-bulk").request().post(Entity.json("{ \"profile\": \"car\", \"points\": " + POINTS + ", \"pairs\": [[0, 4]] }"));
+        assertEquals(400, rsp.getStatus());
+        assertTrue(rsp.readEntity(JsonNode.class).get("message").asText().contains("Pair 0 refers to point 4"));
+
+        rsp = clientTarget(app, "/route-bulk").request().post(Entity.json("{ \"profile\": \"bike\", \"points\": " + POINTS + ", \"pairs\": [[0, 1]] }"));
+        assertEquals(400, rsp.getStatus());
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.application.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.protobuf.DescriptorProtos.*;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.graphhopper.application.GraphHopperApplication;
+import com.graphhopper.application.GraphHopperServerConfiguration;
+import com.graphhopper.application.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.protobuf.ResponsePathProtobuf;
+import com.graphhopper.routing.TestProfiles;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.graphhopper.application.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads the binary route response with protobuf-java and the schema in docs/web/route.proto, so the hand-written
+ * encoder cannot silently diverge from the published schema.
+ */
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class RouteResourceProtobufTest {
+    private static final String DIR = "./target/andorra-protobuf-gh/";
+    private static final String QUERY = "/route?profile=car&point=42.554851,1.536198&point=42.510071,1.548128" +
+            "&details=road_class&details=max_speed&details=edge_id";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.encoded_values", "road_class, max_speed, car_access, car_average_speed").
+                putObject("import.osm.ignored_highways", "").
+                putObject("graph.location", DIR).
+                setProfiles(List.of(TestProfiles.accessAndSpeed("car"))).
+                setCHProfiles(List.of(new CHProfile("car")));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testSameAsJson() throws IOException {
+        Descriptors.Descriptor routeResponse = parseProto("../docs/web/route.proto").findMessageTypeByName("RouteResponse");
+        byte[] bytes = clientTarget(app, QUERY).request(ResponsePathProtobuf.MEDIA_TYPE).get(byte[].class);
+        DynamicMessage rsp = DynamicMessage.parseFrom(routeResponse, bytes);
+        // fields that are not in the schema or whose wire type does not match the schema end up here
+        assertNoUnknownFields(rsp);
+
+        JsonNode json = clientTarget(app, QUERY + "&points_encoded=false").request().get(JsonNode.class);
+        assertEquals(json.at("/info/copyrights/0").asText(), get(get(rsp, "info"), "copyrights", 0));
+        assertEquals(1, rsp.getRepeatedFieldCount(field(rsp, "paths")));
+        DynamicMessage path = get(rsp, "paths", 0);
+        JsonNode jsonPath = json.at("/paths/0");
+        assertEquals(jsonPath.get("distance").asDouble(), (double) get(path, "distance"), 1.e-3);
+        assertEquals(jsonPath.get("time").asLong(), (long) get(path, "time"));
+        for (int i = 0; i < 4; i++)
+            assertEquals(jsonPath.at("/bbox/" + i).asDouble(), (double) get(path, "bbox", i), 1.e-6);
+
+        DynamicMessage points = get(path, "points");
+        double multiplier = get(points, "multiplier");
+        JsonNode coordinates = jsonPath.at("/points/coordinates");
+        assertEquals(coordinates.size(), points.getRepeatedFieldCount(field(points, "lat")));
+        long lat = 0, lon = 0;
+        for (int i = 0; i < coordinates.size(); i++) {
+            lat += (long) get(points, "lat", i);
+            lon += (long) get(points, "lon", i);
+            assertEquals(coordinates.get(i).get(1).asDouble(), lat / multiplier, 1.e-5);
+            assertEquals(coordinates.get(i).get(0).asDouble(), lon / multiplier, 1.e-5);
+        }
+        assertEquals(0, points.getRepeatedFieldCount(field(points, "ele")));
+
+        JsonNode instructions = jsonPath.get("instructions");
+        assertEquals(instructions.size(), path.getRepeatedFieldCount(field(path, "instructions")));
+        for (int i = 0; i < instructions.size(); i++) {
+            DynamicMessage instruction = get(path, "instructions", i);
+            assertEquals(instructions.get(i).get("text").asText(), get(instruction, "text"));
+            assertEquals(instructions.get(i).get("sign").asInt(), (int) get(instruction, "sign"));
+            assertEquals(instructions.get(i).at("/interval/0").asInt(), (int) get(instruction, "interval_first"));
+            assertEquals(instructions.get(i).at("/interval/1").asInt(), (int) get(instruction, "interval_last"));
+        }
+
+        JsonNode details = jsonPath.get("details");
+        assertEquals(details.size(), path.getRepeatedFieldCount(field(path, "details")));
+        for (int i = 0; i < details.size(); i++) {
+            DynamicMessage detail = get(path, "details", i);
+            String name = get(detail, "name");
+            JsonNode intervals = details.get(name);
+            assertEquals(intervals.size(), detail.getRepeatedFieldCount(field(detail, "first")), name);
+            Set<Integer> nullIndices = new HashSet<>();
+            for (int j = 0; j < detail.getRepeatedFieldCount(field(detail, "null_indices")); j++)
+                nullIndices.add(get(detail, "null_indices", j));
+            for (int j = 0; j < intervals.size(); j++) {
+                JsonNode interval = intervals.get(j);
+                assertEquals(interval.get(0).asInt(), (int) get(detail, "first", j), name);
+                assertEquals(interval.get(1).asInt(), (int) get(detail, "last", j), name);
+                assertEquals(interval.get(2).isNull(), nullIndices.contains(j), name);
+                if (interval.get(2).isNull())
+                    continue;
+                switch (name) {
+                    case "road_class":
+                        assertEquals(interval.get(2).asText(), get(detail, "string_values", j), name);
+                        break;
+                    case "max_speed":
+                        assertEquals(interval.get(2).asDouble(), (double) get(detail, "double_values", j), name);
+                        break;
+                    case "edge_id":
+                        assertEquals(interval.get(2).asLong(), (long) get(detail, "long_values", j), name);
+                        break;
+                    default:
+                        fail("unexpected path detail " + name);
+                }
+            }
+        }
+    }
+
+    private static void assertNoUnknownFields(DynamicMessage message) {
+        assertTrue(message.getUnknownFields().asMap().isEmpty(),
+                message.getDescriptorForType().getName() + " has unknown fields " + message.getUnknownFields().asMap().keySet());
+        for (Map.Entry<Descriptors.FieldDescriptor, Object> entry : message.getAllFields().entrySet()) {
+            if (entry.getKey().getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE)
+                continue;
+            if (entry.getKey().isRepeated())
+                for (Object value : (List<?>) entry.getValue())
+                    assertNoUnknownFields((DynamicMessage) value);
+            else
+                assertNoUnknownFields((DynamicMessage) entry.getValue());
+        }
+    }
+
+    private static Descriptors.FieldDescriptor field(DynamicMessage message, String name) {
+        Descriptors.FieldDescriptor field = message.getDescriptorForType().findFieldByName(name);
+        assertNotNull(field, name);
+        return field;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(DynamicMessage message, String name) {
+        return (T) message.getField(field(message, name));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(DynamicMessage message, String name, int index) {
+        return (T) message.getRepeatedField(field(message, name), index);
+    }
+
+    private static final Pattern MESSAGE = Pattern.compile("message\\s+(\\w+)\\s*\\{([^}]*)}");
+    private static final Pattern FIELD = Pattern.compile("(repeated\\s+|optional\\s+)?(map<\\s*(\\w+)\\s*,\\s*(\\w+)\\s*>|\\w+)\\s+(\\w+)\\s*=\\s*(\\d+)\\s*;");
+    private static final Map<String, FieldDescriptorProto.Type> SCALAR_TYPES = new HashMap<>();
+
+    static {
+        for (FieldDescriptorProto.Type type : FieldDescriptorProto.Type.values())
+            if (type != FieldDescriptorProto.Type.TYPE_MESSAGE && type != FieldDescriptorProto.Type.TYPE_GROUP && type != FieldDescriptorProto.Type.TYPE_ENUM)
+                SCALAR_TYPES.put(type.name().substring("TYPE_".length()).toLowerCase(Locale.ROOT), type);
+    }
+
+    /**
+     * protobuf-java cannot read .proto files without protoc, so this is a minimal parser for the subset of the
+     * proto3 syntax that route.proto uses: top-level messages with scalar, message, repeated, optional and map fields.
+     */
+    private static Descriptors.FileDescriptor parseProto(String file) throws IOException {
+        String proto = new String(Files.readAllBytes(Paths.get(file))).replaceAll("//[^\n]*", "");
+        Matcher packageMatcher = Pattern.compile("package\\s+([\\w.]+)\\s*;").matcher(proto);
+        assertTrue(packageMatcher.find());
+        String prefix = "." + packageMatcher.group(1) + ".";
+        FileDescriptorProto.Builder fileProto = FileDescriptorProto.newBuilder().setName("route.proto")
+                .setPackage(packageMatcher.group(1)).setSyntax("proto3");
+        Matcher messageMatcher = MESSAGE.matcher(proto);
+        while (messageMatcher.find()) {
+            DescriptorProto.Builder message = DescriptorProto.newBuilder().setName(messageMatcher.group(1));
+            Matcher fieldMatcher = FIELD.matcher(messageMatcher.group(2));
+            while (fieldMatcher.find()) {
+                String label = fieldMatcher.group(1) == null ? "" : fieldMatcher.group(1).trim();
+                String name = fieldMatcher.group(5);
+                FieldDescriptorProto.Builder field = FieldDescriptorProto.newBuilder().setName(name)
+                        .setNumber(Integer.parseInt(fieldMatcher.group(6)))
+                        .setLabel(label.equals("repeated") ? FieldDescriptorProto.Label.LABEL_REPEATED : FieldDescriptorProto.Label.LABEL_OPTIONAL);
+                if (fieldMatcher.group(3) != null) {
+                    // a map is a repeated message with a key and a value field
+                    String entryName = Character.toUpperCase(name.charAt(0)) + name.substring(1) + "Entry";
+                    message.addNestedType(DescriptorProto.newBuilder().setName(entryName)
+                            .addField(scalarField("key", 1, fieldMatcher.group(3)))
+                            .addField(scalarField("value", 2, fieldMatcher.group(4)))
+                            .setOptions(MessageOptions.newBuilder().setMapEntry(true)));
+                    field.setLabel(FieldDescriptorProto.Label.LABEL_REPEATED).setType(FieldDescriptorProto.Type.TYPE_MESSAGE)
+                            .setTypeName(prefix + messageMatcher.group(1) + "." + entryName);
+                } else if (SCALAR_TYPES.containsKey(fieldMatcher.group(2))) {
+                    field.setType(SCALAR_TYPES.get(fieldMatcher.group(2)));
+                } else {
+                    field.setType(FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(prefix + fieldMatcher.group(2));
+                }
+                if (label.equals("optional")) {
+                    // proto3 optional fields are in a synthetic oneof
+                    field.setProto3Optional(true).setOneofIndex(message.getOneofDeclCount());
+                    message.addOneofDecl(OneofDescriptorProto.newBuilder().setName("_" + name));
+                }
+                message.addField(field);
+            }
+            fileProto.addMessageType(message);
+        }
+        try {
+            return Descriptors.FileDescriptor.buildFrom(fileProto.build(), new Descriptors.FileDescriptor[0]);
+        } catch (Descriptors.DescriptorValidationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FieldDescriptorProto.Builder scalarField(String name, int number, String type) {
+        return FieldDescriptorProto.newBuilder().setName(name).setNumber(number)
+                .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL).setType(SCALAR_TYPES.get(type));
+    }
+}
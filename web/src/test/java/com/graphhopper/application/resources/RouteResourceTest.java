@@ -17,6 +17,7 @@
  */
 package com.graphhopper.application.resources;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
@@ -121,6 +122,21 @@ public class RouteResourceTest {
         assertTrue(distance < 9500, "distance wasn't correct:" + distance);
     }
 
+    @Test
+    public void testRoutingMetrics() {
+        MetricRegistry metrics = app.getEnvironment().metrics();
+        long snappingCount = metrics.histogram("routing.my_car.snapping").getCount();
+        long serializationCount = metrics.histogram("routing.my_car.serialization").getCount();
+        long visitedNodesCount = metrics.histogram("routing.my_car.visited_nodes.dijkstrabi_ch").getCount();
+        JsonNode json = clientTarget(app, "/route?profile=my_car&" +
+                "point=42.554851,1.536198&point=42.510071,1.548128").request().get(JsonNode.class);
+        assertFalse(json.get("info").has("errors"));
+        assertEquals(snappingCount + 1, metrics.histogram("routing.my_car.snapping").getCount());
+        assertEquals(serializationCount + 1, metrics.histogram("routing.my_car.serialization").getCount());
+        assertEquals(visitedNodesCount + 1, metrics.histogram("routing.my_car.visited_nodes.dijkstrabi_ch").getCount());
+        assertTrue(metrics.histogram("routing.my_car.visited_nodes.dijkstrabi_ch").getSnapshot().getMax() > 0);
+    }
+
     @Test
     public void testBasicQuerySamePoint() {
         JsonNode json = clientTarget(app, "/route?profile=my_car&" +